@@ -26,7 +26,6 @@ import org.tribuo.Model;
 import org.tribuo.Prediction;
 import org.tribuo.anomaly.Event;
 import org.tribuo.common.liblinear.LibLinearModel;
-import org.tribuo.common.liblinear.LibLinearTrainer;
 import org.tribuo.provenance.ModelProvenance;
 import de.bwaldvogel.liblinear.FeatureNode;
 import de.bwaldvogel.liblinear.Linear;
@@ -69,7 +68,7 @@ public class LibLinearAnomalyModel extends LibLinearModel<Event> {
 
     @Override
     public Prediction<Event> predict(Example<Event> example) {
-        FeatureNode[] features = LibLinearTrainer.exampleToNodes(example, featureIDMap, null);
+        FeatureNode[] features = exampleToNodes(example);
         // Bias feature is always set
         if (features.length == 1) {
             throw new IllegalArgumentException("No features found in Example " + example.toString());
@@ -34,7 +34,6 @@ import de.bwaldvogel.liblinear.Model;
 import de.bwaldvogel.liblinear.Parameter;
 import de.bwaldvogel.liblinear.Problem;
 
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.logging.Logger;
@@ -140,13 +139,11 @@ public class LibLinearAnomalyTrainer extends LibLinearTrainer<Event> {
 
     @Override
     protected Pair<FeatureNode[][], double[][]> extractData(Dataset<Event> data, ImmutableOutputInfo<Event> outputInfo, ImmutableFeatureMap featureMap) {
-        ArrayList<FeatureNode> featureCache = new ArrayList<>();
-        FeatureNode[][] features = new FeatureNode[data.size()][];
+        FeatureNode[][] features = extractFeatures(data,featureMap);
         double[][] outputs = new double[1][data.size()];
         int i = 0;
         for (Example<Event> e : data) {
             outputs[0][i] = outputInfo.getID(e.getOutput());
-            features[i] = exampleToNodes(e,featureMap,featureCache);
             i++;
         }
         return new Pair<>(features,outputs);
@@ -22,9 +22,7 @@ import org.tribuo.ImmutableOutputInfo;
 import org.tribuo.Prediction;
 import org.tribuo.anomaly.Event;
 import org.tribuo.common.libsvm.LibSVMModel;
-import org.tribuo.common.libsvm.LibSVMTrainer;
 import org.tribuo.provenance.ModelProvenance;
-import libsvm.svm;
 import libsvm.svm_model;
 import libsvm.svm_node;
 
@@ -66,13 +64,13 @@ public class LibSVMAnomalyModel extends LibSVMModel<Event> {
 
     @Override
     public Prediction<Event> predict(Example<Event> example) {
-        svm_node[] features = LibSVMTrainer.exampleToNodes(example, featureIDMap, null);
+        svm_node[] features = exampleToNodes(example);
         // Bias feature is always set by the library.
         if (features.length == 0) {
             throw new IllegalArgumentException("No features found in Example " + example.toString());
         }
         double[] score = new double[1];
-        double prediction = svm.svm_predict_values(models.get(0), features, score);
+        double prediction = predictValues(0, features, score);
         if (prediction < 0.0) {
             return new Prediction<>(new Event(Event.EventType.ANOMALOUS,score[0]),features.length,example);
         } else {
@@ -34,7 +34,6 @@ import libsvm.svm_node;
 import libsvm.svm_parameter;
 import libsvm.svm_problem;
 
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -118,12 +117,10 @@ public class LibSVMAnomalyTrainer extends LibSVMTrainer<Event> {
     @Override
     protected Pair<svm_node[][], double[][]> extractData(Dataset<Event> data, ImmutableOutputInfo<Event> outputInfo, ImmutableFeatureMap featureMap) {
         double[][] ys = new double[1][data.size()];
-        svm_node[][] xs = new svm_node[data.size()][];
-        List<svm_node> buffer = new ArrayList<>();
+        svm_node[][] xs = extractFeatures(data, featureMap);
         int i = 0;
         for (Example<Event> example : data) {
             ys[0][i] = extractOutput(example.getOutput());
-            xs[i] = exampleToNodes(example, featureMap, buffer);
             i++;
         }
         return new Pair<>(xs,ys);
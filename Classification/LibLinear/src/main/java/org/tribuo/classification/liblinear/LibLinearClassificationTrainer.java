@@ -35,7 +35,6 @@ import de.bwaldvogel.liblinear.Model;
 import de.bwaldvogel.liblinear.Parameter;
 import de.bwaldvogel.liblinear.Problem;
 
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -127,13 +126,11 @@ public class LibLinearClassificationTrainer extends LibLinearTrainer<Label> impl
 
     @Override
     protected Pair<FeatureNode[][], double[][]> extractData(Dataset<Label> data, ImmutableOutputInfo<Label> outputInfo, ImmutableFeatureMap featureMap) {
-        ArrayList<FeatureNode> featureCache = new ArrayList<>();
-        FeatureNode[][] features = new FeatureNode[data.size()][];
+        FeatureNode[][] features = extractFeatures(data,featureMap);
         double[][] outputs = new double[1][data.size()];
         int i = 0;
         for (Example<Label> e : data) {
             outputs[0][i] = outputInfo.getID(e.getOutput());
-            features[i] = exampleToNodes(e,featureMap,featureCache);
             i++;
         }
         return new Pair<>(features,outputs);
@@ -33,6 +33,8 @@ import org.tribuo.classification.evaluation.LabelEvaluation;
 import org.tribuo.classification.evaluation.LabelEvaluator;
 import org.tribuo.classification.example.LabelledDataGenerator;
 import org.tribuo.classification.liblinear.LinearClassificationType.LinearType;
+import org.tribuo.common.liblinear.LibLinearModel;
+import org.tribuo.common.liblinear.LibLinearTrainer;
 import org.tribuo.data.text.TextDataSource;
 import org.tribuo.data.text.TextFeatureExtractor;
 import org.tribuo.data.text.impl.BasicPipeline;
@@ -44,6 +46,7 @@ import de.bwaldvogel.liblinear.FeatureNode;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.tribuo.test.Helpers;
+import org.tribuo.util.ParallelPredictor;
 import org.tribuo.util.tokens.impl.BreakIteratorTokenizer;
 
 import java.io.File;
@@ -205,6 +208,71 @@ public class TestLibLinearModel {
         testLibLinear(p);
     }
 
+    @Test
+    public void testParallelPrediction() {
+        Pair<Dataset<Label>,Dataset<Label>> p = LabelledDataGenerator.sparseTrainTest();
+        LibLinearModel<Label> model = t.train(p.getA());
+        List<Prediction<Label>> serial = model.predict(p.getB());
+        List<Prediction<Label>> parallel = model.predict(p.getB(),3);
+        checkPredictions(serial, parallel);
+
+        // A predictor can be reused across calls.
+        try (ParallelPredictor predictor = new ParallelPredictor(2)) {
+            checkPredictions(serial, model.predict(p.getB(),predictor));
+            checkPredictions(serial, model.predict(p.getB(),predictor));
+        }
+        assertThrows(IllegalArgumentException.class, () -> model.predict(p.getB(),0));
+    }
+
+    private static void checkPredictions(List<Prediction<Label>> serial, List<Prediction<Label>> parallel) {
+        assertEquals(serial.size(), parallel.size());
+        for (int i = 0; i < serial.size(); i++) {
+            assertEquals(serial.get(i).getOutput().getLabel(), parallel.get(i).getOutput().getLabel());
+            assertEquals(serial.get(i).getOutput().getScore(), parallel.get(i).getOutput().getScore(), 1e-12);
+            assertEquals(serial.get(i).getExample(), parallel.get(i).getExample());
+        }
+    }
+
+    @Test
+    public void testConvertedDataCache() {
+        Pair<Dataset<Label>,Dataset<Label>> p = LabelledDataGenerator.sparseTrainTest();
+        Dataset<Label> train = p.getA();
+        ImmutableFeatureMap fmap = train.getFeatureIDMap();
+        ImmutableOutputInfo<Label> outputInfo = train.getOutputIDInfo();
+
+        LibLinearClassificationTrainer serial = new LibLinearClassificationTrainer();
+        FeatureNode[][] expected = serial.extractData(train,outputInfo,fmap).getA();
+
+        LibLinearClassificationTrainer parallel = new LibLinearClassificationTrainer();
+        parallel.setNumThreads(3);
+        parallel.setCacheConvertedData(true);
+        FeatureNode[][] first = parallel.extractData(train,outputInfo,fmap).getA();
+        assertEquals(expected.length,first.length);
+        for (int i = 0; i < expected.length; i++) {
+            assertArrayEquals(getIndices(expected[i]),getIndices(first[i]));
+            assertArrayEquals(getValues(expected[i]),getValues(first[i]),1e-10);
+        }
+
+        // A fresh trainer and feature map reuse the cached conversion.
+        LibLinearClassificationTrainer other = new LibLinearClassificationTrainer();
+        other.setCacheConvertedData(true);
+        assertTrue(first == other.extractData(train,outputInfo,train.getFeatureIDMap()).getA());
+
+        // Changing the iteration order invalidates it.
+        train.shuffle(true);
+        assertTrue(first != other.extractData(train,outputInfo,fmap).getA());
+        train.shuffle(false);
+
+        Model<Label> serialModel = serial.train(train);
+        Model<Label> cachedModel = other.train(train);
+        List<Prediction<Label>> serialPredictions = serialModel.predict(p.getB());
+        List<Prediction<Label>> cachedPredictions = cachedModel.predict(p.getB());
+        for (int i = 0; i < serialPredictions.size(); i++) {
+            assertEquals(serialPredictions.get(i).getOutput().getLabel(),cachedPredictions.get(i).getOutput().getLabel());
+        }
+        LibLinearTrainer.clearConvertedDataCache();
+    }
+
     @Test
     public void duplicateFeatureIDs() {
         ImmutableFeatureMap fmap = new TestMap();
@@ -23,7 +23,6 @@ import org.tribuo.ImmutableOutputInfo;
 import org.tribuo.Prediction;
 import org.tribuo.classification.Label;
 import org.tribuo.common.libsvm.LibSVMModel;
-import org.tribuo.common.libsvm.LibSVMTrainer;
 import org.tribuo.provenance.ModelProvenance;
 import libsvm.svm;
 import libsvm.svm_model;
@@ -99,7 +98,7 @@ public class LibSVMClassificationModel extends LibSVMModel<Label> {
     @Override
     public Prediction<Label> predict(Example<Label> example) {
         svm_model model = models.get(0);
-        svm_node[] features = LibSVMTrainer.exampleToNodes(example, featureIDMap, null);
+        svm_node[] features = exampleToNodes(example);
         // Bias feature is always set
         if (features.length == 0) {
             throw new IllegalArgumentException("No features found in Example " + example.toString());
@@ -111,7 +110,7 @@ public class LibSVMClassificationModel extends LibSVMModel<Label> {
         } else {
             //LibSVM returns a one vs one result, and unpacks it into a score vector by voting
             double[] onevone = new double[labels.length * (labels.length - 1) / 2];
-            svm.svm_predict_values(model, features, onevone);
+            predictValues(0, features, onevone);
             int counter = 0;
             for (int i = 0; i < labels.length; i++) {
                 for (int j = i+1; j < labels.length; j++) {
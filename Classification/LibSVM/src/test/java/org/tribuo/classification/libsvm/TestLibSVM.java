@@ -44,6 +44,8 @@ import org.tribuo.data.text.impl.SimpleTextDataSource;
 import org.tribuo.data.text.impl.TextFeatureExtractorImpl;
 import org.tribuo.dataset.DatasetView;
 import org.tribuo.impl.ListExample;
+import libsvm.svm;
+import libsvm.svm_model;
 import libsvm.svm_node;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
@@ -205,6 +207,75 @@ public class TestLibSVM {
         testLibSVM(p);
     }
 
+    @Test
+    public void testLinearKernelBatchPrediction() {
+        Pair<Dataset<Label>,Dataset<Label>> p = LabelledDataGenerator.denseTrainTest();
+        LibSVMClassificationTrainer trainer = new LibSVMClassificationTrainer(new SVMParameters<>(new SVMClassificationType(SVMMode.C_SVC), KernelType.LINEAR));
+        LibSVMClassificationModel model = (LibSVMClassificationModel) trainer.train(p.getA());
+        svm_model inner = model.getInnerModels().get(0);
+        int numPairs = inner.nr_class * (inner.nr_class - 1) / 2;
+
+        // The collapsed weights give the same votes as libsvm's own decision values.
+        for (Example<Label> e : p.getB()) {
+            svm_node[] nodes = LibSVMTrainer.exampleToNodes(e, model.getFeatureIDMap(), null);
+            double[] decValues = new double[numPairs];
+            svm.svm_predict_values(inner, nodes, decValues);
+            double[] votes = new double[inner.nr_class];
+            int counter = 0;
+            for (int i = 0; i < inner.nr_class; i++) {
+                for (int j = i+1; j < inner.nr_class; j++) {
+                    if (decValues[counter] > 0) {
+                        votes[i]++;
+                    } else {
+                        votes[j]++;
+                    }
+                    counter++;
+                }
+            }
+            Map<String,Label> scores = model.predict(e).getOutputScores();
+            for (int i = 0; i < votes.length; i++) {
+                String name = model.getOutputIDInfo().getOutput(inner.label[i]).getLabel();
+                assertEquals(votes[i], scores.get(name).getScore(), 1e-10);
+            }
+        }
+
+        List<Prediction<Label>> serial = model.predict(p.getB());
+        List<Prediction<Label>> parallel = model.predict(p.getB(),4);
+        assertEquals(serial.size(), parallel.size());
+        for (int i = 0; i < serial.size(); i++) {
+            assertEquals(serial.get(i).getOutput().getLabel(), parallel.get(i).getOutput().getLabel());
+            assertEquals(serial.get(i).getExample(), parallel.get(i).getExample());
+        }
+    }
+
+    @Test
+    public void testConvertedDataCache() {
+        Pair<Dataset<Label>,Dataset<Label>> p = LabelledDataGenerator.sparseTrainTest();
+        Dataset<Label> train = p.getA();
+        ImmutableFeatureMap fmap = train.getFeatureIDMap();
+        ImmutableOutputInfo<Label> outputInfo = train.getOutputIDInfo();
+
+        LibSVMClassificationTrainer serial = new LibSVMClassificationTrainer(new SVMParameters<>(new SVMClassificationType(SVMMode.C_SVC), KernelType.RBF));
+        svm_node[][] expected = serial.extractData(train,outputInfo,fmap).getA();
+
+        LibSVMClassificationTrainer parallel = new LibSVMClassificationTrainer(new SVMParameters<>(new SVMClassificationType(SVMMode.C_SVC), KernelType.RBF));
+        parallel.setNumThreads(3);
+        parallel.setCacheConvertedData(true);
+        svm_node[][] first = parallel.extractData(train,outputInfo,fmap).getA();
+        assertEquals(expected.length,first.length);
+        for (int i = 0; i < expected.length; i++) {
+            assertArrayEquals(getIndices(expected[i]),getIndices(first[i]));
+            assertArrayEquals(getValues(expected[i]),getValues(first[i]),1e-10);
+        }
+
+        // Reused until the iteration order changes.
+        assertTrue(first == parallel.extractData(train,outputInfo,train.getFeatureIDMap()).getA());
+        train.shuffle(true);
+        assertTrue(first != parallel.extractData(train,outputInfo,fmap).getA());
+        train.shuffle(false);
+        LibSVMTrainer.clearConvertedDataCache();
+    }
+
     @Test
     public void duplicateFeatureIDs() {
         ImmutableFeatureMap fmap = new TestMap();
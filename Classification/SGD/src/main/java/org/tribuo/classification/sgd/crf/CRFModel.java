@@ -132,15 +132,15 @@ public class CRFModel extends ConfidencePredictingSequenceModel {
         SGDVector[] features = convertToVector(example,featureIDMap);
         List<Prediction<Label>> output = new ArrayList<>();
         if (confidenceType == ConfidenceType.MULTIPLY) {
-            DenseVector[] marginals = parameters.predictMarginals(features);
+            ChainHelper.ChainWorkspace marginals = parameters.predictMarginalsWorkspace(features);
 
-            for (int i = 0; i < marginals.length; i++) {
+            for (int i = 0; i < features.length; i++) {
                 double maxScore = Double.NEGATIVE_INFINITY;
                 Label maxLabel = null;
                 Map<String,Label> predMap = new LinkedHashMap<>();
-                for (int j = 0; j < marginals[i].size(); j++) {
+                for (int j = 0; j < marginals.numLabels; j++) {
                     String labelName = outputIDMap.getOutput(j).getLabel();
-                    Label label = new Label(labelName, marginals[i].get(j));
+                    Label label = new Label(labelName, marginals.getMarginal(i,j));
                     predMap.put(labelName, label);
                     if (label.getScore() > maxScore) {
                         maxScore = label.getScore();
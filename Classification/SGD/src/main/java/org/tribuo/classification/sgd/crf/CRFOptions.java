@@ -40,12 +40,18 @@ public class CRFOptions implements Options {
     @Option(longName = "crf-minibatch", usage = "Sets the minibatch size in the CRF trainer.")
     private int minibatchSize = 1;
 
+    @Option(longName = "crf-num-threads", usage = "Sets the number of threads used to compute the gradients in the CRF trainer.")
+    private int numThreads = 1;
+
+    @Option(longName = "crf-hogwild", usage = "Use lock-free asynchronous updates when training the CRF on multiple threads.")
+    private boolean hogwild = false;
+
     /**
      * Returns the configured CRF trainer.
      * @return The CRF trainer.
      */
     public CRFTrainer getSequenceTrainer() {
-        return new CRFTrainer(sgoOptions.getOptimiser(), epochs, loggingInterval, minibatchSize, seed);
+        return new CRFTrainer(sgoOptions.getOptimiser(), epochs, loggingInterval, minibatchSize, seed, numThreads, hogwild);
     }
 
 }
@@ -25,6 +25,7 @@ import org.tribuo.math.la.Matrix;
 import org.tribuo.math.la.SGDVector;
 import org.tribuo.math.la.SparseVector;
 import org.tribuo.math.la.Tensor;
+import org.tribuo.math.la.VectorTuple;
 import org.tribuo.math.util.HeapMerger;
 import org.tribuo.math.util.Merger;
 
@@ -118,14 +119,42 @@ public class CRFParameters implements Parameters, Serializable {
         return new ChainHelper.ChainCliqueValues(localScores, labelLabelWeights);
     }
 
+    /**
+     * Writes the local scores and the label - label transition weights into this thread's
+     * {@link ChainHelper.ChainWorkspace}.
+     * <p>
+     * The workspace is reused by subsequent calls on the same thread, so it must not escape this package.
+     * @param features The per token {@link SGDVector} of features.
+     * @return The workspace containing the clique values.
+     */
+    ChainHelper.ChainWorkspace getCliqueValuesWorkspace(SGDVector[] features) {
+        ChainHelper.ChainWorkspace workspace = ChainHelper.getWorkspace(numLabels, features.length);
+        workspace.setTransitions(labelLabelWeights);
+        double[] tmpScores = workspace.tmp;
+        for (int i = 0; i < features.length; i++) {
+            Arrays.fill(tmpScores, 0.0);
+            for (VectorTuple tuple : features[i]) {
+                for (int j = 0; j < numLabels; j++) {
+                    tmpScores[j] += featureLabelWeights.get(j, tuple.index) * tuple.value;
+                }
+            }
+            for (int j = 0; j < numLabels; j++) {
+                workspace.setLocalScore(i, j, tmpScores[j] + biases.get(j));
+            }
+        }
+        return workspace;
+    }
+
     /**
      * Generate a prediction using Viterbi.
      * @param features The per token {@link SGDVector} of features.
      * @return An int array giving the predicted label per token.
      */
     public int[] predict(SGDVector[] features) {
-        ChainHelper.ChainViterbiResults result = ChainHelper.viterbi(getCliqueValues(features));
-        return result.mapValues;
+        ChainHelper.ChainWorkspace workspace = getCliqueValuesWorkspace(features);
+        int[] mapValues = new int[features.length];
+        ChainHelper.viterbi(workspace, mapValues);
+        return mapValues;
     }
 
     /**
@@ -134,15 +163,32 @@ public class CRFParameters implements Parameters, Serializable {
      * @return A {@link DenseVector} per token containing the marginal distribution over labels.
      */
     public DenseVector[] predictMarginals(SGDVector[] features) {
-        ChainHelper.ChainBPResults result = ChainHelper.beliefPropagation(getCliqueValues(features));
+        ChainHelper.ChainWorkspace workspace = predictMarginalsWorkspace(features);
         DenseVector[] marginals = new DenseVector[features.length];
         for (int i = 0; i < features.length; i++) {
-            marginals[i] = result.alphas[i].add(result.betas[i]);
-            marginals[i].expNormalize(result.logZ);
+            marginals[i] = new DenseVector(numLabels);
+            for (int j = 0; j < numLabels; j++) {
+                marginals[i].set(j, workspace.getMarginal(i, j));
+            }
         }
         return marginals;
     }
 
+    /**
+     * Runs Belief Propagation in this thread's {@link ChainHelper.ChainWorkspace}, which can then be queried
+     * for the marginal distribution over labels via {@link ChainHelper.ChainWorkspace#getMarginal}.
+     * <p>
+     * The workspace is reused by subsequent calls on the same thread, so it must not escape this package,
+     * use {@link #predictMarginals} for a copy of the marginals.
+     * @param features The per token {@link SGDVector} of features.
+     * @return The workspace containing the belief propagation results.
+     */
+    ChainHelper.ChainWorkspace predictMarginalsWorkspace(SGDVector[] features) {
+        ChainHelper.ChainWorkspace workspace = getCliqueValuesWorkspace(features);
+        ChainHelper.beliefPropagation(workspace);
+        return workspace;
+    }
+
     /**
      * This predicts per chunk confidence using the constrained forward backward algorithm from
      * Culotta and McCallum 2004.
@@ -154,9 +200,8 @@ public class CRFParameters implements Parameters, Serializable {
      * @return A list containing the confidence value for each chunk.
      */
     public List<Double> predictConfidenceUsingCBP(SGDVector[] features, List<Chunk> chunks) {
-        ChainHelper.ChainCliqueValues cliqueValues = getCliqueValues(features);
-        ChainHelper.ChainBPResults bpResult = ChainHelper.beliefPropagation(cliqueValues);
-        double bpLogZ = bpResult.logZ;
+        ChainHelper.ChainWorkspace workspace = getCliqueValuesWorkspace(features);
+        double bpLogZ = ChainHelper.beliefPropagation(workspace);
 
         int[] constraints = new int[features.length];
 
@@ -164,7 +209,7 @@ public class CRFParameters implements Parameters, Serializable {
         for (Chunk chunk : chunks) {
             Arrays.fill(constraints,-1);
             chunk.unpack(constraints);
-            double chunkScore = ChainHelper.constrainedBeliefPropagation(cliqueValues,constraints);
+            double chunkScore = ChainHelper.constrainedBeliefPropagation(workspace,constraints);
             output.add(Math.exp(chunkScore - bpLogZ));
         }
 
@@ -182,12 +227,10 @@ public class CRFParameters implements Parameters, Serializable {
      * @return A {@link Pair} containing the loss for this example and the associated gradient.
      */
     public Pair<Double, Tensor[]> valueAndGradient(SGDVector[] features, int[] labels) {
-        ChainHelper.ChainCliqueValues scores = getCliqueValues(features);
+        ChainHelper.ChainWorkspace workspace = getCliqueValuesWorkspace(features);
         // Infer the marginal distribution over labels for each token.
-        ChainHelper.ChainBPResults bpResults = ChainHelper.beliefPropagation(scores);
-        double logZ = bpResults.logZ;
-        DenseVector[] alphas = bpResults.alphas;
-        DenseVector[] betas = bpResults.betas;
+        double logZ = ChainHelper.beliefPropagation(workspace);
+        double[] transitions = workspace.transitions;
 
         //Calculate the gradients for the parameters.
         Tensor[] gradient = new Tensor[3];
@@ -201,15 +244,12 @@ public class CRFParameters implements Parameters, Serializable {
         for (int i = 0; i < features.length; i++) {
             int curLabel = labels[i];
             // Increment the loss based on the score for the true label.
-            DenseVector curLocalScores = scores.localValues[i];
-            score += curLocalScores.get(curLabel);
-            // Generate the predicted local marginal from the BP run.
-            DenseVector curAlpha = alphas[i];
-            DenseVector curBeta = betas[i];
-            DenseVector localMarginal = curAlpha.add(curBeta);
-            // Generate the gradient for the biases based on the true label and predicted label.
-            localMarginal.expNormalize(logZ);
-            localMarginal.scaleInPlace(-1.0);
+            score += workspace.getLocalScore(i,curLabel);
+            // Generate the gradient for the biases based on the true label and the local marginal from the BP run.
+            DenseVector localMarginal = new DenseVector(numLabels);
+            for (int j = 0; j < numLabels; j++) {
+                localMarginal.set(j,-workspace.getMarginal(i,j));
+            }
             localMarginal.add(curLabel,1.0);
             gradient[0].intersectAndAddInPlace(localMarginal);
             // Generate the gradient for the feature - label weights
@@ -226,11 +266,10 @@ public class CRFParameters implements Parameters, Serializable {
             }
             // If the sequence has more than one token generate the gradient for the label - label transitions.
             if (i >= 1) {
-                DenseVector prevAlpha = alphas[i - 1];
                 for (int ii = 0; ii < numLabels; ii++) {
-                    double prevAlphaVal = prevAlpha.get(ii);
+                    double prevAlphaVal = workspace.getAlpha(i - 1, ii);
                     for (int jj = 0; jj < numLabels; jj++) {
-                        double update = -Math.exp(prevAlphaVal + labelLabelWeights.get(ii,jj) + curBeta.get(jj) + curLocalScores.get(jj) - logZ);
+                        double update = -Math.exp(prevAlphaVal + transitions[ii * numLabels + jj] + workspace.getBeta(i, jj) + workspace.getLocalScore(i, jj) - logZ);
                         transGradient.add(ii, jj, update);
                     }
                 }
@@ -300,7 +339,7 @@ public class CRFParameters implements Parameters, Serializable {
         List<DenseSparseMatrix> updates = new ArrayList<>(size);
         DenseMatrix denseUpdates = null;
         DenseMatrix labelLabelUpdate = new DenseMatrix(labelLabelWeights.getDimension1Size(),labelLabelWeights.getDimension2Size());
-        for (int j = 0; j < gradients.length; j++) {
+        for (int j = 0; j < size; j++) {
             biasUpdate.intersectAndAddInPlace(gradients[j][0]);
             Matrix tmpUpdate = (Matrix) gradients[j][1];
             if (tmpUpdate instanceof DenseSparseMatrix) {
@@ -17,6 +17,7 @@
 package org.tribuo.classification.sgd.crf;
 
 import com.oracle.labs.mlrg.olcut.config.Config;
+import com.oracle.labs.mlrg.olcut.config.PropertyException;
 import com.oracle.labs.mlrg.olcut.provenance.Provenance;
 import com.oracle.labs.mlrg.olcut.util.Pair;
 import org.tribuo.ImmutableFeatureMap;
@@ -35,8 +36,14 @@ import org.tribuo.sequence.SequenceExample;
 import org.tribuo.sequence.SequenceTrainer;
 
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Logger;
 
 /**
@@ -70,6 +77,12 @@ public class CRFTrainer implements SequenceTrainer<Label>, WeightedExamples {
     @Config(description="Shuffle the data before each epoch. Only turn off for debugging.")
     private boolean shuffle = true;
 
+    @Config(description="The number of threads used to compute the gradients.")
+    private int numThreads = 1;
+
+    @Config(description="Use lock-free asynchronous updates (Hogwild) when running with multiple threads, rather than parallel minibatches. Requires an optimiser with only per parameter state (e.g., SGD, AdaGrad, AdaDelta, Adam), and logs the loss once per epoch.")
+    private boolean hogwild = false;
+
     private SplittableRandom rng;
 
     private int trainInvocationCounter;
@@ -83,11 +96,47 @@ public class CRFTrainer implements SequenceTrainer<Label>, WeightedExamples {
      * @param seed A seed for the random number generator, used to shuffle the examples before each epoch.
      */
     public CRFTrainer(StochasticGradientOptimiser optimiser, int epochs, int loggingInterval, int minibatchSize, long seed) {
+        this(optimiser,epochs,loggingInterval,minibatchSize,seed,1,false);
+    }
+
+    /**
+     * Creates a CRFTrainer which uses SGD to learn the parameters, computing the gradients on multiple threads.
+     * <p>
+     * If {@code hogwild} is false, the examples in each minibatch are processed concurrently against the
+     * same parameters, and the gradients are merged before the update. This produces the same model as
+     * single threaded training, and only speeds it up when the minibatch size is larger than one.
+     * <p>
+     * If {@code hogwild} is true, each thread processes a shard of the examples and updates the parameters
+     * without locking, as in Hogwild. This scales with the number of threads, but the model is not
+     * reproducible across runs. Each thread has its own copy of the optimiser, so the optimiser state
+     * (e.g., the AdaGrad accumulators) is per thread, costing {@code numThreads} copies of it. Only
+     * optimisers which keep per parameter state and leave the parameters alone when finalised can be copied
+     * like this, i.e., those which support {@link StochasticGradientOptimiser#copyWithState()}; other
+     * optimisers (e.g., {@link org.tribuo.math.optimisers.ParameterAveraging} or
+     * {@link org.tribuo.math.optimisers.Pegasos}) are rejected. In Hogwild mode the loss is logged once per
+     * epoch, averaged over the epoch's examples, and as the parameters change concurrently it's only
+     * an approximation of the loss of any single set of parameters.
+     * <pre>
+     * Niu F, Recht B, Re C, Wright SJ.
+     * "Hogwild!: A Lock-Free Approach to Parallelizing Stochastic Gradient Descent"
+     * Advances in Neural Information Processing Systems, 2011.
+     * </pre>
+     * @param optimiser The gradient optimiser to use.
+     * @param epochs The number of SGD epochs (complete passes through the training data).
+     * @param loggingInterval Log the loss after this many iterations. If -1 don't log anything.
+     * @param minibatchSize The size of the minibatches used to aggregate gradients.
+     * @param seed A seed for the random number generator, used to shuffle the examples before each epoch.
+     * @param numThreads The number of threads to use.
+     * @param hogwild Use lock-free asynchronous updates rather than parallel minibatches.
+     */
+    public CRFTrainer(StochasticGradientOptimiser optimiser, int epochs, int loggingInterval, int minibatchSize, long seed, int numThreads, boolean hogwild) {
         this.optimiser = optimiser;
         this.epochs = epochs;
         this.loggingInterval = loggingInterval;
         this.minibatchSize = minibatchSize;
         this.seed = seed;
+        this.numThreads = numThreads;
+        this.hogwild = hogwild;
         postConfig();
     }
 
@@ -119,6 +168,15 @@ public class CRFTrainer implements SequenceTrainer<Label>, WeightedExamples {
 
     @Override
     public synchronized void postConfig() {
+        if (minibatchSize < 1) {
+            throw new PropertyException("","minibatchSize","minibatchSize must be positive, found " + minibatchSize);
+        }
+        if (numThreads < 1) {
+            throw new PropertyException("","numThreads","numThreads must be positive, found " + numThreads);
+        }
+        if (hogwild && (numThreads > 1) && !optimiser.copy().copyWithState().isPresent()) {
+            throw new PropertyException("","hogwild","Hogwild training requires an optimiser which can be copied per thread, found " + optimiser.toString());
+        }
         this.rng = new SplittableRandom(seed);
     }
 
@@ -169,63 +227,89 @@ public class CRFTrainer implements SequenceTrainer<Label>, WeightedExamples {
         double loss = 0.0;
         int iteration = 0;
 
-        for (int i = 0; i < epochs; i++) {
-            if (shuffle) {
-                Util.shuffleInPlace(sgdFeatures, sgdLabels, weights, localRNG);
+        ExecutorService pool = numThreads > 1 ? Executors.newFixedThreadPool(numThreads) : null;
+        // In Hogwild mode each thread steps its own optimiser, as the optimisers' state isn't thread safe.
+        StochasticGradientOptimiser[] threadOptimisers = null;
+        if (hogwild && (pool != null)) {
+            threadOptimisers = new StochasticGradientOptimiser[numThreads];
+            threadOptimisers[0] = localOptimiser;
+            for (int t = 1; t < numThreads; t++) {
+                threadOptimisers[t] = localOptimiser.copy();
+                threadOptimisers[t].initialise(crfParameters);
             }
-            if (minibatchSize == 1) {
-                /*
-                 * Special case a minibatch of size 1. Directly updates the parameters after each
-                 * example rather than aggregating.
-                 */
-                for (int j = 0; j < sgdFeatures.length; j++) {
-                    Pair<Double,Tensor[]> output = crfParameters.valueAndGradient(sgdFeatures[j],sgdLabels[j]);
-                    loss += output.getA()*weights[j];
-
-                    //Update the gradient with the current learning rates
-                    Tensor[] updates = localOptimiser.step(output.getB(),weights[j]);
-
-                    //Apply the update to the current parameters.
-                    crfParameters.update(updates);
-
-                    iteration++;
-                    if ((iteration % loggingInterval == 0) && (loggingInterval != -1)) {
-                        logger.info("At iteration " + iteration + ", average loss = " + loss/loggingInterval);
-                        loss = 0.0;
-                    }
+        }
+        try {
+            for (int i = 0; i < epochs; i++) {
+                if (shuffle) {
+                    Util.shuffleInPlace(sgdFeatures, sgdLabels, weights, localRNG);
                 }
-            } else {
-                Tensor[][] gradients = new Tensor[minibatchSize][];
-                for (int j = 0; j < sgdFeatures.length; j += minibatchSize) {
-                    double tempWeight = 0.0;
-                    int curSize = 0;
-                    //Aggregate the gradient updates for each example in the minibatch
-                    for (int k = j; k < j+minibatchSize && k < sgdFeatures.length; k++) {
+                if (threadOptimisers != null) {
+                    double epochLoss = hogwildEpoch(pool,crfParameters,threadOptimisers,sgdFeatures,sgdLabels,weights);
+                    if (loggingInterval != -1) {
+                        logger.info("At epoch " + (i+1) + ", average loss = " + epochLoss/sgdFeatures.length);
+                    }
+                } else if (minibatchSize == 1) {
+                    /*
+                     * Special case a minibatch of size 1. Directly updates the parameters after each
+                     * example rather than aggregating.
+                     */
+                    for (int j = 0; j < sgdFeatures.length; j++) {
                         Pair<Double,Tensor[]> output = crfParameters.valueAndGradient(sgdFeatures[j],sgdLabels[j]);
-                        loss += output.getA()*weights[k];
-                        tempWeight += weights[k];
+                        loss += output.getA()*weights[j];
 
-                        gradients[k-j] = output.getB();
-                        curSize++;
-                    }
-                    //Merge the values into a single gradient update
-                    Tensor[] updates = crfParameters.merge(gradients,curSize);
-                    for (Tensor update : updates) {
-                        update.scaleInPlace(minibatchSize);
+                        //Update the gradient with the current learning rates
+                        Tensor[] updates = localOptimiser.step(output.getB(),weights[j]);
+
+                        //Apply the update to the current parameters.
+                        crfParameters.update(updates);
+
+                        iteration++;
+                        if ((iteration % loggingInterval == 0) && (loggingInterval != -1)) {
+                            logger.info("At iteration " + iteration + ", average loss = " + loss/loggingInterval);
+                            loss = 0.0;
+                        }
                     }
-                    tempWeight /= minibatchSize;
-                    //Update the gradient with the current learning rates
-                    updates = localOptimiser.step(updates,tempWeight);
-                    //Apply the gradient.
-                    crfParameters.update(updates);
-
-                    iteration++;
-                    if ((loggingInterval != -1) && (iteration % loggingInterval == 0)) {
-                        logger.info("At iteration " + iteration + ", average loss = " + loss/loggingInterval);
-                        loss = 0.0;
+                } else {
+                    Tensor[][] gradients = new Tensor[minibatchSize][];
+                    double[] losses = new double[minibatchSize];
+                    for (int j = 0; j < sgdFeatures.length; j += minibatchSize) {
+                        int curSize = Math.min(minibatchSize, sgdFeatures.length - j);
+                        //Compute the gradient for each example in the minibatch, in parallel if there is a pool
+                        computeGradients(pool,crfParameters,sgdFeatures,sgdLabels,j,curSize,gradients,losses);
+                        double tempWeight = 0.0;
+                        for (int k = 0; k < curSize; k++) {
+                            loss += losses[k]*weights[j+k];
+                            tempWeight += weights[j+k];
+                        }
+                        //Merge the values into a single gradient update
+                        Tensor[] updates = crfParameters.merge(gradients,curSize);
+                        for (Tensor update : updates) {
+                            update.scaleInPlace(minibatchSize);
+                        }
+                        tempWeight /= minibatchSize;
+                        //Update the gradient with the current learning rates
+                        updates = localOptimiser.step(updates,tempWeight);
+                        //Apply the gradient.
+                        crfParameters.update(updates);
+
+                        iteration++;
+                        if ((loggingInterval != -1) && (iteration % loggingInterval == 0)) {
+                            logger.info("At iteration " + iteration + ", average loss = " + loss/loggingInterval);
+                            loss = 0.0;
+                        }
                     }
                 }
             }
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+        if (threadOptimisers != null) {
+            for (int t = 1; t < threadOptimisers.length; t++) {
+                threadOptimisers[t].finalise();
+                threadOptimisers[t].reset();
+            }
         }
         localOptimiser.finalise();
         //public CRFModel(String name, String description, ImmutableInfoMap featureIDMap, ImmutableInfoMap outputIDInfo, CRFParameters parameters) {
@@ -235,6 +319,118 @@ public class CRFTrainer implements SequenceTrainer<Label>, WeightedExamples {
         return model;
     }
 
+    /**
+     * Computes the value and gradient for the examples in {@code [start, start+size)}, writing them into
+     * the first {@code size} elements of {@code gradients} and {@code losses}.
+     * <p>
+     * The parameters are not modified, so the examples can be processed concurrently.
+     * @param pool The thread pool, or null to compute the gradients on this thread.
+     * @param parameters The current parameters.
+     * @param features The sequence features.
+     * @param labels The sequence labels.
+     * @param start The first example.
+     * @param size The number of examples.
+     * @param gradients The gradient output array.
+     * @param losses The loss output array.
+     */
+    private void computeGradients(ExecutorService pool, CRFParameters parameters, SGDVector[][] features, int[][] labels,
+                                  int start, int size, Tensor[][] gradients, double[] losses) {
+        if (pool == null || size == 1) {
+            for (int k = 0; k < size; k++) {
+                Pair<Double,Tensor[]> output = parameters.valueAndGradient(features[start+k],labels[start+k]);
+                losses[k] = output.getA();
+                gradients[k] = output.getB();
+            }
+        } else {
+            int threads = Math.min(numThreads, size);
+            List<Future<?>> futures = new ArrayList<>(threads);
+            for (int t = 0; t < threads; t++) {
+                final int chunkStart = (int) (((long) size * t) / threads);
+                final int chunkEnd = (int) (((long) size * (t + 1)) / threads);
+                futures.add(pool.submit(() -> {
+                    for (int k = chunkStart; k < chunkEnd; k++) {
+                        Pair<Double,Tensor[]> output = parameters.valueAndGradient(features[start+k],labels[start+k]);
+                        losses[k] = output.getA();
+                        gradients[k] = output.getB();
+                    }
+                }));
+            }
+            waitFor(futures);
+        }
+    }
+
+    /**
+     * Runs one epoch of Hogwild training, where each thread processes a contiguous shard of the
+     * examples and applies its updates to the shared parameters without locking.
+     * <p>
+     * Shard {@code t} is stepped by {@code optimisers[t]}, so the optimiser state isn't shared between threads.
+     * @param pool The thread pool.
+     * @param parameters The parameters to update.
+     * @param optimisers The gradient optimisers, one per thread.
+     * @param features The sequence features.
+     * @param labels The sequence labels.
+     * @param weights The example weights.
+     * @return The weighted loss summed across the epoch.
+     */
+    private double hogwildEpoch(ExecutorService pool, CRFParameters parameters, StochasticGradientOptimiser[] optimisers,
+                                SGDVector[][] features, int[][] labels, double[] weights) {
+        List<Future<Double>> futures = new ArrayList<>(numThreads);
+        for (int t = 0; t < numThreads; t++) {
+            final int shardStart = (int) (((long) features.length * t) / numThreads);
+            final int shardEnd = (int) (((long) features.length * (t + 1)) / numThreads);
+            final StochasticGradientOptimiser optimiser = optimisers[t];
+            futures.add(pool.submit(() -> {
+                double shardLoss = 0.0;
+                Tensor[][] gradients = new Tensor[minibatchSize][];
+                for (int j = shardStart; j < shardEnd; j += minibatchSize) {
+                    int curSize = Math.min(minibatchSize, shardEnd - j);
+                    double tempWeight = 0.0;
+                    for (int k = 0; k < curSize; k++) {
+                        Pair<Double,Tensor[]> output = parameters.valueAndGradient(features[j+k],labels[j+k]);
+                        shardLoss += output.getA()*weights[j+k];
+                        tempWeight += weights[j+k];
+                        gradients[k] = output.getB();
+                    }
+                    Tensor[] updates;
+                    if (minibatchSize == 1) {
+                        updates = gradients[0];
+                    } else {
+                        updates = parameters.merge(gradients,curSize);
+                        for (Tensor update : updates) {
+                            update.scaleInPlace(minibatchSize);
+                        }
+                        tempWeight /= minibatchSize;
+                    }
+                    parameters.update(optimiser.step(updates,tempWeight));
+                }
+                return shardLoss;
+            }));
+        }
+        double loss = 0.0;
+        try {
+            for (Future<Double> f : futures) {
+                loss += f.get();
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            throw new IllegalStateException("Failed to compute a Hogwild epoch",e);
+        }
+        return loss;
+    }
+
+    /**
+     * Blocks until all the supplied futures complete.
+     * @param futures The futures to wait on.
+     */
+    private static void waitFor(List<Future<?>> futures) {
+        try {
+            for (Future<?> f : futures) {
+                f.get();
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            throw new IllegalStateException("Failed to compute the minibatch gradients in parallel",e);
+        }
+    }
+
     @Override
     public int getInvocationCount() {
         return trainInvocationCounter;
@@ -242,7 +438,7 @@ public class CRFTrainer implements SequenceTrainer<Label>, WeightedExamples {
 
     @Override
     public String toString() {
-        return "CRFTrainer(optimiser="+optimiser.toString()+",epochs="+epochs+",minibatchSize="+minibatchSize+",seed="+seed+")";
+        return "CRFTrainer(optimiser="+optimiser.toString()+",epochs="+epochs+",minibatchSize="+minibatchSize+",seed="+seed+",numThreads="+numThreads+",hogwild="+hogwild+")";
     }
 
     @Override
@@ -26,8 +26,305 @@ import java.util.Arrays;
  */
 public final class ChainHelper {
 
+    private static final ThreadLocal<ChainWorkspace> workspaces = new ThreadLocal<>();
+
     private ChainHelper() { }
 
+    /**
+     * Returns this thread's {@link ChainWorkspace}, sized for a chain of the requested length.
+     * <p>
+     * The workspace grows to fit the longest chain seen on this thread, and is reused by every
+     * call on that thread, so its contents are only valid until the next call to this method.
+     * @param numLabels The number of labels.
+     * @param length The number of tokens in the chain.
+     * @return A workspace for this thread.
+     */
+    static ChainWorkspace getWorkspace(int numLabels, int length) {
+        ChainWorkspace workspace = workspaces.get();
+        if ((workspace == null) || (workspace.numLabels != numLabels)) {
+            workspace = new ChainWorkspace(numLabels, length);
+            workspaces.set(workspace);
+        } else {
+            workspace.resize(length);
+        }
+        return workspace;
+    }
+
+    /**
+     * Runs belief propagation on a linear chain CRF, using the local and transition
+     * scores stored in the workspace and writing the forward and backward values (in log space) into it.
+     * <p>
+     * Computes the same values as {@link #beliefPropagation(ChainCliqueValues)} without
+     * allocating. The recursions run on exponentiated potentials which are rescaled at each token,
+     * so only a linear number of exponentials and logs are computed per token rather than one
+     * exponential per pair of labels. If the rescaled values underflow it falls back to
+     * computing the recursions in log space.
+     * <p>
+     * An empty chain has a single (empty) labelling, so its normalising constant is zero.
+     * @param workspace The workspace containing the clique values.
+     * @return The normalising constant.
+     */
+    public static double beliefPropagation(ChainWorkspace workspace) {
+        int numLabels = workspace.numLabels;
+        int length = workspace.length;
+        if (length == 0) {
+            workspace.logZ = 0.0;
+            return workspace.logZ;
+        }
+        double[] markovScores = workspace.transitions;
+        double[] expMarkovScores = workspace.expTransitions;
+        double[] localScores = workspace.localScores;
+        double[] potentials = workspace.scratch;
+        double[] localMax = workspace.localMax;
+        double[] alphaScales = workspace.alphaScales;
+        double[] betaScales = workspace.betaScales;
+        double[] alphas = workspace.alphas;
+        double[] betas = workspace.betas;
+
+        // Exponentiate the potentials, shifted by their max so the largest potential is 1.
+        double markovMax = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < markovScores.length; i++) {
+            markovMax = Math.max(markovMax, markovScores[i]);
+        }
+        for (int i = 0; i < markovScores.length; i++) {
+            expMarkovScores[i] = Math.exp(markovScores[i] - markovMax);
+        }
+        for (int i = 0; i < length; i++) {
+            int cur = i * numLabels;
+            double max = localScores[cur];
+            for (int vi = 1; vi < numLabels; vi++) {
+                max = Math.max(max, localScores[cur + vi]);
+            }
+            localMax[i] = max;
+            for (int vi = 0; vi < numLabels; vi++) {
+                potentials[cur + vi] = Math.exp(localScores[cur + vi] - max);
+            }
+        }
+        //
+        // Forward pass, each token's alphas are normalised to sum to one and
+        // the log of the total scaling factor is accumulated in alphaScales.
+        for (int i = 0; i < length; i++) {
+            int cur = i * numLabels;
+            int prev = cur - numLabels;
+            double sum = 0.0;
+            for (int vi = 0; vi < numLabels; vi++) {
+                double value;
+                if (i == 0) {
+                    value = potentials[vi];
+                } else {
+                    value = 0.0;
+                    for (int vj = 0; vj < numLabels; vj++) {
+                        value += alphas[prev + vj] * expMarkovScores[vj * numLabels + vi];
+                    }
+                    value *= potentials[cur + vi];
+                }
+                alphas[cur + vi] = value;
+                sum += value;
+            }
+            if (!(sum > 0.0) || Double.isInfinite(sum)) {
+                return logSpaceBeliefPropagation(workspace);
+            }
+            scale(alphas, cur, numLabels, 1.0 / sum);
+            double prevScale = i == 0 ? 0.0 : alphaScales[i - 1] + markovMax;
+            alphaScales[i] = prevScale + localMax[i] + Math.log(sum);
+        }
+        //
+        // Backward pass, normalised in the same way.
+        int last = (length - 1) * numLabels;
+        Arrays.fill(betas, last, last + numLabels, 1.0);
+        betaScales[length - 1] = 0.0;
+        for (int i = length - 2; i >= 0; i--) {
+            int cur = i * numLabels;
+            int next = cur + numLabels;
+            double sum = 0.0;
+            for (int vi = 0; vi < numLabels; vi++) {
+                int row = vi * numLabels;
+                double value = 0.0;
+                for (int vj = 0; vj < numLabels; vj++) {
+                    value += expMarkovScores[row + vj] * potentials[next + vj] * betas[next + vj];
+                }
+                betas[cur + vi] = value;
+                sum += value;
+            }
+            if (!(sum > 0.0) || Double.isInfinite(sum)) {
+                return logSpaceBeliefPropagation(workspace);
+            }
+            scale(betas, cur, numLabels, 1.0 / sum);
+            betaScales[i] = betaScales[i + 1] + markovMax + localMax[i + 1] + Math.log(sum);
+        }
+        //
+        // Move the forward and backward values back into log space.
+        for (int i = 0; i < length; i++) {
+            int cur = i * numLabels;
+            for (int vi = 0; vi < numLabels; vi++) {
+                alphas[cur + vi] = Math.log(alphas[cur + vi]) + alphaScales[i];
+                betas[cur + vi] = Math.log(betas[cur + vi]) + betaScales[i];
+            }
+        }
+        // The final alphas sum to one, so the normaliser is the accumulated scale.
+        workspace.logZ = alphaScales[length - 1];
+        return workspace.logZ;
+    }
+
+    /**
+     * Multiplies the elements in {@code [offset, offset+length)} by the supplied value.
+     * @param input The array to scale.
+     * @param offset The first element.
+     * @param length The number of elements.
+     * @param value The scaling factor.
+     */
+    private static void scale(double[] input, int offset, int length, double value) {
+        for (int i = offset; i < offset + length; i++) {
+            input[i] *= value;
+        }
+    }
+
+    /**
+     * Runs belief propagation in log space, using the local and transition
+     * scores stored in the workspace and writing the forward and backward values into it.
+     * @param workspace The workspace containing the clique values.
+     * @return The normalising constant.
+     */
+    private static double logSpaceBeliefPropagation(ChainWorkspace workspace) {
+        int numLabels = workspace.numLabels;
+        int length = workspace.length;
+        double[] markovScores = workspace.transitions;
+        double[] localScores = workspace.localScores;
+        double[] alphas = workspace.alphas;
+        double[] betas = workspace.betas;
+        double[] tmpArray = workspace.tmp;
+        System.arraycopy(localScores, 0, alphas, 0, length * numLabels);
+        //
+        // Forward pass
+        for (int i = 1; i < length; i++) {
+            int cur = i * numLabels;
+            int prev = cur - numLabels;
+            for (int vi = 0; vi < numLabels; vi++) {
+                for (int vj = 0; vj < numLabels; vj++) {
+                    tmpArray[vj] = markovScores[vj * numLabels + vi] + alphas[prev + vj];
+                }
+                alphas[cur + vi] += sumLogProbs(tmpArray);
+            }
+        }
+        //
+        // Backward pass
+        int last = (length - 1) * numLabels;
+        Arrays.fill(betas, last, last + numLabels, 0.0);
+        for (int i = length - 2; i >= 0; i--) {
+            int cur = i * numLabels;
+            int prev = cur + numLabels;
+            for (int vi = 0; vi < numLabels; vi++) {
+                int row = vi * numLabels;
+                for (int vj = 0; vj < numLabels; vj++) {
+                    tmpArray[vj] = markovScores[row + vj] + betas[prev + vj] + localScores[prev + vj];
+                }
+                betas[cur + vi] = sumLogProbs(tmpArray);
+            }
+        }
+        workspace.logZ = sumLogProbs(alphas, last, numLabels);
+        return workspace.logZ;
+    }
+
+    /**
+     * Runs constrained belief propagation on a linear chain CRF, using the local and transition
+     * scores stored in the workspace.
+     * <p>
+     * Computes the same value as {@link #constrainedBeliefPropagation(ChainCliqueValues, int[])}
+     * without allocating. The forward and backward values from {@link #beliefPropagation(ChainWorkspace)}
+     * are not modified.
+     * @param workspace The workspace containing the clique values.
+     * @param constraints An array of integers, representing the label constraints. -1 signifies no constraint, otherwise it's the label id.
+     * @return The normalization constant for this constrained run.
+     */
+    public static double constrainedBeliefPropagation(ChainWorkspace workspace, int[] constraints) {
+        int numLabels = workspace.numLabels;
+        int length = workspace.length;
+        if (length != constraints.length) {
+            throw new IllegalArgumentException("Must have the same number of constraints as tokens");
+        } else if (length == 0) {
+            return 0.0;
+        }
+        double[] markovScores = workspace.transitions;
+        double[] alphas = workspace.scratch;
+        double[] tmpArray = workspace.tmp;
+        System.arraycopy(workspace.localScores, 0, alphas, 0, length * numLabels);
+        //
+        // Forward pass
+        for (int i = 1; i < length; i++) {
+            int cur = i * numLabels;
+            int prev = cur - numLabels;
+            for (int vi = 0; vi < numLabels; vi++) {
+                if ((constraints[i] == -1) || (constraints[i] == vi)) {
+                    // if unconstrained or path conforms to constraints
+                    for (int vj = 0; vj < numLabels; vj++) {
+                        tmpArray[vj] = markovScores[vj * numLabels + vi] + alphas[prev + vj];
+                    }
+                    alphas[cur + vi] += sumLogProbs(tmpArray);
+                } else {
+                    // Path is outside constraints, set to zero as alpha is initialised with the local scores.
+                    alphas[cur + vi] = Double.NEGATIVE_INFINITY;
+                }
+            }
+        }
+        return sumLogProbs(alphas, (length - 1) * numLabels, numLabels);
+    }
+
+    /**
+     * Runs Viterbi on a linear chain CRF, using the local and transition scores stored in the workspace.
+     * <p>
+     * Computes the same values as {@link #viterbi(ChainCliqueValues)} without allocating
+     * anything other than the output array.
+     * @param workspace The workspace containing the clique values.
+     * @param mapValues The output array for the maximum predicted label per token, must be at least as long as the chain.
+     * @return The score of the maximum path, zero for an empty chain.
+     */
+    public static double viterbi(ChainWorkspace workspace, int[] mapValues) {
+        int numLabels = workspace.numLabels;
+        int length = workspace.length;
+        if (length == 0) {
+            return 0.0;
+        }
+        double[] markovScores = workspace.transitions;
+        double[] localScores = workspace.localScores;
+        double[] costs = workspace.scratch;
+        int[] backPointers = workspace.backPointers;
+        System.arraycopy(localScores, 0, costs, 0, numLabels);
+        for (int i = 1; i < length; i++) {
+            int cur = i * numLabels;
+            int prev = cur - numLabels;
+            for (int vi = 0; vi < numLabels; vi++) {
+                double maxScore = Double.NEGATIVE_INFINITY;
+                int maxIndex = -1;
+                double curLocalScore = localScores[cur + vi];
+
+                for (int vj = 0; vj < numLabels; vj++) {
+                    double curScore = markovScores[vj * numLabels + vi] + costs[prev + vj] + curLocalScore;
+                    if (curScore > maxScore) {
+                        maxScore = curScore;
+                        maxIndex = vj;
+                    }
+                }
+                costs[cur + vi] = maxScore;
+                if (maxIndex < 0) {
+                    maxIndex = 0;
+                }
+                backPointers[cur + vi] = maxIndex;
+            }
+        }
+        int last = (length - 1) * numLabels;
+        int maxIndex = 0;
+        for (int vi = 1; vi < numLabels; vi++) {
+            if (costs[last + vi] > costs[last + maxIndex]) {
+                maxIndex = vi;
+            }
+        }
+        mapValues[length - 1] = maxIndex;
+        for (int j = length - 2; j >= 0; j--) {
+            mapValues[j] = backPointers[(j + 1) * numLabels + mapValues[j + 1]];
+        }
+        return costs[last + maxIndex];
+    }
+
     /**
      * Runs belief propagation on a linear chain CRF. Uses the
      * linear predictions for each token and the label transition probabilities.
@@ -216,11 +513,24 @@ public final class ChainHelper {
      * @return log sum exp input[i].
      */
     public static double sumLogProbs(double[] input) {
+        return sumLogProbs(input, 0, input.length);
+    }
+
+    /**
+     * Sums the log probabilities in the range {@code [offset, offset+length)}.
+     * Must be updated in concert with {@link ChainHelper#sumLogProbs(DenseVector)}.
+     * @param input A double array of log probabilities.
+     * @param offset The first element to sum.
+     * @param length The number of elements to sum.
+     * @return log sum exp input[i].
+     */
+    public static double sumLogProbs(double[] input, int offset, int length) {
         double LOG_TOLERANCE = 30.0;
 
-        double maxValue = input[0];
-        int maxIdx = 0;
-        for (int i = 1; i < input.length; i++) {
+        int end = offset + length;
+        double maxValue = input[offset];
+        int maxIdx = offset;
+        for (int i = offset + 1; i < end; i++) {
             double value = input[i];
             if (value > maxValue) {
                 maxValue = value;
@@ -234,7 +544,7 @@ public final class ChainHelper {
         boolean anyAdded = false;
         double intermediate = 0.0;
         double cutoff = maxValue - LOG_TOLERANCE;
-        for (int i = 0; i < input.length; i++) {
+        for (int i = offset; i < end; i++) {
             if (input[i] >= cutoff && i != maxIdx && !Double.isInfinite(input[i])) {
                 anyAdded = true;
                 intermediate += Math.exp(input[i] - maxValue);
@@ -291,4 +601,185 @@ public final class ChainHelper {
             this.scores = scores;
         }
     }
+
+    /**
+     * Reusable primitive storage for inference on a linear chain.
+     * <p>
+     * The per token values are stored row-major in flat arrays of {@code length * numLabels} elements,
+     * so the value for token {@code i} and label {@code j} is at {@code i * numLabels + j}. The transition
+     * scores are stored row-major, indexed by {@code from * numLabels + to}.
+     * <p>
+     * Workspaces are not thread safe, use {@link ChainHelper#getWorkspace} to get one for the current thread.
+     */
+    public static final class ChainWorkspace {
+        /**
+         * The number of labels.
+         */
+        public final int numLabels;
+        /**
+         * The label to label transition scores.
+         */
+        public final double[] transitions;
+        /**
+         * Temporary storage for a single token.
+         */
+        final double[] tmp;
+        /**
+         * The per token local scores.
+         */
+        double[] localScores;
+        /**
+         * The forward values.
+         */
+        double[] alphas;
+        /**
+         * The backward values.
+         */
+        double[] betas;
+        /**
+         * Scratch space for Viterbi costs and constrained forward values.
+         */
+        double[] scratch;
+        /**
+         * The Viterbi back pointers.
+         */
+        int[] backPointers;
+        /**
+         * The exponentiated transition scores.
+         */
+        final double[] expTransitions;
+        /**
+         * The maximum local score for each token.
+         */
+        double[] localMax;
+        /**
+         * The log scaling factor for each token's forward values.
+         */
+        double[] alphaScales;
+        /**
+         * The log scaling factor for each token's backward values.
+         */
+        double[] betaScales;
+        /**
+         * The number of tokens in the current chain.
+         */
+        int length;
+        /**
+         * The normalising constant from the last belief propagation run.
+         */
+        double logZ;
+
+        ChainWorkspace(int numLabels, int length) {
+            this.numLabels = numLabels;
+            this.transitions = new double[numLabels * numLabels];
+            this.expTransitions = new double[numLabels * numLabels];
+            this.tmp = new double[numLabels];
+            allocate(Math.max(length, 1));
+            this.length = length;
+        }
+
+        private void allocate(int capacity) {
+            int size = capacity * numLabels;
+            localScores = new double[size];
+            alphas = new double[size];
+            betas = new double[size];
+            scratch = new double[size];
+            backPointers = new int[size];
+            localMax = new double[capacity];
+            alphaScales = new double[capacity];
+            betaScales = new double[capacity];
+        }
+
+        /**
+         * Sets the chain length, growing the storage if necessary.
+         * @param newLength The number of tokens.
+         */
+        void resize(int newLength) {
+            int capacity = localScores.length / numLabels;
+            if (newLength > capacity) {
+                allocate(Math.max(newLength, capacity + (capacity >> 1)));
+            }
+            this.length = newLength;
+        }
+
+        /**
+         * The number of tokens in the current chain.
+         * @return The chain length.
+         */
+        public int length() {
+            return length;
+        }
+
+        /**
+         * The normalising constant computed by the last call to {@link ChainHelper#beliefPropagation(ChainWorkspace)}.
+         * @return The log partition function.
+         */
+        public double logZ() {
+            return logZ;
+        }
+
+        /**
+         * Sets the local score for the specified token and label.
+         * @param token The token index.
+         * @param label The label index.
+         * @param value The score.
+         */
+        public void setLocalScore(int token, int label, double value) {
+            localScores[token * numLabels + label] = value;
+        }
+
+        /**
+         * Gets the local score for the specified token and label.
+         * @param token The token index.
+         * @param label The label index.
+         * @return The score.
+         */
+        public double getLocalScore(int token, int label) {
+            return localScores[token * numLabels + label];
+        }
+
+        /**
+         * Gets the forward value for the specified token and label.
+         * @param token The token index.
+         * @param label The label index.
+         * @return The forward value.
+         */
+        public double getAlpha(int token, int label) {
+            return alphas[token * numLabels + label];
+        }
+
+        /**
+         * Gets the backward value for the specified token and label.
+         * @param token The token index.
+         * @param label The label index.
+         * @return The backward value.
+         */
+        public double getBeta(int token, int label) {
+            return betas[token * numLabels + label];
+        }
+
+        /**
+         * Gets the marginal probability of the label at the specified token, computed
+         * from the last belief propagation run.
+         * @param token The token index.
+         * @param label The label index.
+         * @return The marginal probability.
+         */
+        public double getMarginal(int token, int label) {
+            int idx = token * numLabels + label;
+            return Math.exp(alphas[idx] + betas[idx] - logZ);
+        }
+
+        /**
+         * Copies the transition scores out of the supplied matrix.
+         * @param transitionValues The label to label transition matrix.
+         */
+        public void setTransitions(DenseMatrix transitionValues) {
+            for (int i = 0; i < numLabels; i++) {
+                for (int j = 0; j < numLabels; j++) {
+                    transitions[i * numLabels + j] = transitionValues.get(i, j);
+                }
+            }
+        }
+    }
 }
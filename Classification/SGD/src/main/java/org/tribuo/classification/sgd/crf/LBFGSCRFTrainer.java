@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.tribuo.classification.sgd.crf;
+
+import com.oracle.labs.mlrg.olcut.config.Config;
+import com.oracle.labs.mlrg.olcut.provenance.Provenance;
+import com.oracle.labs.mlrg.olcut.util.Pair;
+import org.tribuo.ImmutableFeatureMap;
+import org.tribuo.ImmutableOutputInfo;
+import org.tribuo.WeightedExamples;
+import org.tribuo.classification.Label;
+import org.tribuo.math.la.SGDVector;
+import org.tribuo.math.la.Tensor;
+import org.tribuo.math.optimisers.LBFGS;
+import org.tribuo.provenance.ModelProvenance;
+import org.tribuo.provenance.TrainerProvenance;
+import org.tribuo.provenance.impl.TrainerProvenanceImpl;
+import org.tribuo.sequence.SequenceDataset;
+import org.tribuo.sequence.SequenceExample;
+import org.tribuo.sequence.SequenceTrainer;
+
+import java.time.OffsetDateTime;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * A trainer for CRFs which uses a full batch quasi-Newton optimiser ({@link LBFGS}) rather than SGD.
+ * <p>
+ * Each iteration runs belief propagation on every sequence to compute the log-likelihood
+ * and its gradient, split across the optimiser's threads. Regularisation is controlled by
+ * the L1 and L2 penalties of the supplied {@link LBFGS}.
+ * <p>
+ * See:
+ * <pre>
+ * Sha F, Pereira F.
+ * "Shallow Parsing with Conditional Random Fields"
+ * Proceedings of HLT-NAACL 2003.
+ * </pre>
+ */
+public class LBFGSCRFTrainer implements SequenceTrainer<Label>, WeightedExamples {
+    private static final Logger logger = Logger.getLogger(LBFGSCRFTrainer.class.getName());
+
+    @Config(description="The batch optimiser to use.")
+    private LBFGS optimiser = new LBFGS(100,1e-3,1);
+
+    private int trainInvocationCounter;
+
+    /**
+     * Constructs a CRF trainer using the supplied optimiser.
+     * @param optimiser The L-BFGS optimiser, which controls the regularisation and parallelism.
+     */
+    public LBFGSCRFTrainer(LBFGS optimiser) {
+        this.optimiser = optimiser;
+    }
+
+    /**
+     * Constructs a CRF trainer which runs for at most 100 iterations with
+     * an L2 penalty of 1e-3 using a single thread.
+     */
+    public LBFGSCRFTrainer() {
+        this(new LBFGS(100,1e-3,1));
+    }
+
+    @Override
+    public CRFModel train(SequenceDataset<Label> sequenceExamples, Map<String, Provenance> runProvenance) {
+        if (sequenceExamples.getOutputInfo().getUnknownCount() > 0) {
+            throw new IllegalArgumentException("The supplied Dataset contained unknown Outputs, and this Trainer is supervised.");
+        }
+        TrainerProvenance trainerProvenance;
+        synchronized(this) {
+            trainerProvenance = getProvenance();
+            trainInvocationCounter++;
+        }
+        ImmutableOutputInfo<Label> labelIDMap = sequenceExamples.getOutputIDInfo();
+        ImmutableFeatureMap featureIDMap = sequenceExamples.getFeatureIDMap();
+        SGDVector[][] sgdFeatures = new SGDVector[sequenceExamples.size()][];
+        int[][] sgdLabels = new int[sequenceExamples.size()][];
+        double[] weights = new double[sequenceExamples.size()];
+        int n = 0;
+        for (SequenceExample<Label> example : sequenceExamples) {
+            weights[n] = example.getWeight();
+            Pair<int[],SGDVector[]> pair = CRFModel.convertToVector(example,featureIDMap,labelIDMap);
+            sgdFeatures[n] = pair.getB();
+            sgdLabels[n] = pair.getA();
+            n++;
+        }
+        logger.info(String.format("Training L-BFGS CRF with %d examples", n));
+
+        CRFParameters crfParameters = new CRFParameters(featureIDMap.size(),labelIDMap.size());
+
+        double loss = optimiser.optimise(crfParameters, n, (int start, int end, Tensor[] gradient) -> {
+            double value = 0.0;
+            for (int i = start; i < end; i++) {
+                Pair<Double,Tensor[]> output = crfParameters.valueAndGradient(sgdFeatures[i],sgdLabels[i]);
+                double weight = weights[i];
+                value += output.getA() * weight;
+                Tensor[] exampleGradient = output.getB();
+                for (int j = 0; j < gradient.length; j++) {
+                    if (weight == 1.0) {
+                        gradient[j].intersectAndAddInPlace(exampleGradient[j]);
+                    } else {
+                        gradient[j].intersectAndAddInPlace(exampleGradient[j], (double v) -> v * weight);
+                    }
+                }
+            }
+            return value;
+        });
+        logger.info("Final regularised loss = " + loss);
+
+        ModelProvenance provenance = new ModelProvenance(CRFModel.class.getName(),OffsetDateTime.now(),sequenceExamples.getProvenance(),trainerProvenance,runProvenance);
+        return new CRFModel("crf-lbfgs-model",provenance,featureIDMap,labelIDMap,crfParameters);
+    }
+
+    @Override
+    public int getInvocationCount() {
+        return trainInvocationCounter;
+    }
+
+    @Override
+    public String toString() {
+        return "LBFGSCRFTrainer(optimiser="+optimiser.toString()+")";
+    }
+
+    @Override
+    public TrainerProvenance getProvenance() {
+        return new TrainerProvenanceImpl(this);
+    }
+}
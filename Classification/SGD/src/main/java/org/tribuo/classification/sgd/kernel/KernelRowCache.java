@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.tribuo.classification.sgd.kernel;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A least recently used cache of kernel rows used during training, bounded in bytes.
+ * <p>
+ * Each row holds the kernel values between one training example and the support vectors,
+ * in the order the support vectors were added. As the support vector set only grows during
+ * training, a cached row is extended with the values for any new support vectors rather
+ * than being recomputed. As the rows grow the least recently used ones are evicted to keep
+ * the total row storage under the limit.
+ * <p>
+ * Training visits the examples in a new random order each epoch, so an example's row is only
+ * reused if it survives a full pass over the data. The cache only helps when it can hold
+ * rows for most of the training set, otherwise it mostly evicts rows before they are reused.
+ */
+final class KernelRowCache {
+
+    /**
+     * A kernel row, the first {@code length} values are valid.
+     */
+    static final class Row {
+        final int exampleIndex;
+        double[] values;
+        int length;
+        boolean cached;
+
+        Row(int exampleIndex, int capacity) {
+            this.exampleIndex = exampleIndex;
+            this.values = new double[Math.max(capacity, 1)];
+            this.length = 0;
+        }
+    }
+
+    private final long maxBytes;
+    private final LinkedHashMap<Integer,Row> rows;
+    private final Row scratch;
+    private long usedBytes;
+
+    /**
+     * Creates a cache which holds at most {@code maxBytes} of row values.
+     * @param maxBytes The maximum size of the cached rows in bytes, if zero then nothing is cached.
+     */
+    KernelRowCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+        this.rows = new LinkedHashMap<>(16, 0.75f, true);
+        this.scratch = new Row(-1,1);
+        this.usedBytes = 0;
+    }
+
+    /**
+     * Gets the row for the specified example, creating an empty one if it's not in the cache.
+     * <p>
+     * If the cache is disabled this returns an empty scratch row which is reused by every call.
+     * @param exampleIndex The example index.
+     * @param capacity The number of support vectors, used to size new rows.
+     * @return The row for this example.
+     */
+    Row get(int exampleIndex, int capacity) {
+        if (maxBytes == 0) {
+            scratch.length = 0;
+            return scratch;
+        }
+        Row row = rows.get(exampleIndex);
+        if (row == null) {
+            row = new Row(exampleIndex,capacity);
+            row.cached = true;
+            rows.put(exampleIndex, row);
+            usedBytes += sizeOf(row);
+            evict(row);
+        }
+        return row;
+    }
+
+    /**
+     * Ensures the row can hold the requested number of values, evicting other rows if the cache
+     * grows past its limit.
+     * @param row The row to grow.
+     * @param capacity The number of values.
+     */
+    void ensureCapacity(Row row, int capacity) {
+        if (capacity > row.values.length) {
+            long oldSize = sizeOf(row);
+            row.values = Arrays.copyOf(row.values, Math.max(capacity, row.values.length + (row.values.length >> 1)));
+            if (row.cached) {
+                usedBytes += sizeOf(row) - oldSize;
+                evict(row);
+            }
+        }
+    }
+
+    /**
+     * The number of bytes of row values currently cached.
+     * @return The cache size in bytes.
+     */
+    long usedBytes() {
+        return usedBytes;
+    }
+
+    /**
+     * The number of rows currently cached.
+     * @return The number of rows.
+     */
+    int numRows() {
+        return rows.size();
+    }
+
+    /**
+     * Evicts least recently used rows until the cache fits in its limit. The supplied row is
+     * evicted last, and is still usable by the caller after eviction.
+     * @param current The row currently in use.
+     */
+    private void evict(Row current) {
+        Iterator<Map.Entry<Integer,Row>> itr = rows.entrySet().iterator();
+        while ((usedBytes > maxBytes) && itr.hasNext()) {
+            Row row = itr.next().getValue();
+            if (row != current) {
+                itr.remove();
+                removed(row);
+            }
+        }
+        if ((usedBytes > maxBytes) && current.cached) {
+            rows.remove(current.exampleIndex);
+            removed(current);
+        }
+    }
+
+    private void removed(Row row) {
+        row.cached = false;
+        usedBytes -= sizeOf(row);
+    }
+
+    private static long sizeOf(Row row) {
+        return 8L * row.values.length;
+    }
+}
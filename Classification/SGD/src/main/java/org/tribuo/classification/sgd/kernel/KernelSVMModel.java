@@ -30,6 +30,7 @@ import org.tribuo.math.la.DenseVector;
 import org.tribuo.math.la.SparseVector;
 import org.tribuo.provenance.ModelProvenance;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -49,10 +50,17 @@ import java.util.Optional;
 public class KernelSVMModel extends Model<Label> {
     private static final long serialVersionUID = 2L;
 
+    private static final int PREDICTION_BATCH_SIZE = 256;
+
     private final Kernel kernel;
     private final SparseVector[] supportVectors;
     private final DenseMatrix weights;
 
+    /**
+     * The support vectors compiled into a single block, built lazily on first prediction and after deserialization.
+     */
+    private transient volatile SupportVectorBlock block;
+
     KernelSVMModel(String name, ModelProvenance description,
                           ImmutableFeatureMap featureIDMap, ImmutableOutputInfo<Label> labelIDMap,
                           Kernel kernel, SparseVector[] supportVectors, DenseMatrix weights) {
@@ -70,33 +78,112 @@ public class KernelSVMModel extends Model<Label> {
         return supportVectors.length;
     }
 
-    @Override
-    public Prediction<Label> predict(Example<Label> example) {
+    /**
+     * Returns the support vector block, building it if necessary.
+     * @return The support vector block.
+     */
+    private SupportVectorBlock getBlock() {
+        SupportVectorBlock curBlock = block;
+        if (curBlock == null) {
+            // Racing threads may each build a block, but they are identical so it doesn't matter which is kept.
+            curBlock = new SupportVectorBlock(kernel, supportVectors);
+            block = curBlock;
+        }
+        return curBlock;
+    }
+
+    /**
+     * Converts the example into a sparse vector, checking it has at least one valid feature.
+     * @param example The example.
+     * @return The feature vector including the bias.
+     */
+    private SparseVector convert(Example<Label> example) {
         SparseVector features = SparseVector.createSparseVector(example,featureIDMap,true);
         // Due to bias feature
         if (features.numActiveElements() == 1) {
             throw new IllegalArgumentException("No features found in Example " + example.toString());
         }
-        double[] scores = new double[supportVectors.length];
-        for (int i = 0; i < scores.length; i++) {
-            scores[i] = kernel.similarity(features,supportVectors[i]);
-        }
+        return features;
+    }
+
+    @Override
+    public Prediction<Label> predict(Example<Label> example) {
+        SparseVector features = convert(example);
+        SupportVectorBlock svBlock = getBlock();
+        double[] scores = new double[svBlock.size()];
+        svBlock.similarities(features,scores);
         DenseVector scoreVector = DenseVector.createDenseVector(scores);
         DenseVector prediction = weights.leftMultiply(scoreVector);
 
+        return generatePrediction(example,features.numActiveElements(),prediction.toArray());
+    }
+
+    /**
+     * Predicts the examples in batches. Each batch's kernel values are computed as a single
+     * block against the support vectors, and multiplied by the weights using one matrix product.
+     * @param examples The examples to predict.
+     * @return The predictions.
+     */
+    @Override
+    protected List<Prediction<Label>> innerPredict(Iterable<Example<Label>> examples) {
+        List<Prediction<Label>> predictions = new ArrayList<>();
+        List<Example<Label>> batch = new ArrayList<>(PREDICTION_BATCH_SIZE);
+        for (Example<Label> example : examples) {
+            batch.add(example);
+            if (batch.size() == PREDICTION_BATCH_SIZE) {
+                predictBatch(batch,predictions);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            predictBatch(batch,predictions);
+        }
+        return predictions;
+    }
+
+    /**
+     * Predicts a batch of examples, appending the predictions to the output list.
+     * @param batch The examples to predict.
+     * @param predictions The output list.
+     */
+    private void predictBatch(List<Example<Label>> batch, List<Prediction<Label>> predictions) {
+        SparseVector[] features = new SparseVector[batch.size()];
+        for (int i = 0; i < features.length; i++) {
+            features[i] = convert(batch.get(i));
+        }
+        DenseMatrix kernelValues = getBlock().similarities(features);
+        // [batch, numSV] * [numSV, numLabels]
+        DenseMatrix scores = kernelValues.matrixMultiply(weights,false,true);
+        double[] row = new double[scores.getDimension2Size()];
+        for (int i = 0; i < features.length; i++) {
+            for (int j = 0; j < row.length; j++) {
+                row[j] = scores.get(i,j);
+            }
+            predictions.add(generatePrediction(batch.get(i),features[i].numActiveElements(),row));
+        }
+    }
+
+    /**
+     * Generates the prediction from the label scores.
+     * @param example The example.
+     * @param numActiveElements The number of features used.
+     * @param scores The score for each label.
+     * @return The prediction.
+     */
+    private Prediction<Label> generatePrediction(Example<Label> example, int numActiveElements, double[] scores) {
         double maxScore = Double.NEGATIVE_INFINITY;
         Label maxLabel = null;
         Map<String,Label> predMap = new LinkedHashMap<>();
-        for (int i = 0; i < prediction.size(); i++) {
+        for (int i = 0; i < scores.length; i++) {
             String labelName = outputIDInfo.getOutput(i).getLabel();
-            Label label = new Label(labelName, prediction.get(i));
+            Label label = new Label(labelName, scores[i]);
             predMap.put(labelName, label);
             if (label.getScore() > maxScore) {
                 maxScore = label.getScore();
                 maxLabel = label;
             }
         }
-        return new Prediction<>(maxLabel, predMap, features.numActiveElements(), example, generatesProbabilities);
+        return new Prediction<>(maxLabel, predMap, numActiveElements, example, generatesProbabilities);
     }
 
     @Override
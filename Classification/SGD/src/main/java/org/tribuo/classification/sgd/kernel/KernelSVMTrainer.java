@@ -17,6 +17,7 @@
 package org.tribuo.classification.sgd.kernel;
 
 import com.oracle.labs.mlrg.olcut.config.Config;
+import com.oracle.labs.mlrg.olcut.config.PropertyException;
 import com.oracle.labs.mlrg.olcut.provenance.Provenance;
 import org.tribuo.Dataset;
 import org.tribuo.Example;
@@ -28,15 +29,15 @@ import org.tribuo.classification.Label;
 import org.tribuo.classification.sgd.Util;
 import org.tribuo.math.kernel.Kernel;
 import org.tribuo.math.la.DenseMatrix;
-import org.tribuo.math.la.DenseVector;
-import org.tribuo.math.la.SGDVector;
 import org.tribuo.math.la.SparseVector;
 import org.tribuo.provenance.ModelProvenance;
 import org.tribuo.provenance.TrainerProvenance;
 import org.tribuo.provenance.impl.TrainerProvenanceImpl;
 
 import java.time.OffsetDateTime;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.SplittableRandom;
 import java.util.logging.Logger;
@@ -75,6 +76,9 @@ public class KernelSVMTrainer implements Trainer<Label>, WeightedExamples {
     @Config(description="Shuffle the data before each epoch. Only turn off for debugging.")
     private boolean shuffle = true;
 
+    @Config(description="The maximum size in megabytes of the kernel rows cached during training, 0 disables the cache.")
+    private double kernelCacheMB = 0;
+
     private SplittableRandom rng;
 
     private int trainInvocationCounter;
@@ -115,9 +119,29 @@ public class KernelSVMTrainer implements Trainer<Label>, WeightedExamples {
 
     @Override
     public synchronized void postConfig() {
+        if (!(kernelCacheMB >= 0)) {
+            throw new PropertyException("","kernelCacheMB","kernelCacheMB must be non-negative, found " + kernelCacheMB);
+        }
         this.rng = new SplittableRandom(seed);
     }
 
+    /**
+     * Sets the maximum size of the kernel row cache used during training.
+     * <p>
+     * Each row holds the kernel values between one training example and the current
+     * support vectors, and the least recently used rows are evicted when the rows exceed this size.
+     * As the examples are shuffled each epoch, the cache only helps if it can hold the rows for
+     * most of the training set, i.e., about {@code 8 * numExamples * numSupportVectors} bytes.
+     * It's off by default.
+     * @param kernelCacheMB The cache size in megabytes, 0 disables the cache.
+     */
+    public void setKernelCacheMB(double kernelCacheMB) {
+        if (!(kernelCacheMB >= 0)) {
+            throw new IllegalArgumentException("kernelCacheMB must be non-negative, found " + kernelCacheMB);
+        }
+        this.kernelCacheMB = kernelCacheMB;
+    }
+
     /**
      * Turn on or off shuffling of examples.
      * <p>
@@ -161,21 +185,30 @@ public class KernelSVMTrainer implements Trainer<Label>, WeightedExamples {
 
         double loss = 0.0;
         int iteration = 0;
-        Map<Integer,SparseVector> supportVectors = new HashMap<>();
+        // Support vectors are numbered in the order they are added, and svIndices maps that to the example index.
+        List<SparseVector> supportVectors = new ArrayList<>();
+        int[] svIndices = new int[examples.size()];
+        boolean[] isSupportVector = new boolean[examples.size()];
         double[][] alphas = new double[labelIDMap.size()][examples.size()];
+        KernelRowCache cache = new KernelRowCache((long) (kernelCacheMB * 1024 * 1024));
+        double[] pred = new double[labelIDMap.size()];
 
         for (int i = 0; i < epochs; i++) {
             if (shuffle) {
                 Util.shuffleInPlace(sgdFeatures, sgdLabels, weights, indices, localRNG);
             }
             for (int j = 0; j < sgdFeatures.length; j++) {
-                SGDVector pred = predict(sgdFeatures[j],supportVectors,alphas);
-                pred.add(sgdLabels[j],-1.0);
-                int predIndex = pred.indexOfMax();
+                predict(cache,cache.get(indices[j],supportVectors.size()),sgdFeatures[j],supportVectors,svIndices,alphas,pred);
+                pred[sgdLabels[j]] -= 1.0;
+                int predIndex = indexOfMax(pred);
 
                 if (sgdLabels[j] != predIndex) {
-                    loss += (pred.get(sgdLabels[j]) - pred.get(predIndex)) * weights[j];
-                    supportVectors.putIfAbsent(indices[j],sgdFeatures[j]);
+                    loss += (pred[sgdLabels[j]] - pred[predIndex]) * weights[j];
+                    if (!isSupportVector[indices[j]]) {
+                        isSupportVector[indices[j]] = true;
+                        svIndices[supportVectors.size()] = indices[j];
+                        supportVectors.add(sgdFeatures[j]);
+                    }
                     alphas[sgdLabels[j]][indices[j]] += weights[j];
                 }
 
@@ -188,24 +221,37 @@ public class KernelSVMTrainer implements Trainer<Label>, WeightedExamples {
             logger.fine("Finished epoch " + i);
         }
 
-        DenseMatrix alphaMatrix = new DenseMatrix(alphas.length,supportVectors.size());
-        for (int i = 0; i < alphas.length; i++) {
-            int rowCounter = 0;
-            for (int j = 0; j < sgdFeatures.length; j++) {
-                if (supportVectors.containsKey(j)) {
-                    alphaMatrix.set(i, rowCounter, alphas[i][j]);
-                    rowCounter++;
+        // Collect the support vectors in example order, dropping any which have zero weight for every label.
+        SparseVector[] exampleVectors = new SparseVector[sgdFeatures.length];
+        for (int i = 0; i < supportVectors.size(); i++) {
+            exampleVectors[svIndices[i]] = supportVectors.get(i);
+        }
+        List<Integer> retained = new ArrayList<>();
+        for (int j = 0; j < exampleVectors.length; j++) {
+            if (exampleVectors[j] != null) {
+                boolean nonZero = false;
+                for (int i = 0; i < alphas.length; i++) {
+                    if (alphas[i][j] != 0.0) {
+                        nonZero = true;
+                        break;
+                    }
+                }
+                if (nonZero) {
+                    retained.add(j);
                 }
             }
         }
+        if (retained.size() < supportVectors.size()) {
+            logger.fine("Pruned " + (supportVectors.size() - retained.size()) + " zero weight support vectors.");
+        }
 
-        int counter = 0;
-        SparseVector[] supportArray = new SparseVector[supportVectors.size()];
-        for (int i = 0; i < sgdFeatures.length; i++) {
-            SparseVector value = supportVectors.get(i);
-            if (value != null) {
-                supportArray[counter] = value;
-                counter++;
+        DenseMatrix alphaMatrix = new DenseMatrix(alphas.length,retained.size());
+        SparseVector[] supportArray = new SparseVector[retained.size()];
+        for (int k = 0; k < retained.size(); k++) {
+            int j = retained.get(k);
+            supportArray[k] = exampleVectors[j];
+            for (int i = 0; i < alphas.length; i++) {
+                alphaMatrix.set(i, k, alphas[i][j]);
             }
         }
 
@@ -222,20 +268,57 @@ public class KernelSVMTrainer implements Trainer<Label>, WeightedExamples {
 
     @Override
     public String toString() {
-        return "KernelSVMTrainer(kernel="+kernel.toString()+",lambda="+lambda+",epochs="+epochs+",seed="+seed+")";
+        return "KernelSVMTrainer(kernel="+kernel.toString()+",lambda="+lambda+",epochs="+epochs+",seed="+seed+",kernelCacheMB="+kernelCacheMB+")";
     }
 
-    private SGDVector predict(SparseVector features, Map<Integer,SparseVector> sv, double[][] alphas) {
-        double[] score = new double[alphas.length];
+    /**
+     * Computes the label scores for an example, writing them into {@code score}.
+     * <p>
+     * Uses the cached kernel values for this example, computing and caching any that
+     * are missing for support vectors added since the row was last used.
+     * @param cache The kernel row cache.
+     * @param row The kernel row for this example.
+     * @param features The example features.
+     * @param sv The support vectors, in insertion order.
+     * @param svIndices The example index of each support vector.
+     * @param alphas The per label support vector weights, indexed by example.
+     * @param score The output scores.
+     */
+    private void predict(KernelRowCache cache, KernelRowCache.Row row, SparseVector features, List<SparseVector> sv, int[] svIndices, double[][] alphas, double[] score) {
+        int numSV = sv.size();
+        if (row.length < numSV) {
+            cache.ensureCapacity(row,numSV);
+            for (int k = row.length; k < numSV; k++) {
+                row.values[k] = kernel.similarity(features,sv.get(k));
+            }
+            row.length = numSV;
+        }
 
-        for (Map.Entry<Integer, SparseVector> e : sv.entrySet()) {
-            double distance = kernel.similarity(features,e.getValue());
+        Arrays.fill(score, 0.0);
+        for (int k = 0; k < numSV; k++) {
+            double distance = row.values[k];
+            int svIndex = svIndices[k];
             for (int i = 0; i < alphas.length; i++) {
-                score[i] += alphas[i][e.getKey()] * distance;
+                score[i] += alphas[i][svIndex] * distance;
             }
         }
+    }
 
-        return DenseVector.createDenseVector(score);
+    /**
+     * Returns the index of the first maximum value.
+     * @param values The values.
+     * @return The index of the max.
+     */
+    private static int indexOfMax(double[] values) {
+        int index = 0;
+        double value = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] > value) {
+                index = i;
+                value = values[i];
+            }
+        }
+        return index;
     }
 
     @Override
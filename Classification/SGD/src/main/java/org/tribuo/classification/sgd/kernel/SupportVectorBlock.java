@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.tribuo.classification.sgd.kernel;
+
+import org.tribuo.math.kernel.Kernel;
+import org.tribuo.math.la.DenseMatrix;
+import org.tribuo.math.la.SparseVector;
+import org.tribuo.math.la.VectorTuple;
+
+import java.util.Arrays;
+
+/**
+ * The support vectors of a {@link KernelSVMModel} stored as one contiguous block, used to
+ * compute the kernel values between a query and all the support vectors at once.
+ * <p>
+ * The support vectors are stored feature major (i.e., as the transpose of the support vector matrix
+ * in compressed sparse column form) along with their squared two norms. For kernels where
+ * {@link Kernel#isDotProductKernel()} is true the kernel values for a batch of queries are computed by a
+ * sparse matrix product followed by an elementwise transform, otherwise it falls back to
+ * calling {@link Kernel#similarity} for each pair. Single queries always use {@link Kernel#similarity}.
+ */
+final class SupportVectorBlock {
+
+    private final Kernel kernel;
+    private final SparseVector[] supportVectors;
+    private final int numVectors;
+    private final int dimension;
+    /**
+     * The start of each feature's entries in {@link #vectorIDs} and {@link #values}, length dimension + 1.
+     */
+    private final int[] featureStart;
+    private final int[] vectorIDs;
+    private final double[] values;
+    private final double[] squaredNorms;
+
+    /**
+     * Builds the block from the supplied support vectors, which must all have the same dimension.
+     * @param kernel The kernel function.
+     * @param supportVectors The support vectors.
+     */
+    SupportVectorBlock(Kernel kernel, SparseVector[] supportVectors) {
+        this.kernel = kernel;
+        this.supportVectors = supportVectors;
+        this.numVectors = supportVectors.length;
+        this.dimension = numVectors == 0 ? 0 : supportVectors[0].size();
+        this.featureStart = new int[dimension + 1];
+        this.squaredNorms = new double[numVectors];
+        int numEntries = 0;
+        for (int i = 0; i < numVectors; i++) {
+            for (VectorTuple t : supportVectors[i]) {
+                featureStart[t.index + 1]++;
+                squaredNorms[i] += t.value * t.value;
+                numEntries++;
+            }
+        }
+        for (int i = 0; i < dimension; i++) {
+            featureStart[i + 1] += featureStart[i];
+        }
+        this.vectorIDs = new int[numEntries];
+        this.values = new double[numEntries];
+        int[] cursor = Arrays.copyOf(featureStart, dimension);
+        for (int i = 0; i < numVectors; i++) {
+            for (VectorTuple t : supportVectors[i]) {
+                int pos = cursor[t.index]++;
+                vectorIDs[pos] = i;
+                values[pos] = t.value;
+            }
+        }
+    }
+
+    /**
+     * The number of support vectors.
+     * @return The number of support vectors.
+     */
+    int size() {
+        return numVectors;
+    }
+
+    /**
+     * Computes the kernel value between the query and each support vector.
+     * <p>
+     * This always uses {@link Kernel#similarity}, as the dot product expansion of distance based kernels
+     * like {@link org.tribuo.math.kernel.RBF} loses precision when the query is close to a support vector
+     * with a large norm. Single predictions aren't dominated by the kernel evaluations, so the
+     * exact form is used.
+     * @param query The query vector.
+     * @param output The output array, must have length {@link #size()}.
+     */
+    void similarities(SparseVector query, double[] output) {
+        for (int i = 0; i < numVectors; i++) {
+            output[i] = kernel.similarity(query, supportVectors[i]);
+        }
+    }
+
+    /**
+     * Computes the kernel matrix between the queries and the support vectors.
+     * <p>
+     * For dot product kernels the queries are transposed into the same feature major layout, and
+     * the dot products are computed as a single sparse matrix product which walks each feature's
+     * support vector entries once for the whole batch, rather than once per query. Other kernels
+     * compute each pair separately.
+     * <p>
+     * The expansion can differ from {@link Kernel#similarity} by rounding error, the kernels clamp
+     * the implied squared distance at zero so it never goes negative.
+     * @param queries The query vectors.
+     * @return A matrix of size [queries.length, {@link #size()}] containing the kernel values.
+     */
+    DenseMatrix similarities(SparseVector[] queries) {
+        int numQueries = queries.length;
+        double[][] output = new double[numQueries][numVectors];
+        if (kernel.isDotProductKernel()) {
+            // Transpose the queries into feature major order, dropping features the support vectors don't have.
+            int[] queryStart = new int[dimension + 1];
+            double[] queryNorms = new double[numQueries];
+            int numEntries = 0;
+            for (int i = 0; i < numQueries; i++) {
+                for (VectorTuple t : queries[i]) {
+                    queryNorms[i] += t.value * t.value;
+                    if (t.index < dimension) {
+                        queryStart[t.index + 1]++;
+                        numEntries++;
+                    }
+                }
+            }
+            for (int i = 0; i < dimension; i++) {
+                queryStart[i + 1] += queryStart[i];
+            }
+            int[] queryIDs = new int[numEntries];
+            double[] queryValues = new double[numEntries];
+            int[] cursor = Arrays.copyOf(queryStart, dimension);
+            for (int i = 0; i < numQueries; i++) {
+                for (VectorTuple t : queries[i]) {
+                    if (t.index < dimension) {
+                        int pos = cursor[t.index]++;
+                        queryIDs[pos] = i;
+                        queryValues[pos] = t.value;
+                    }
+                }
+            }
+            // Accumulate the outer product of each feature's query and support vector entries.
+            for (int f = 0; f < dimension; f++) {
+                int svStart = featureStart[f];
+                int svEnd = featureStart[f + 1];
+                if (svStart == svEnd) {
+                    continue;
+                }
+                for (int q = queryStart[f]; q < queryStart[f + 1]; q++) {
+                    double[] row = output[queryIDs[q]];
+                    double value = queryValues[q];
+                    for (int j = svStart; j < svEnd; j++) {
+                        row[vectorIDs[j]] += value * values[j];
+                    }
+                }
+            }
+            for (int i = 0; i < numQueries; i++) {
+                double[] row = output[i];
+                for (int j = 0; j < numVectors; j++) {
+                    row[j] = kernel.similarityFromDot(row[j], queryNorms[i], squaredNorms[j]);
+                }
+            }
+        } else {
+            for (int i = 0; i < numQueries; i++) {
+                for (int j = 0; j < numVectors; j++) {
+                    output[i][j] = kernel.similarity(queries[i], supportVectors[j]);
+                }
+            }
+        }
+        return DenseMatrix.createDenseMatrix(output);
+    }
+}
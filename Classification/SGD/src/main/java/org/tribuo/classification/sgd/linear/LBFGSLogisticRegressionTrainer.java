@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.tribuo.classification.sgd.linear;
+
+import com.oracle.labs.mlrg.olcut.config.Config;
+import com.oracle.labs.mlrg.olcut.provenance.Provenance;
+import com.oracle.labs.mlrg.olcut.util.Pair;
+import org.tribuo.Dataset;
+import org.tribuo.Example;
+import org.tribuo.ImmutableFeatureMap;
+import org.tribuo.ImmutableOutputInfo;
+import org.tribuo.Trainer;
+import org.tribuo.WeightedExamples;
+import org.tribuo.classification.Label;
+import org.tribuo.classification.sgd.objectives.LogMulticlass;
+import org.tribuo.math.LinearParameters;
+import org.tribuo.math.la.DenseVector;
+import org.tribuo.math.la.SGDVector;
+import org.tribuo.math.la.SparseVector;
+import org.tribuo.math.la.Tensor;
+import org.tribuo.math.optimisers.LBFGS;
+import org.tribuo.provenance.ModelProvenance;
+import org.tribuo.provenance.TrainerProvenance;
+import org.tribuo.provenance.impl.TrainerProvenanceImpl;
+
+import java.time.OffsetDateTime;
+import java.util.Collections;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * A trainer for a multinomial logistic regression which uses a full batch quasi-Newton
+ * optimiser ({@link LBFGS}) rather than SGD.
+ * <p>
+ * Each iteration computes the log-likelihood and its gradient over the whole dataset,
+ * split across the optimiser's threads. On small to medium sized problems this usually
+ * converges in far fewer passes through the data than SGD. Regularisation is controlled
+ * by the L1 and L2 penalties of the supplied {@link LBFGS}.
+ * <p>
+ * Produces a {@link LinearSGDModel}, so is interchangeable with models from {@link LogisticRegressionTrainer}.
+ */
+public class LBFGSLogisticRegressionTrainer implements Trainer<Label>, WeightedExamples {
+    private static final Logger logger = Logger.getLogger(LBFGSLogisticRegressionTrainer.class.getName());
+
+    @Config(description="The batch optimiser to use.")
+    private LBFGS optimiser = new LBFGS(100,1e-3,1);
+
+    private int trainInvocationCounter;
+
+    /**
+     * Constructs a logistic regression trainer using the supplied optimiser.
+     * @param optimiser The L-BFGS optimiser, which controls the regularisation and parallelism.
+     */
+    public LBFGSLogisticRegressionTrainer(LBFGS optimiser) {
+        this.optimiser = optimiser;
+    }
+
+    /**
+     * Constructs a logistic regression trainer which runs for at most 100 iterations with
+     * an L2 penalty of 1e-3 using a single thread.
+     */
+    public LBFGSLogisticRegressionTrainer() {
+        this(new LBFGS(100,1e-3,1));
+    }
+
+    @Override
+    public LinearSGDModel train(Dataset<Label> examples) {
+        return train(examples, Collections.emptyMap());
+    }
+
+    @Override
+    public LinearSGDModel train(Dataset<Label> examples, Map<String, Provenance> runProvenance) {
+        if (examples.getOutputInfo().getUnknownCount() > 0) {
+            throw new IllegalArgumentException("The supplied Dataset contained unknown Outputs, and this Trainer is supervised.");
+        }
+        TrainerProvenance trainerProvenance;
+        synchronized(this) {
+            trainerProvenance = getProvenance();
+            trainInvocationCounter++;
+        }
+        LogMulticlass objective = new LogMulticlass();
+        ImmutableOutputInfo<Label> outputIDInfo = examples.getOutputIDInfo();
+        ImmutableFeatureMap featureIDMap = examples.getFeatureIDMap();
+        int featureSpaceSize = featureIDMap.size();
+
+        SGDVector[] features = new SGDVector[examples.size()];
+        int[] labels = new int[examples.size()];
+        double[] weights = new double[examples.size()];
+        int n = 0;
+        for (Example<Label> example : examples) {
+            weights[n] = example.getWeight();
+            if (example.size() == featureSpaceSize) {
+                features[n] = DenseVector.createDenseVector(example, featureIDMap, true);
+            } else {
+                features[n] = SparseVector.createSparseVector(example, featureIDMap, true);
+            }
+            labels[n] = outputIDInfo.getID(example.getOutput());
+            n++;
+        }
+        logger.info(String.format("Training L-BFGS logistic regression with %d examples", n));
+        logger.info("Outputs - " + outputIDInfo.toReadableString());
+
+        // featureIDMap.size()+1 adds the bias feature.
+        LinearParameters parameters = new LinearParameters(featureSpaceSize+1,outputIDInfo.size());
+
+        double loss = optimiser.optimise(parameters, n, (int start, int end, Tensor[] gradient) -> {
+            double value = 0.0;
+            for (int i = start; i < end; i++) {
+                Pair<Double,SGDVector> output = objective.lossAndGradient(labels[i],parameters.predict(features[i]));
+                value += output.getA() * weights[i];
+                if (weights[i] != 1.0) {
+                    output.getB().scaleInPlace(weights[i]);
+                }
+                gradient[0].intersectAndAddInPlace(parameters.gradients(output,features[i])[0]);
+            }
+            return value;
+        });
+        logger.info("Final regularised loss = " + loss);
+
+        ModelProvenance provenance = new ModelProvenance(LinearSGDModel.class.getName(), OffsetDateTime.now(), examples.getProvenance(), trainerProvenance, runProvenance);
+        return new LinearSGDModel("lbfgs-logistic-regression-model",provenance,featureIDMap,outputIDInfo,parameters,objective.getNormalizer(),objective.isProbabilistic());
+    }
+
+    @Override
+    public int getInvocationCount() {
+        return trainInvocationCounter;
+    }
+
+    @Override
+    public TrainerProvenance getProvenance() {
+        return new TrainerProvenanceImpl(this);
+    }
+
+    @Override
+    public String toString() {
+        return "LBFGSLogisticRegressionTrainer(optimiser=" + optimiser.toString() + ")";
+    }
+}
@@ -22,9 +22,9 @@ import org.tribuo.ImmutableOutputInfo;
 import org.tribuo.Prediction;
 import org.tribuo.classification.Label;
 import org.tribuo.common.sgd.AbstractLinearSGDModel;
+import org.tribuo.common.sgd.LinearScorer;
 import org.tribuo.math.LinearParameters;
 import org.tribuo.math.la.DenseMatrix;
-import org.tribuo.math.la.DenseVector;
 import org.tribuo.math.util.VectorNormalizer;
 import org.tribuo.provenance.ModelProvenance;
 
@@ -88,16 +88,17 @@ public class LinearSGDModel extends AbstractLinearSGDModel<Label> {
 
     @Override
     public Prediction<Label> predict(Example<Label> example) {
-        PredAndActive predTuple = predictSingle(example);
-        DenseVector prediction = predTuple.prediction;
-        prediction.normalize(normalizer);
+        LinearScorer scorer = getScorer();
+        double[] prediction = scorer.getBuffer();
+        int numUsed = scorer.score(example,prediction);
+        normalizer.normalizeInPlace(prediction);
 
         double maxScore = Double.NEGATIVE_INFINITY;
         Label maxLabel = null;
         Map<String,Label> predMap = new LinkedHashMap<>();
-        for (int i = 0; i < prediction.size(); i++) {
+        for (int i = 0; i < prediction.length; i++) {
             String labelName = outputIDInfo.getOutput(i).getLabel();
-            double score = prediction.get(i);
+            double score = prediction[i];
             Label label = new Label(labelName, score);
             predMap.put(labelName,label);
             if (score > maxScore) {
@@ -105,12 +106,22 @@ public class LinearSGDModel extends AbstractLinearSGDModel<Label> {
                 maxLabel = label;
             }
         }
-        return new Prediction<>(maxLabel, predMap, predTuple.numActiveFeatures-1, example, generatesProbabilities);
+        return new Prediction<>(maxLabel, predMap, numUsed, example, generatesProbabilities);
+    }
+
+    /**
+     * Returns the normalizer applied to the linear scores.
+     * @return The normalizer.
+     */
+    public VectorNormalizer getNormalizer() {
+        return normalizer;
     }
 
     @Override
     protected LinearSGDModel copy(String newName, ModelProvenance newProvenance) {
-        return new LinearSGDModel(newName,newProvenance,featureIDMap,outputIDInfo,new DenseMatrix(baseWeights),normalizer,generatesProbabilities);
+        LinearSGDModel copy = new LinearSGDModel(newName,newProvenance,featureIDMap,outputIDInfo,new DenseMatrix(baseWeights),normalizer,generatesProbabilities);
+        copy.setCompileScorer(isCompileScorer());
+        return copy;
     }
 
     @Override
@@ -16,21 +16,31 @@
 
 package org.tribuo.classification.sgd.crf;
 
+import com.oracle.labs.mlrg.olcut.config.PropertyException;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
+import org.tribuo.Prediction;
 import org.tribuo.Trainer;
 import org.tribuo.classification.Label;
 import org.tribuo.classification.LabelFactory;
 import org.tribuo.classification.sequence.example.SequenceDataGenerator;
 import org.tribuo.math.optimisers.AdaGrad;
+import org.tribuo.math.optimisers.Adam;
+import org.tribuo.math.optimisers.LBFGS;
+import org.tribuo.math.optimisers.ParameterAveraging;
+import org.tribuo.math.optimisers.Pegasos;
 import org.tribuo.sequence.SequenceDataset;
+import org.tribuo.sequence.SequenceExample;
 import org.tribuo.sequence.SequenceModel;
 import org.tribuo.test.Helpers;
 
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class CRFTrainerTest {
 
@@ -52,6 +62,59 @@ public class CRFTrainerTest {
         Helpers.testSequenceModelSerialization(m,Label.class);
     }
 
+    @Test
+    public void testParallelTraining() {
+        SequenceDataset<Label> p = SequenceDataGenerator.generateGorillaDataset(20);
+        CRFModel serial = (CRFModel) new CRFTrainer(new AdaGrad(0.1, 0.1), 5, -1, 3, Trainer.DEFAULT_SEED).train(p);
+        CRFModel parallel = (CRFModel) new CRFTrainer(new AdaGrad(0.1, 0.1), 5, -1, 3, Trainer.DEFAULT_SEED, 4, false).train(p);
+        // Parallel minibatches merge the gradients in example order, so they produce the same model.
+        assertEquals(serial.generateWeightsString(), parallel.generateWeightsString());
+
+        CRFModel hogwild = (CRFModel) new CRFTrainer(new AdaGrad(0.1, 0.1), 5, -1, 1, Trainer.DEFAULT_SEED, 4, true).train(p);
+        CRFModel hogwildSerial = (CRFModel) new CRFTrainer(new AdaGrad(0.1, 0.1), 5, -1, 1, Trainer.DEFAULT_SEED).train(p);
+        // Hogwild isn't reproducible, but on this easy problem it should fit the training data about as well as serial training.
+        int serialCorrect = countCorrect(hogwildSerial,p);
+        int hogwildCorrect = countCorrect(hogwild,p);
+        assertTrue(hogwildCorrect >= 0.9 * serialCorrect, "Hogwild predicted " + hogwildCorrect + " correctly, serial predicted " + serialCorrect);
+        Helpers.testSequenceModelSerialization(hogwild,Label.class);
+    }
+
+    @Test
+    public void testHogwildOptimisers() {
+        // Optimisers which can't be copied per thread are rejected.
+        assertThrows(PropertyException.class, () -> new CRFTrainer(new ParameterAveraging(new AdaGrad(0.1, 0.1)), 5, -1, 1, Trainer.DEFAULT_SEED, 4, true));
+        assertThrows(PropertyException.class, () -> new CRFTrainer(new Pegasos(0.1, 0.1), 5, -1, 1, Trainer.DEFAULT_SEED, 4, true));
+        // But are fine for parallel minibatches, and for a single Hogwild thread.
+        new CRFTrainer(new ParameterAveraging(new AdaGrad(0.1, 0.1)), 5, -1, 3, Trainer.DEFAULT_SEED, 4, false);
+        new CRFTrainer(new ParameterAveraging(new AdaGrad(0.1, 0.1)), 5, -1, 1, Trainer.DEFAULT_SEED, 1, true);
+
+        SequenceDataset<Label> p = SequenceDataGenerator.generateGorillaDataset(20);
+        CRFModel adam = (CRFModel) new CRFTrainer(new Adam(), 5, -1, 2, Trainer.DEFAULT_SEED, 4, true).train(p);
+        adam.predict(p.getExample(0));
+    }
+
+    private static int countCorrect(CRFModel model, SequenceDataset<Label> data) {
+        int correct = 0;
+        for (SequenceExample<Label> example : data) {
+            List<Prediction<Label>> predictions = model.predict(example);
+            for (int i = 0; i < predictions.size(); i++) {
+                if (predictions.get(i).getOutput().getLabel().equals(example.get(i).getOutput().getLabel())) {
+                    correct++;
+                }
+            }
+        }
+        return correct;
+    }
+
+    @Test
+    public void testLBFGS() {
+        SequenceDataset<Label> p = SequenceDataGenerator.generateGorillaDataset(5);
+        LBFGSCRFTrainer trainer = new LBFGSCRFTrainer(new LBFGS(50,1e-2,2));
+        SequenceModel<Label> m = trainer.train(p);
+        m.predict(p.getExample(0));
+        Helpers.testSequenceModelSerialization(m,Label.class);
+    }
+
     @Test
     public void testInvalidExample() {
         assertThrows(IllegalArgumentException.class, () -> {
@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.tribuo.classification.sgd.crf;
+
+import org.junit.jupiter.api.Test;
+import org.tribuo.math.la.DenseMatrix;
+import org.tribuo.math.la.DenseVector;
+import org.tribuo.math.la.SGDVector;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ChainHelperTest {
+
+    private static ChainHelper.ChainCliqueValues generateScores(Random rng, int numLabels, int length) {
+        return generateScores(rng, numLabels, length, 1.0);
+    }
+
+    private static ChainHelper.ChainCliqueValues generateScores(Random rng, int numLabels, int length, double scale) {
+        DenseVector[] localValues = new DenseVector[length];
+        for (int i = 0; i < length; i++) {
+            localValues[i] = new DenseVector(numLabels);
+            for (int j = 0; j < numLabels; j++) {
+                localValues[i].set(j, scale * rng.nextGaussian());
+            }
+        }
+        DenseMatrix transitions = new DenseMatrix(numLabels, numLabels);
+        for (int i = 0; i < numLabels; i++) {
+            for (int j = 0; j < numLabels; j++) {
+                transitions.set(i, j, scale * rng.nextGaussian());
+            }
+        }
+        return new ChainHelper.ChainCliqueValues(localValues, transitions);
+    }
+
+    private static ChainHelper.ChainWorkspace fillWorkspace(ChainHelper.ChainCliqueValues scores) {
+        int numLabels = scores.transitionValues.getDimension1Size();
+        ChainHelper.ChainWorkspace workspace = ChainHelper.getWorkspace(numLabels, scores.localValues.length);
+        workspace.setTransitions(scores.transitionValues);
+        for (int i = 0; i < scores.localValues.length; i++) {
+            for (int j = 0; j < numLabels; j++) {
+                workspace.setLocalScore(i, j, scores.localValues[i].get(j));
+            }
+        }
+        return workspace;
+    }
+
+    @Test
+    public void testWorkspaceMatchesVectorImplementation() {
+        Random rng = new Random(1);
+        int numLabels = 5;
+        // Mix of lengths so the workspace is both grown and reused.
+        int[] lengths = new int[]{1, 4, 20, 3, 35, 7};
+        for (int length : lengths) {
+            ChainHelper.ChainCliqueValues scores = generateScores(rng, numLabels, length);
+            ChainHelper.ChainBPResults bpResults = ChainHelper.beliefPropagation(scores);
+            ChainHelper.ChainViterbiResults viterbiResults = ChainHelper.viterbi(scores);
+            int[] constraints = new int[length];
+            for (int i = 0; i < length; i++) {
+                constraints[i] = i % 2 == 0 ? -1 : rng.nextInt(numLabels);
+            }
+            double constrainedZ = ChainHelper.constrainedBeliefPropagation(scores, constraints);
+
+            ChainHelper.ChainWorkspace workspace = fillWorkspace(scores);
+            assertEquals(length, workspace.length());
+            double logZ = ChainHelper.beliefPropagation(workspace);
+            assertEquals(bpResults.logZ, logZ, 1e-10);
+            for (int i = 0; i < length; i++) {
+                for (int j = 0; j < numLabels; j++) {
+                    assertEquals(bpResults.alphas[i].get(j), workspace.getAlpha(i, j), 1e-10);
+                    assertEquals(bpResults.betas[i].get(j), workspace.getBeta(i, j), 1e-10);
+                }
+            }
+            assertEquals(constrainedZ, ChainHelper.constrainedBeliefPropagation(workspace, constraints), 1e-10);
+            // Constrained BP must not disturb the unconstrained results.
+            assertEquals(bpResults.alphas[length - 1].get(0), workspace.getAlpha(length - 1, 0), 1e-10);
+
+            int[] mapValues = new int[length];
+            double mapScore = ChainHelper.viterbi(workspace, mapValues);
+            assertEquals(viterbiResults.mapScore, mapScore, 1e-10);
+            assertArrayEquals(viterbiResults.mapValues, mapValues);
+        }
+    }
+
+    @Test
+    public void testExtremeScores() {
+        Random rng = new Random(2);
+        int numLabels = 4;
+        // Scores this large underflow when exponentiated, so some marginals are zero and
+        // some sequences take the log space path.
+        for (double scale : new double[]{50.0, 500.0, 5000.0}) {
+            for (int length : new int[]{1, 2, 10}) {
+                ChainHelper.ChainCliqueValues scores = generateScores(rng, numLabels, length, scale);
+                ChainHelper.ChainBPResults bpResults = ChainHelper.beliefPropagation(scores);
+                ChainHelper.ChainWorkspace workspace = fillWorkspace(scores);
+                double logZ = ChainHelper.beliefPropagation(workspace);
+                assertEquals(bpResults.logZ, logZ, Math.abs(bpResults.logZ) * 1e-12);
+                for (int i = 0; i < length; i++) {
+                    DenseVector marginal = bpResults.alphas[i].add(bpResults.betas[i]);
+                    marginal.expNormalize(bpResults.logZ);
+                    for (int j = 0; j < numLabels; j++) {
+                        assertEquals(marginal.get(j), workspace.getMarginal(i, j), 1e-8);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testEmptyChain() {
+        Random rng = new Random(3);
+        int numLabels = 3;
+        // Run a longer chain first so the workspace has stale contents.
+        fillWorkspace(generateScores(rng, numLabels, 5));
+        ChainHelper.ChainWorkspace workspace = fillWorkspace(generateScores(rng, numLabels, 0));
+        assertEquals(0, workspace.length());
+        assertEquals(0.0, ChainHelper.beliefPropagation(workspace));
+        assertEquals(0.0, workspace.logZ());
+        assertEquals(0.0, ChainHelper.constrainedBeliefPropagation(workspace, new int[0]));
+        assertEquals(0.0, ChainHelper.viterbi(workspace, new int[0]));
+
+        CRFParameters parameters = new CRFParameters(4, numLabels);
+        assertEquals(0, parameters.predict(new SGDVector[0]).length);
+        assertEquals(0, parameters.predictMarginals(new SGDVector[0]).length);
+    }
+
+    @Test
+    public void testSumLogProbs() {
+        double[] values = new double[]{Double.NEGATIVE_INFINITY, -1.0, -2.0, -50.0, 0.5};
+        double expected = ChainHelper.sumLogProbs(DenseVector.createDenseVector(values));
+        assertEquals(expected, ChainHelper.sumLogProbs(values), 1e-12);
+        double[] padded = new double[values.length + 3];
+        System.arraycopy(values, 0, padded, 2, values.length);
+        padded[0] = 100.0;
+        padded[padded.length - 1] = 100.0;
+        assertEquals(expected, ChainHelper.sumLogProbs(padded, 2, values.length), 1e-12);
+    }
+}
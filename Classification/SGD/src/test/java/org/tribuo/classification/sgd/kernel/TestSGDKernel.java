@@ -19,12 +19,19 @@ package org.tribuo.classification.sgd.kernel;
 import com.oracle.labs.mlrg.olcut.util.Pair;
 import org.tribuo.Dataset;
 import org.tribuo.Model;
+import org.tribuo.Prediction;
 import org.tribuo.Trainer;
 import org.tribuo.classification.Label;
 import org.tribuo.classification.evaluation.LabelEvaluation;
 import org.tribuo.classification.evaluation.LabelEvaluator;
 import org.tribuo.classification.example.LabelledDataGenerator;
+import org.tribuo.math.kernel.Kernel;
+import org.tribuo.math.kernel.Linear;
+import org.tribuo.math.kernel.Polynomial;
 import org.tribuo.math.kernel.RBF;
+import org.tribuo.math.kernel.Sigmoid;
+import org.tribuo.math.la.DenseMatrix;
+import org.tribuo.math.la.SparseVector;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
@@ -32,9 +39,11 @@ import org.tribuo.test.Helpers;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 public class TestSGDKernel {
@@ -79,6 +88,157 @@ public class TestSGDKernel {
         testSGDKernel(p);
     }
 
+    @Test
+    public void testSupportVectorBlock() {
+        Random rng = new Random(1);
+        int dimension = 20;
+        SparseVector[] supportVectors = new SparseVector[15];
+        for (int i = 0; i < supportVectors.length; i++) {
+            supportVectors[i] = randomVector(rng, dimension);
+        }
+        Kernel[] kernels = new Kernel[]{new RBF(0.5), new Polynomial(0.5,1.0,3.0), new Sigmoid(0.1,0.5), new Linear()};
+        for (Kernel kernel : kernels) {
+            SupportVectorBlock block = new SupportVectorBlock(kernel, supportVectors);
+            SparseVector[] queries = new SparseVector[5];
+            for (int i = 0; i < queries.length; i++) {
+                queries[i] = randomVector(rng, dimension);
+            }
+            DenseMatrix batch = block.similarities(queries);
+            double[] single = new double[supportVectors.length];
+            for (int i = 0; i < queries.length; i++) {
+                block.similarities(queries[i], single);
+                for (int j = 0; j < supportVectors.length; j++) {
+                    double expected = kernel.similarity(queries[i], supportVectors[j]);
+                    assertEquals(expected, single[j], 1e-10, kernel.toString());
+                    assertEquals(single[j], batch.get(i,j), 1e-10, kernel.toString());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testNearDuplicateSupportVectors() {
+        // Large norms and tiny differences make |u|^2 + |v|^2 - 2u.v cancel badly.
+        int dimension = 8;
+        double[] base = new double[dimension];
+        for (int i = 0; i < dimension; i++) {
+            base[i] = 1e4 * (i + 1);
+        }
+        SparseVector[] supportVectors = new SparseVector[4];
+        for (int i = 0; i < supportVectors.length; i++) {
+            double[] values = base.clone();
+            values[i] += 1e-4 * i;
+            supportVectors[i] = SparseVector.createSparseVector(dimension, range(dimension), values);
+        }
+        SparseVector[] queries = new SparseVector[]{supportVectors[0], supportVectors[3],
+                SparseVector.createSparseVector(dimension, range(dimension), base)};
+        RBF rbf = new RBF(1e3);
+        SupportVectorBlock block = new SupportVectorBlock(rbf, supportVectors);
+        DenseMatrix batch = block.similarities(queries);
+        double[] single = new double[supportVectors.length];
+        for (int i = 0; i < queries.length; i++) {
+            block.similarities(queries[i], single);
+            for (int j = 0; j < supportVectors.length; j++) {
+                double expected = rbf.similarity(queries[i], supportVectors[j]);
+                // Single predictions use the exact form.
+                assertEquals(expected, single[j]);
+                // The batched expansion is clamped so it's a valid kernel value, and close to the exact one.
+                double batched = batch.get(i,j);
+                Assertions.assertTrue(batched <= 1.0 && batched > 0.0, "Kernel value out of range " + batched);
+                assertEquals(expected, batched, 1e-3);
+            }
+        }
+        // Identical vectors are exactly 1 in the single path.
+        block.similarities(supportVectors[2], single);
+        assertEquals(1.0, single[2]);
+    }
+
+    private static int[] range(int size) {
+        int[] output = new int[size];
+        for (int i = 0; i < size; i++) {
+            output[i] = i;
+        }
+        return output;
+    }
+
+    private static SparseVector randomVector(Random rng, int dimension) {
+        int[] indices = new int[dimension / 4];
+        double[] values = new double[indices.length];
+        int idx = rng.nextInt(4);
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = idx;
+            values[i] = rng.nextGaussian();
+            idx += 1 + rng.nextInt(3);
+        }
+        return SparseVector.createSparseVector(dimension, indices, values);
+    }
+
+    @Test
+    public void testBatchPrediction() {
+        Pair<Dataset<Label>,Dataset<Label>> p = LabelledDataGenerator.sparseTrainTest();
+        KernelSVMTrainer uncached = new KernelSVMTrainer(new RBF(1.0),1,5,1000, Trainer.DEFAULT_SEED);
+        KernelSVMModel model = (KernelSVMModel) uncached.train(p.getA());
+        KernelSVMTrainer cached = new KernelSVMTrainer(new RBF(1.0),1,5,1000, Trainer.DEFAULT_SEED);
+        cached.setKernelCacheMB(1.0);
+        KernelSVMModel cachedModel = (KernelSVMModel) cached.train(p.getA());
+        // Small enough that rows are evicted during training.
+        KernelSVMTrainer evicting = new KernelSVMTrainer(new RBF(1.0),1,5,1000, Trainer.DEFAULT_SEED);
+        evicting.setKernelCacheMB(0.0005);
+        KernelSVMModel evictingModel = (KernelSVMModel) evicting.train(p.getA());
+        assertEquals(model.getNumberOfSupportVectors(), cachedModel.getNumberOfSupportVectors());
+        assertEquals(model.getNumberOfSupportVectors(), evictingModel.getNumberOfSupportVectors());
+
+        List<Prediction<Label>> batchPredictions = model.predict(p.getB());
+        for (int i = 0; i < batchPredictions.size(); i++) {
+            Prediction<Label> single = model.predict(p.getB().getExample(i));
+            Prediction<Label> cachedPrediction = cachedModel.predict(p.getB().getExample(i));
+            Prediction<Label> evictingPrediction = evictingModel.predict(p.getB().getExample(i));
+            Prediction<Label> batch = batchPredictions.get(i);
+            assertEquals(single.getOutput().getLabel(), batch.getOutput().getLabel());
+            for (Map.Entry<String,Label> e : single.getOutputScores().entrySet()) {
+                assertEquals(e.getValue().getScore(), batch.getOutputScores().get(e.getKey()).getScore(), 1e-10);
+                assertEquals(e.getValue().getScore(), cachedPrediction.getOutputScores().get(e.getKey()).getScore(), 1e-10);
+                assertEquals(e.getValue().getScore(), evictingPrediction.getOutputScores().get(e.getKey()).getScore(), 1e-10);
+            }
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> cached.setKernelCacheMB(-1));
+        Assertions.assertTrue(cached.toString().contains("kernelCacheMB=1.0"));
+    }
+
+    @Test
+    public void testKernelRowCache() {
+        // Room for 10 rows of 8 values.
+        KernelRowCache cache = new KernelRowCache(640);
+        for (int i = 0; i < 20; i++) {
+            KernelRowCache.Row row = cache.get(i, 8);
+            row.length = 8;
+            Assertions.assertTrue(cache.usedBytes() <= 640);
+        }
+        assertEquals(10, cache.numRows());
+        // The most recently used rows are retained.
+        assertEquals(8, cache.get(19, 8).length);
+        assertEquals(0, cache.get(0, 8).length);
+
+        // Growing a row evicts others to stay under the limit.
+        KernelRowCache.Row row = cache.get(19, 8);
+        cache.ensureCapacity(row, 40);
+        Assertions.assertTrue(cache.usedBytes() <= 640);
+        Assertions.assertTrue(row.cached);
+        // A row larger than the cache is still usable, but isn't retained.
+        cache.ensureCapacity(row, 100);
+        Assertions.assertFalse(row.cached);
+        Assertions.assertTrue(row.values.length >= 100);
+        Assertions.assertTrue(cache.usedBytes() <= 640);
+
+        // A disabled cache hands out an empty row each time.
+        KernelRowCache disabled = new KernelRowCache(0);
+        KernelRowCache.Row scratch = disabled.get(0, 8);
+        scratch.length = 8;
+        assertEquals(0, disabled.get(0, 8).length);
+        assertEquals(0, disabled.numRows());
+    }
+
     @Test
     public void testInvalidExample() {
         assertThrows(IllegalArgumentException.class, () -> {
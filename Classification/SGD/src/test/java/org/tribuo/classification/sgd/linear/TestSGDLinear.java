@@ -22,14 +22,27 @@ import org.junit.jupiter.params.provider.ValueSource;
 import org.tribuo.Dataset;
 import org.tribuo.Example;
 import org.tribuo.Model;
+import org.tribuo.Prediction;
 import org.tribuo.Trainer;
+import org.tribuo.VariableInfo;
 import org.tribuo.classification.Label;
 import org.tribuo.classification.evaluation.LabelEvaluation;
 import org.tribuo.classification.evaluation.LabelEvaluator;
 import org.tribuo.classification.example.LabelledDataGenerator;
 import org.tribuo.classification.sgd.objectives.Hinge;
+import org.tribuo.classification.sgd.objectives.LogMulticlass;
+import org.tribuo.common.sgd.AbstractLinearSGDModel;
+import org.tribuo.common.sgd.AbstractLinearSGDTrainer;
+import org.tribuo.common.sgd.LinearScorer;
+import org.tribuo.common.sgd.OptimiserState;
 import org.tribuo.dataset.DatasetView;
+import org.tribuo.math.la.DenseMatrix;
+import org.tribuo.math.la.DenseVector;
+import org.tribuo.math.la.SparseVector;
 import org.tribuo.math.optimisers.AdaGrad;
+import org.tribuo.math.optimisers.LBFGS;
+import org.tribuo.math.optimisers.ParameterAveraging;
+import org.tribuo.provenance.ModelProvenance;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
@@ -37,8 +50,13 @@ import org.tribuo.test.Helpers;
 
 import java.io.IOException;
 import java.io.ObjectInputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -102,6 +120,190 @@ public class TestSGDLinear {
         testSGDLinear(p);
     }
 
+    @Test
+    public void testIncrementalTraining() {
+        Pair<Dataset<Label>,Dataset<Label>> dense = LabelledDataGenerator.denseTrainTest();
+        Pair<Dataset<Label>,Dataset<Label>> sparse = LabelledDataGenerator.sparseTrainTest();
+        LinearSGDTrainer trainer = new LinearSGDTrainer(new LogMulticlass(),new AdaGrad(0.1,0.1),5,1000, Trainer.DEFAULT_SEED);
+        // Turning off shuffle makes the updates deterministic.
+        trainer.setShuffle(false);
+        AbstractLinearSGDModel<Label> model = trainer.train(dense.getA());
+        DenseMatrix originalWeights = model.getWeightsCopy();
+
+        // Same feature space, restarts the optimiser from the model's weights.
+        AbstractLinearSGDModel<Label> sameFeatures = trainer.incrementalTrain(dense.getB(),model);
+        AbstractLinearSGDModel<Label> sameFeaturesAgain = trainer.incrementalTrain(dense.getB(),model);
+        assertEquals(model.getFeatureIDMap().size(),sameFeatures.getFeatureIDMap().size());
+        assertEquals(sameFeatures.getWeightsCopy(),sameFeaturesAgain.getWeightsCopy());
+        Assertions.assertNotEquals(originalWeights,sameFeatures.getWeightsCopy());
+        assertEquals(originalWeights,model.getWeightsCopy());
+
+        // New features extend the weight matrix.
+        AbstractLinearSGDModel<Label> grown = trainer.incrementalTrain(sparse.getA(),sameFeatures);
+        Set<String> allFeatures = new HashSet<>(dense.getA().getFeatureMap().keySet());
+        allFeatures.addAll(sparse.getA().getFeatureMap().keySet());
+        assertEquals(allFeatures.size(),grown.getFeatureIDMap().size());
+        assertEquals(allFeatures.size()+1,grown.getWeightsCopy().getDimension2Size());
+        // Features which weren't in the new data keep their old weights.
+        DenseMatrix sameWeights = sameFeatures.getWeightsCopy();
+        DenseMatrix grownWeights = grown.getWeightsCopy();
+        for (VariableInfo info : sameFeatures.getFeatureIDMap()) {
+            if (sparse.getA().getFeatureMap().get(info.getName()) == null) {
+                int oldID = sameFeatures.getFeatureIDMap().getID(info.getName());
+                int newID = grown.getFeatureIDMap().getID(info.getName());
+                for (int i = 0; i < sameWeights.getDimension1Size(); i++) {
+                    assertEquals(sameWeights.get(i,oldID),grownWeights.get(i,newID));
+                }
+            }
+        }
+
+        // Feature statistics cover both datasets.
+        for (VariableInfo info : grown.getFeatureIDMap()) {
+            VariableInfo oldInfo = sameFeatures.getFeatureIDMap().get(info.getName());
+            VariableInfo newInfo = sparse.getA().getFeatureMap().get(info.getName());
+            int expectedCount = (oldInfo == null ? 0 : oldInfo.getCount()) + (newInfo == null ? 0 : newInfo.getCount());
+            assertEquals(expectedCount,info.getCount());
+        }
+        assertEquals(model.getFeatureIDMap().get("A").getCount() + dense.getB().getFeatureMap().get("A").getCount(),
+                sameFeatures.getFeatureIDMap().get("A").getCount());
+
+        // The provenance chain records the parent models.
+        ModelProvenance grownProvenance = grown.getProvenance();
+        assertEquals(sparse.getA().getProvenance(),grownProvenance.getDatasetProvenance());
+        ModelProvenance parent = (ModelProvenance) grownProvenance.getInstanceProvenance().getMap().get(AbstractLinearSGDTrainer.PARENT_MODEL_PROVENANCE);
+        assertEquals(sameFeatures.getProvenance(),parent);
+        assertEquals(model.getProvenance(),parent.getInstanceProvenance().getMap().get(AbstractLinearSGDTrainer.PARENT_MODEL_PROVENANCE));
+
+        LabelEvaluation evaluation = new LabelEvaluator().evaluate(grown,sparse.getB());
+        Assertions.assertNotNull(evaluation);
+        Helpers.testModelSerialization(grown,Label.class);
+    }
+
+    @Test
+    public void testIncrementalTrainingWithOptimiserState() {
+        Pair<Dataset<Label>,Dataset<Label>> dense = LabelledDataGenerator.denseTrainTest();
+        Pair<Dataset<Label>,Dataset<Label>> sparse = LabelledDataGenerator.sparseTrainTest();
+        LinearSGDTrainer trainer = new LinearSGDTrainer(new LogMulticlass(),new AdaGrad(0.1,0.1),5,1000, Trainer.DEFAULT_SEED);
+        trainer.setShuffle(false);
+
+        // Keeping the state doesn't change the trained model.
+        Pair<AbstractLinearSGDModel<Label>,OptimiserState> trained = trainer.trainWithOptimiserState(dense.getA(),Collections.emptyMap());
+        AbstractLinearSGDModel<Label> model = trained.getA();
+        OptimiserState state = trained.getB();
+        Assertions.assertNotNull(state);
+        assertEquals(trainer.train(dense.getA()).getWeightsCopy(),model.getWeightsCopy());
+        DenseMatrix originalWeights = model.getWeightsCopy();
+
+        // The state is copied on use, so continuing twice from it gives the same model.
+        Pair<AbstractLinearSGDModel<Label>,OptimiserState> continued = trainer.incrementalTrain(dense.getB(),model,state);
+        Pair<AbstractLinearSGDModel<Label>,OptimiserState> continuedAgain = trainer.incrementalTrain(dense.getB(),model,state);
+        assertEquals(continued.getA().getWeightsCopy(),continuedAgain.getA().getWeightsCopy());
+        assertEquals(originalWeights,model.getWeightsCopy());
+
+        // Continuing the AdaGrad accumulators takes smaller steps than restarting the optimiser.
+        AbstractLinearSGDModel<Label> restarted = trainer.incrementalTrain(dense.getB(),model);
+        Assertions.assertNotEquals(restarted.getWeightsCopy(),continued.getA().getWeightsCopy());
+        DenseMatrix continuedStep = continued.getA().getWeightsCopy();
+        continuedStep.intersectAndAddInPlace(originalWeights,(double a) -> -a);
+        DenseMatrix restartedStep = restarted.getWeightsCopy();
+        restartedStep.intersectAndAddInPlace(originalWeights,(double a) -> -a);
+        Assertions.assertTrue(absSum(continuedStep) < absSum(restartedStep));
+
+        // New features extend the state along with the weights.
+        Pair<AbstractLinearSGDModel<Label>,OptimiserState> grown = trainer.incrementalTrain(sparse.getA(),continued.getA(),continued.getB());
+        assertEquals(grown.getA().getFeatureIDMap().size()+1,grown.getA().getWeightsCopy().getDimension2Size());
+        Pair<AbstractLinearSGDModel<Label>,OptimiserState> grownAgain = trainer.incrementalTrain(sparse.getA(),grown.getA(),grown.getB());
+        Assertions.assertNotNull(new LabelEvaluator().evaluate(grownAgain.getA(),sparse.getB()));
+
+        // State from a different model is rejected.
+        assertThrows(IllegalArgumentException.class, () -> trainer.incrementalTrain(dense.getA(),model,grown.getB()));
+        assertThrows(IllegalArgumentException.class, () -> trainer.incrementalTrain(dense.getA(),model,null));
+
+        // Optimisers which can't be continued can't produce state.
+        LinearSGDTrainer averaging = new LinearSGDTrainer(new LogMulticlass(),new ParameterAveraging(new AdaGrad(0.1,0.1)),5,1000, Trainer.DEFAULT_SEED);
+        assertThrows(IllegalArgumentException.class, () -> averaging.trainWithOptimiserState(dense.getA(),Collections.emptyMap()));
+        Assertions.assertNotNull(averaging.incrementalTrain(dense.getA(),averaging.train(dense.getA())));
+    }
+
+    private static double absSum(DenseMatrix matrix) {
+        double sum = 0.0;
+        for (int i = 0; i < matrix.getDimension1Size(); i++) {
+            for (int j = 0; j < matrix.getDimension2Size(); j++) {
+                sum += Math.abs(matrix.get(i,j));
+            }
+        }
+        return sum;
+    }
+
+    @Test
+    public void testLBFGS() {
+        Pair<Dataset<Label>,Dataset<Label>> p = LabelledDataGenerator.denseTrainTest();
+        LinearSGDModel serial = new LBFGSLogisticRegressionTrainer(new LBFGS(50,1e-2,1)).train(p.getA());
+        LinearSGDModel parallel = new LBFGSLogisticRegressionTrainer(new LBFGS(50,1e-2,4)).train(p.getA());
+        LabelEvaluation evaluation = new LabelEvaluator().evaluate(serial,p.getB());
+        Assertions.assertTrue(evaluation.accuracy() > 0.5);
+        DenseMatrix serialWeights = serial.getWeightsCopy();
+        DenseMatrix parallelWeights = parallel.getWeightsCopy();
+        for (int i = 0; i < serialWeights.getDimension1Size(); i++) {
+            for (int j = 0; j < serialWeights.getDimension2Size(); j++) {
+                assertEquals(serialWeights.get(i,j),parallelWeights.get(i,j),1e-6);
+            }
+        }
+        Helpers.testModelSerialization(serial,Label.class);
+
+        Pair<Dataset<Label>,Dataset<Label>> sparse = LabelledDataGenerator.sparseTrainTest();
+        new LBFGSLogisticRegressionTrainer(new LBFGS(10,20,1e-6,1e-2,0.0,2)).train(sparse.getA());
+    }
+
+    @Test
+    public void testCompiledScorer() {
+        Pair<Dataset<Label>,Dataset<Label>> p = LabelledDataGenerator.sparseTrainTest();
+        AbstractLinearSGDModel<Label> model = t.train(p.getA());
+        DenseMatrix weights = model.getWeightsCopy();
+        List<Example<Label>> examples = new ArrayList<>();
+        p.getB().forEach(examples::add);
+        LabelledDataGenerator.denseTrainTest().getB().forEach(examples::add);
+        for (boolean compile : new boolean[]{false,true}) {
+            LinearScorer scorer = new LinearScorer(weights,model.getFeatureIDMap(),compile);
+            assertEquals(compile,scorer.isCompiled());
+            double[] scores = scorer.getBuffer();
+            assertEquals(weights.getDimension1Size(),scores.length);
+            // The buffer is reused on this thread.
+            Assertions.assertSame(scores,scorer.getBuffer());
+            for (Example<Label> example : examples) {
+                SparseVector features = SparseVector.createSparseVector(example,model.getFeatureIDMap(),true);
+                if (features.numActiveElements() == 1) {
+                    assertThrows(IllegalArgumentException.class, () -> scorer.score(example,scores));
+                    continue;
+                }
+                DenseVector expected = weights.leftMultiply(features);
+                int numUsed = scorer.score(example,scores);
+                assertEquals(features.numActiveElements()-1,numUsed);
+                for (int i = 0; i < scores.length; i++) {
+                    assertEquals(expected.get(i),scores[i],1e-12);
+                }
+            }
+        }
+
+        // Predictions must not share the reused score buffer.
+        Prediction<Label> first = model.predict(p.getB().getExample(0));
+        Map<String,Label> firstScores = new HashMap<>(first.getOutputScores());
+        model.predict(p.getB().getExample(1));
+        assertEquals(firstScores,first.getOutputScores());
+
+        // Compiling the scorer in the trainer doesn't change the predictions.
+        LinearSGDTrainer sharedTrainer = new LinearSGDTrainer(new Hinge(),new AdaGrad(0.1,0.1),5,1000,Trainer.DEFAULT_SEED);
+        LinearSGDTrainer compiledTrainer = new LinearSGDTrainer(new Hinge(),new AdaGrad(0.1,0.1),5,1000,Trainer.DEFAULT_SEED);
+        compiledTrainer.setCompileScorer(true);
+        AbstractLinearSGDModel<Label> shared = sharedTrainer.train(p.getA());
+        AbstractLinearSGDModel<Label> compiled = compiledTrainer.train(p.getA());
+        assertEquals(shared.getWeightsCopy(),compiled.getWeightsCopy());
+        for (Example<Label> example : p.getB()) {
+            assertEquals(shared.predict(example).getOutputScores(),compiled.predict(example).getOutputScores());
+        }
+        Helpers.testModelSerialization(compiled,Label.class);
+    }
+
     @Test
     public void testInvalidExample() {
         assertThrows(IllegalArgumentException.class, () -> {
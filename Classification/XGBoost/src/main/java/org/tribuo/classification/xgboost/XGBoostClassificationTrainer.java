@@ -145,16 +145,15 @@ public final class XGBoostClassificationTrainer extends XGBoostTrainer<Label> {
         parameters.put("num_class", outputInfo.size());
         Booster model;
         Function<Label,Float> responseExtractor = (Label l) -> (float) outputInfo.getID(l);
-        try {
-            DMatrixTuple<Label> trainingData = convertExamples(examples, featureMap, responseExtractor);
-            model = XGBoost.train(trainingData.data, parameters, numTrees, Collections.emptyMap(), null, null);
+        try (TrainingMatrix trainingData = createTrainingMatrix(examples, featureMap, responseExtractor)) {
+            model = XGBoost.train(trainingData.data, trainingData.parameters, numTrees, Collections.emptyMap(), null, null);
         } catch (XGBoostError e) {
             logger.log(Level.SEVERE, "XGBoost threw an error", e);
             throw new IllegalStateException(e);
         }
 
         ModelProvenance provenance = new ModelProvenance(XGBoostModel.class.getName(), OffsetDateTime.now(), examples.getProvenance(), trainerProvenance, runProvenance);
-        XGBoostModel<Label> xgModel = createModel("xgboost-classification-model", provenance, featureMap, outputInfo, Collections.singletonList(model), new XGBoostClassificationConverter());
+        XGBoostModel<Label> xgModel = createModel("xgboost-classification-model", provenance, featureMap, outputInfo, Collections.singletonList(model), new XGBoostClassificationConverter(), examples);
 
         return xgModel;
     }
@@ -19,9 +19,11 @@ package org.tribuo.classification.xgboost;
 import com.oracle.labs.mlrg.olcut.util.Pair;
 import org.tribuo.Dataset;
 import org.tribuo.Example;
+import org.tribuo.Feature;
 import org.tribuo.ImmutableDataset;
 import org.tribuo.ImmutableOutputInfo;
 import org.tribuo.Model;
+import org.tribuo.MutableDataset;
 import org.tribuo.Prediction;
 import org.tribuo.classification.Label;
 import org.tribuo.classification.LabelFactory;
@@ -30,12 +32,14 @@ import org.tribuo.classification.evaluation.LabelEvaluator;
 import org.tribuo.classification.example.LabelledDataGenerator;
 import org.tribuo.common.xgboost.XGBoostFeatureImportance;
 import org.tribuo.common.xgboost.XGBoostModel;
+import org.tribuo.common.xgboost.XGBoostTrainer;
 import org.tribuo.data.text.TextDataSource;
 import org.tribuo.data.text.TextFeatureExtractor;
 import org.tribuo.data.text.impl.BasicPipeline;
 import org.tribuo.data.text.impl.SimpleTextDataSource;
 import org.tribuo.data.text.impl.TextFeatureExtractorImpl;
 import org.tribuo.dataset.DatasetView;
+import org.tribuo.impl.ArrayExample;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.tribuo.test.Helpers;
@@ -45,13 +49,18 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -221,6 +230,184 @@ public class TestXGBoost {
         testXGBoost(p);
     }
 
+    @Test
+    public void testJavaPrediction() {
+        Pair<Dataset<Label>,Dataset<Label>> p = LabelledDataGenerator.sparseTrainTest();
+        XGBoostModel<Label> model = (XGBoostModel<Label>) t.train(p.getA());
+        List<Prediction<Label>> nativePredictions = model.predict(p.getB());
+
+        assertTrue(model.enableJavaPrediction(p.getA()));
+        List<Prediction<Label>> javaPredictions = model.predict(p.getB());
+        assertEquals(nativePredictions.size(), javaPredictions.size());
+        for (int i = 0; i < nativePredictions.size(); i++) {
+            Prediction<Label> nativePred = nativePredictions.get(i);
+            Prediction<Label> javaPred = javaPredictions.get(i);
+            assertEquals(nativePred.getOutput().getLabel(), javaPred.getOutput().getLabel());
+            assertEquals(nativePred.getNumActiveFeatures(), javaPred.getNumActiveFeatures());
+            for (Map.Entry<String,Label> e : nativePred.getOutputScores().entrySet()) {
+                assertEquals(e.getValue().getScore(), javaPred.getOutputScores().get(e.getKey()).getScore(), 1e-6);
+            }
+        }
+
+        // Duplicate and unknown features go through the same conversion as the native path.
+        String first = model.getFeatureIDMap().get(0).getName();
+        String second = model.getFeatureIDMap().get(1).getName();
+        Example<Label> duplicates = new ArrayExample<>(new Label("Foo"),
+                new String[]{second,"unknown",first,second,first},new double[]{0.5,3.0,-1.0,1.25,2.0});
+        model.disableJavaPrediction();
+        Prediction<Label> nativeDuplicates = model.predict(duplicates);
+        assertTrue(model.enableJavaPrediction(p.getA()));
+        for (int i = 0; i < 2; i++) {
+            // Twice, to reuse this thread's buffers.
+            Prediction<Label> javaDuplicates = model.predict(duplicates);
+            assertEquals(nativeDuplicates.getNumActiveFeatures(), javaDuplicates.getNumActiveFeatures());
+            for (Map.Entry<String,Label> e : nativeDuplicates.getOutputScores().entrySet()) {
+                assertEquals(e.getValue().getScore(), javaDuplicates.getOutputScores().get(e.getKey()).getScore(), 1e-6);
+            }
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> model.predict(LabelledDataGenerator.emptyExample()));
+        XGBoostModel<Label> copy = (XGBoostModel<Label>) model.copy();
+        assertTrue(copy.isJavaPrediction());
+        model.disableJavaPrediction();
+        assertFalse(model.isJavaPrediction());
+
+        XGBoostClassificationTrainer javaTrainer = new XGBoostClassificationTrainer(10);
+        javaTrainer.setJavaPrediction(true);
+        assertTrue(((XGBoostModel<Label>) javaTrainer.train(p.getA())).isJavaPrediction());
+    }
+
+    @Test
+    public void testJavaPredictionFallback() {
+        Pair<Dataset<Label>,Dataset<Label>> p = LabelledDataGenerator.denseTrainTest();
+
+        // Dart scales the trees at prediction time, which the dump doesn't record.
+        Map<String,Object> dartParams = new HashMap<>();
+        dartParams.put("booster", "dart");
+        dartParams.put("rate_drop", 0.5);
+        dartParams.put("verbosity", 0);
+        XGBoostModel<Label> dartModel = (XGBoostModel<Label>) new XGBoostClassificationTrainer(10, dartParams).train(p.getA());
+        assertFalse(dartModel.enableJavaPrediction(p.getA()));
+        assertFalse(dartModel.isJavaPrediction());
+
+        Map<String,Object> linearParams = new HashMap<>();
+        linearParams.put("booster", "gblinear");
+        linearParams.put("verbosity", 0);
+        XGBoostModel<Label> linearModel = (XGBoostModel<Label>) new XGBoostClassificationTrainer(10, linearParams).train(p.getA());
+        assertFalse(linearModel.enableJavaPrediction(p.getA()));
+        List<Prediction<Label>> predictions = linearModel.predict(p.getB());
+        assertEquals(p.getB().size(), predictions.size());
+    }
+
+    @Test
+    public void testConvertedDataCache() {
+        Pair<Dataset<Label>,Dataset<Label>> p = LabelledDataGenerator.denseTrainTest();
+        XGBoostClassificationTrainer cachedTrainer = new XGBoostClassificationTrainer(10);
+        cachedTrainer.setCacheConvertedData(true);
+        XGBoostClassificationTrainer uncachedTrainer = new XGBoostClassificationTrainer(10);
+        try {
+            Model<Label> uncachedModel = uncachedTrainer.train(p.getA());
+            cachedTrainer.train(p.getA());
+            // The second train and the repeated predictions reuse the cached matrices.
+            Model<Label> cachedModel = cachedTrainer.train(p.getA());
+            List<Prediction<Label>> expected = uncachedModel.predict(p.getB());
+            for (int j = 0; j < 2; j++) {
+                List<Prediction<Label>> actual = cachedModel.predict(p.getB());
+                assertEquals(expected.size(), actual.size());
+                for (int i = 0; i < expected.size(); i++) {
+                    Prediction<Label> expectedPred = expected.get(i);
+                    Prediction<Label> actualPred = actual.get(i);
+                    assertEquals(expectedPred.getOutput().getLabel(), actualPred.getOutput().getLabel());
+                    for (Map.Entry<String,Label> e : expectedPred.getOutputScores().entrySet()) {
+                        assertEquals(e.getValue().getScore(), actualPred.getOutputScores().get(e.getKey()).getScore(), 1e-6);
+                    }
+                }
+            }
+        } finally {
+            XGBoostTrainer.clearConvertedDataCache();
+        }
+    }
+
+    @Test
+    public void testExternalMemory() throws IOException {
+        Pair<Dataset<Label>,Dataset<Label>> p = LabelledDataGenerator.denseTrainTest();
+        Path cacheDirectory = Files.createTempDirectory("xgboost-test");
+        try {
+            // External memory training uses the approximate tree method, so use it in memory too.
+            Map<String,Object> params = Collections.singletonMap("tree_method", "approx");
+            XGBoostClassificationTrainer inMemoryTrainer = new XGBoostClassificationTrainer(10, params);
+            XGBoostClassificationTrainer trainer = new XGBoostClassificationTrainer(10, params);
+            trainer.setExternalMemory(true, cacheDirectory);
+            Model<Label> model = trainer.train(p.getA());
+            // The width of the booster is only set on a copy of the parameters.
+            assertFalse(trainer.toString().contains("num_feature"));
+            List<Prediction<Label>> predictions = model.predict(p.getB());
+            List<Prediction<Label>> inMemoryPredictions = inMemoryTrainer.train(p.getA()).predict(p.getB());
+            assertEquals(p.getB().size(), predictions.size());
+            for (int i = 0; i < predictions.size(); i++) {
+                Prediction<Label> pred = predictions.get(i);
+                Prediction<Label> inMemoryPred = inMemoryPredictions.get(i);
+                assertEquals(inMemoryPred.getOutput().getLabel(), pred.getOutput().getLabel());
+                for (Map.Entry<String,Label> e : inMemoryPred.getOutputScores().entrySet()) {
+                    assertEquals(e.getValue().getScore(), pred.getOutputScores().get(e.getKey()).getScore(), 1e-5);
+                }
+            }
+            LabelEvaluation evaluation = (LabelEvaluation) p.getA().getOutputFactory().getEvaluator().evaluate(model, p.getB());
+            assertTrue(evaluation.accuracy() > 0.5);
+            try (Stream<Path> files = Files.list(cacheDirectory)) {
+                assertEquals(0, files.count());
+            }
+        } finally {
+            Files.deleteIfExists(cacheDirectory);
+        }
+    }
+
+    @Test
+    public void testExternalMemoryNonFiniteValues() throws IOException {
+        Pair<Dataset<Label>,Dataset<Label>> p = LabelledDataGenerator.denseTrainTest();
+        Path cacheDirectory = Files.createTempDirectory("xgboost-test");
+        try {
+            // Datasets reject NaN features, so they are set after the examples are added.
+            MutableDataset<Label> missing = new MutableDataset<>(p.getA().getProvenance(), p.getA().getOutputFactory());
+            for (Example<Label> e : p.getA()) {
+                missing.add(e.copy());
+            }
+            int i = 0;
+            for (Example<Label> e : missing) {
+                if (i % 3 == 0) {
+                    e.set(new Feature("B", Double.NaN));
+                }
+                i++;
+            }
+            Map<String,Object> params = Collections.singletonMap("tree_method", "approx");
+            XGBoostClassificationTrainer inMemoryTrainer = new XGBoostClassificationTrainer(10, params);
+            XGBoostClassificationTrainer trainer = new XGBoostClassificationTrainer(10, params);
+            trainer.setExternalMemory(true, cacheDirectory);
+
+            // NaN is missing in both paths, so they train the same model.
+            List<Prediction<Label>> predictions = trainer.train(missing).predict(p.getB());
+            List<Prediction<Label>> inMemoryPredictions = inMemoryTrainer.train(missing).predict(p.getB());
+            for (int j = 0; j < predictions.size(); j++) {
+                for (Map.Entry<String,Label> e : inMemoryPredictions.get(j).getOutputScores().entrySet()) {
+                    assertEquals(e.getValue().getScore(), predictions.get(j).getOutputScores().get(e.getKey()).getScore(), 1e-5);
+                }
+            }
+
+            // Infinities are rejected, and the cache is still cleaned up.
+            MutableDataset<Label> infinite = new MutableDataset<>(p.getA().getProvenance(), p.getA().getOutputFactory());
+            for (Example<Label> e : p.getA()) {
+                infinite.add(e.copy());
+            }
+            infinite.getExample(0).set(new Feature("C", Double.NEGATIVE_INFINITY));
+            assertThrows(IllegalArgumentException.class, () -> trainer.train(infinite));
+            try (Stream<Path> files = Files.list(cacheDirectory)) {
+                assertEquals(0, files.count());
+            }
+        } finally {
+            Files.deleteIfExists(cacheDirectory);
+        }
+    }
+
     @Test
     public void testInvalidExample() {
         assertThrows(IllegalArgumentException.class, () -> {
@@ -86,6 +86,14 @@ public class KMeansModel extends Model<ClusterID> {
         return copies;
     }
 
+    /**
+     * Returns the distance function used to assign examples to centroids.
+     * @return The distance type.
+     */
+    public Distance getDistanceType() {
+        return distanceType;
+    }
+
     /**
      * Returns a list of features, one per centroid.
      * <p>
@@ -16,6 +16,7 @@
 
 package org.tribuo.common.liblinear;
 
+import de.bwaldvogel.liblinear.FeatureNode;
 import de.bwaldvogel.liblinear.Linear;
 import org.tribuo.Example;
 import org.tribuo.Excuse;
@@ -23,7 +24,9 @@ import org.tribuo.ImmutableFeatureMap;
 import org.tribuo.ImmutableOutputInfo;
 import org.tribuo.Model;
 import org.tribuo.Output;
+import org.tribuo.Prediction;
 import org.tribuo.provenance.ModelProvenance;
+import org.tribuo.util.ParallelPredictor;
 
 import java.io.IOException;
 import java.io.StringReader;
@@ -57,6 +60,11 @@ public abstract class LibLinearModel<T extends Output<T>> extends Model<T> {
 
     private static final Logger logger = Logger.getLogger(LibLinearModel.class.getName());
 
+    /**
+     * Per thread buffer used when converting examples into liblinear's format.
+     */
+    private static final ThreadLocal<List<FeatureNode>> nodeBuffer = ThreadLocal.withInitial(ArrayList::new);
+
     /**
      * The list of LibLinear models. Multiple models are used by multi-label and multidimensional regression outputs.
      */
@@ -95,6 +103,48 @@ public abstract class LibLinearModel<T extends Output<T>> extends Model<T> {
         return Collections.unmodifiableList(copy);
     }
 
+    /**
+     * Predicts the examples using the supplied number of threads, returning the predictions in input order.
+     * <p>
+     * The threads are created for this call and released at the end of it. Use
+     * {@link #predict(Iterable, ParallelPredictor)} to reuse a thread pool across calls.
+     * @param examples The examples to predict.
+     * @param numThreads The number of threads, must be positive.
+     * @return The predictions.
+     */
+    public List<Prediction<T>> predict(Iterable<Example<T>> examples, int numThreads) {
+        if (numThreads < 1) {
+            throw new IllegalArgumentException("numThreads must be positive, found " + numThreads);
+        } else if (numThreads == 1) {
+            return predict(examples);
+        } else {
+            try (ParallelPredictor predictor = new ParallelPredictor(numThreads)) {
+                return predict(examples, predictor);
+            }
+        }
+    }
+
+    /**
+     * Predicts the examples using the supplied predictor's thread pool, returning the predictions in input order.
+     * <p>
+     * The predictor is not tied to this model, and can be shared across models and calls.
+     * @param examples The examples to predict.
+     * @param predictor The parallel predictor.
+     * @return The predictions.
+     */
+    public List<Prediction<T>> predict(Iterable<Example<T>> examples, ParallelPredictor predictor) {
+        return predictor.predict(examples, this::predict);
+    }
+
+    /**
+     * Converts the example into liblinear's format, including the bias feature, using a per thread buffer.
+     * @param example The example to convert.
+     * @return The features suitable for use in liblinear.
+     */
+    protected FeatureNode[] exampleToNodes(Example<T> example) {
+        return LibLinearTrainer.exampleToNodes(example, featureIDMap, nodeBuffer.get());
+    }
+
     /**
      * This call is expensive as it copies out the weight matrix from the
      * LibLinear model.
@@ -17,6 +17,7 @@
 package org.tribuo.common.liblinear;
 
 import com.oracle.labs.mlrg.olcut.config.Config;
+import com.oracle.labs.mlrg.olcut.config.PropertyException;
 import com.oracle.labs.mlrg.olcut.provenance.Provenance;
 import com.oracle.labs.mlrg.olcut.util.Pair;
 import org.tribuo.Dataset;
@@ -29,6 +30,7 @@ import org.tribuo.Trainer;
 import org.tribuo.provenance.ModelProvenance;
 import org.tribuo.provenance.TrainerProvenance;
 import org.tribuo.provenance.impl.TrainerProvenanceImpl;
+import org.tribuo.util.ConvertedFeatureCache;
 import org.tribuo.util.Util;
 import de.bwaldvogel.liblinear.FeatureNode;
 import de.bwaldvogel.liblinear.Linear;
@@ -61,6 +63,11 @@ public abstract class LibLinearTrainer<T extends Output<T>> implements Trainer<T
 
     private static final Logger logger = Logger.getLogger(LibLinearTrainer.class.getName());
 
+    /**
+     * Converted features shared by all liblinear trainers, see {@link #setCacheConvertedData}.
+     */
+    private static final ConvertedFeatureCache<FeatureNode[]> featureCache = new ConvertedFeatureCache<>("liblinear's");
+
     protected Parameter libLinearParams;
 
     @Config(description="Algorithm to use.")
@@ -78,6 +85,12 @@ public abstract class LibLinearTrainer<T extends Output<T>> implements Trainer<T
     @Config(description="Epsilon insensitivity in the regression cost function.")
     protected double epsilon = 0.1;
 
+    @Config(description="Number of threads to use when converting the dataset and, where supported, training.")
+    protected int numThreads = 1;
+
+    @Config(description="Reuse the converted features across train calls on the same dataset.")
+    protected boolean cacheConvertedData = false;
+
     private int trainInvocationCount = 0;
 
     protected LibLinearTrainer() {}
@@ -115,10 +128,43 @@ public abstract class LibLinearTrainer<T extends Output<T>> implements Trainer<T
      */
     @Override
     public void postConfig() {
+        if (numThreads < 1) {
+            throw new PropertyException("","numThreads","numThreads must be positive, found " + numThreads);
+        }
         libLinearParams = new Parameter(trainerType.getSolverType(),cost,terminationCriterion,maxIterations,epsilon);
         Linear.disableDebugOutput();
     }
 
+    /**
+     * Sets the number of threads used to convert the dataset into liblinear's format.
+     * @param numThreads The number of threads, must be positive.
+     */
+    public void setNumThreads(int numThreads) {
+        if (numThreads < 1) {
+            throw new IllegalArgumentException("numThreads must be positive, found " + numThreads);
+        }
+        this.numThreads = numThreads;
+    }
+
+    /**
+     * Sets whether the converted features are cached and reused by later calls to
+     * {@link #train} on the same dataset, from this or any other liblinear trainer.
+     * <p>
+     * The cache checks the dataset's example order and feature ids, but can't detect examples
+     * which are modified in place after the first conversion.
+     * @param cacheConvertedData If true cache the converted features.
+     */
+    public void setCacheConvertedData(boolean cacheConvertedData) {
+        this.cacheConvertedData = cacheConvertedData;
+    }
+
+    /**
+     * Empties the converted feature cache shared by all liblinear trainers.
+     */
+    public static void clearConvertedDataCache() {
+        featureCache.clear();
+    }
+
     @Override
     public LibLinearModel<T> train(Dataset<T> examples) {
         return train(examples, Collections.emptyMap());
@@ -198,6 +244,23 @@ public abstract class LibLinearTrainer<T extends Output<T>> implements Trainer<T
      */
     protected abstract Pair<FeatureNode[][],double[][]> extractData(Dataset<T> data, ImmutableOutputInfo<T> outputInfo, ImmutableFeatureMap featureMap);
 
+    /**
+     * Converts the dataset's examples into liblinear's format, in the dataset's iteration order.
+     * <p>
+     * Uses {@link #numThreads} threads, and the cache if {@link #cacheConvertedData} is set. The
+     * returned arrays may be shared with other train calls, so they must not be modified.
+     * @param data The input data.
+     * @param featureMap The feature info.
+     * @return The features.
+     */
+    protected FeatureNode[][] extractFeatures(Dataset<T> data, ImmutableFeatureMap featureMap) {
+        return featureCache.convert(data,featureMap,cacheConvertedData,numThreads,FeatureNode[][]::new,() -> {
+            // Each thread gets its own buffer.
+            ArrayList<FeatureNode> buffer = new ArrayList<>();
+            return (Example<T> e) -> exampleToNodes(e,featureMap,buffer);
+        });
+    }
+
     /**
      * Constructs the parameters. Most of the time this is a no-op, but
      * classification overrides it to incorporate label weights if they exist.
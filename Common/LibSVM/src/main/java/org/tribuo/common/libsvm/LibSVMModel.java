@@ -23,9 +23,13 @@ import org.tribuo.ImmutableFeatureMap;
 import org.tribuo.ImmutableOutputInfo;
 import org.tribuo.Model;
 import org.tribuo.Output;
+import org.tribuo.Prediction;
 import org.tribuo.provenance.ModelProvenance;
+import org.tribuo.util.ParallelPredictor;
+import libsvm.svm;
 import libsvm.svm_model;
 import libsvm.svm_node;
+import libsvm.svm_parameter;
 
 import java.io.Serializable;
 import java.util.ArrayList;
@@ -64,11 +68,21 @@ public abstract class LibSVMModel<T extends Output<T>> extends Model<T> implemen
 
     private static final Logger logger = Logger.getLogger(LibSVMModel.class.getName());
 
+    /**
+     * Per thread buffer used when converting examples into libsvm's format.
+     */
+    private static final ThreadLocal<List<svm_node>> nodeBuffer = ThreadLocal.withInitial(ArrayList::new);
+
     /**
      * The LibSVM models. Multiple models are used for multi-label or multidimensional regression outputs.
      */
     protected final List<svm_model> models;
 
+    /**
+     * The collapsed weights of linear kernel models, built on first use.
+     */
+    private transient volatile LinearSVMWeights[] linearWeights;
+
     /**
      * Constructs a LibSVMModel from the supplied arguments.
      * @param name The model name.
@@ -108,6 +122,91 @@ public abstract class LibSVMModel<T extends Output<T>> extends Model<T> implemen
         return Collections.unmodifiableList(copy);
     }
 
+    /**
+     * Predicts the examples using the supplied number of threads, returning the predictions in input order.
+     * <p>
+     * The threads are created for this call and released at the end of it. Use
+     * {@link #predict(Iterable, ParallelPredictor)} to reuse a thread pool across calls.
+     * @param examples The examples to predict.
+     * @param numThreads The number of threads, must be positive.
+     * @return The predictions.
+     */
+    public List<Prediction<T>> predict(Iterable<Example<T>> examples, int numThreads) {
+        if (numThreads < 1) {
+            throw new IllegalArgumentException("numThreads must be positive, found " + numThreads);
+        } else if (numThreads == 1) {
+            return predict(examples);
+        } else {
+            try (ParallelPredictor predictor = new ParallelPredictor(numThreads)) {
+                return predict(examples, predictor);
+            }
+        }
+    }
+
+    /**
+     * Predicts the examples using the supplied predictor's thread pool, returning the predictions in input order.
+     * <p>
+     * The predictor is not tied to this model, and can be shared across models and calls.
+     * @param examples The examples to predict.
+     * @param predictor The parallel predictor.
+     * @return The predictions.
+     */
+    public List<Prediction<T>> predict(Iterable<Example<T>> examples, ParallelPredictor predictor) {
+        return predictor.predict(examples, this::predict);
+    }
+
+    /**
+     * Converts the example into libsvm's format using a per thread buffer.
+     * @param example The example to convert.
+     * @return A sparse feature vector.
+     */
+    protected svm_node[] exampleToNodes(Example<T> example) {
+        return LibSVMTrainer.exampleToNodes(example, featureIDMap, nodeBuffer.get());
+    }
+
+    /**
+     * Computes the decision values of the specified model, as {@code svm.svm_predict_values}.
+     * <p>
+     * Linear kernel models have their support vectors collapsed into weight vectors the
+     * first time this is called, so their decision values are a dot product per decision
+     * function instead of a kernel evaluation per support vector. Models whose weight vectors
+     * would be larger than their support vectors are not collapsed.
+     * @param modelIdx The index of the model in {@link #models}.
+     * @param features The features.
+     * @param decValues Output array for the decision values.
+     * @return The predicted value, as returned by {@code svm.svm_predict_values}.
+     */
+    protected double predictValues(int modelIdx, svm_node[] features, double[] decValues) {
+        svm_model model = models.get(modelIdx);
+        LinearSVMWeights weights = model.param.kernel_type == svm_parameter.LINEAR ? getLinearWeights()[modelIdx] : null;
+        if (weights != null) {
+            return weights.predictValues(features, decValues);
+        } else {
+            return svm.svm_predict_values(model, features, decValues);
+        }
+    }
+
+    /**
+     * Gets the collapsed linear weights, building them if necessary. Entries are
+     * null for models which don't use a linear kernel, or are too large to collapse.
+     * @return The collapsed weights.
+     */
+    private LinearSVMWeights[] getLinearWeights() {
+        LinearSVMWeights[] weights = linearWeights;
+        if (weights == null) {
+            // Concurrent first calls may each collapse the weights, any of the copies can be kept.
+            weights = new LinearSVMWeights[models.size()];
+            for (int i = 0; i < weights.length; i++) {
+                svm_model model = models.get(i);
+                if (model.param.kernel_type == svm_parameter.LINEAR) {
+                    weights[i] = LinearSVMWeights.collapse(model, featureIDMap.size());
+                }
+            }
+            linearWeights = weights;
+        }
+        return weights;
+    }
+
     @Override
     public Map<String, List<Pair<String,Double>>> getTopFeatures(int n) {
         return Collections.emptyMap();
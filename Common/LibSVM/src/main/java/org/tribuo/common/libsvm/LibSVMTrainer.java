@@ -17,6 +17,7 @@
 package org.tribuo.common.libsvm;
 
 import com.oracle.labs.mlrg.olcut.config.Config;
+import com.oracle.labs.mlrg.olcut.config.PropertyException;
 import com.oracle.labs.mlrg.olcut.provenance.Provenance;
 import com.oracle.labs.mlrg.olcut.util.Pair;
 import libsvm.svm_model;
@@ -32,6 +33,7 @@ import org.tribuo.Trainer;
 import org.tribuo.provenance.ModelProvenance;
 import org.tribuo.provenance.TrainerProvenance;
 import org.tribuo.provenance.impl.TrainerProvenanceImpl;
+import org.tribuo.util.ConvertedFeatureCache;
 import org.tribuo.util.Util;
 
 import java.time.OffsetDateTime;
@@ -68,6 +70,11 @@ public abstract class LibSVMTrainer<T extends Output<T>> implements Trainer<T> {
     
     private static final Logger logger = Logger.getLogger(LibSVMTrainer.class.getName());
 
+    /**
+     * Converted features shared by all libsvm trainers, see {@link #setCacheConvertedData}.
+     */
+    private static final ConvertedFeatureCache<svm_node[]> featureCache = new ConvertedFeatureCache<>("libsvm's");
+
     /**
      * The SVM parameters suitable for use by LibSVM.
      */
@@ -112,6 +119,12 @@ public abstract class LibSVMTrainer<T extends Output<T>> implements Trainer<T> {
     @Config(description="Generate probability estimates.")
     private boolean probability = false;
 
+    @Config(description="Number of threads to use when converting the dataset.")
+    private int numThreads = 1;
+
+    @Config(description="Reuse the converted features across train calls on the same dataset.")
+    private boolean cacheConvertedData = false;
+
     private int trainInvocationCounter = 0;
 
     /**
@@ -145,6 +158,9 @@ public abstract class LibSVMTrainer<T extends Output<T>> implements Trainer<T> {
      */
     @Override
     public void postConfig() {
+        if (numThreads < 1) {
+            throw new PropertyException("","numThreads","numThreads must be positive, found " + numThreads);
+        }
         parameters = new svm_parameter();
         parameters.svm_type = svmType.getNativeType();
         parameters.kernel_type = kernelType.getNativeType();
@@ -160,6 +176,36 @@ public abstract class LibSVMTrainer<T extends Output<T>> implements Trainer<T> {
         parameters.probability = probability ? 1 : 0;
     }
 
+    /**
+     * Sets the number of threads used to convert the dataset into libsvm's format.
+     * @param numThreads The number of threads, must be positive.
+     */
+    public void setNumThreads(int numThreads) {
+        if (numThreads < 1) {
+            throw new IllegalArgumentException("numThreads must be positive, found " + numThreads);
+        }
+        this.numThreads = numThreads;
+    }
+
+    /**
+     * Sets whether the converted features are cached and reused by later calls to
+     * {@link #train} on the same dataset, from this or any other libsvm trainer.
+     * <p>
+     * The cache checks the dataset's example order and feature ids, but can't detect examples
+     * which are modified in place after the first conversion.
+     * @param cacheConvertedData If true cache the converted features.
+     */
+    public void setCacheConvertedData(boolean cacheConvertedData) {
+        this.cacheConvertedData = cacheConvertedData;
+    }
+
+    /**
+     * Empties the converted feature cache shared by all libsvm trainers.
+     */
+    public static void clearConvertedDataCache() {
+        featureCache.clear();
+    }
+
     @Override
     public String toString() {
         StringBuilder buffer = new StringBuilder();
@@ -227,6 +273,24 @@ public abstract class LibSVMTrainer<T extends Output<T>> implements Trainer<T> {
      */
     protected abstract Pair<svm_node[][],double[][]> extractData(Dataset<T> data, ImmutableOutputInfo<T> outputInfo, ImmutableFeatureMap featureMap);
 
+    /**
+     * Converts the dataset's examples into libsvm's format, in the dataset's iteration order.
+     * <p>
+     * Uses the configured number of threads, and the cache if it's enabled. The returned
+     * arrays may be shared with other train calls and the trained svm_models, so they must
+     * not be modified.
+     * @param data The input data.
+     * @param featureMap The feature info.
+     * @return The features.
+     */
+    protected svm_node[][] extractFeatures(Dataset<T> data, ImmutableFeatureMap featureMap) {
+        return featureCache.convert(data,featureMap,cacheConvertedData,numThreads,svm_node[][]::new,() -> {
+            // Each thread gets its own buffer.
+            List<svm_node> buffer = new ArrayList<>();
+            return (Example<T> e) -> exampleToNodes(e,featureMap,buffer);
+        });
+    }
+
     /**
      * Constructs the svm_parameter. Most of the time this is a no-op, but
      * classification overrides it to incorporate label weights if they exist.
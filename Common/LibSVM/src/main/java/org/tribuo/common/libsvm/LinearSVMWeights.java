@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.tribuo.common.libsvm;
+
+import libsvm.svm_model;
+import libsvm.svm_node;
+import libsvm.svm_parameter;
+
+/**
+ * The support vectors of a linear kernel libsvm model collapsed into one weight
+ * vector per decision function, so computing a decision value is a single sparse
+ * dot product rather than one per support vector.
+ * <p>
+ * Mirrors {@code svm.svm_predict_values}, including the one vs one voting for
+ * classification, up to floating point summation order. The weights are stored
+ * feature major, with a dense row of decision function weights per feature id.
+ * <p>
+ * The dense weights can be much larger than the support vectors when there are many
+ * features and few support vectors, so {@link #collapse} only collapses a model when
+ * they are no larger than the support vectors they replace.
+ */
+final class LinearSVMWeights {
+
+    private final int svmType;
+    private final int numFeatures;
+    private final int numFunctions;
+    private final int[] labels;
+    private final double[] rho;
+    private final double[] weights;
+
+    /**
+     * Collapses the support vectors of a linear kernel model.
+     * @param model The libsvm model, must use a linear kernel.
+     * @param numFeatures The number of features.
+     * @param numFunctions The number of decision functions.
+     */
+    private LinearSVMWeights(svm_model model, int numFeatures, int numFunctions) {
+        this.svmType = model.param.svm_type;
+        this.numFeatures = numFeatures;
+        this.numFunctions = numFunctions;
+        this.labels = model.label;
+        if (isClassification()) {
+            int nrClass = model.nr_class;
+            this.weights = new double[numFeatures * numFunctions];
+            int[] start = new int[nrClass];
+            for (int i = 1; i < nrClass; i++) {
+                start[i] = start[i-1] + model.nSV[i-1];
+            }
+            int p = 0;
+            for (int i = 0; i < nrClass; i++) {
+                for (int j = i+1; j < nrClass; j++) {
+                    double[] coef1 = model.sv_coef[j-1];
+                    double[] coef2 = model.sv_coef[i];
+                    for (int k = 0; k < model.nSV[i]; k++) {
+                        accumulate(p, coef1[start[i]+k], model.SV[start[i]+k]);
+                    }
+                    for (int k = 0; k < model.nSV[j]; k++) {
+                        accumulate(p, coef2[start[j]+k], model.SV[start[j]+k]);
+                    }
+                    p++;
+                }
+            }
+        } else {
+            this.weights = new double[numFeatures];
+            double[] coef = model.sv_coef[0];
+            for (int i = 0; i < model.l; i++) {
+                accumulate(0, coef[i], model.SV[i]);
+            }
+        }
+        this.rho = new double[numFunctions];
+        System.arraycopy(model.rho, 0, rho, 0, numFunctions);
+    }
+
+    /**
+     * Collapses the support vectors of a linear kernel model, if the dense weights
+     * have no more elements than the support vectors.
+     * @param model The libsvm model, must use a linear kernel.
+     * @param numFeatures The number of features.
+     * @return The collapsed weights, or null if they would be larger than the support vectors.
+     */
+    static LinearSVMWeights collapse(svm_model model, int numFeatures) {
+        if (model.param.kernel_type != svm_parameter.LINEAR) {
+            throw new IllegalArgumentException("Can only collapse linear kernel models, found kernel type " + model.param.kernel_type);
+        }
+        int numFunctions = isClassification(model.param.svm_type) ? model.nr_class * (model.nr_class - 1) / 2 : 1;
+        long denseSize = (long) numFeatures * numFunctions;
+        long supportVectorSize = 0;
+        for (svm_node[] supportVector : model.SV) {
+            supportVectorSize += supportVector.length;
+        }
+        if (denseSize > supportVectorSize) {
+            return null;
+        } else {
+            return new LinearSVMWeights(model, numFeatures, numFunctions);
+        }
+    }
+
+    private boolean isClassification() {
+        return isClassification(svmType);
+    }
+
+    private static boolean isClassification(int svmType) {
+        return (svmType == svm_parameter.C_SVC) || (svmType == svm_parameter.NU_SVC);
+    }
+
+    private void accumulate(int function, double coef, svm_node[] supportVector) {
+        for (svm_node n : supportVector) {
+            weights[(n.index * numFunctions) + function] += coef * n.value;
+        }
+    }
+
+    /**
+     * Computes the decision values, with the same return value as {@code svm.svm_predict_values}.
+     * @param features The sparse features, with indices from the model's feature map.
+     * @param decValues Output array for the decision values.
+     * @return The predicted label for classification, +1/-1 for one class, or the regressed value.
+     */
+    double predictValues(svm_node[] features, double[] decValues) {
+        for (int p = 0; p < numFunctions; p++) {
+            decValues[p] = 0.0;
+        }
+        for (svm_node n : features) {
+            if ((n.index >= 0) && (n.index < numFeatures)) {
+                int offset = n.index * numFunctions;
+                for (int p = 0; p < numFunctions; p++) {
+                    decValues[p] += weights[offset + p] * n.value;
+                }
+            }
+        }
+        for (int p = 0; p < numFunctions; p++) {
+            decValues[p] -= rho[p];
+        }
+
+        if (isClassification()) {
+            int nrClass = labels.length;
+            int[] votes = new int[nrClass];
+            int p = 0;
+            for (int i = 0; i < nrClass; i++) {
+                for (int j = i+1; j < nrClass; j++) {
+                    if (decValues[p] > 0) {
+                        votes[i]++;
+                    } else {
+                        votes[j]++;
+                    }
+                    p++;
+                }
+            }
+            int maxIdx = 0;
+            for (int i = 1; i < nrClass; i++) {
+                if (votes[i] > votes[maxIdx]) {
+                    maxIdx = i;
+                }
+            }
+            return labels[maxIdx];
+        } else if (svmType == svm_parameter.ONE_CLASS) {
+            return decValues[0] > 0 ? 1 : -1;
+        } else {
+            return decValues[0];
+        }
+    }
+}
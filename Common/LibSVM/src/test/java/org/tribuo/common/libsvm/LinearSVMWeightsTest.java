@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.tribuo.common.libsvm;
+
+import libsvm.svm;
+import libsvm.svm_model;
+import libsvm.svm_node;
+import libsvm.svm_parameter;
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class LinearSVMWeightsTest {
+
+    private static svm_node[] randomVector(SplittableRandom rng, int numFeatures, int numActive) {
+        svm_node[] nodes = new svm_node[numActive];
+        int stride = numFeatures / numActive;
+        for (int i = 0; i < numActive; i++) {
+            nodes[i] = new svm_node();
+            nodes[i].index = (i * stride) + rng.nextInt(stride);
+            nodes[i].value = rng.nextDouble(-1, 1);
+        }
+        return nodes;
+    }
+
+    private static svm_model randomModel(SplittableRandom rng, int svmType, int nrClass, int svPerClass, int numFeatures, int numActive) {
+        svm_model model = new svm_model();
+        model.param = new svm_parameter();
+        model.param.svm_type = svmType;
+        model.param.kernel_type = svm_parameter.LINEAR;
+        model.nr_class = nrClass;
+        int numFunctions;
+        if (svmType == svm_parameter.C_SVC) {
+            model.l = nrClass * svPerClass;
+            model.label = new int[nrClass];
+            model.nSV = new int[nrClass];
+            for (int i = 0; i < nrClass; i++) {
+                model.label[i] = i;
+                model.nSV[i] = svPerClass;
+            }
+            numFunctions = nrClass * (nrClass - 1) / 2;
+        } else {
+            model.l = svPerClass;
+            numFunctions = 1;
+        }
+        model.SV = new svm_node[model.l][];
+        for (int i = 0; i < model.l; i++) {
+            model.SV[i] = randomVector(rng, numFeatures, numActive);
+        }
+        model.sv_coef = new double[Math.max(nrClass - 1, 1)][model.l];
+        for (double[] coef : model.sv_coef) {
+            for (int i = 0; i < coef.length; i++) {
+                coef[i] = rng.nextDouble(-1, 1);
+            }
+        }
+        model.rho = new double[numFunctions];
+        for (int i = 0; i < numFunctions; i++) {
+            model.rho[i] = rng.nextDouble(-1, 1);
+        }
+        return model;
+    }
+
+    private static void checkAgainstLibSVM(SplittableRandom rng, svm_model model, int numFeatures, int numFunctions) {
+        LinearSVMWeights weights = LinearSVMWeights.collapse(model, numFeatures);
+        assertNotNull(weights);
+        double[] expected = new double[numFunctions];
+        double[] actual = new double[numFunctions];
+        for (int i = 0; i < 50; i++) {
+            svm_node[] x = randomVector(rng, numFeatures, 4);
+            double expectedValue = svm.svm_predict_values(model, x, expected);
+            double actualValue = weights.predictValues(x, actual);
+            assertEquals(expectedValue, actualValue, 1e-10);
+            for (int j = 0; j < numFunctions; j++) {
+                assertEquals(expected[j], actual[j], 1e-10);
+            }
+        }
+    }
+
+    @Test
+    public void testMatchesLibSVM() {
+        SplittableRandom rng = new SplittableRandom(1);
+        checkAgainstLibSVM(rng, randomModel(rng, svm_parameter.C_SVC, 4, 10, 8, 4), 8, 6);
+        checkAgainstLibSVM(rng, randomModel(rng, svm_parameter.ONE_CLASS, 2, 10, 8, 4), 8, 1);
+        checkAgainstLibSVM(rng, randomModel(rng, svm_parameter.EPSILON_SVR, 2, 10, 8, 4), 8, 1);
+    }
+
+    @Test
+    public void testLargeModelsAreNotCollapsed() {
+        SplittableRandom rng = new SplittableRandom(1);
+        // 3 support vectors with 4 active features each, vs a dense 1000 feature weight vector.
+        svm_model regression = randomModel(rng, svm_parameter.EPSILON_SVR, 2, 3, 1000, 4);
+        assertNull(LinearSVMWeights.collapse(regression, 1000));
+        // 12 stored support vector features, vs 4 features times 3 decision functions.
+        svm_model classification = randomModel(rng, svm_parameter.C_SVC, 3, 1, 4, 4);
+        assertNotNull(LinearSVMWeights.collapse(classification, 4));
+        assertNull(LinearSVMWeights.collapse(classification, 5));
+        // The dense size is computed without int overflow.
+        assertNull(LinearSVMWeights.collapse(classification, Integer.MAX_VALUE));
+    }
+}
@@ -49,6 +49,16 @@ public abstract class AbstractLinearSGDModel<T extends Output<T>> extends Model<
     // Note this is not final to allow backwards compatibility for 4.0 models which need to rewrite the field on load.
     protected DenseMatrix baseWeights;
 
+    /**
+     * Should the scorer copy the weights into a feature major array, see {@link LinearScorer}.
+     */
+    private boolean compileScorer = false;
+
+    /**
+     * The scorer over {@link #baseWeights}, built lazily on first prediction and after deserialization.
+     */
+    private transient volatile LinearScorer scorer;
+
     /**
      * Constructs a linear model trained via SGD.
      * @param name The model name.
@@ -83,6 +93,43 @@ public abstract class AbstractLinearSGDModel<T extends Output<T>> extends Model<
         return new PredAndActive(baseWeights.leftMultiply(features),features.numActiveElements());
     }
 
+    /**
+     * Returns the scorer for this model's weights, building it if necessary.
+     * <p>
+     * Prediction methods should prefer this over {@link #predictSingle} as it scores the example
+     * without allocating intermediate vectors.
+     * @return The linear scorer.
+     */
+    protected LinearScorer getScorer() {
+        LinearScorer curScorer = scorer;
+        if (curScorer == null) {
+            // Racing threads may each build a scorer, but they are identical so it doesn't matter which is kept.
+            curScorer = new LinearScorer(baseWeights, featureIDMap, compileScorer);
+            scorer = curScorer;
+        }
+        return curScorer;
+    }
+
+    /**
+     * Sets whether this model scores examples using a feature major copy of its weights,
+     * see {@link LinearScorer}. The copy is faster but doubles the memory used by the weights.
+     * <p>
+     * Called by the trainer, and by subclasses when copying the model.
+     * @param compileScorer If true copy the weights when building the scorer.
+     */
+    protected void setCompileScorer(boolean compileScorer) {
+        this.compileScorer = compileScorer;
+        this.scorer = null;
+    }
+
+    /**
+     * Does this model score examples using a feature major copy of its weights?
+     * @return True if the scorer copies the weights.
+     */
+    protected boolean isCompileScorer() {
+        return compileScorer;
+    }
+
     @Override
     public Map<String, List<Pair<String, Double>>> getTopFeatures(int n) {
         int maxFeatures = n < 0 ? featureIDMap.size() + 1 : n;
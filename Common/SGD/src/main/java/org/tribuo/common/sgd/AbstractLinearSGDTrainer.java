@@ -19,16 +19,22 @@ package org.tribuo.common.sgd;
 import com.oracle.labs.mlrg.olcut.config.Config;
 import com.oracle.labs.mlrg.olcut.provenance.Provenance;
 import com.oracle.labs.mlrg.olcut.util.Pair;
+import org.tribuo.CategoricalInfo;
 import org.tribuo.Dataset;
 import org.tribuo.Example;
+import org.tribuo.FeatureMap;
 import org.tribuo.ImmutableFeatureMap;
 import org.tribuo.ImmutableOutputInfo;
+import org.tribuo.IncrementalTrainer;
 import org.tribuo.Model;
 import org.tribuo.Output;
+import org.tribuo.RealInfo;
 import org.tribuo.Trainer;
+import org.tribuo.VariableInfo;
 import org.tribuo.WeightedExamples;
 import org.tribuo.math.LinearParameters;
 import org.tribuo.math.StochasticGradientOptimiser;
+import org.tribuo.math.la.DenseMatrix;
 import org.tribuo.math.la.DenseVector;
 import org.tribuo.math.la.SGDVector;
 import org.tribuo.math.la.SparseVector;
@@ -39,7 +45,10 @@ import org.tribuo.provenance.TrainerProvenance;
 import org.tribuo.provenance.impl.TrainerProvenanceImpl;
 
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.SplittableRandom;
 import java.util.logging.Logger;
@@ -47,6 +56,10 @@ import java.util.logging.Logger;
 /**
  * A trainer for a linear model which uses SGD.
  * <p>
+ * Supports incremental training, where an existing model is updated with new data,
+ * see {@link #incrementalTrain(Dataset, AbstractLinearSGDModel)}. The optimiser can be continued
+ * across updates by keeping its state, see {@link #trainWithOptimiserState(Dataset, Map)}.
+ * <p>
  * See:
  * <pre>
  * Bottou L.
@@ -54,9 +67,15 @@ import java.util.logging.Logger;
  * Proceedings of COMPSTAT, 2010.
  * </pre>
  */
-public abstract class AbstractLinearSGDTrainer<T extends Output<T>,U> implements Trainer<T>, WeightedExamples {
+public abstract class AbstractLinearSGDTrainer<T extends Output<T>,U> implements IncrementalTrainer<T,AbstractLinearSGDModel<T>>, WeightedExamples {
     private static final Logger logger = Logger.getLogger(AbstractLinearSGDTrainer.class.getName());
 
+    /**
+     * The key in an incrementally trained model's instance provenance which holds the
+     * provenance of the model it was trained from.
+     */
+    public static final String PARENT_MODEL_PROVENANCE = "parent-model";
+
     @Config(description="The gradient optimiser to use.")
     protected StochasticGradientOptimiser optimiser = new AdaGrad(1.0,0.1);
 
@@ -75,6 +94,9 @@ public abstract class AbstractLinearSGDTrainer<T extends Output<T>,U> implements
     @Config(description="Shuffle the data before each epoch. Only turn off for debugging.")
     protected boolean shuffle = true;
 
+    @Config(description="Store a feature major copy of the weights in the trained models for faster prediction, doubling the memory used by the weights.")
+    protected boolean compileScorer = false;
+
     protected SplittableRandom rng;
 
     private int trainInvocationCounter;
@@ -145,6 +167,16 @@ public abstract class AbstractLinearSGDTrainer<T extends Output<T>,U> implements
         this.shuffle = shuffle;
     }
 
+    /**
+     * Turn on or off the feature major copy of the weights used when scoring, see {@link LinearScorer}.
+     * <p>
+     * This trades memory for prediction speed, and defaults to off.
+     * @param compileScorer If true trained models store a compiled copy of their weights.
+     */
+    public void setCompileScorer(boolean compileScorer) {
+        this.compileScorer = compileScorer;
+    }
+
     @Override
     public AbstractLinearSGDModel<T> train(Dataset<T> examples) {
         return train(examples, Collections.emptyMap());
@@ -152,6 +184,35 @@ public abstract class AbstractLinearSGDTrainer<T extends Output<T>,U> implements
 
     @Override
     public AbstractLinearSGDModel<T> train(Dataset<T> examples, Map<String, Provenance> runProvenance) {
+        return train(examples, runProvenance, false).getA();
+    }
+
+    /**
+     * Trains a model, and returns it along with the optimiser state at the end of training.
+     * <p>
+     * The state can be passed to {@link #incrementalTrain(Dataset, AbstractLinearSGDModel, OptimiserState)}
+     * to continue the optimisation on new data (e.g., keeping the AdaGrad accumulators), rather than
+     * restarting the optimiser from the model's weights. It's one or two matrices the size of the
+     * model's weights, depending on the optimiser.
+     * <p>
+     * Throws {@link IllegalArgumentException} if the optimiser can't be continued after finalisation,
+     * see {@link StochasticGradientOptimiser#copyWithState()}.
+     * @param examples The training data.
+     * @param runProvenance Run specific provenance (e.g., CV fold number).
+     * @return The trained model and the optimiser state.
+     */
+    public Pair<AbstractLinearSGDModel<T>,OptimiserState> trainWithOptimiserState(Dataset<T> examples, Map<String, Provenance> runProvenance) {
+        return train(examples, runProvenance, true);
+    }
+
+    /**
+     * Trains a model, optionally keeping the optimiser state.
+     * @param examples The training data.
+     * @param runProvenance Run specific provenance.
+     * @param keepState Should the optimiser state be returned.
+     * @return The trained model and the optimiser state, or null if it wasn't kept.
+     */
+    private Pair<AbstractLinearSGDModel<T>,OptimiserState> train(Dataset<T> examples, Map<String, Provenance> runProvenance, boolean keepState) {
         if (examples.getOutputInfo().getUnknownCount() > 0) {
             throw new IllegalArgumentException("The supplied Dataset contained unknown Outputs, and this Trainer is supervised.");
         }
@@ -160,15 +221,207 @@ public abstract class AbstractLinearSGDTrainer<T extends Output<T>,U> implements
         SplittableRandom localRNG;
         StochasticGradientOptimiser localOptimiser;
         synchronized(this) {
-            localRNG = rng.split();
             localOptimiser = optimiser.copy();
+            if (keepState && !localOptimiser.copyWithState().isPresent()) {
+                throw new IllegalArgumentException("Optimiser " + localOptimiser + " can't be continued after training, so has no state to keep.");
+            }
+            localRNG = rng.split();
             trainerProvenance = getProvenance();
             trainInvocationCounter++;
         }
 
-        SGDObjective<U> objective = getObjective();
         ImmutableOutputInfo<T> outputIDInfo = examples.getOutputIDInfo();
         ImmutableFeatureMap featureIDMap = examples.getFeatureIDMap();
+
+        logger.info(String.format("Training linear SGD model with %d examples", examples.size()));
+        logger.info("Outputs - " + outputIDInfo.toReadableString());
+
+        // featureIDMap.size()+1 adds the bias feature.
+        LinearParameters linearParameters = new LinearParameters(featureIDMap.size()+1,outputIDInfo.size());
+
+        localOptimiser.initialise(linearParameters);
+        trainParameters(examples,featureIDMap,outputIDInfo,linearParameters,localOptimiser,localRNG);
+        localOptimiser.finalise();
+        ModelProvenance provenance = new ModelProvenance(getModelClassName(), OffsetDateTime.now(), examples.getProvenance(), trainerProvenance, runProvenance);
+        AbstractLinearSGDModel<T> model = createModel("linear-sgd-model",provenance,featureIDMap,outputIDInfo,linearParameters);
+        model.setCompileScorer(compileScorer);
+        return new Pair<>(model,finishOptimiser(localOptimiser,linearParameters,keepState));
+    }
+
+    /**
+     * Continues training the supplied model on the new data, making the same number of
+     * passes as {@link #train} but only over the new examples.
+     * <p>
+     * The optimiser starts afresh from the model's weights. To continue the optimiser from
+     * the end of the model's training run use
+     * {@link #incrementalTrain(Dataset, AbstractLinearSGDModel, OptimiserState)}.
+     * <p>
+     * Features in the new data which are unknown to the model are added to the feature domain.
+     * As Tribuo's feature ids are assigned in lexicographic order, the existing weights are
+     * remapped into the enlarged feature space, with the new features starting at zero.
+     * The feature statistics of the new data are merged into the model's feature domain.
+     * The outputs in the new data must all be known to the model.
+     * <p>
+     * The new model's provenance records the new data, and stores the supplied model's provenance
+     * in its instance provenance under {@link #PARENT_MODEL_PROVENANCE}.
+     * <p>
+     * The supplied model is not modified.
+     * @param newData The additional training data.
+     * @param model The model to update.
+     * @return A new model trained on the new data.
+     */
+    @Override
+    public AbstractLinearSGDModel<T> incrementalTrain(Dataset<T> newData, AbstractLinearSGDModel<T> model) {
+        return incrementalTrain(newData, model, null, false).getA();
+    }
+
+    /**
+     * Continues training the supplied model on the new data, continuing the optimiser from
+     * the supplied state, and returns the new model along with the optimiser's new state.
+     * <p>
+     * The state must come from the training run which produced the model, i.e., from
+     * {@link #trainWithOptimiserState} or a previous call to this method. It's copied before use,
+     * so neither the model nor the state are modified and they can be updated again.
+     * Any optimiser state for features added by the new data starts at zero, as do their weights,
+     * see {@link #incrementalTrain(Dataset, AbstractLinearSGDModel)}.
+     * @param newData The additional training data.
+     * @param model The model to update.
+     * @param state The optimiser state from the training run which produced the model.
+     * @return A new model trained on the new data, and the optimiser state after this update.
+     */
+    public Pair<AbstractLinearSGDModel<T>,OptimiserState> incrementalTrain(Dataset<T> newData, AbstractLinearSGDModel<T> model, OptimiserState state) {
+        if (state == null) {
+            throw new IllegalArgumentException("state must not be null, use incrementalTrain(Dataset,AbstractLinearSGDModel) to restart the optimiser.");
+        }
+        return incrementalTrain(newData, model, state, true);
+    }
+
+    /**
+     * Continues training the supplied model on the new data.
+     * @param newData The additional training data.
+     * @param model The model to update.
+     * @param state The optimiser state to continue, or null to restart the optimiser.
+     * @param keepState Should the optimiser state be returned.
+     * @return The new model and the optimiser state, or null if it wasn't kept.
+     */
+    private Pair<AbstractLinearSGDModel<T>,OptimiserState> incrementalTrain(Dataset<T> newData, AbstractLinearSGDModel<T> model, OptimiserState state, boolean keepState) {
+        ImmutableOutputInfo<T> outputIDInfo = model.getOutputIDInfo();
+        if (newData.getOutputInfo().getUnknownCount() > 0) {
+            throw new IllegalArgumentException("The supplied Dataset contained unknown Outputs, and this Trainer is supervised.");
+        }
+        for (T output : newData.getOutputInfo().getDomain()) {
+            if (outputIDInfo.getID(output) == -1) {
+                throw new IllegalArgumentException("The supplied Dataset contained output " + output + " which is not known to the model.");
+            }
+        }
+        StochasticGradientOptimiser localOptimiser = state == null ? null : state.copyOptimiser(model.baseWeights);
+        TrainerProvenance trainerProvenance;
+        SplittableRandom localRNG;
+        synchronized(this) {
+            localRNG = rng.split();
+            trainerProvenance = getProvenance();
+            trainInvocationCounter++;
+        }
+
+        // Merge the feature statistics and extend the feature domain with any new features.
+        ImmutableFeatureMap oldFeatureMap = model.getFeatureIDMap();
+        FeatureMap newFeatureMap = newData.getFeatureMap();
+        List<VariableInfo> infos = new ArrayList<>();
+        for (VariableInfo info : oldFeatureMap) {
+            VariableInfo newInfo = newFeatureMap.get(info.getName());
+            infos.add(newInfo == null ? info : mergeInfo(info,newInfo));
+        }
+        for (VariableInfo info : newFeatureMap) {
+            if (oldFeatureMap.get(info.getName()) == null) {
+                infos.add(info);
+            }
+        }
+
+        // Ids are assigned in name order, so they're unchanged if there are no new features.
+        ImmutableFeatureMap featureIDMap = new ImmutableFeatureMap(infos);
+        LinearParameters linearParameters;
+        if (infos.size() == oldFeatureMap.size()) {
+            linearParameters = new LinearParameters(model.getWeightsCopy());
+        } else {
+            int numOldFeatures = oldFeatureMap.size();
+            int newDim2 = featureIDMap.size() + 1;
+            // Maps the old columns (including the bias) to the new ones.
+            int[] columnMapping = new int[numOldFeatures + 1];
+            for (int i = 0; i < numOldFeatures; i++) {
+                columnMapping[i] = featureIDMap.getID(oldFeatureMap.get(i).getName());
+            }
+            columnMapping[numOldFeatures] = featureIDMap.size();
+            linearParameters = new LinearParameters(expandColumns(model.baseWeights,columnMapping,newDim2));
+            if ((localOptimiser != null) && !localOptimiser.transformState((Tensor t) -> expandColumns(t,columnMapping,newDim2))) {
+                throw new IllegalStateException("Optimiser " + localOptimiser + " couldn't expand its state to the new features.");
+            }
+            logger.info("Added " + (featureIDMap.size() - numOldFeatures) + " new features to the model.");
+        }
+        if (localOptimiser == null) {
+            synchronized(this) {
+                localOptimiser = optimiser.copy();
+            }
+            if (keepState && !localOptimiser.copyWithState().isPresent()) {
+                throw new IllegalArgumentException("Optimiser " + localOptimiser + " can't be continued after training, so has no state to keep.");
+            }
+            localOptimiser.initialise(linearParameters);
+        }
+
+        logger.info(String.format("Incrementally training linear SGD model with %d examples", newData.size()));
+        trainParameters(newData,featureIDMap,outputIDInfo,linearParameters,localOptimiser,localRNG);
+        localOptimiser.finalise();
+        ModelProvenance provenance = new ModelProvenance(getModelClassName(), OffsetDateTime.now(), newData.getProvenance(), trainerProvenance, Collections.singletonMap(PARENT_MODEL_PROVENANCE,model.getProvenance()));
+        AbstractLinearSGDModel<T> newModel = createModel(model.getName(),provenance,featureIDMap,outputIDInfo,linearParameters);
+        newModel.setCompileScorer(compileScorer);
+        return new Pair<>(newModel,finishOptimiser(localOptimiser,linearParameters,keepState));
+    }
+
+    /**
+     * Merges the statistics of a feature which appears in both the model and the new data.
+     * <p>
+     * Categorical features stay categorical unless the merged info has more than
+     * {@link CategoricalInfo#THRESHOLD} values, matching {@link org.tribuo.MutableFeatureMap}.
+     * Otherwise both infos are treated as real valued.
+     * @param oldInfo The info from the model's feature map.
+     * @param newInfo The info from the new data.
+     * @return The merged info.
+     */
+    private static VariableInfo mergeInfo(VariableInfo oldInfo, VariableInfo newInfo) {
+        if ((oldInfo instanceof CategoricalInfo) && (newInfo instanceof CategoricalInfo)) {
+            CategoricalInfo merged = ((CategoricalInfo) oldInfo).merge((CategoricalInfo) newInfo);
+            return merged.getUniqueObservations() > CategoricalInfo.THRESHOLD ? merged.generateRealInfo() : merged;
+        }
+        RealInfo oldReal = toRealInfo(oldInfo);
+        RealInfo newReal = toRealInfo(newInfo);
+        if ((oldReal == null) || (newReal == null)) {
+            // Unknown info type, keep the model's statistics.
+            return oldInfo;
+        }
+        return oldReal.merge(newReal);
+    }
+
+    private static RealInfo toRealInfo(VariableInfo info) {
+        if (info instanceof RealInfo) {
+            return (RealInfo) info;
+        } else if (info instanceof CategoricalInfo) {
+            return ((CategoricalInfo) info).generateRealInfo();
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Runs the SGD epochs over the supplied data, updating the parameters in place.
+     * @param examples The training data.
+     * @param featureIDMap The feature domain to use.
+     * @param outputIDInfo The output domain to use.
+     * @param linearParameters The parameters to update.
+     * @param localOptimiser The initialised optimiser.
+     * @param localRNG The RNG used for shuffling.
+     */
+    private void trainParameters(Dataset<T> examples, ImmutableFeatureMap featureIDMap, ImmutableOutputInfo<T> outputIDInfo,
+                                 LinearParameters linearParameters, StochasticGradientOptimiser localOptimiser, SplittableRandom localRNG) {
+        SGDObjective<U> objective = getObjective();
         int featureSpaceSize = featureIDMap.size();
 
         SGDVector[] sgdFeatures = new SGDVector[examples.size()];
@@ -186,13 +439,7 @@ public abstract class AbstractLinearSGDTrainer<T extends Output<T>,U> implements
             sgdTargets[n] = getTarget(outputIDInfo,example.getOutput());
             n++;
         }
-        logger.info(String.format("Training linear SGD model with %d examples", n));
-        logger.info("Outputs - " + outputIDInfo.toReadableString());
 
-        // featureIDMap.size()+1 adds the bias feature.
-        LinearParameters linearParameters = new LinearParameters(featureIDMap.size()+1,outputIDInfo.size());
-
-        localOptimiser.initialise(linearParameters);
         double loss = 0.0;
         int iteration = 0;
 
@@ -245,11 +492,43 @@ public abstract class AbstractLinearSGDTrainer<T extends Output<T>,U> implements
                 }
             }
         }
-        localOptimiser.finalise();
-        ModelProvenance provenance = new ModelProvenance(getModelClassName(), OffsetDateTime.now(), examples.getProvenance(), trainerProvenance, runProvenance);
-        AbstractLinearSGDModel<T> model = createModel("linear-sgd-model",provenance,featureIDMap,outputIDInfo,linearParameters);
-        localOptimiser.reset();
-        return model;
+    }
+
+    /**
+     * Wraps the finalised optimiser as an {@link OptimiserState} if it's being kept, otherwise resets it.
+     * @param localOptimiser The finalised optimiser.
+     * @param parameters The trained parameters.
+     * @param keepState Should the state be kept.
+     * @return The optimiser state, or null if it isn't kept.
+     */
+    private static OptimiserState finishOptimiser(StochasticGradientOptimiser localOptimiser, LinearParameters parameters, boolean keepState) {
+        if (keepState) {
+            return new OptimiserState(localOptimiser,parameters.getWeightMatrix());
+        } else {
+            localOptimiser.reset();
+            return null;
+        }
+    }
+
+    /**
+     * Copies the columns of the supplied matrix into a wider matrix, using the mapping to find their new location.
+     * @param tensor The matrix to expand.
+     * @param columnMapping The mapping from old column indices to new column indices.
+     * @param newDim2 The new number of columns.
+     * @return The expanded matrix.
+     */
+    private static DenseMatrix expandColumns(Tensor tensor, int[] columnMapping, int newDim2) {
+        if (!(tensor instanceof DenseMatrix) || ((DenseMatrix) tensor).getDimension2Size() != columnMapping.length) {
+            throw new IllegalStateException("Expected a DenseMatrix with " + columnMapping.length + " columns, found " + tensor.getClass().getName() + " with shape " + Arrays.toString(tensor.getShape()));
+        }
+        DenseMatrix matrix = (DenseMatrix) tensor;
+        DenseMatrix output = new DenseMatrix(matrix.getDimension1Size(),newDim2);
+        for (int i = 0; i < matrix.getDimension1Size(); i++) {
+            for (int j = 0; j < columnMapping.length; j++) {
+                output.set(i,columnMapping[j],matrix.get(i,j));
+            }
+        }
+        return output;
     }
 
     @Override
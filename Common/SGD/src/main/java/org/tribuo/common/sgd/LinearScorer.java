@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.tribuo.common.sgd;
+
+import org.tribuo.Example;
+import org.tribuo.Feature;
+import org.tribuo.ImmutableFeatureMap;
+import org.tribuo.math.la.DenseMatrix;
+
+/**
+ * Scores examples against a linear model's weights with low allocation.
+ * <p>
+ * Feature names are resolved to ids in a single pass over the {@link Example} and accumulated
+ * directly into a score array, without building an intermediate {@link org.tribuo.math.la.SGDVector}
+ * and multiplying it through the weight matrix.
+ * <p>
+ * The scorer has two layouts. By default it wraps the supplied weight matrix without copying it,
+ * so it costs a few fields on top of the model. Compiled scorers instead copy the weights
+ * feature major into a single primitive array, so each feature contributes a contiguous block of
+ * values, one per output dimension. This is faster for models with many outputs, but doubles the
+ * memory used by the weights. In both cases the weight matrix must not be modified while the
+ * scorer is in use.
+ * <p>
+ * {@link #getBuffer()} supplies a per thread score array sized to the number of outputs,
+ * which callers reuse for each prediction and convert into a {@link org.tribuo.Prediction}
+ * at the end.
+ * <p>
+ * As with {@link org.tribuo.math.la.SparseVector#createSparseVector}, duplicate features in an
+ * example have their values summed.
+ */
+public final class LinearScorer {
+
+    private final ImmutableFeatureMap featureIDMap;
+    private final int numOutputs;
+    private final int numFeatures;
+    private final DenseMatrix weights;
+    private final double[] compiledWeights;
+    private final ThreadLocal<double[]> buffer;
+
+    /**
+     * Wraps the supplied weight matrix without copying it.
+     * @param weightMatrix The weights, of size [numOutputs, numFeatures + 1] with the bias in the last column.
+     * @param featureIDMap The feature domain.
+     */
+    public LinearScorer(DenseMatrix weightMatrix, ImmutableFeatureMap featureIDMap) {
+        this(weightMatrix,featureIDMap,false);
+    }
+
+    /**
+     * Builds a scorer for the supplied weight matrix, optionally compiling it into a feature major array.
+     * @param weightMatrix The weights, of size [numOutputs, numFeatures + 1] with the bias in the last column.
+     * @param featureIDMap The feature domain.
+     * @param compile If true copy the weights into a feature major array, otherwise wrap the weight matrix.
+     */
+    public LinearScorer(DenseMatrix weightMatrix, ImmutableFeatureMap featureIDMap, boolean compile) {
+        if (weightMatrix.getDimension2Size() != featureIDMap.size() + 1) {
+            throw new IllegalArgumentException("Weight matrix has " + weightMatrix.getDimension2Size() + " columns, expected " + (featureIDMap.size() + 1));
+        }
+        this.featureIDMap = featureIDMap;
+        this.numOutputs = weightMatrix.getDimension1Size();
+        this.numFeatures = featureIDMap.size();
+        if (compile) {
+            this.weights = null;
+            this.compiledWeights = new double[(numFeatures + 1) * numOutputs];
+            for (int i = 0; i < numOutputs; i++) {
+                for (int j = 0; j < numFeatures + 1; j++) {
+                    compiledWeights[j * numOutputs + i] = weightMatrix.get(i,j);
+                }
+            }
+        } else {
+            this.weights = weightMatrix;
+            this.compiledWeights = null;
+        }
+        final int size = numOutputs;
+        this.buffer = ThreadLocal.withInitial(() -> new double[size]);
+    }
+
+    /**
+     * The number of output dimensions.
+     * @return The number of outputs.
+     */
+    public int getNumOutputs() {
+        return numOutputs;
+    }
+
+    /**
+     * Is this scorer using a feature major copy of the weights?
+     * @return True if the weights were compiled.
+     */
+    public boolean isCompiled() {
+        return compiledWeights != null;
+    }
+
+    /**
+     * Returns this thread's score buffer, which has length {@link #getNumOutputs()}.
+     * <p>
+     * The buffer is reused by every call on this thread, so the values must be copied out
+     * before scoring another example.
+     * @return The score buffer.
+     */
+    public double[] getBuffer() {
+        return buffer.get();
+    }
+
+    /**
+     * Creates a fresh score array of length {@link #getNumOutputs()}, for callers which
+     * need to keep the scores.
+     * @return A new score array.
+     */
+    public double[] createBuffer() {
+        return new double[numOutputs];
+    }
+
+    /**
+     * Computes the unnormalised scores for the example, overwriting the supplied array.
+     * <p>
+     * Throws {@link IllegalArgumentException} if the example contains a NaN valued feature,
+     * or if none of its features are known to the model.
+     * @param example The example to score.
+     * @param scores The output array, of length {@link #getNumOutputs()}.
+     * @return The number of features used to compute the scores, excluding the bias.
+     */
+    public int score(Example<?> example, double[] scores) {
+        // Start from the bias.
+        if (compiledWeights != null) {
+            System.arraycopy(compiledWeights,numFeatures * numOutputs,scores,0,numOutputs);
+        } else {
+            for (int i = 0; i < numOutputs; i++) {
+                scores[i] = weights.get(i,numFeatures);
+            }
+        }
+        int numUsed = 0;
+        int prevIdx = -1;
+        for (Feature f : example) {
+            int id = featureIDMap.getID(f.getName());
+            if (id > -1) {
+                double value = f.getValue();
+                if (Double.isNaN(value)) {
+                    throw new IllegalArgumentException("Example contained a NaN feature, " + f.toString());
+                }
+                if (compiledWeights != null) {
+                    int offset = id * numOutputs;
+                    for (int i = 0; i < numOutputs; i++) {
+                        scores[i] += value * compiledWeights[offset + i];
+                    }
+                } else {
+                    for (int i = 0; i < numOutputs; i++) {
+                        scores[i] += value * weights.get(i,id);
+                    }
+                }
+                // Features are usually sorted, so a repeated id is a duplicate which has already been counted.
+                if (id != prevIdx) {
+                    numUsed++;
+                }
+                prevIdx = id;
+            }
+        }
+        if (numUsed == 0) {
+            throw new IllegalArgumentException("No features found in Example " + example.toString());
+        }
+        // Dense examples are counted as using every feature.
+        return example.size() == numFeatures ? numFeatures : numUsed;
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.tribuo.common.sgd;
+
+import org.tribuo.math.StochasticGradientOptimiser;
+import org.tribuo.math.la.DenseMatrix;
+
+import java.util.Arrays;
+
+/**
+ * The optimiser state at the end of a linear SGD training run, used to continue the optimisation
+ * with {@link AbstractLinearSGDTrainer#incrementalTrain(org.tribuo.Dataset, AbstractLinearSGDModel, OptimiserState)}.
+ * <p>
+ * Holds the optimiser's per parameter state (e.g., the AdaGrad accumulators or the Adam moments),
+ * which is one or two matrices the same size as the model's weights, so it should only be kept
+ * while further updates are expected. It's only produced when requested, and isn't serializable.
+ * <p>
+ * Continuing training copies the state, so the same state can be used more than once.
+ */
+public final class OptimiserState {
+
+    private final StochasticGradientOptimiser optimiser;
+    private final int[] shape;
+
+    /**
+     * Wraps a finalised optimiser.
+     * @param optimiser The optimiser, which must support {@link StochasticGradientOptimiser#copyWithState()}.
+     * @param weights The weights the optimiser was training.
+     */
+    OptimiserState(StochasticGradientOptimiser optimiser, DenseMatrix weights) {
+        this.optimiser = optimiser;
+        this.shape = weights.getShape().clone();
+    }
+
+    /**
+     * Returns a copy of the optimiser which can continue training the supplied weights.
+     * @param weights The weights to continue training.
+     * @return A copy of the optimiser and its state.
+     */
+    StochasticGradientOptimiser copyOptimiser(DenseMatrix weights) {
+        if (!Arrays.equals(shape, weights.getShape())) {
+            throw new IllegalArgumentException("This optimiser state is for weights of shape " + Arrays.toString(shape) + ", but the model's weights have shape " + Arrays.toString(weights.getShape()));
+        }
+        return optimiser.copyWithState().orElseThrow(() -> new IllegalStateException("Optimiser " + optimiser + " can't be continued."));
+    }
+
+    @Override
+    public String toString() {
+        return "OptimiserState(optimiser=" + optimiser + ",shape=" + Arrays.toString(shape) + ")";
+    }
+}
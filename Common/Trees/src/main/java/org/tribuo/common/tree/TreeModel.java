@@ -103,6 +103,16 @@ public class TreeModel<T extends Output<T>> extends SparseModel<T> {
         return Collections.singletonMap(Model.ALL_OUTPUTS,new ArrayList<>(activeFeatures));
     }
 
+    /**
+     * Returns the root node of the tree.
+     * <p>
+     * Returns null for models which contain multiple trees.
+     * @return The root node.
+     */
+    public Node<T> getRoot() {
+        return root;
+    }
+
     /**
      * Probes the tree to find the depth.
      * @return The depth of the tree.
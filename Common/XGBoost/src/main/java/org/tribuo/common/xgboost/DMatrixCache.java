@@ -0,0 +1,302 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.tribuo.common.xgboost;
+
+import ml.dmlc.xgboost4j.java.XGBoostError;
+import org.tribuo.Dataset;
+import org.tribuo.Example;
+import org.tribuo.ImmutableFeatureMap;
+import org.tribuo.Output;
+import org.tribuo.common.xgboost.XGBoostTrainer.DMatrixTuple;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A cache of native {@link ml.dmlc.xgboost4j.java.DMatrix}es keyed on dataset identity, shared by
+ * the XGBoost trainers and models.
+ * <p>
+ * The cache holds the datasets weakly, and the native memory it keeps live is bounded by
+ * {@link #setMaxBytes}. When the bound is exceeded the least recently used matrices are freed,
+ * once any trainer or model currently using them has released them.
+ * <p>
+ * A cached matrix is only reused if the dataset returns the same example objects in the same order,
+ * and the feature ids are unchanged. Examples modified in place are not detected.
+ */
+final class DMatrixCache {
+
+    /**
+     * The default bound on the estimated native memory used by the cache, 1GB.
+     */
+    static final long DEFAULT_MAX_BYTES = 1L << 30;
+
+    private static final Map<Dataset<?>,List<Entry>> entries = new WeakHashMap<>();
+
+    private static long maxBytes = DEFAULT_MAX_BYTES;
+
+    private static long useCounter = 0;
+
+    private DMatrixCache() {}
+
+    /**
+     * Sets the bound on the estimated native memory held by the cache, evicting matrices if necessary.
+     * @param maxBytes The maximum number of bytes.
+     */
+    static synchronized void setMaxBytes(long maxBytes) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("maxBytes must be non-negative, found " + maxBytes);
+        }
+        DMatrixCache.maxBytes = maxBytes;
+        evict(0);
+    }
+
+    /**
+     * Removes all the matrices from the cache, freeing the ones which are not in use.
+     */
+    static synchronized void clear() {
+        for (List<Entry> list : entries.values()) {
+            for (Entry e : list) {
+                e.evict();
+            }
+        }
+        entries.clear();
+    }
+
+    /**
+     * The number of matrices currently cached.
+     * @return The number of cached matrices.
+     */
+    static synchronized int size() {
+        int size = 0;
+        for (List<Entry> list : entries.values()) {
+            size += list.size();
+        }
+        return size;
+    }
+
+    /**
+     * Gets the unlabelled matrix for this dataset and feature map, converting and caching it if necessary.
+     * <p>
+     * An exclusive lease holds a lock on the matrix until it is closed, which must be used by callers
+     * that set the labels or weights on the matrix.
+     * @param dataset The dataset to convert.
+     * @param featureMap The feature map which supplies the indices.
+     * @param exclusive Should the caller have sole use of the matrix.
+     * @param <T> The output type.
+     * @return A lease on the matrix which must be closed after use.
+     * @throws XGBoostError If the native library failed to construct the DMatrix.
+     */
+    @SuppressWarnings("unchecked") // Entries for a dataset are always built from that dataset's examples.
+    static <T extends Output<T>> Lease<T> acquire(Dataset<T> dataset, ImmutableFeatureMap featureMap, boolean exclusive) throws XGBoostError {
+        Entry entry;
+        synchronized (DMatrixCache.class) {
+            entry = find(dataset, featureMap);
+        }
+        if (entry == null) {
+            DMatrixTuple<T> tuple = XGBoostTrainer.convertExamples(dataset, featureMap);
+            Entry newEntry = new Entry(tuple, featureMap);
+            synchronized (DMatrixCache.class) {
+                // Another thread may have converted the same dataset while we were.
+                entry = find(dataset, featureMap);
+                if (entry == null) {
+                    entry = newEntry;
+                    entry.users++;
+                    if (entry.bytes > maxBytes) {
+                        entry.evicted = true;
+                    } else {
+                        evict(entry.bytes);
+                        entry.lastUsed = ++useCounter;
+                        entries.computeIfAbsent(dataset, k -> new ArrayList<>(1)).add(entry);
+                    }
+                } else {
+                    newEntry.tuple.data.dispose();
+                }
+            }
+        }
+        if (exclusive) {
+            entry.lock.lock();
+        }
+        return new Lease<>(entry, (DMatrixTuple<T>) entry.tuple, exclusive);
+    }
+
+    /**
+     * Finds the matching entry, and registers a user of it. Entries built from a previous
+     * state of the dataset are evicted. Must hold the class lock.
+     */
+    private static Entry find(Dataset<?> dataset, ImmutableFeatureMap featureMap) {
+        List<Entry> list = entries.get(dataset);
+        if (list != null) {
+            Entry found = null;
+            Iterator<Entry> itr = list.iterator();
+            while (itr.hasNext()) {
+                Entry e = itr.next();
+                if (!e.sameExamples(dataset)) {
+                    itr.remove();
+                    e.evict();
+                } else if ((found == null) && e.sameFeatures(featureMap)) {
+                    found = e;
+                }
+            }
+            if (list.isEmpty()) {
+                entries.remove(dataset);
+            }
+            if (found != null) {
+                found.users++;
+                found.lastUsed = ++useCounter;
+            }
+            return found;
+        }
+        return null;
+    }
+
+    /**
+     * Evicts least recently used entries until there is space for the requested bytes. Must hold the class lock.
+     */
+    private static void evict(long requested) {
+        long total = 0;
+        for (List<Entry> list : entries.values()) {
+            for (Entry e : list) {
+                total += e.bytes;
+            }
+        }
+        while (total + requested > maxBytes && !entries.isEmpty()) {
+            Entry oldest = null;
+            List<Entry> oldestList = null;
+            for (List<Entry> list : entries.values()) {
+                for (Entry e : list) {
+                    if ((oldest == null) || (e.lastUsed < oldest.lastUsed)) {
+                        oldest = e;
+                        oldestList = list;
+                    }
+                }
+            }
+            if (oldest == null) {
+                break;
+            }
+            oldestList.remove(oldest);
+            oldest.evict();
+            total -= oldest.bytes;
+            entries.values().removeIf(List::isEmpty);
+        }
+    }
+
+    /**
+     * A cached matrix, along with the examples and feature map it was built from.
+     */
+    private static final class Entry {
+        final DMatrixTuple<?> tuple;
+        final ImmutableFeatureMap featureMap;
+        final long bytes;
+        final ReentrantLock lock = new ReentrantLock();
+        int users = 0;
+        long lastUsed = 0;
+        boolean evicted = false;
+
+        Entry(DMatrixTuple<?> tuple, ImmutableFeatureMap featureMap) {
+            this.tuple = tuple;
+            this.featureMap = featureMap;
+            long numValues = 0;
+            for (int n : tuple.numValidFeatures) {
+                numValues += n;
+            }
+            // XGBoost stores an index and a float per value, plus a row offset, label and weight per example.
+            this.bytes = (8 * numValues) + (16L * tuple.numValidFeatures.length);
+        }
+
+        /**
+         * Checks the examples are the same objects in the same order.
+         */
+        boolean sameExamples(Dataset<?> dataset) {
+            if (dataset.size() != tuple.examples.length) {
+                return false;
+            }
+            Iterator<? extends Example<?>> itr = dataset.iterator();
+            for (int i = 0; i < tuple.examples.length; i++) {
+                if (itr.next() != tuple.examples[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Checks the feature ids are unchanged.
+         */
+        boolean sameFeatures(ImmutableFeatureMap otherMap) {
+            if (otherMap == featureMap) {
+                return true;
+            } else if (otherMap.size() != featureMap.size()) {
+                return false;
+            }
+            for (int i = 0; i < featureMap.size(); i++) {
+                if (otherMap.getID(featureMap.get(i).getName()) != i) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Marks this entry as removed, freeing the matrix if it's unused. Must hold the class lock.
+         */
+        void evict() {
+            evicted = true;
+            if (users == 0) {
+                tuple.data.dispose();
+            }
+        }
+    }
+
+    /**
+     * A reference to a matrix from the cache. Closing it releases the matrix, which is
+     * freed if it has since been evicted, or was never cached.
+     * @param <T> The output type.
+     */
+    static final class Lease<T extends Output<T>> implements AutoCloseable {
+        final DMatrixTuple<T> tuple;
+        private final Entry entry;
+        private final boolean exclusive;
+        private boolean closed = false;
+
+        private Lease(Entry entry, DMatrixTuple<T> tuple, boolean exclusive) {
+            this.entry = entry;
+            this.tuple = tuple;
+            this.exclusive = exclusive;
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (exclusive) {
+                entry.lock.unlock();
+            }
+            synchronized (DMatrixCache.class) {
+                entry.users--;
+                if (entry.evicted && (entry.users == 0)) {
+                    entry.tuple.data.dispose();
+                }
+            }
+        }
+    }
+}
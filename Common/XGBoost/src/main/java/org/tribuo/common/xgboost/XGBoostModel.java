@@ -19,11 +19,13 @@ package org.tribuo.common.xgboost;
 import com.oracle.labs.mlrg.olcut.util.MutableDouble;
 import com.oracle.labs.mlrg.olcut.util.Pair;
 import ml.dmlc.xgboost4j.java.Booster;
+import ml.dmlc.xgboost4j.java.DMatrix;
 import ml.dmlc.xgboost4j.java.XGBoost;
 import ml.dmlc.xgboost4j.java.XGBoostError;
 import org.tribuo.Dataset;
 import org.tribuo.Example;
 import org.tribuo.Excuse;
+import org.tribuo.Feature;
 import org.tribuo.ImmutableFeatureMap;
 import org.tribuo.ImmutableOutputInfo;
 import org.tribuo.Model;
@@ -37,6 +39,7 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -77,6 +80,17 @@ public final class XGBoostModel<T extends Output<T>> extends Model<T> {
 
     private static final Logger logger = Logger.getLogger(XGBoostModel.class.getName());
 
+    /**
+     * The largest batch predicted on the JVM when Java prediction is enabled. Larger
+     * batches amortise the native call overhead and can use XGBoost's threads.
+     */
+    private static final int JAVA_PREDICTION_BATCH_LIMIT = 256;
+
+    /**
+     * Per thread buffer used when converting examples for the tree ensembles.
+     */
+    private static final ThreadLocal<FeatureBuffer> featureBuffer = ThreadLocal.withInitial(FeatureBuffer::new);
+
     private final XGBoostOutputConverter<T> converter;
 
     /**
@@ -84,6 +98,21 @@ public final class XGBoostModel<T extends Output<T>> extends Model<T> {
      */
     protected transient List<Booster> models;
 
+    /**
+     * Should {@link #predict(Dataset)} use the shared DMatrix cache, defaults to false after deserialization.
+     */
+    private transient boolean cacheConvertedData = false;
+
+    /**
+     * The largest number of examples used to check the tree ensembles against the native library.
+     */
+    private static final int JAVA_PREDICTION_CHECK_LIMIT = 1024;
+
+    /**
+     * The trees of each booster for evaluation on the JVM, null if the native library is used.
+     */
+    private transient volatile List<XGBoostTreeEnsemble> ensembles = null;
+
     XGBoostModel(String name, ModelProvenance description,
                  ImmutableFeatureMap featureIDMap, ImmutableOutputInfo<T> labelIDMap,
                  List<Booster> models, XGBoostOutputConverter<T> converter) {
@@ -128,6 +157,213 @@ public final class XGBoostModel<T extends Output<T>> extends Model<T> {
         }
     }
 
+    /**
+     * Predicts single examples and small batches on the JVM, if the boosters agree with
+     * the native library on the supplied examples.
+     * <p>
+     * The boosters are parsed from their JSON dumps into flattened tree ensembles, which avoids
+     * building a native DMatrix and calling into XGBoost for each prediction. The dumps don't
+     * contain the base score or the objective, so these are derived from the native library's
+     * predictions. Then the ensembles predict up to 1024 of the supplied examples, which should
+     * be real examples such as the training data, and must give the same margins as the native
+     * library, and outputs within a few ulps (Java's exp can round differently from the C
+     * library's). If a booster isn't supported (e.g., gblinear or dart boosters) or disagrees
+     * with the native library, the model logs the reason and keeps using the native library.
+     * <p>
+     * This setting is not serialized, and a deserialized model uses the native library until
+     * this method is called again. A copied model shares the ensembles.
+     * @param checkExamples The examples used to check the ensembles.
+     * @return True if the JVM evaluator is in use.
+     */
+    public boolean enableJavaPrediction(Iterable<Example<T>> checkExamples) {
+        ensembles = buildEnsembles(checkExamples);
+        return ensembles != null;
+    }
+
+    /**
+     * Predicts everything with the native library.
+     */
+    public void disableJavaPrediction() {
+        ensembles = null;
+    }
+
+    /**
+     * Is this model predicting on the JVM?
+     * @return True if the JVM evaluator is in use.
+     */
+    public boolean isJavaPrediction() {
+        return ensembles != null;
+    }
+
+    /**
+     * Sets whether {@link #predict(Dataset)} reuses the native DMatrix for a dataset which was
+     * already converted by a trainer or another model, and caches the ones it converts.
+     * <p>
+     * This is useful when the same dataset is scored repeatedly, e.g., during evaluation. The cache
+     * is bounded and can be emptied with {@link XGBoostTrainer#clearConvertedDataCache}. This setting
+     * is not serialized.
+     * @param cacheConvertedData If true use the DMatrix cache.
+     */
+    public void setCacheConvertedData(boolean cacheConvertedData) {
+        this.cacheConvertedData = cacheConvertedData;
+    }
+
+    /**
+     * Parses each booster into a tree ensemble, and checks them against the native library.
+     * @param checkExamples The examples used to check the ensembles.
+     * @return The ensembles, or null if any booster is unsupported or disagrees with the native library.
+     */
+    private List<XGBoostTreeEnsemble> buildEnsembles(Iterable<Example<T>> checkExamples) {
+        List<int[]> checkIndices = new ArrayList<>();
+        List<float[]> checkValues = new ArrayList<>();
+        for (Example<T> e : checkExamples) {
+            if (checkIndices.size() == JAVA_PREDICTION_CHECK_LIMIT) {
+                break;
+            }
+            FeatureBuffer buffer = featureBuffer.get();
+            try {
+                buffer.convert(e,featureIDMap);
+            } catch (IllegalArgumentException ex) {
+                // Examples without any known features can't be predicted by either library.
+                continue;
+            }
+            checkIndices.add(Arrays.copyOf(buffer.indices,buffer.size));
+            checkValues.add(Arrays.copyOf(buffer.values,buffer.size));
+        }
+        if (checkIndices.isEmpty()) {
+            throw new IllegalArgumentException("No examples with known features were supplied to check the ensembles.");
+        }
+        try {
+            List<XGBoostTreeEnsemble> list = new ArrayList<>();
+            for (Booster model : models) {
+                list.add(buildEnsemble(model, featureIDMap.size(), checkIndices, checkValues));
+            }
+            return Collections.unmodifiableList(list);
+        } catch (IllegalArgumentException e) {
+            logger.log(Level.INFO, "Using native XGBoost prediction, " + e.getMessage());
+            return null;
+        } catch (XGBoostError e) {
+            logger.log(Level.SEVERE, "XGBoost threw an error", e);
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Parses a booster's JSON dump, derives the base margin from the native margins for an
+     * example where every feature is missing, infers the objective's transformation, and
+     * checks the result against the native library on the check examples.
+     * <p>
+     * Throws IllegalArgumentException if the booster is unsupported or disagrees with
+     * the native library.
+     * @param booster The booster.
+     * @param numFeatures The number of features.
+     * @param checkIndices The sorted feature ids of each check example.
+     * @param checkValues The feature values of each check example.
+     * @return The tree ensemble.
+     * @throws XGBoostError If the native library failed.
+     */
+    private static XGBoostTreeEnsemble buildEnsemble(Booster booster, int numFeatures, List<int[]> checkIndices, List<float[]> checkValues) throws XGBoostError {
+        float[] missing = new float[numFeatures];
+        Arrays.fill(missing, Float.NaN);
+        DMatrix missingMatrix = new DMatrix(missing, 1, numFeatures, Float.NaN);
+        float[] missingMargins;
+        try {
+            missingMargins = booster.predict(missingMatrix, true)[0];
+        } finally {
+            missingMatrix.dispose();
+        }
+        int numGroups = missingMargins.length;
+        XGBoostTreeEnsemble ensemble = XGBoostTreeEnsemble.parse(booster.getModelDump((String) null, false, "json"), numGroups);
+
+        // The native margin is the base margin plus the float sum of the leaves, pick the
+        // base margin which reproduces it exactly.
+        float[] leafSums = new float[numGroups];
+        ensemble.margins(new int[0], new float[0], 0, leafSums);
+        float[] baseMargin = new float[numGroups];
+        for (int i = 0; i < numGroups; i++) {
+            float base = missingMargins[i] - leafSums[i];
+            float[] candidates = new float[]{base, Math.nextUp(base), Math.nextDown(base)};
+            boolean found = false;
+            for (float c : candidates) {
+                if (c + leafSums[i] == missingMargins[i]) {
+                    baseMargin[i] = c;
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                throw new IllegalArgumentException("Could not reproduce the native base margin " + missingMargins[i]);
+            }
+        }
+        ensemble = ensemble.withOutputs(baseMargin, XGBoostTreeEnsemble.Transform.IDENTITY);
+
+        long[] headers = new long[checkIndices.size() + 1];
+        for (int i = 0; i < checkIndices.size(); i++) {
+            headers[i+1] = headers[i] + checkIndices.get(i).length;
+        }
+        int[] indices = new int[(int) headers[checkIndices.size()]];
+        float[] values = new float[indices.length];
+        for (int i = 0; i < checkIndices.size(); i++) {
+            System.arraycopy(checkIndices.get(i), 0, indices, (int) headers[i], checkIndices.get(i).length);
+            System.arraycopy(checkValues.get(i), 0, values, (int) headers[i], checkValues.get(i).length);
+        }
+        DMatrix checkMatrix = new DMatrix(headers, indices, values, DMatrix.SparseType.CSR, numFeatures);
+        float[][] nativeMargins;
+        float[][] nativeOutputs;
+        try {
+            nativeMargins = booster.predict(checkMatrix, true);
+            nativeOutputs = booster.predict(checkMatrix);
+        } finally {
+            checkMatrix.dispose();
+        }
+
+        float[][] margins = new float[checkIndices.size()][numGroups];
+        for (int i = 0; i < margins.length; i++) {
+            ensemble.margins(checkIndices.get(i), checkValues.get(i), checkIndices.get(i).length, margins[i]);
+            if (!Arrays.equals(margins[i], nativeMargins[i])) {
+                throw new IllegalArgumentException("Margin mismatch on check example " + i + ", expected " + Arrays.toString(nativeMargins[i]) + ", found " + Arrays.toString(margins[i]));
+            }
+        }
+
+        // The objective isn't available from the booster, so find the transformation which
+        // reproduces the native outputs.
+        XGBoostTreeEnsemble.Transform[] candidates;
+        if (numGroups > 1) {
+            candidates = new XGBoostTreeEnsemble.Transform[]{XGBoostTreeEnsemble.Transform.SOFTMAX};
+        } else {
+            candidates = new XGBoostTreeEnsemble.Transform[]{XGBoostTreeEnsemble.Transform.IDENTITY, XGBoostTreeEnsemble.Transform.SIGMOID, XGBoostTreeEnsemble.Transform.EXP};
+        }
+        for (XGBoostTreeEnsemble.Transform transform : candidates) {
+            if (transformMatches(transform, margins, nativeOutputs)) {
+                return ensemble.withOutputs(baseMargin, transform);
+            }
+        }
+        throw new IllegalArgumentException("Unsupported objective, the native outputs don't match any known transformation of the margins.");
+    }
+
+    /**
+     * Checks if the transformed margins are within a few ulps of the native outputs.
+     * @param transform The transformation.
+     * @param margins The margins.
+     * @param nativeOutputs The native outputs.
+     * @return True if every output matches.
+     */
+    private static boolean transformMatches(XGBoostTreeEnsemble.Transform transform, float[][] margins, float[][] nativeOutputs) {
+        for (int i = 0; i < margins.length; i++) {
+            if (nativeOutputs[i].length != margins[i].length) {
+                return false;
+            }
+            float[] outputs = Arrays.copyOf(margins[i], margins[i].length);
+            XGBoostTreeEnsemble.transform(transform, outputs);
+            for (int j = 0; j < outputs.length; j++) {
+                if (Math.abs(outputs[j] - nativeOutputs[i][j]) > 4 * Math.ulp(nativeOutputs[i][j])) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
     /**
      * Uses the model to predict the labels for multiple examples contained in
      * a data set.
@@ -137,6 +373,14 @@ public final class XGBoostModel<T extends Output<T>> extends Model<T> {
      */
     @Override
     public List<Prediction<T>> predict(Dataset<T> examples) {
+        if (cacheConvertedData && ((ensembles == null) || (examples.size() > JAVA_PREDICTION_BATCH_LIMIT))) {
+            try (DMatrixCache.Lease<T> lease = DMatrixCache.acquire(examples,featureIDMap,false)) {
+                return predictMatrix(lease.tuple);
+            } catch (XGBoostError e) {
+                logger.log(Level.SEVERE, "XGBoost threw an error", e);
+                throw new IllegalStateException(e);
+            }
+        }
         return predict(examples.getData());
     }
 
@@ -148,16 +392,24 @@ public final class XGBoostModel<T extends Output<T>> extends Model<T> {
      */
     @Override
     public List<Prediction<T>> predict(Iterable<Example<T>> examples) {
+        List<XGBoostTreeEnsemble> curEnsembles = ensembles;
+        if (curEnsembles != null) {
+            List<Example<T>> exampleList = new ArrayList<>();
+            for (Example<T> e : examples) {
+                exampleList.add(e);
+            }
+            if (exampleList.size() <= JAVA_PREDICTION_BATCH_LIMIT) {
+                List<Prediction<T>> predictions = new ArrayList<>(exampleList.size());
+                for (Example<T> e : exampleList) {
+                    predictions.add(javaPredict(curEnsembles, e));
+                }
+                return predictions;
+            }
+            examples = exampleList;
+        }
         try {
             DMatrixTuple<T> testMatrix = XGBoostTrainer.convertExamples(examples,featureIDMap);
-            List<float[][]> outputs = new ArrayList<>();
-            for (Booster model : models) {
-                outputs.add(model.predict(testMatrix.data));
-            }
-
-            int[] numValidFeatures = testMatrix.numValidFeatures;
-            Example<T>[] exampleArray = testMatrix.examples;
-            return converter.convertBatchOutput(outputIDInfo,outputs,numValidFeatures,exampleArray);
+            return predictMatrix(testMatrix);
         } catch (XGBoostError e) {
             logger.log(Level.SEVERE, "XGBoost threw an error", e);
             throw new IllegalStateException(e);
@@ -165,8 +417,29 @@ public final class XGBoostModel<T extends Output<T>> extends Model<T> {
 
     }
 
+    /**
+     * Predicts a batch of converted examples with the native boosters.
+     * @param testMatrix The converted examples.
+     * @return The predictions.
+     * @throws XGBoostError If the native library returns an error state.
+     */
+    private List<Prediction<T>> predictMatrix(DMatrixTuple<T> testMatrix) throws XGBoostError {
+        List<float[][]> outputs = new ArrayList<>();
+        for (Booster model : models) {
+            outputs.add(model.predict(testMatrix.data));
+        }
+
+        int[] numValidFeatures = testMatrix.numValidFeatures;
+        Example<T>[] exampleArray = testMatrix.examples;
+        return converter.convertBatchOutput(outputIDInfo,outputs,numValidFeatures,exampleArray);
+    }
+
     @Override
     public Prediction<T> predict(Example<T> example) {
+        List<XGBoostTreeEnsemble> curEnsembles = ensembles;
+        if (curEnsembles != null) {
+            return javaPredict(curEnsembles, example);
+        }
         try {
             DMatrixTuple<T> testData = XGBoostTrainer.convertExample(example,featureIDMap);
             List<float[]> outputs = new ArrayList<>();
@@ -181,6 +454,88 @@ public final class XGBoostModel<T extends Output<T>> extends Model<T> {
         }
     }
 
+    /**
+     * Predicts the example using the tree ensembles.
+     * <p>
+     * The example is converted as it would be for the native library, into this thread's
+     * reusable primitive buffers, so the only allocations are the output arrays and the prediction.
+     * @param curEnsembles The tree ensembles.
+     * @param example The example.
+     * @return The prediction.
+     */
+    private Prediction<T> javaPredict(List<XGBoostTreeEnsemble> curEnsembles, Example<T> example) {
+        FeatureBuffer buffer = featureBuffer.get();
+        buffer.convert(example,featureIDMap);
+        List<float[]> outputs = new ArrayList<>(curEnsembles.size());
+        for (XGBoostTreeEnsemble ensemble : curEnsembles) {
+            float[] output = new float[ensemble.getNumGroups()];
+            ensemble.predict(buffer.indices,buffer.values,buffer.size,output);
+            outputs.add(output);
+        }
+        return converter.convertOutput(outputIDInfo,outputs,buffer.size,example);
+    }
+
+    /**
+     * A reusable buffer holding an example's sorted feature ids and values, in the same
+     * form as {@link XGBoostTrainer#convertSingleExample}, but in growable primitive arrays.
+     */
+    private static final class FeatureBuffer {
+        int[] indices = new int[16];
+        float[] values = new float[16];
+        int size = 0;
+
+        /**
+         * Converts the example into this buffer, overwriting the previous contents.
+         * <p>
+         * Duplicate features have their values summed, and features unknown to the feature map are ignored.
+         * Throws {@link IllegalArgumentException} if the example doesn't contain any known features.
+         * @param example The example to convert.
+         * @param featureMap The feature domain.
+         */
+        void convert(Example<?> example, ImmutableFeatureMap featureMap) {
+            size = 0;
+            int prevIdx = -1;
+            for (Feature f : example) {
+                int id = featureMap.getID(f.getName());
+                if (id > prevIdx) {
+                    prevIdx = id;
+                    grow();
+                    indices[size] = id;
+                    values[size] = (float) f.getValue();
+                    size++;
+                } else if (id > -1) {
+                    int position = Arrays.binarySearch(indices, 0, size, id);
+                    if (position < 0) {
+                        // Out of order feature, insert it.
+                        position = -(position + 1);
+                        grow();
+                        System.arraycopy(indices, position, indices, position + 1, size - position);
+                        System.arraycopy(values, position, values, position + 1, size - position);
+                        indices[position] = id;
+                        values[position] = (float) f.getValue();
+                        size++;
+                    } else {
+                        // Duplicate feature, sum the values.
+                        values[position] += (float) f.getValue();
+                    }
+                }
+            }
+            if (size == 0) {
+                throw new IllegalArgumentException("No features found in Example " + example.toString());
+            }
+        }
+
+        /**
+         * Makes room for one more entry.
+         */
+        private void grow() {
+            if (size == indices.length) {
+                indices = Arrays.copyOf(indices, indices.length * 2);
+                values = Arrays.copyOf(values, values.length * 2);
+            }
+        }
+    }
+
     /**
      * Creates objects to report feature importance metrics for XGBoost. See the documentation of {@link XGBoostFeatureImportance}
      * for more information on what those metrics mean. Typically this list will contain a single instance for the entire
@@ -277,7 +632,11 @@ public final class XGBoostModel<T extends Output<T>> extends Model<T> {
         for (Booster model : models) {
             newModels.add(copyModel(model));
         }
-        return new XGBoostModel<>(newName, newProvenance, featureIDMap, outputIDInfo, newModels, converter);
+        XGBoostModel<T> newModel = new XGBoostModel<>(newName, newProvenance, featureIDMap, outputIDInfo, newModels, converter);
+        // The copied boosters are identical, so they can share the immutable ensembles.
+        newModel.ensembles = ensembles;
+        newModel.setCacheConvertedData(cacheConvertedData);
+        return newModel;
     }
 
     private void writeObject(ObjectOutputStream out) throws IOException {
@@ -35,12 +35,22 @@ import ml.dmlc.xgboost4j.java.Booster;
 import ml.dmlc.xgboost4j.java.DMatrix;
 import ml.dmlc.xgboost4j.java.XGBoostError;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
+import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Stream;
 
 /**
  * A {@link Trainer} which wraps the XGBoost training procedure.
@@ -143,6 +153,18 @@ public abstract class XGBoostTrainer<T extends Output<T>> implements Trainer<T>,
     @Config(description="The RNG seed.")
     private long seed = Trainer.DEFAULT_SEED;
 
+    @Config(description="Predict single examples and small batches on the JVM when the booster supports it and agrees with the native library on the training data.")
+    private boolean javaPrediction = false;
+
+    @Config(description="Train from a libsvm format cache file on disk rather than building the DMatrix on the heap.")
+    private boolean externalMemory = false;
+
+    @Config(description="Directory to write the external memory cache files into, defaults to the system temporary directory.")
+    private Path externalMemoryDirectory;
+
+    @Config(description="Reuse the native DMatrix across train and predict calls on the same dataset.")
+    private boolean cacheConvertedData = false;
+
     protected int trainInvocationCounter = 0;
 
     protected XGBoostTrainer(int numTrees) {
@@ -245,7 +267,200 @@ public abstract class XGBoostTrainer<T extends Output<T>> implements Trainer<T>,
     }
 
     protected XGBoostModel<T> createModel(String name, ModelProvenance provenance, ImmutableFeatureMap featureIDMap, ImmutableOutputInfo<T> outputIDInfo, List<Booster> models, XGBoostOutputConverter<T> converter) {
-        return new XGBoostModel<>(name,provenance,featureIDMap,outputIDInfo,models,converter);
+        XGBoostModel<T> model = new XGBoostModel<>(name,provenance,featureIDMap,outputIDInfo,models,converter);
+        if (cacheConvertedData) {
+            model.setCacheConvertedData(true);
+        }
+        return model;
+    }
+
+    /**
+     * Creates the model, and if Java prediction is enabled checks the JVM evaluator
+     * against the native library on the training data.
+     * @param name The model name.
+     * @param provenance The model provenance.
+     * @param featureIDMap The feature map.
+     * @param outputIDInfo The output info.
+     * @param models The boosters.
+     * @param converter The output converter.
+     * @param trainingData The training data.
+     * @return The model.
+     */
+    protected XGBoostModel<T> createModel(String name, ModelProvenance provenance, ImmutableFeatureMap featureIDMap, ImmutableOutputInfo<T> outputIDInfo, List<Booster> models, XGBoostOutputConverter<T> converter, Dataset<T> trainingData) {
+        XGBoostModel<T> model = createModel(name,provenance,featureIDMap,outputIDInfo,models,converter);
+        if (javaPrediction) {
+            model.enableJavaPrediction(trainingData);
+        }
+        return model;
+    }
+
+    /**
+     * Sets whether the models produced by this trainer predict single examples and small
+     * batches on the JVM. See {@link XGBoostModel#enableJavaPrediction}.
+     * @param javaPrediction If true the models use the JVM evaluator when possible.
+     */
+    public void setJavaPrediction(boolean javaPrediction) {
+        this.javaPrediction = javaPrediction;
+    }
+
+    /**
+     * Sets whether training streams the examples into an on-disk cache file and uses
+     * XGBoost's external memory mode, instead of building the whole DMatrix on the heap.
+     * <p>
+     * This is slower than in-memory training, but allows training on datasets which do not
+     * fit in RAM.
+     * @param externalMemory If true train from an on-disk cache.
+     * @param cacheDirectory The directory to write the cache into, if null uses the system temporary directory.
+     */
+    public void setExternalMemory(boolean externalMemory, Path cacheDirectory) {
+        this.externalMemory = externalMemory;
+        this.externalMemoryDirectory = cacheDirectory;
+    }
+
+    /**
+     * Sets whether the native DMatrix built from a dataset is cached and reused by later calls to
+     * {@link #train} on the same dataset, from this or any other XGBoost trainer. The models
+     * produced by this trainer also use the cache in {@link XGBoostModel#predict(Dataset)}.
+     * <p>
+     * The cache checks the dataset's example order and feature ids, but can't detect examples
+     * which are modified in place after the first conversion. It's not used in external memory mode.
+     * @param cacheConvertedData If true cache the converted DMatrix.
+     */
+    public void setCacheConvertedData(boolean cacheConvertedData) {
+        this.cacheConvertedData = cacheConvertedData;
+    }
+
+    /**
+     * Frees all the cached DMatrix instances which are not in use, and empties the cache
+     * shared by all XGBoost trainers and models.
+     */
+    public static void clearConvertedDataCache() {
+        DMatrixCache.clear();
+    }
+
+    /**
+     * Sets the bound on the estimated native memory held by the DMatrix cache, defaults to 1GB.
+     * <p>
+     * The least recently used matrices are freed when the bound is exceeded, and datasets
+     * whose matrix alone exceeds the bound are never cached.
+     * @param maxBytes The maximum number of bytes.
+     */
+    public static void setConvertedDataCacheSize(long maxBytes) {
+        DMatrixCache.setMaxBytes(maxBytes);
+    }
+
+    /**
+     * Builds the training DMatrix, either in memory using {@link #convertExamples} or,
+     * if external memory training is enabled, by streaming the examples into a libsvm format
+     * file and loading it with an XGBoost cache file.
+     * <p>
+     * Only the labels and weights are buffered on the heap in external memory mode.
+     * NaN feature values are treated as missing, as they are in the in-memory matrix, and
+     * infinite values throw {@link IllegalArgumentException}. The returned
+     * matrix must be closed after training to release the native memory and delete the cache files.
+     * <p>
+     * Train with the returned matrix's parameters, which are a copy of this trainer's parameters
+     * with any settings the matrix needs, so concurrent or later trains don't see them.
+     * <p>
+     * Otherwise, if {@link #setCacheConvertedData} is set and the examples are a {@link Dataset}, the
+     * matrix comes from the shared cache and is locked against other trainers until it is closed.
+     * @param examples The examples to convert.
+     * @param featureMap The feature id map which supplies the indices.
+     * @param responseExtractor The extraction function for the output, if null no labels or weights are set.
+     * @return The training matrix.
+     * @throws XGBoostError If the native library failed to construct the DMatrix.
+     */
+    @SuppressWarnings("unchecked") // Iterable<Example<T>> which is a Dataset must be a Dataset<T>.
+    protected TrainingMatrix createTrainingMatrix(Iterable<Example<T>> examples, ImmutableFeatureMap featureMap, Function<T,Float> responseExtractor) throws XGBoostError {
+        if (!externalMemory) {
+            if (cacheConvertedData && (examples instanceof Dataset)) {
+                DMatrixCache.Lease<T> lease = DMatrixCache.acquire((Dataset<T>) examples, featureMap, true);
+                try {
+                    if (responseExtractor != null) {
+                        // The cached matrix is shared, so the labels and weights are reset on every use.
+                        Example<T>[] cachedExamples = lease.tuple.examples;
+                        float[] labels = new float[cachedExamples.length];
+                        float[] weights = new float[cachedExamples.length];
+                        for (int i = 0; i < cachedExamples.length; i++) {
+                            labels[i] = responseExtractor.apply(cachedExamples[i].getOutput());
+                            weights[i] = cachedExamples[i].getWeight();
+                        }
+                        lease.tuple.data.setLabel(labels);
+                        lease.tuple.data.setWeight(weights);
+                    }
+                    return new TrainingMatrix(lease, new HashMap<>(parameters));
+                } catch (XGBoostError | RuntimeException e) {
+                    lease.close();
+                    throw e;
+                }
+            }
+            return new TrainingMatrix(convertExamples(examples, featureMap, responseExtractor).data, new HashMap<>(parameters), null);
+        }
+        // The cache file may not mention the highest feature ids, so fix the width of the booster.
+        Map<String,Object> trainingParameters = new HashMap<>(parameters);
+        trainingParameters.put("num_feature", featureMap.size());
+        Path cacheDirectory = null;
+        try {
+            cacheDirectory = externalMemoryDirectory == null ? Files.createTempDirectory("xgboost-external") : Files.createTempDirectory(externalMemoryDirectory, "xgboost-external");
+            Path dataPath = cacheDirectory.resolve("train.libsvm");
+            boolean labelled = responseExtractor != null;
+            float[] labels = new float[0];
+            float[] weights = new float[0];
+            int numExamples = 0;
+            ArrayList<Float> dataList = new ArrayList<>();
+            ArrayList<Integer> indicesList = new ArrayList<>();
+            ArrayList<Long> headersList = new ArrayList<>();
+            try (BufferedWriter writer = Files.newBufferedWriter(dataPath, StandardCharsets.UTF_8)) {
+                StringBuilder line = new StringBuilder();
+                for (Example<T> e : examples) {
+                    dataList.clear();
+                    indicesList.clear();
+                    headersList.clear();
+                    convertSingleExample(e, featureMap, dataList, indicesList, headersList, 0);
+                    float label = 0.0f;
+                    if (labelled) {
+                        if (numExamples == labels.length) {
+                            int newLength = Math.max(1024, labels.length * 2);
+                            labels = Arrays.copyOf(labels, newLength);
+                            weights = Arrays.copyOf(weights, newLength);
+                        }
+                        label = responseExtractor.apply(e.getOutput());
+                        labels[numExamples] = label;
+                        weights[numExamples] = e.getWeight();
+                    }
+                    // libsvm format with zero-based indices, one example per line.
+                    line.setLength(0);
+                    line.append(label);
+                    for (int i = 0; i < indicesList.size(); i++) {
+                        float value = dataList.get(i);
+                        if (Float.isNaN(value)) {
+                            // NaN is missing in the in-memory DMatrix, so leave it out of the file.
+                            continue;
+                        } else if (Float.isInfinite(value)) {
+                            throw new IllegalArgumentException("Example contained an infinite value for feature " + featureMap.get(indicesList.get(i)).getName() + ", which can't be written to the external memory cache.");
+                        }
+                        line.append(' ').append(indicesList.get(i)).append(':').append(value);
+                    }
+                    line.append('\n');
+                    writer.append(line);
+                    numExamples++;
+                }
+            }
+            // Everything after the '#' is the prefix for the row pages xgboost writes while loading.
+            DMatrix data = new DMatrix(dataPath.toString() + "#" + cacheDirectory.resolve("train.cache"));
+            TrainingMatrix matrix = new TrainingMatrix(data, trainingParameters, cacheDirectory);
+            if (labelled) {
+                data.setLabel(Arrays.copyOf(labels, numExamples));
+                data.setWeight(Arrays.copyOf(weights, numExamples));
+            }
+            return matrix;
+        } catch (IOException e) {
+            deleteCache(cacheDirectory);
+            throw new UncheckedIOException("Failed to write the XGBoost external memory cache", e);
+        } catch (XGBoostError | RuntimeException e) {
+            deleteCache(cacheDirectory);
+            throw e;
+        }
     }
 
     @Override
@@ -524,6 +739,67 @@ public abstract class XGBoostTrainer<T extends Output<T>> implements Trainer<T>,
         return new DMatrix(headers, indices, data, DMatrix.SparseType.CSR, numFeatures);
     }
 
+    /**
+     * Recursively deletes an external memory cache directory, logging any failures.
+     * @param cacheDirectory The directory to delete, may be null.
+     */
+    private static void deleteCache(Path cacheDirectory) {
+        if (cacheDirectory == null) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(cacheDirectory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(p -> {
+                try {
+                    Files.deleteIfExists(p);
+                } catch (IOException e) {
+                    logger.log(Level.WARNING, "Failed to delete XGBoost cache file " + p, e);
+                }
+            });
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to delete XGBoost cache directory " + cacheDirectory, e);
+        }
+    }
+
+    /**
+     * A training DMatrix along with the on-disk cache backing it, if any.
+     * <p>
+     * Closing it frees the native matrix and deletes the cache files, or returns
+     * it to the {@link DMatrixCache} if it was shared.
+     */
+    protected static final class TrainingMatrix implements AutoCloseable {
+        public final DMatrix data;
+        /**
+         * The parameters to train with, a copy of the trainer's parameters plus any the matrix requires.
+         */
+        public final Map<String,Object> parameters;
+        private final Path cacheDirectory;
+        private final DMatrixCache.Lease<?> lease;
+
+        TrainingMatrix(DMatrix data, Map<String,Object> parameters, Path cacheDirectory) {
+            this.data = data;
+            this.parameters = parameters;
+            this.cacheDirectory = cacheDirectory;
+            this.lease = null;
+        }
+
+        TrainingMatrix(DMatrixCache.Lease<?> lease, Map<String,Object> parameters) {
+            this.data = lease.tuple.data;
+            this.parameters = parameters;
+            this.cacheDirectory = null;
+            this.lease = lease;
+        }
+
+        @Override
+        public void close() {
+            if (lease != null) {
+                lease.close();
+            } else {
+                data.dispose();
+                deleteCache(cacheDirectory);
+            }
+        }
+    }
+
     /**
      * Tuple of a DMatrix, the number of valid features in each example, and the examples themselves.
      * <p>
@@ -0,0 +1,458 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.tribuo.common.xgboost;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A gradient boosted tree ensemble evaluated on the JVM, parsed from the JSON dump
+ * written by {@code Booster.getModelDump}.
+ * <p>
+ * The trees are flattened into parallel node arrays, and evaluation follows XGBoost's
+ * CPU predictor: each output group's margin is the base margin plus the float sum of
+ * the leaf values of that group's trees, followed by the objective's transformation.
+ * Features which are absent from an example, or which are NaN, follow the default
+ * direction of each split. The dump prints floats with enough digits to recover
+ * them exactly.
+ * <p>
+ * The dump doesn't contain the base margin, the objective or the assignment of trees
+ * to output groups, so {@link #parse} assumes each boosting round adds one tree per
+ * group, and {@link XGBoostModel} derives the base margin and the transformation from
+ * the native library's predictions. It then checks the ensemble against the native
+ * library on real examples before using it.
+ * <p>
+ * Instances are immutable and can be used concurrently.
+ */
+final class XGBoostTreeEnsemble {
+
+    /**
+     * The transformation applied to the margins to produce the prediction.
+     */
+    enum Transform {
+        IDENTITY, SIGMOID, EXP, SOFTMAX
+    }
+
+    private final int numGroups;
+    private final float[] baseMargin;
+    private final Transform transform;
+
+    private final int[] roots;
+    private final int[] treeGroups;
+
+    // Per node arrays, across all the trees. Leaves have splitFeature == -1 and store their value in splitValue.
+    private final int[] splitFeature;
+    private final float[] splitValue;
+    private final int[] leftChild;
+    private final int[] rightChild;
+    private final boolean[] defaultLeft;
+
+    private XGBoostTreeEnsemble(int numGroups, float[] baseMargin, Transform transform,
+                                int[] roots, int[] treeGroups, int[] splitFeature, float[] splitValue,
+                                int[] leftChild, int[] rightChild, boolean[] defaultLeft) {
+        this.numGroups = numGroups;
+        this.baseMargin = baseMargin;
+        this.transform = transform;
+        this.roots = roots;
+        this.treeGroups = treeGroups;
+        this.splitFeature = splitFeature;
+        this.splitValue = splitValue;
+        this.leftChild = leftChild;
+        this.rightChild = rightChild;
+        this.defaultLeft = defaultLeft;
+    }
+
+    /**
+     * Parses the JSON dump of a gbtree booster, with a zero base margin and the identity
+     * transformation. Tree {@code i} is assigned to output group {@code i % numGroups}.
+     * <p>
+     * Throws IllegalArgumentException if the dump isn't a tree dump in the expected format.
+     * @param treeDumps The dump of each tree from {@code Booster.getModelDump(null, false, "json")}.
+     * @param numGroups The number of output groups.
+     * @return The tree ensemble.
+     */
+    static XGBoostTreeEnsemble parse(String[] treeDumps, int numGroups) {
+        if (numGroups < 1) {
+            throw new IllegalArgumentException("Invalid number of output groups " + numGroups);
+        }
+        int numTrees = treeDumps.length;
+        int[] roots = new int[numTrees];
+        int[] treeGroups = new int[numTrees];
+        int[] treeSizes = new int[numTrees];
+        List<List<Map<String,Object>>> trees = new ArrayList<>(numTrees);
+        int totalNodes = 0;
+        for (int i = 0; i < numTrees; i++) {
+            Object tree = new JsonReader(treeDumps[i]).read();
+            List<Map<String,Object>> nodes = new ArrayList<>();
+            flatten(tree, nodes);
+            trees.add(nodes);
+            // Pruning can leave gaps in the node ids, so size the tree by the largest id.
+            for (Map<String,Object> node : nodes) {
+                treeSizes[i] = Math.max(treeSizes[i], intField(node, "nodeid", Integer.MAX_VALUE) + 1);
+            }
+            roots[i] = totalNodes;
+            treeGroups[i] = i % numGroups;
+            totalNodes += treeSizes[i];
+        }
+
+        int[] splitFeature = new int[totalNodes];
+        float[] splitValue = new float[totalNodes];
+        int[] leftChild = new int[totalNodes];
+        int[] rightChild = new int[totalNodes];
+        boolean[] defaultLeft = new boolean[totalNodes];
+        for (int i = 0; i < numTrees; i++) {
+            int size = treeSizes[i];
+            for (Map<String,Object> node : trees.get(i)) {
+                int idx = roots[i] + intField(node, "nodeid", size);
+                if (node.containsKey("leaf")) {
+                    splitFeature[idx] = -1;
+                    splitValue[idx] = floatField(node, "leaf");
+                } else {
+                    int yes = intField(node, "yes", size);
+                    int no = intField(node, "no", size);
+                    int missing = intField(node, "missing", size);
+                    if ((missing != yes) && (missing != no)) {
+                        throw new IllegalArgumentException("Invalid missing branch " + missing + " in tree " + i);
+                    }
+                    splitFeature[idx] = intField(node, "split", Integer.MAX_VALUE);
+                    splitValue[idx] = floatField(node, "split_condition");
+                    leftChild[idx] = roots[i] + yes;
+                    rightChild[idx] = roots[i] + no;
+                    defaultLeft[idx] = missing == yes;
+                }
+            }
+        }
+        float[] baseMargin = new float[numGroups];
+        return new XGBoostTreeEnsemble(numGroups, baseMargin, Transform.IDENTITY,
+                roots, treeGroups, splitFeature, splitValue, leftChild, rightChild, defaultLeft);
+    }
+
+    /**
+     * Collects the node objects of a tree in depth first order.
+     */
+    @SuppressWarnings("unchecked") // Checked by instanceof.
+    private static void flatten(Object node, List<Map<String,Object>> nodes) {
+        if (!(node instanceof Map)) {
+            throw new IllegalArgumentException("Expected a tree node, found " + node);
+        }
+        Map<String,Object> map = (Map<String,Object>) node;
+        nodes.add(map);
+        Object children = map.get("children");
+        if (children instanceof List) {
+            for (Object child : (List<Object>) children) {
+                flatten(child, nodes);
+            }
+        } else if (!map.containsKey("leaf")) {
+            throw new IllegalArgumentException("Expected a leaf or a split, found " + map.keySet());
+        }
+    }
+
+    private static int intField(Map<String,Object> node, String name, int bound) {
+        Object value = node.get(name);
+        if (!(value instanceof JsonNumber)) {
+            throw new IllegalArgumentException("Expected an integer for field '" + name + "', found " + value);
+        }
+        try {
+            int intValue = Integer.parseInt(((JsonNumber) value).text);
+            if ((intValue < 0) || (intValue >= bound)) {
+                throw new IllegalArgumentException("Field '" + name + "' is out of range, found " + intValue);
+            }
+            return intValue;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Expected an integer for field '" + name + "', found " + value, e);
+        }
+    }
+
+    private static float floatField(Map<String,Object> node, String name) {
+        Object value = node.get(name);
+        if (!(value instanceof JsonNumber)) {
+            throw new IllegalArgumentException("Expected a number for field '" + name + "', found " + value);
+        }
+        try {
+            return Float.parseFloat(((JsonNumber) value).text);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Expected a number for field '" + name + "', found " + value, e);
+        }
+    }
+
+    /**
+     * Returns a copy of this ensemble with the supplied base margins and transformation.
+     * @param newBaseMargin The base margin of each output group.
+     * @param newTransform The transformation.
+     * @return A copy of this ensemble sharing the trees.
+     */
+    XGBoostTreeEnsemble withOutputs(float[] newBaseMargin, Transform newTransform) {
+        if (newBaseMargin.length != numGroups) {
+            throw new IllegalArgumentException("Expected " + numGroups + " base margins, found " + newBaseMargin.length);
+        }
+        return new XGBoostTreeEnsemble(numGroups, Arrays.copyOf(newBaseMargin, numGroups), newTransform,
+                roots, treeGroups, splitFeature, splitValue, leftChild, rightChild, defaultLeft);
+    }
+
+    /**
+     * The number of output groups (i.e., classes for multiclass classification, otherwise 1).
+     * @return The number of output groups.
+     */
+    int getNumGroups() {
+        return numGroups;
+    }
+
+    /**
+     * Computes the margins, i.e., the base margin plus the sum of the leaf values.
+     * <p>
+     * Only the first {@code numFeatures} entries of the indices and values are used,
+     * so the arrays can be reused buffers.
+     * @param indices The feature ids, in ascending order.
+     * @param values The feature values.
+     * @param numFeatures The number of valid entries in indices and values.
+     * @param output Output array of size {@link #getNumGroups}.
+     */
+    void margins(int[] indices, float[] values, int numFeatures, float[] output) {
+        Arrays.fill(output, 0, numGroups, 0.0f);
+        for (int i = 0; i < roots.length; i++) {
+            int node = roots[i];
+            int feature;
+            while ((feature = splitFeature[node]) != -1) {
+                int position = Arrays.binarySearch(indices, 0, numFeatures, feature);
+                float value;
+                if ((position >= 0) && !Float.isNaN(value = values[position])) {
+                    node = value < splitValue[node] ? leftChild[node] : rightChild[node];
+                } else {
+                    node = defaultLeft[node] ? leftChild[node] : rightChild[node];
+                }
+            }
+            output[treeGroups[i]] += splitValue[node];
+        }
+        for (int i = 0; i < numGroups; i++) {
+            output[i] = baseMargin[i] + output[i];
+        }
+    }
+
+    /**
+     * Computes the transformed outputs.
+     * @param indices The feature ids, in ascending order.
+     * @param values The feature values.
+     * @param numFeatures The number of valid entries in indices and values.
+     * @param output Output array of size {@link #getNumGroups}.
+     */
+    void predict(int[] indices, float[] values, int numFeatures, float[] output) {
+        margins(indices, values, numFeatures, output);
+        transform(transform, output);
+    }
+
+    /**
+     * Applies a transformation to the margins in place.
+     * @param transform The transformation.
+     * @param margins The margins.
+     */
+    static void transform(Transform transform, float[] margins) {
+        switch (transform) {
+            case IDENTITY:
+                break;
+            case SIGMOID:
+                for (int i = 0; i < margins.length; i++) {
+                    margins[i] = 1.0f / (1.0f + (float) Math.exp(-margins[i]));
+                }
+                break;
+            case EXP:
+                for (int i = 0; i < margins.length; i++) {
+                    margins[i] = (float) Math.exp(margins[i]);
+                }
+                break;
+            case SOFTMAX:
+                float max = margins[0];
+                for (int i = 1; i < margins.length; i++) {
+                    max = Math.max(margins[i], max);
+                }
+                double sum = 0.0;
+                for (int i = 0; i < margins.length; i++) {
+                    margins[i] = (float) Math.exp(margins[i] - max);
+                    sum += margins[i];
+                }
+                float floatSum = (float) sum;
+                for (int i = 0; i < margins.length; i++) {
+                    margins[i] /= floatSum;
+                }
+                break;
+            default:
+                throw new IllegalStateException("Unknown transform " + transform);
+        }
+    }
+
+    /**
+     * A number in the dump, kept as text so it can be parsed at the right precision.
+     */
+    private static final class JsonNumber {
+        final String text;
+
+        JsonNumber(String text) {
+            this.text = text;
+        }
+
+        @Override
+        public String toString() {
+            return text;
+        }
+    }
+
+    /**
+     * Reads the subset of JSON used by XGBoost's tree dumps, objects, arrays, numbers and
+     * strings without escapes, into maps, lists, {@link JsonNumber}s and strings.
+     */
+    private static final class JsonReader {
+        private final String json;
+        private int pos;
+
+        JsonReader(String json) {
+            this.json = json;
+        }
+
+        Object read() {
+            Object value = readValue();
+            skipWhitespace();
+            if (pos != json.length()) {
+                throw error("Unexpected trailing characters");
+            }
+            return value;
+        }
+
+        private Object readValue() {
+            skipWhitespace();
+            if (pos >= json.length()) {
+                throw error("Unexpected end of input");
+            }
+            char c = json.charAt(pos);
+            if (c == '{') {
+                return readObject();
+            } else if (c == '[') {
+                return readArray();
+            } else if (c == '"') {
+                return readString();
+            } else {
+                return readNumber();
+            }
+        }
+
+        private Map<String,Object> readObject() {
+            pos++;
+            Map<String,Object> map = new HashMap<>();
+            skipWhitespace();
+            if (peek() == '}') {
+                pos++;
+                return map;
+            }
+            while (true) {
+                skipWhitespace();
+                String key = readString();
+                skipWhitespace();
+                expect(':');
+                map.put(key, readValue());
+                skipWhitespace();
+                char c = next();
+                if (c == '}') {
+                    return map;
+                } else if (c != ',') {
+                    throw error("Expected ',' or '}'");
+                }
+            }
+        }
+
+        private List<Object> readArray() {
+            pos++;
+            List<Object> list = new ArrayList<>();
+            skipWhitespace();
+            if (peek() == ']') {
+                pos++;
+                return list;
+            }
+            while (true) {
+                list.add(readValue());
+                skipWhitespace();
+                char c = next();
+                if (c == ']') {
+                    return list;
+                } else if (c != ',') {
+                    throw error("Expected ',' or ']'");
+                }
+            }
+        }
+
+        private String readString() {
+            expect('"');
+            int start = pos;
+            while (pos < json.length()) {
+                char c = json.charAt(pos);
+                if (c == '"') {
+                    pos++;
+                    return json.substring(start, pos - 1);
+                } else if (c == '\\') {
+                    throw error("Escaped strings are not supported");
+                }
+                pos++;
+            }
+            throw error("Unterminated string");
+        }
+
+        private JsonNumber readNumber() {
+            int start = pos;
+            while (pos < json.length()) {
+                char c = json.charAt(pos);
+                if (((c >= '0') && (c <= '9')) || (c == '-') || (c == '+') || (c == '.') || (c == 'e') || (c == 'E')) {
+                    pos++;
+                } else {
+                    break;
+                }
+            }
+            if (start == pos) {
+                throw error("Unexpected character '" + json.charAt(pos) + "'");
+            }
+            return new JsonNumber(json.substring(start, pos));
+        }
+
+        private void skipWhitespace() {
+            while ((pos < json.length()) && Character.isWhitespace(json.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        private char peek() {
+            if (pos >= json.length()) {
+                throw error("Unexpected end of input");
+            }
+            return json.charAt(pos);
+        }
+
+        private char next() {
+            char c = peek();
+            pos++;
+            return c;
+        }
+
+        private void expect(char expected) {
+            if (next() != expected) {
+                throw error("Expected '" + expected + "'");
+            }
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at position " + pos + " of the model dump");
+        }
+    }
+}
@@ -21,17 +21,24 @@ import org.tribuo.CategoricalInfo;
 import org.tribuo.Example;
 import org.tribuo.Feature;
 import org.tribuo.ImmutableFeatureMap;
+import org.tribuo.MutableDataset;
 import org.tribuo.impl.ListExample;
+import org.tribuo.test.MockDataSource;
 import org.tribuo.test.MockOutput;
 import org.tribuo.util.Util;
+import ml.dmlc.xgboost4j.java.DMatrix;
+import ml.dmlc.xgboost4j.java.XGBoostError;
 import org.junit.jupiter.api.Test;
 
 import java.util.ArrayList;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
 
 /**
- * Tests for common XGBoost functionality (example conversion).
+ * Tests for common XGBoost functionality (example conversion and the DMatrix cache).
  */
 public class TestXGBoost {
     @Test
@@ -59,6 +66,42 @@ public class TestXGBoost {
         assertArrayEquals(testFakeCollisionValues,Util.toPrimitiveFloat(data),1e-10f);
     }
 
+    @Test
+    public void testDMatrixCache() throws XGBoostError {
+        XGBoostTrainer.clearConvertedDataCache();
+        MutableDataset<MockOutput> dataset = new MutableDataset<>(new MockDataSource(20));
+        DMatrix first;
+        try (DMatrixCache.Lease<MockOutput> lease = DMatrixCache.acquire(dataset,dataset.getFeatureIDMap(),true)) {
+            first = lease.tuple.data;
+            assertEquals(20,lease.tuple.examples.length);
+        }
+
+        // A different feature map object with the same ids reuses the matrix.
+        try (DMatrixCache.Lease<MockOutput> lease = DMatrixCache.acquire(dataset,dataset.getFeatureIDMap(),false)) {
+            assertSame(first,lease.tuple.data);
+        }
+        assertEquals(1,DMatrixCache.size());
+
+        // Changing the iteration order replaces it.
+        dataset.shuffle(true);
+        try (DMatrixCache.Lease<MockOutput> lease = DMatrixCache.acquire(dataset,dataset.getFeatureIDMap(),false)) {
+            assertNotSame(first,lease.tuple.data);
+        }
+        assertEquals(1,DMatrixCache.size());
+        dataset.shuffle(false);
+
+        // Shrinking the bound evicts everything, and stops new matrices being cached.
+        XGBoostTrainer.setConvertedDataCacheSize(0);
+        assertEquals(0,DMatrixCache.size());
+        try (DMatrixCache.Lease<MockOutput> lease = DMatrixCache.acquire(dataset,dataset.getFeatureIDMap(),false)) {
+            assertEquals(20,lease.tuple.examples.length);
+        }
+        assertEquals(0,DMatrixCache.size());
+
+        XGBoostTrainer.setConvertedDataCacheSize(DMatrixCache.DEFAULT_MAX_BYTES);
+        XGBoostTrainer.clearConvertedDataCache();
+    }
+
     private static Example<MockOutput> generateExample(String[] names, double[] values) {
         Example<MockOutput> e = new ListExample<>(new MockOutput("MONKEYS"));
         for (int i = 0; i < names.length; i++) {
@@ -140,6 +140,52 @@ public class CategoricalInfo extends SkeletalVariableInfo {
         }
     }
 
+    /**
+     * Records that the supplied value was observed the supplied number of times.
+     * @param value The observed value.
+     * @param times The number of observations.
+     */
+    private void observe(double value, long times) {
+        if ((value != 0.0) && (times > 0)) {
+            count += (int) times;
+            if (valueCounts != null) {
+                valueCounts.computeIfAbsent(value, k -> new MutableLong()).increment(times);
+            } else if (Double.isNaN(observedValue)) {
+                observedValue = value;
+                observedCount = times;
+            } else if (Math.abs(value - observedValue) < COMPARISON_THRESHOLD) {
+                observedCount += times;
+            } else {
+                valueCounts = new HashMap<>(4);
+                valueCounts.put(observedValue, new MutableLong(observedCount));
+                valueCounts.put(value, new MutableLong(times));
+                observedValue = Double.NaN;
+                observedCount = 0;
+            }
+            values = null;
+        }
+    }
+
+    /**
+     * Returns a new CategoricalInfo with this info's name, combining the value counts of this info
+     * and the supplied one, as if it had observed both sets of values.
+     * <p>
+     * Neither this info nor the supplied one is modified.
+     * @param other The info to merge with.
+     * @return A new CategoricalInfo covering both sets of observations.
+     */
+    public CategoricalInfo merge(CategoricalInfo other) {
+        CategoricalInfo output = new CategoricalInfo(this);
+        if (other.valueCounts != null) {
+            for (Map.Entry<Double,MutableLong> e : other.valueCounts.entrySet()) {
+                output.observe(e.getKey(), e.getValue().longValue());
+            }
+        } else if (!Double.isNaN(other.observedValue)) {
+            output.observe(other.observedValue, other.observedCount);
+        }
+        return output;
+    }
+
     /**
      * Gets the number of times a specific value was observed, and zero if this value is unknown.
      * @param value The value to check.
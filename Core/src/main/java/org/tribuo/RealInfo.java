@@ -155,6 +155,26 @@ public class RealInfo extends SkeletalVariableInfo {
         return sumSquares / (count-1);
     }
 
+    /**
+     * Returns a new RealInfo with this info's name, combining the statistics of this info
+     * and the supplied one, as if it had observed both sets of values.
+     * <p>
+     * Neither this info nor the supplied one is modified.
+     * @param other The info to merge with.
+     * @return A new RealInfo covering both sets of observations.
+     */
+    public RealInfo merge(RealInfo other) {
+        int newCount = count + other.count;
+        if (newCount == 0) {
+            return new RealInfo(name);
+        }
+        // Chan et al's pairwise update for the mean and sum of squared differences.
+        double delta = other.mean - mean;
+        double newMean = mean + delta * other.count / newCount;
+        double newSumSquares = sumSquares + other.sumSquares + delta * delta * ((double) count * other.count) / newCount;
+        return new RealInfo(name, newCount, Math.max(max, other.max), Math.min(min, other.min), newMean, newSumSquares);
+    }
+
     @Override
     public RealInfo copy() {
         return new RealInfo(this);
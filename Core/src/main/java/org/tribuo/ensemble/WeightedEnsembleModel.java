@@ -59,6 +59,22 @@ public final class WeightedEnsembleModel<T extends Output<T>> extends EnsembleMo
         this.combiner = combiner;
     }
 
+    /**
+     * Returns a copy of the ensemble member weights.
+     * @return The weights.
+     */
+    public float[] getWeights() {
+        return Arrays.copyOf(weights,weights.length);
+    }
+
+    /**
+     * Returns the combiner used to aggregate the member predictions.
+     * @return The ensemble combiner.
+     */
+    public EnsembleCombiner<T> getCombiner() {
+        return combiner;
+    }
+
     @Override
     public Prediction<T> predict(Example<T> example) {
         List<Prediction<T>> predictions = new ArrayList<>();
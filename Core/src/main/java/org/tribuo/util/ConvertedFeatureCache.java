@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.tribuo.util;
+
+import org.tribuo.Dataset;
+import org.tribuo.Example;
+import org.tribuo.ImmutableFeatureMap;
+import org.tribuo.Output;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/**
+ * Converts a dataset's examples into a third party library's feature format, optionally in parallel,
+ * and caches the converted features so later train calls on the same dataset can reuse them.
+ * <p>
+ * Entries are keyed on the dataset's identity, and the weak keys let them go when the dataset is collected.
+ * A cached entry is only used if the dataset still iterates the same example objects in the same order,
+ * and the feature ids are unchanged. It can't detect examples which are modified in place after conversion.
+ * <p>
+ * The converted arrays may be shared between train calls, so they must not be modified.
+ * @param <F> The converted type of a single example, e.g., an array of the library's feature nodes.
+ */
+public final class ConvertedFeatureCache<F> {
+
+    private final String formatName;
+
+    private final Map<Dataset<?>,ConvertedFeatures<F>> cache = Collections.synchronizedMap(new WeakHashMap<>());
+
+    /**
+     * Constructs an empty cache.
+     * @param formatName The name of the format, used in error messages.
+     */
+    public ConvertedFeatureCache(String formatName) {
+        this.formatName = formatName;
+    }
+
+    /**
+     * Converts the dataset's examples in its iteration order.
+     * <p>
+     * The converter factory is called once per thread, so the converters it produces can reuse
+     * buffers between examples.
+     * @param data The dataset to convert.
+     * @param featureMap The feature ids to use.
+     * @param useCache Look up the converted features in the cache, and store them if they weren't found.
+     * @param numThreads The number of threads to use for the conversion.
+     * @param arrayConstructor Constructs the output array.
+     * @param converterFactory Produces a converter for each thread.
+     * @param <T> The output type.
+     * @return The converted features, one element per example.
+     */
+    public <T extends Output<T>> F[] convert(Dataset<T> data, ImmutableFeatureMap featureMap, boolean useCache, int numThreads,
+                                             IntFunction<F[]> arrayConstructor, Supplier<Function<Example<T>,F>> converterFactory) {
+        List<Example<T>> examples = new ArrayList<>(data.size());
+        for (Example<T> e : data) {
+            examples.add(e);
+        }
+
+        if (useCache) {
+            ConvertedFeatures<F> cached = cache.get(data);
+            if ((cached != null) && cached.matches(examples,featureMap)) {
+                return cached.features;
+            }
+        }
+
+        F[] features = arrayConstructor.apply(examples.size());
+        int numChunks = Math.min(numThreads, examples.size());
+        if (numChunks <= 1) {
+            convertRange(examples,features,0,examples.size(),converterFactory.get());
+        } else {
+            ExecutorService pool = Executors.newFixedThreadPool(numChunks);
+            try {
+                List<Future<?>> futures = new ArrayList<>(numChunks);
+                int chunkSize = (examples.size() + numChunks - 1) / numChunks;
+                for (int i = 0; i < examples.size(); i += chunkSize) {
+                    final int start = i;
+                    final int end = Math.min(i + chunkSize, examples.size());
+                    futures.add(pool.submit(() -> convertRange(examples,features,start,end,converterFactory.get())));
+                }
+                for (Future<?> f : futures) {
+                    f.get();
+                }
+            } catch (InterruptedException | ExecutionException e) {
+                throw new IllegalStateException("Failed to convert the dataset into " + formatName + " format", e);
+            } finally {
+                pool.shutdown();
+            }
+        }
+
+        if (useCache) {
+            cache.put(data,new ConvertedFeatures<>(examples,featureMap,features));
+        }
+        return features;
+    }
+
+    /**
+     * Empties the cache.
+     */
+    public void clear() {
+        cache.clear();
+    }
+
+    /**
+     * Converts the examples in the range [start, end).
+     */
+    private static <T extends Output<T>, F> void convertRange(List<Example<T>> examples, F[] features, int start, int end, Function<Example<T>,F> converter) {
+        for (int i = start; i < end; i++) {
+            features[i] = converter.apply(examples.get(i));
+        }
+    }
+
+    /**
+     * A converted dataset, along with the example order and feature ids used to produce it.
+     */
+    private static final class ConvertedFeatures<F> {
+        private final Example<?>[] examples;
+        private final ImmutableFeatureMap featureMap;
+        private final F[] features;
+
+        ConvertedFeatures(List<? extends Example<?>> examples, ImmutableFeatureMap featureMap, F[] features) {
+            this.examples = examples.toArray(new Example<?>[0]);
+            this.featureMap = featureMap;
+            this.features = features;
+        }
+
+        /**
+         * Checks the examples are the same objects in the same order, and the feature ids are unchanged.
+         */
+        boolean matches(List<? extends Example<?>> otherExamples, ImmutableFeatureMap otherMap) {
+            if (otherExamples.size() != examples.length) {
+                return false;
+            }
+            for (int i = 0; i < examples.length; i++) {
+                if (otherExamples.get(i) != examples[i]) {
+                    return false;
+                }
+            }
+            if (otherMap == featureMap) {
+                return true;
+            } else if (otherMap.size() != featureMap.size()) {
+                return false;
+            }
+            for (int i = 0; i < featureMap.size(); i++) {
+                if (otherMap.getID(featureMap.get(i).getName()) != i) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.tribuo.util;
+
+import org.tribuo.Example;
+import org.tribuo.Output;
+import org.tribuo.Prediction;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Predicts a batch of examples by splitting it into contiguous chunks and scoring
+ * the chunks on a thread pool. The predictions are returned in input order.
+ * <p>
+ * The pool is created once and reused across calls. Its threads are daemon threads
+ * which exit after they have been idle for {@link #KEEP_ALIVE_SECONDS} seconds, so
+ * a predictor which is no longer referenced doesn't need to be shut down, though
+ * {@link #close()} releases the threads immediately.
+ * <p>
+ * The supplied prediction function must be thread safe.
+ */
+public final class ParallelPredictor implements AutoCloseable {
+
+    /**
+     * The number of seconds an idle pool thread waits before exiting.
+     */
+    public static final long KEEP_ALIVE_SECONDS = 30;
+
+    private static final AtomicInteger poolCounter = new AtomicInteger();
+
+    private final int numThreads;
+
+    private final ThreadPoolExecutor pool;
+
+    /**
+     * Constructs a predictor which uses up to {@code numThreads} threads.
+     * @param numThreads The number of threads, must be greater than 1.
+     */
+    public ParallelPredictor(int numThreads) {
+        if (numThreads < 2) {
+            throw new IllegalArgumentException("numThreads must be greater than 1, found " + numThreads);
+        }
+        this.numThreads = numThreads;
+        String prefix = "tribuo-predict-" + poolCounter.getAndIncrement() + "-";
+        AtomicInteger threadCounter = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(numThreads, numThreads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), (Runnable r) -> {
+            Thread t = new Thread(r, prefix + threadCounter.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        });
+        this.pool.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * The number of threads this predictor uses.
+     * @return The number of threads.
+     */
+    public int getNumThreads() {
+        return numThreads;
+    }
+
+    /**
+     * Predicts each example with the supplied function.
+     * <p>
+     * Batches with fewer examples than threads, and single examples, are predicted
+     * on the calling thread. An {@link IllegalArgumentException} or other unchecked
+     * exception thrown by the function is rethrown on the calling thread.
+     * @param examples The examples to predict.
+     * @param predictFunction The prediction function, must be thread safe.
+     * @param <T> The output type.
+     * @return The predictions in input order.
+     */
+    public <T extends Output<T>> List<Prediction<T>> predict(Iterable<Example<T>> examples, Function<Example<T>,Prediction<T>> predictFunction) {
+        List<Example<T>> exampleList = new ArrayList<>();
+        for (Example<T> e : examples) {
+            exampleList.add(e);
+        }
+        int numChunks = Math.min(numThreads, exampleList.size());
+        if (numChunks <= 1) {
+            List<Prediction<T>> predictions = new ArrayList<>(exampleList.size());
+            for (Example<T> e : exampleList) {
+                predictions.add(predictFunction.apply(e));
+            }
+            return predictions;
+        }
+
+        @SuppressWarnings("unchecked") // Generic array creation.
+        Prediction<T>[] predictions = (Prediction<T>[]) new Prediction[exampleList.size()];
+        List<Future<?>> futures = new ArrayList<>(numChunks);
+        int chunkSize = (exampleList.size() + numChunks - 1) / numChunks;
+        try {
+            for (int i = 0; i < exampleList.size(); i += chunkSize) {
+                final int start = i;
+                final int end = Math.min(i + chunkSize, exampleList.size());
+                futures.add(pool.submit(() -> {
+                    for (int j = start; j < end; j++) {
+                        predictions[j] = predictFunction.apply(exampleList.get(j));
+                    }
+                }));
+            }
+            for (Future<?> f : futures) {
+                f.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while predicting", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Failed to predict the examples", e.getCause());
+        } finally {
+            for (Future<?> f : futures) {
+                f.cancel(true);
+            }
+        }
+        return Arrays.asList(predictions);
+    }
+
+    /**
+     * Shuts down the thread pool. Predictions already running complete, and
+     * subsequent calls to {@link #predict} will throw.
+     */
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+}
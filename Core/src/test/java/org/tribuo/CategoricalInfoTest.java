@@ -156,4 +156,38 @@ public class CategoricalInfoTest {
         checkValueAndProb(c,4.0,0.05);
     }
 
+    @Test
+    public void mergeTest() {
+        CategoricalInfo full = generateFullInfo();
+        CategoricalInfo one = generateOneValueInfo();
+        CategoricalInfo empty = generateEmptyInfo();
+
+        CategoricalInfo merged = full.merge(one);
+        assertEquals("test", merged.getName());
+        assertEquals(45, merged.getCount());
+        assertEquals(5, merged.getUniqueObservations());
+        assertEquals(5, merged.getObservationCount(-1.0));
+        assertEquals(25, merged.getObservationCount(5.0));
+        // The inputs are unchanged
+        assertEquals(20, full.getCount());
+        assertEquals(25, one.getCount());
+
+        CategoricalInfo doubled = one.merge(one);
+        assertEquals(50, doubled.getCount());
+        assertEquals(1, doubled.getUniqueObservations());
+        assertEquals(50, doubled.getObservationCount(5.0));
+
+        assertEquals(20, full.merge(empty).getCount());
+        assertEquals(25, empty.merge(one).getObservationCount(5.0));
+
+        // Matches observing the values directly
+        RealInfo mergedReal = full.generateRealInfo().merge(one.generateRealInfo());
+        RealInfo expectedReal = merged.generateRealInfo();
+        assertEquals(expectedReal.getCount(), mergedReal.getCount());
+        assertEquals(expectedReal.getMean(), mergedReal.getMean(), DELTA);
+        assertEquals(expectedReal.getVariance(), mergedReal.getVariance(), DELTA);
+        assertEquals(-1.0, mergedReal.getMin());
+        assertEquals(5.0, mergedReal.getMax());
+    }
+
 }
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.tribuo.util;
+
+import org.junit.jupiter.api.Test;
+import org.tribuo.Example;
+import org.tribuo.Feature;
+import org.tribuo.ImmutableFeatureMap;
+import org.tribuo.MutableDataset;
+import org.tribuo.impl.ListExample;
+import org.tribuo.test.MockDataSourceProvenance;
+import org.tribuo.test.MockOutput;
+import org.tribuo.test.MockOutputFactory;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class ConvertedFeatureCacheTest {
+
+    private static MutableDataset<MockOutput> generateDataset(int size) {
+        MutableDataset<MockOutput> dataset = new MutableDataset<>(new MockDataSourceProvenance(), new MockOutputFactory());
+        for (int i = 0; i < size; i++) {
+            Example<MockOutput> example = new ListExample<>(new MockOutput(i % 2 == 0 ? "a" : "b"));
+            example.add(new Feature("f" + (i % 7), i));
+            example.add(new Feature("g" + (i % 3), -i));
+            dataset.add(example);
+        }
+        return dataset;
+    }
+
+    private static Supplier<Function<Example<MockOutput>,int[]>> converter(ImmutableFeatureMap featureMap, AtomicInteger counter) {
+        return () -> {
+            counter.incrementAndGet();
+            return (Example<MockOutput> e) -> {
+                int[] ids = new int[e.size()];
+                int i = 0;
+                for (Feature f : e) {
+                    ids[i++] = featureMap.getID(f.getName());
+                }
+                return ids;
+            };
+        };
+    }
+
+    @Test
+    public void testConversion() {
+        MutableDataset<MockOutput> dataset = generateDataset(100);
+        ImmutableFeatureMap featureMap = new ImmutableFeatureMap(dataset.getFeatureMap());
+        ConvertedFeatureCache<int[]> cache = new ConvertedFeatureCache<>("test");
+        AtomicInteger counter = new AtomicInteger();
+
+        int[][] sequential = cache.convert(dataset, featureMap, false, 1, int[][]::new, converter(featureMap, counter));
+        assertEquals(1, counter.get());
+        int[][] parallel = cache.convert(dataset, featureMap, false, 4, int[][]::new, converter(featureMap, counter));
+        // One converter per chunk.
+        assertEquals(5, counter.get());
+        assertEquals(dataset.size(), parallel.length);
+        for (int i = 0; i < sequential.length; i++) {
+            assertArrayEquals(sequential[i], parallel[i]);
+        }
+    }
+
+    @Test
+    public void testCache() {
+        MutableDataset<MockOutput> dataset = generateDataset(50);
+        ImmutableFeatureMap featureMap = new ImmutableFeatureMap(dataset.getFeatureMap());
+        ConvertedFeatureCache<int[]> cache = new ConvertedFeatureCache<>("test");
+        AtomicInteger counter = new AtomicInteger();
+
+        int[][] first = cache.convert(dataset, featureMap, true, 2, int[][]::new, converter(featureMap, counter));
+        int[][] second = cache.convert(dataset, featureMap, true, 2, int[][]::new, converter(featureMap, counter));
+        assertSame(first, second);
+        // Not looked up when the cache isn't used.
+        assertNotSame(first, cache.convert(dataset, featureMap, false, 2, int[][]::new, converter(featureMap, counter)));
+
+        // Changing the examples invalidates the entry.
+        Example<MockOutput> example = new ListExample<>(new MockOutput("a"));
+        example.add(new Feature("f0", 1.0));
+        dataset.add(example);
+        int[][] third = cache.convert(dataset, featureMap, true, 2, int[][]::new, converter(featureMap, counter));
+        assertNotSame(first, third);
+        assertEquals(51, third.length);
+
+        cache.clear();
+        assertNotSame(third, cache.convert(dataset, featureMap, true, 2, int[][]::new, converter(featureMap, counter)));
+    }
+}
@@ -17,21 +17,44 @@
 package org.tribuo.data.columnar;
 
 import com.oracle.labs.mlrg.olcut.config.Config;
+import com.oracle.labs.mlrg.olcut.config.PropertyException;
 import org.tribuo.ConfigurableDataSource;
 import org.tribuo.Example;
 import org.tribuo.Output;
 import org.tribuo.OutputFactory;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A {@link ConfigurableDataSource} base class which takes columnar data (e.g., csv or DB table rows) and generates {@link Example}s.
+ * <p>
+ * If numThreads is greater than one, rows are read sequentially from the {@link ColumnarIterator} and
+ * converted into examples in batches on a worker pool. The examples are returned in row order.
+ * The {@link RowProcessor} is shared between the workers, so its processors and extractors must be thread safe.
  */
 public abstract class ColumnarDataSource<T extends Output<T>> implements ConfigurableDataSource<T> {
 
+    // The number of rows converted into examples by each task in the parallel iteration mode.
+    private static final int BATCH_SIZE = 256;
+
+    // The number of seconds an idle worker thread waits before exiting.
+    private static final long WORKER_KEEP_ALIVE_SECONDS = 30;
+
+    private static final AtomicInteger poolCounter = new AtomicInteger();
+
     @Config(mandatory = true,description="The output factory to use.")
     private OutputFactory<T> outputFactory;
 
@@ -41,6 +64,9 @@ public abstract class ColumnarDataSource<T extends Output<T>> implements Configu
     @Config(description="Is an output required from each row?")
     protected boolean outputRequired = true;
 
+    @Config(description="Number of threads to use when generating examples. Some sources read all their data before returning the first example when this is greater than one, see the source's iterator documentation.")
+    protected int numThreads = 1;
+
     /**
      * For OLCUT.
      */
@@ -53,9 +79,34 @@ public abstract class ColumnarDataSource<T extends Output<T>> implements Configu
      * @param outputRequired Is an output required for each example.
      */
     protected ColumnarDataSource(OutputFactory<T> outputFactory, RowProcessor<T> rowProcessor, boolean outputRequired) {
+        this(outputFactory, rowProcessor, outputRequired, 1);
+    }
+
+    /**
+     * Constructs a columnar data source with the specified parameters.
+     * @param outputFactory The output factory.
+     * @param rowProcessor The row processor which converts rows into examples.
+     * @param outputRequired Is an output required for each example.
+     * @param numThreads The number of threads to use when generating examples.
+     */
+    protected ColumnarDataSource(OutputFactory<T> outputFactory, RowProcessor<T> rowProcessor, boolean outputRequired, int numThreads) {
+        if (numThreads < 1) {
+            throw new IllegalArgumentException("numThreads must be positive, found " + numThreads);
+        }
         this.outputFactory = outputFactory;
         this.rowProcessor = rowProcessor;
         this.outputRequired = outputRequired;
+        this.numThreads = numThreads;
+    }
+
+    /**
+     * Used by the OLCUT configuration system, and should not be called by external code.
+     */
+    @Override
+    public void postConfig() {
+        if (numThreads < 1) {
+            throw new PropertyException("","numThreads","numThreads must be positive, found " + numThreads);
+        }
     }
 
     /**
@@ -74,7 +125,37 @@ public abstract class ColumnarDataSource<T extends Output<T>> implements Configu
 
     @Override
     public Iterator<Example<T>> iterator() {
-        return new InnerIterator<>(rowProcessor,rowIterator(),outputRequired);
+        if (numThreads > 1) {
+            return new ParallelInnerIterator<>(rowProcessor,rowIterator(),outputRequired,numThreads);
+        } else {
+            return new InnerIterator<>(rowProcessor,rowIterator(),outputRequired);
+        }
+    }
+
+    /**
+     * Copies the row processor with clean state and expands its regexes against the supplied fields.
+     * <p>
+     * Example generation doesn't mutate the returned processor, so it can be shared between threads.
+     * @param fields The field names of the rows which will be processed.
+     * @return A configured row processor.
+     */
+    protected RowProcessor<T> expandedRowProcessor(List<String> fields) {
+        return expand(rowProcessor, fields);
+    }
+
+    /**
+     * Copies the processor with clean state and expands its regexes against the supplied fields.
+     * @param processor The processor to copy.
+     * @param fields The field names.
+     * @param <T> The output type.
+     * @return A configured row processor.
+     */
+    private static <T extends Output<T>> RowProcessor<T> expand(RowProcessor<T> processor, List<String> fields) {
+        RowProcessor<T> copy = processor.cleanCopy();
+        if (!copy.isConfigured()) {
+            copy.expandRegexMapping(fields);
+        }
+        return copy;
     }
 
     /**
@@ -86,7 +167,8 @@ public abstract class ColumnarDataSource<T extends Output<T>> implements Configu
 
     /**
      * Wraps the columnar iterator and converts it into an iterator of example.
-     * Copies the RowProcessor and expands it's regexes first.
+     * Copies the RowProcessor and expands it's regexes first, then restricts the
+     * columnar iterator to the fields the RowProcessor reads.
      * @param <T> The output type.
      */
     private static class InnerIterator<T extends Output<T>> implements Iterator<Example<T>> {
@@ -97,10 +179,8 @@ public abstract class ColumnarDataSource<T extends Output<T>> implements Configu
         private Example<T> buffer = null;
 
         InnerIterator(RowProcessor<T> processor, ColumnarIterator iterator, boolean outputRequired) {
-            this.processor = processor.copy();
-            if (!this.processor.isConfigured()) {
-                this.processor.expandRegexMapping(iterator.getFields());
-            }
+            this.processor = expand(processor, iterator.getFields());
+            this.processor.getRequiredFields().ifPresent(iterator::setProjection);
             this.iterator = iterator;
             this.outputRequired = outputRequired;
         }
@@ -133,4 +213,102 @@ public abstract class ColumnarDataSource<T extends Output<T>> implements Configu
             }
         }
     }
+
+    /**
+     * Wraps the columnar iterator and converts batches of rows into examples on a worker pool.
+     * Copies the RowProcessor and expands it's regexes first, the copy is shared by the workers.
+     * <p>
+     * At most two batches per thread are in flight, so the memory use is bounded irrespective of
+     * the size of the data source. The pool is shut down when the rows are exhausted or a batch fails.
+     * Its threads are daemon threads which exit once idle for {@code WORKER_KEEP_ALIVE_SECONDS}, so an
+     * iterator which is abandoned before the end doesn't leak them.
+     * @param <T> The output type.
+     */
+    private static class ParallelInnerIterator<T extends Output<T>> implements Iterator<Example<T>> {
+        private final boolean outputRequired;
+        private final ColumnarIterator iterator;
+        private final RowProcessor<T> processor;
+        private final ThreadPoolExecutor pool;
+        private final int maxInFlight;
+        private final ArrayDeque<Future<List<Example<T>>>> inFlight = new ArrayDeque<>();
+
+        private Iterator<Example<T>> buffer = Collections.emptyIterator();
+
+        ParallelInnerIterator(RowProcessor<T> processor, ColumnarIterator iterator, boolean outputRequired, int numThreads) {
+            this.processor = expand(processor, iterator.getFields());
+            this.processor.getRequiredFields().ifPresent(iterator::setProjection);
+            this.iterator = iterator;
+            this.outputRequired = outputRequired;
+            this.maxInFlight = 2 * numThreads;
+            String prefix = "columnar-data-source-" + poolCounter.getAndIncrement() + "-";
+            AtomicInteger threadCounter = new AtomicInteger();
+            this.pool = new ThreadPoolExecutor(numThreads, numThreads, WORKER_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), (Runnable r) -> {
+                Thread t = new Thread(r, prefix + threadCounter.getAndIncrement());
+                t.setDaemon(true);
+                return t;
+            });
+            this.pool.allowCoreThreadTimeOut(true);
+        }
+
+        /**
+         * Reads batches of rows and submits them to the pool until the in flight limit is reached.
+         */
+        private void submitBatches() {
+            while ((inFlight.size() < maxInFlight) && iterator.hasNext()) {
+                List<ColumnarIterator.Row> batch = new ArrayList<>(BATCH_SIZE);
+                while ((batch.size() < BATCH_SIZE) && iterator.hasNext()) {
+                    batch.add(iterator.next());
+                }
+                inFlight.add(pool.submit(() -> {
+                    List<Example<T>> examples = new ArrayList<>(batch.size());
+                    for (ColumnarIterator.Row row : batch) {
+                        processor.generateExample(row,outputRequired).ifPresent(examples::add);
+                    }
+                    return examples;
+                }));
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!buffer.hasNext()) {
+                try {
+                    submitBatches();
+                } catch (RuntimeException e) {
+                    pool.shutdownNow();
+                    throw e;
+                }
+                Future<List<Example<T>>> next = inFlight.poll();
+                if (next == null) {
+                    pool.shutdown();
+                    return false;
+                }
+                try {
+                    buffer = next.get().iterator();
+                } catch (InterruptedException e) {
+                    pool.shutdownNow();
+                    throw new IllegalStateException("Interrupted while generating examples", e);
+                } catch (ExecutionException e) {
+                    pool.shutdownNow();
+                    if (e.getCause() instanceof RuntimeException) {
+                        throw (RuntimeException) e.getCause();
+                    } else if (e.getCause() instanceof Error) {
+                        throw (Error) e.getCause();
+                    } else {
+                        throw new IllegalStateException("Failed to generate examples", e.getCause());
+                    }
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public Example<T> next() {
+            if (hasNext()) {
+                return buffer.next();
+            } else {
+                throw new NoSuchElementException("No more data");
+            }
+        }
+    }
 }
@@ -24,6 +24,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.Set;
 import java.util.function.Consumer;
 import java.util.logging.Logger;
 
@@ -39,6 +40,11 @@ public abstract class ColumnarIterator extends IOSpliterator<ColumnarIterator.Ro
     protected List<String> fields;
     protected Optional<Row> currentRow = Optional.empty();
 
+    /**
+     * The fields to materialise into each row, or null if all fields are materialised.
+     */
+    protected Set<String> projection = null;
+
     /**
      * A representation of a row of untyped data from a columnar data source. In addition to its row data it stores a
      * canonical field list and its index (from 0) in the original data source. It should be immutable once constructed.
@@ -106,6 +112,27 @@ public abstract class ColumnarIterator extends IOSpliterator<ColumnarIterator.Ro
         return fields;
     }
 
+    /**
+     * Restricts the fields which are read into each {@link Row} to the supplied set.
+     * <p>
+     * Fields outside the projection are skipped when reading and are absent from {@link Row#getRowData()},
+     * though {@link Row#getFields()} still returns the full field list. Rows which have already been
+     * read are not affected. A null projection reads all fields.
+     * @param projection The field names to read, or null to read all fields.
+     */
+    public void setProjection(Set<String> projection) {
+        this.projection = projection;
+    }
+
+    /**
+     * Checks if the named field should be read into each row.
+     * @param fieldName The field name.
+     * @return True if the field is in the projection, or if there is no projection.
+     */
+    protected boolean isProjected(String fieldName) {
+        return (projection == null) || projection.contains(fieldName);
+    }
+
     @Override
     public boolean hasNext() {
         if (currentRow.isPresent()) {
@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.tribuo.data.columnar;
+
+/**
+ * Parses doubles from {@link CharSequence}s without first converting them into a {@link String}.
+ * <p>
+ * Plain decimal values with at most 18 significant digits and a small enough exponent are parsed
+ * directly, as they can be computed exactly with a single floating point multiply or divide. All
+ * other inputs (e.g., long mantissas, "NaN", hexadecimal or type suffixed values) fall back to
+ * {@link Double#parseDouble}, so the result is always identical to {@code Double.parseDouble(value.toString())}.
+ */
+public final class DoubleParser {
+
+    /**
+     * The exactly representable powers of ten.
+     */
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20,
+            1e21, 1e22
+    };
+
+    /**
+     * The largest mantissa which is exactly representable as a double.
+     */
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    private static final int MAX_DIGITS = 18;
+
+    private static final int MAX_EXPONENT_DIGITS = 5;
+
+    private DoubleParser() {}
+
+    /**
+     * Parses the supplied value into a double, returning the same value as
+     * {@code Double.parseDouble(value.toString())}.
+     * @param value The value to parse.
+     * @return The parsed double.
+     * @throws NumberFormatException If the value is not a valid double.
+     */
+    public static double parseDouble(CharSequence value) {
+        int length = value.length();
+        int i = 0;
+        boolean negative = false;
+        if (length > 0) {
+            char c = value.charAt(0);
+            if (c == '-') {
+                negative = true;
+                i++;
+            } else if (c == '+') {
+                i++;
+            }
+        }
+
+        long mantissa = 0;
+        int numDigits = 0;
+        int exponent = 0;
+        boolean seenDigit = false;
+
+        // Integer part
+        while (i < length) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                break;
+            }
+            seenDigit = true;
+            if ((mantissa != 0) || (c != '0')) {
+                if (numDigits == MAX_DIGITS) {
+                    return Double.parseDouble(value.toString());
+                }
+                mantissa = (mantissa * 10) + (c - '0');
+                numDigits++;
+            }
+            i++;
+        }
+
+        // Fractional part
+        if ((i < length) && (value.charAt(i) == '.')) {
+            i++;
+            while (i < length) {
+                char c = value.charAt(i);
+                if (c < '0' || c > '9') {
+                    break;
+                }
+                seenDigit = true;
+                if ((mantissa != 0) || (c != '0')) {
+                    if (numDigits == MAX_DIGITS) {
+                        return Double.parseDouble(value.toString());
+                    }
+                    mantissa = (mantissa * 10) + (c - '0');
+                    numDigits++;
+                }
+                exponent--;
+                i++;
+            }
+        }
+
+        if (!seenDigit) {
+            return Double.parseDouble(value.toString());
+        }
+
+        // Exponent
+        if ((i < length) && ((value.charAt(i) == 'e') || (value.charAt(i) == 'E'))) {
+            i++;
+            boolean negativeExponent = false;
+            if (i < length) {
+                char c = value.charAt(i);
+                if (c == '-') {
+                    negativeExponent = true;
+                    i++;
+                } else if (c == '+') {
+                    i++;
+                }
+            }
+            int explicitExponent = 0;
+            int exponentDigits = 0;
+            while (i < length) {
+                char c = value.charAt(i);
+                if (c < '0' || c > '9') {
+                    break;
+                }
+                if (exponentDigits == MAX_EXPONENT_DIGITS) {
+                    return Double.parseDouble(value.toString());
+                }
+                explicitExponent = (explicitExponent * 10) + (c - '0');
+                exponentDigits++;
+                i++;
+            }
+            if (exponentDigits == 0) {
+                return Double.parseDouble(value.toString());
+            }
+            exponent += negativeExponent ? -explicitExponent : explicitExponent;
+        }
+
+        if (i != length) {
+            return Double.parseDouble(value.toString());
+        }
+
+        if (mantissa == 0) {
+            return negative ? -0.0 : 0.0;
+        } else if ((mantissa > MAX_EXACT_MANTISSA) || (exponent < -22) || (exponent > 22)) {
+            return Double.parseDouble(value.toString());
+        } else {
+            // Both operands are exact, so IEEE 754 rounds the result correctly.
+            double result = exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent];
+            return negative ? -result : result;
+        }
+    }
+}
@@ -29,6 +29,8 @@ import java.util.List;
  * <p>
  * New features that are created must use the {@link ColumnarFeature#CONJUNCTION} String
  * as their field name, as enforced by the two field {@link ColumnarFeature} constructor.
+ * <p>
+ * Feature processors may be called concurrently on different feature lists and must be thread safe.
  */
 public interface FeatureProcessor extends Configurable, Provenancable<ConfiguredObjectProvenance> {
 
@@ -21,10 +21,13 @@ import com.oracle.labs.mlrg.olcut.provenance.ConfiguredObjectProvenance;
 import com.oracle.labs.mlrg.olcut.provenance.Provenancable;
 
 import java.util.Optional;
+import java.util.Set;
 
 /**
  * Extracts a value from a field to be placed in an {@link org.tribuo.Example}'s metadata field.
  * Principally used to pull out Strings and floats for example names and weights respectively.
+ * <p>
+ * Extractors are shared between the threads of a parallel {@link ColumnarDataSource}, and must be thread safe.
  */
 public interface FieldExtractor<T> extends Configurable, Provenancable<ConfiguredObjectProvenance> {
 
@@ -47,4 +50,16 @@ public interface FieldExtractor<T> extends Configurable, Provenancable<Configure
      * @return A value.
      */
     Optional<T> extract(ColumnarIterator.Row row);
+
+    /**
+     * Returns the names of the fields this extractor reads from a row, or {@link Optional#empty()}
+     * if it may read any field.
+     * <p>
+     * Used to compute the columns a {@link RowProcessor} needs, so the other columns can be skipped when reading.
+     * Defaults to {@link Optional#empty()}.
+     * @return The field names read by this extractor.
+     */
+    default Optional<Set<String>> getRequiredFields() {
+        return Optional.empty();
+    }
 }
@@ -24,6 +24,10 @@ import java.util.List;
 
 /**
  * An interface for things that process the columns in a data set.
+ * <p>
+ * A {@link ColumnarDataSource} with more than one thread calls {@link #process} concurrently,
+ * so implementations must be thread safe. Per call state (e.g., a tokenizer) should be held in
+ * a {@link ThreadLocal} or allocated per call.
  */
 public interface FieldProcessor extends Configurable, Provenancable<ConfiguredObjectProvenance> {
 
@@ -67,6 +71,20 @@ public interface FieldProcessor extends Configurable, Provenancable<ConfiguredOb
      */
     public List<ColumnarFeature> process(String value);
 
+    /**
+     * Processes the field value and generates a (possibly empty) list of {@link ColumnarFeature}s.
+     * <p>
+     * Used by the {@link IndexedRow} path, which supplies field values without converting them into
+     * Strings. The value may be reused after this method returns, so implementations must not retain it.
+     * The default implementation converts the value into a String and calls {@link #process(String)},
+     * processors which can work on the characters directly should override it.
+     * @param value The field value to process.
+     * @return A list of {@link ColumnarFeature}s.
+     */
+    default public List<ColumnarFeature> process(CharSequence value) {
+        return process(value.toString());
+    }
+
     /**
      * Returns the feature type this FieldProcessor generates.
      * @return The feature type.
@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.tribuo.data.columnar;
+
+import java.util.List;
+
+/**
+ * A row whose fields are accessed by column index, without creating a {@link String} for each field.
+ * <p>
+ * Implementations may reuse the returned {@link CharSequence}s, and the row itself, when advancing to
+ * the next row, so neither should be retained after processing the row. Use {@link #toRow()} to get an
+ * independent copy.
+ */
+public interface IndexedRow {
+
+    /**
+     * The row index in the source.
+     * @return The row index.
+     */
+    public long getIndex();
+
+    /**
+     * The field names, in column order.
+     * @return The field names.
+     */
+    public List<String> getFields();
+
+    /**
+     * Looks up the column index of the supplied field name.
+     * @param fieldName The field name.
+     * @return The column index, or -1 if the field is not present.
+     */
+    public int getFieldIndex(String fieldName);
+
+    /**
+     * Gets the value of the specified column.
+     * <p>
+     * The value is only valid until the row advances.
+     * @param columnIndex The column index.
+     * @return The field value.
+     */
+    public CharSequence get(int columnIndex);
+
+    /**
+     * Copies this row into a {@link ColumnarIterator.Row} which maps field names to String values.
+     * @return A copy of this row.
+     */
+    public ColumnarIterator.Row toRow();
+}
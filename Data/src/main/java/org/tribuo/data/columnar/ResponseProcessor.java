@@ -26,6 +26,8 @@ import java.util.Optional;
 
 /**
  * An interface that will take the response field and produce an {@link Output}.
+ * <p>
+ * Implementations must be thread safe, as the response may be processed from multiple threads.
  */
 public interface ResponseProcessor<T extends Output<T>> extends Configurable, Provenancable<ConfiguredObjectProvenance> {
 
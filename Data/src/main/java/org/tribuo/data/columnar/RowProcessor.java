@@ -54,6 +54,11 @@ import java.util.stream.Collectors;
  * <p>
  * If the metadata extractors are invalid (i.e., two extractors write to the same metadata key),
  * the RowProcessor throws {@link PropertyException}.
+ * <p>
+ * Once the regexes have been expanded (or if there are none) the example and feature generation methods
+ * do not mutate the RowProcessor, and are safe to call concurrently provided the processors and extractors
+ * are thread safe. {@link #expandRegexMapping} is not thread safe, and should be called on a copy with clean
+ * state (see {@link ColumnarDataSource#expandedRowProcessor}) before the RowProcessor is shared between threads.
  */
 public class RowProcessor<T extends Output<T>> implements Configurable, Provenancable<ConfiguredObjectProvenance> {
 
@@ -266,21 +271,64 @@ public class RowProcessor<T extends Output<T>> implements Configurable, Provenan
             logger.warning(String.format("Row %d empty of features, omitting", row.getIndex()));
             return Optional.empty();
         } else {
-            T label = labelOpt.orElse(responseProcessor.getOutputFactory().getUnknownOutput());
+            return Optional.of(createExample(labelOpt,features,row));
+        }
+    }
+
+    /**
+     * Generate an {@link Example} from the supplied indexed row. Returns an empty Optional if
+     * there are no features, or the response is required but it was not found. The latter case is
+     * used at training time.
+     * <p>
+     * The features are generated from the field values without converting them into Strings, see
+     * {@link FieldProcessor#process(CharSequence)}. The row is only copied into a {@link ColumnarIterator.Row}
+     * if there are metadata or weight extractors.
+     * @param row The row to process.
+     * @param outputRequired If an Output must be found in the row to return an Example.
+     * @return An Optional containing an Example if the row was valid, an empty Optional otherwise.
+     */
+    public Optional<Example<T>> generateExample(IndexedRow row, boolean outputRequired) {
+        int responseIdx = row.getFieldIndex(responseProcessor.getFieldName());
+        String responseValue = responseIdx > -1 ? row.get(responseIdx).toString() : null;
+        Optional<T> labelOpt = responseProcessor.process(responseValue);
+        if (!labelOpt.isPresent() && outputRequired) {
+            return Optional.empty();
+        }
 
-            Map<String,Object> metadata = generateMetadata(row);
+        List<ColumnarFeature> features = generateFeatures(row);
 
-            Example<T> example;
-            if (weightExtractor == null) {
-                example = new ArrayExample<>(label,metadata);
-            } else {
-                example = new ArrayExample<>(label,
-                        weightExtractor.extract(row).orElse(Example.DEFAULT_WEIGHT),
-                        metadata);
-            }
-            example.addAll(features);
-            return Optional.of(example);
+        if (features.isEmpty()) {
+            logger.warning(String.format("Row %d empty of features, omitting", row.getIndex()));
+            return Optional.empty();
+        } else if (metadataExtractors.isEmpty() && (weightExtractor == null)) {
+            return Optional.of(createExample(labelOpt,features,null));
+        } else {
+            return Optional.of(createExample(labelOpt,features,row.toRow()));
+        }
+    }
+
+    /**
+     * Builds the example from the extracted label and features, adding the metadata and weight.
+     * @param labelOpt The label, the unknown output is used if it's empty.
+     * @param features The features.
+     * @param row The row to extract the metadata and weight from, may be null if there are no extractors.
+     * @return The example.
+     */
+    private Example<T> createExample(Optional<T> labelOpt, List<ColumnarFeature> features, ColumnarIterator.Row row) {
+        T label = labelOpt.orElse(responseProcessor.getOutputFactory().getUnknownOutput());
+
+        Map<String,Object> metadata = generateMetadata(row);
+
+        Example<T> example;
+        if (weightExtractor == null) {
+            example = new ArrayExample<>(label,metadata);
+        } else {
+            example = new ArrayExample<>(label,
+                    weightExtractor.extract(row).orElse(Example.DEFAULT_WEIGHT),
+                    metadata);
         }
+        example.addAll(features);
+        return example;
     }
 
     /**
@@ -361,6 +409,58 @@ public class RowProcessor<T extends Output<T>> implements Configurable, Provenan
         return features;
     }
 
+    /**
+     * Generates the features from the supplied indexed row.
+     * <p>
+     * Each field value is passed to {@link FieldProcessor#process(CharSequence)} after the same
+     * newline replacement and trimming as {@link #generateFeatures(Map)}.
+     * @param row The row to process.
+     * @return A (possibly empty) list of {@link ColumnarFeature}s.
+     */
+    public List<ColumnarFeature> generateFeatures(IndexedRow row) {
+        if (!configured) {
+            throw new IllegalStateException("expandRegexMapping not called, yet there are entries in regexMappingProcessors which have not been bound to a field name.");
+        }
+        List<ColumnarFeature> features = new ArrayList<>();
+
+        for (Map.Entry<String,FieldProcessor> e : fieldProcessorMap.entrySet()) {
+            int idx = row.getFieldIndex(e.getKey());
+            if (idx > -1) {
+                features.addAll(e.getValue().process(normalise(row.get(idx))));
+            }
+        }
+
+        for (FeatureProcessor f : featureProcessors) {
+            features = f.process(features);
+        }
+
+        return features;
+    }
+
+    /**
+     * Equivalent to {@code value.toString().replace('\n', ' ').trim()}, but only creates a String
+     * if the value contains a newline.
+     * @param value The value to normalise.
+     * @return The normalised value.
+     */
+    private static CharSequence normalise(CharSequence value) {
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            if (value.charAt(i) == '\n') {
+                return value.toString().replace('\n', ' ').trim();
+            }
+        }
+        int start = 0;
+        int end = length;
+        while ((start < end) && (value.charAt(start) <= ' ')) {
+            start++;
+        }
+        while ((end > start) && (value.charAt(end - 1) <= ' ')) {
+            end--;
+        }
+        return (start == 0) && (end == length) ? value : value.subSequence(start, end);
+    }
+
     /**
      * The set of column names this will use for the feature processing.
      * @return The set of column names it processes.
@@ -369,6 +469,41 @@ public class RowProcessor<T extends Output<T>> implements Configurable, Provenan
         return Collections.unmodifiableSet(fieldProcessorMap.keySet());
     }
 
+    /**
+     * Returns the set of fields this RowProcessor reads from each row.
+     * <p>
+     * This is the union of the response field, the fields with a field processor, and the fields
+     * read by the metadata and weight extractors. Columnar iterators use it to skip the other columns.
+     * <p>
+     * Returns {@link Optional#empty()} if any field may be read, i.e., if the regex mappings have not been
+     * expanded or an extractor does not report the fields it reads.
+     * @return The required field names, or {@link Optional#empty()} if all fields may be required.
+     */
+    public Optional<Set<String>> getRequiredFields() {
+        if (!configured) {
+            return Optional.empty();
+        }
+        Set<String> fields = new HashSet<>(fieldProcessorMap.keySet());
+        fields.add(responseProcessor.getFieldName());
+        for (FieldExtractor<?> extractor : metadataExtractors) {
+            Optional<Set<String>> extractorFields = extractor.getRequiredFields();
+            if (extractorFields.isPresent()) {
+                fields.addAll(extractorFields.get());
+            } else {
+                return Optional.empty();
+            }
+        }
+        if (weightExtractor != null) {
+            Optional<Set<String>> weightFields = weightExtractor.getRequiredFields();
+            if (weightFields.isPresent()) {
+                fields.addAll(weightFields.get());
+            } else {
+                return Optional.empty();
+            }
+        }
+        return Optional.of(Collections.unmodifiableSet(fields));
+    }
+
     /**
      * Returns a description of the row processor and it's fields.
      * @return A String description of the RowProcessor.
@@ -524,6 +659,15 @@ public class RowProcessor<T extends Output<T>> implements Configurable, Provenan
      */
     @Deprecated
     public RowProcessor<T> copy() {
+        return cleanCopy();
+    }
+
+    /**
+     * Returns a RowProcessor with clean state and the same configuration as this row processor,
+     * for use by the data sources until the public copy API is replaced.
+     * @return a RowProcessor instance with clean state and the same configuration as this row processor.
+     */
+    RowProcessor<T> cleanCopy() {
         return new RowProcessor<>(metadataExtractors, weightExtractor, responseProcessor, fieldProcessorMap, regexMappingProcessors, featureProcessors);
     }
 
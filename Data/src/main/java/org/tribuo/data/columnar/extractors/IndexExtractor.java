@@ -23,7 +23,9 @@ import org.tribuo.Example;
 import org.tribuo.data.columnar.ColumnarIterator;
 import org.tribuo.data.columnar.FieldExtractor;
 
+import java.util.Collections;
 import java.util.Optional;
+import java.util.Set;
 
 /**
  * An Extractor with special casing for loading the index from a Row.
@@ -65,6 +67,15 @@ public class IndexExtractor implements FieldExtractor<Long> {
         return row.getIndex() == -1 ? Optional.empty() : Optional.of(row.getIndex());
     }
 
+    /**
+     * The index extractor doesn't read any fields.
+     * @return An empty set.
+     */
+    @Override
+    public Optional<Set<String>> getRequiredFields() {
+        return Optional.of(Collections.emptySet());
+    }
+
     @Override
     public ConfiguredObjectProvenance getProvenance() {
         return new ConfiguredObjectProvenanceImpl(this, "IndexExtractor");
@@ -20,7 +20,9 @@ import com.oracle.labs.mlrg.olcut.config.Config;
 import org.tribuo.data.columnar.ColumnarIterator;
 import org.tribuo.data.columnar.FieldExtractor;
 
+import java.util.Collections;
 import java.util.Optional;
+import java.util.Set;
 import java.util.logging.Logger;
 
 /**
@@ -107,6 +109,11 @@ public abstract class SimpleFieldExtractor<T> implements FieldExtractor<T> {
         }
     }
 
+    @Override
+    public Optional<Set<String>> getRequiredFields() {
+        return Optional.of(Collections.singleton(fieldName));
+    }
+
     @Override
     public String toString() {
         return this.getClass().getSimpleName() + "(fieldName=" + fieldName + ", metadataName=" + metadataName + ")";
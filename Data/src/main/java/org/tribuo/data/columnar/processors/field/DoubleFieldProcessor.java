@@ -20,6 +20,7 @@ import com.oracle.labs.mlrg.olcut.config.Config;
 import com.oracle.labs.mlrg.olcut.provenance.ConfiguredObjectProvenance;
 import com.oracle.labs.mlrg.olcut.provenance.impl.ConfiguredObjectProvenanceImpl;
 import org.tribuo.data.columnar.ColumnarFeature;
+import org.tribuo.data.columnar.DoubleParser;
 import org.tribuo.data.columnar.FieldProcessor;
 
 import java.util.Collections;
@@ -60,16 +61,28 @@ public class DoubleFieldProcessor implements FieldProcessor {
 
     @Override
     public List<ColumnarFeature> process(String value) {
+        return process((CharSequence) value);
+    }
+
+    /**
+     * Parses the value directly from the characters, without creating a String for values
+     * which are plain decimals.
+     * @param value The field value to process.
+     * @return A list containing the feature, or an empty list if the value was zero, empty or not a double.
+     */
+    @Override
+    public List<ColumnarFeature> process(CharSequence value) {
         try {
-            double parsedValue = Double.parseDouble(value);
+            double parsedValue = DoubleParser.parseDouble(value);
             if (parsedValue == 0.0) {
                 return Collections.emptyList();
             } else {
-                return Collections.singletonList(new ColumnarFeature(fieldName, "value", Double.parseDouble(value)));
+                return Collections.singletonList(new ColumnarFeature(fieldName, "value", parsedValue));
             }
         } catch (NumberFormatException ex) {
-            if(!value.trim().isEmpty()){
-                logger.warning(String.format("Non-double value %s in %s", value, fieldName));
+            String stringValue = value.toString();
+            if(!stringValue.trim().isEmpty()){
+                logger.warning(String.format("Non-double value %s in %s", stringValue, fieldName));
             }
             return Collections.emptyList();
         }
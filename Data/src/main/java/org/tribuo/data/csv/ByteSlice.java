@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.tribuo.data.csv;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A reusable {@link CharSequence} view over a range of UTF-8 bytes.
+ * <p>
+ * ASCII ranges are read directly from the buffer. Ranges containing other characters
+ * are decoded into a String on first access, as their char indices don't line up with
+ * the byte indices.
+ */
+final class ByteSlice implements CharSequence {
+
+    private ByteBuffer buffer;
+    private int offset;
+    private int length;
+    private boolean ascii;
+    private String decoded;
+
+    /**
+     * Creates an empty slice.
+     */
+    ByteSlice() {
+        this.buffer = ByteBuffer.allocate(0);
+        this.ascii = true;
+    }
+
+    private ByteSlice(ByteBuffer buffer, int offset, int length, boolean ascii) {
+        set(buffer,offset,length,ascii);
+    }
+
+    /**
+     * Points this slice at a new range.
+     * @param buffer The buffer.
+     * @param offset The start of the range in the buffer.
+     * @param length The length of the range in bytes.
+     * @param ascii Is the range entirely ASCII.
+     */
+    void set(ByteBuffer buffer, int offset, int length, boolean ascii) {
+        this.buffer = buffer;
+        this.offset = offset;
+        this.length = length;
+        this.ascii = ascii;
+        this.decoded = null;
+    }
+
+    @Override
+    public int length() {
+        return ascii ? length : toString().length();
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (ascii) {
+            if ((index < 0) || (index >= length)) {
+                throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + length);
+            }
+            return (char) buffer.get(offset + index);
+        } else {
+            return toString().charAt(index);
+        }
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (ascii) {
+            if ((start < 0) || (end > length) || (start > end)) {
+                throw new IndexOutOfBoundsException("Range [" + start + "," + end + ") out of bounds for length " + length);
+            }
+            return new ByteSlice(buffer, offset + start, end - start, true);
+        } else {
+            return toString().subSequence(start, end);
+        }
+    }
+
+    @Override
+    public String toString() {
+        if (decoded == null) {
+            byte[] bytes = new byte[length];
+            ByteBuffer view = buffer.duplicate();
+            view.position(offset);
+            view.get(bytes);
+            decoded = new String(bytes, ascii ? StandardCharsets.US_ASCII : StandardCharsets.UTF_8);
+        }
+        return decoded;
+    }
+}
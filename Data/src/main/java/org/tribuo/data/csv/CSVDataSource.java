@@ -45,15 +45,23 @@ import java.nio.file.Paths;
 import java.time.Instant;
 import java.time.OffsetDateTime;
 import java.time.ZoneId;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * A {@link DataSource} for loading separable data from a text file (e.g., CSV, TSV)
  * and applying {@link FieldProcessor}s to it.
  */
 public class CSVDataSource<T extends Output<T>> extends ColumnarDataSource<T> {
+    private static final Logger logger = Logger.getLogger(CSVDataSource.class.getName());
 
     private URI dataFile;
 
@@ -66,6 +74,9 @@ public class CSVDataSource<T extends Output<T>> extends ColumnarDataSource<T> {
     @Config(description="The CSV quote character.")
     private char quote = CSVIterator.QUOTE;
 
+    @Config(description="Read the file with a memory mapped byte level tokenizer, passing field values to the field processors without converting them into Strings.")
+    private boolean memoryMapped = false;
+
     private ConfiguredDataSourceProvenance provenance;
 
     /**
@@ -141,7 +152,7 @@ public class CSVDataSource<T extends Output<T>> extends ColumnarDataSource<T> {
      * @param quote The quote character in the data file.
      */
     public CSVDataSource(URI dataFile, RowProcessor<T> rowProcessor, boolean outputRequired, char separator, char quote) {
-        this(dataFile, Paths.get(dataFile),rowProcessor,outputRequired,separator,quote);
+        this(dataFile, Paths.get(dataFile),rowProcessor,outputRequired,separator,quote,1,false);
     }
 
     /**
@@ -154,7 +165,47 @@ public class CSVDataSource<T extends Output<T>> extends ColumnarDataSource<T> {
      * @param quote The quote character in the data file.
      */
     public CSVDataSource(Path dataPath, RowProcessor<T> rowProcessor, boolean outputRequired, char separator, char quote) {
-        this(dataPath.toUri(),dataPath,rowProcessor,outputRequired,separator,quote);
+        this(dataPath.toUri(),dataPath,rowProcessor,outputRequired,separator,quote,1,false);
+    }
+
+    /**
+     * Creates a CSVDataSource using the specified RowProcessor to process the data, and the supplied separator and quote
+     * characters to read the input data file.
+     * <p>
+     * If numThreads is greater than one the file is split into ranges which start and end on record boundaries,
+     * and each range is parsed and processed on a worker thread. The examples are returned in file order,
+     * and have the same row indices as when the file is read sequentially. The whole file is read and
+     * processed before {@link #iterator()} returns, so all its examples are held in memory at once. The field and feature processors
+     * are shared between the threads. The separator and quote must be ASCII characters, and the quote
+     * character must only appear in quoted fields.
+     * @param dataPath The Path to the data file.
+     * @param rowProcessor The row processor which converts a row into an {@link Example}.
+     * @param outputRequired Is the output required to exist in the data file.
+     * @param separator The separator character in the data file.
+     * @param quote The quote character in the data file.
+     * @param numThreads The number of threads to use when reading the file.
+     */
+    public CSVDataSource(Path dataPath, RowProcessor<T> rowProcessor, boolean outputRequired, char separator, char quote, int numThreads) {
+        this(dataPath.toUri(),dataPath,rowProcessor,outputRequired,separator,quote,numThreads,false);
+    }
+
+    /**
+     * Creates a CSVDataSource using the specified RowProcessor to process the data, and the supplied separator and quote
+     * characters to read the input data file.
+     * <p>
+     * If memoryMapped is true and numThreads is one, the file is read by a {@link MappedCSVReader} and the rows are
+     * processed with {@link RowProcessor#generateExample(org.tribuo.data.columnar.IndexedRow, boolean)}, so numeric
+     * fields are parsed without creating a String per field. The separator and quote must be ASCII characters.
+     * @param dataPath The Path to the data file.
+     * @param rowProcessor The row processor which converts a row into an {@link Example}.
+     * @param outputRequired Is the output required to exist in the data file.
+     * @param separator The separator character in the data file.
+     * @param quote The quote character in the data file.
+     * @param numThreads The number of threads to use when reading the file.
+     * @param memoryMapped Read the file using a {@link MappedCSVReader}.
+     */
+    public CSVDataSource(Path dataPath, RowProcessor<T> rowProcessor, boolean outputRequired, char separator, char quote, int numThreads, boolean memoryMapped) {
+        this(dataPath.toUri(),dataPath,rowProcessor,outputRequired,separator,quote,numThreads,memoryMapped);
     }
 
     /**
@@ -165,13 +216,16 @@ public class CSVDataSource<T extends Output<T>> extends ColumnarDataSource<T> {
      * @param outputRequired Is the output required to exist in the data file.
      * @param separator The separator character in the data file.
      * @param quote The quote character in the data file.
+     * @param numThreads The number of threads to use when reading the file.
+     * @param memoryMapped Read the file using a {@link MappedCSVReader}.
      */
-    private CSVDataSource(URI dataFile, Path dataPath, RowProcessor<T> rowProcessor, boolean outputRequired, char separator, char quote) {
-        super(rowProcessor.getResponseProcessor().getOutputFactory(), rowProcessor, outputRequired);
+    private CSVDataSource(URI dataFile, Path dataPath, RowProcessor<T> rowProcessor, boolean outputRequired, char separator, char quote, int numThreads, boolean memoryMapped) {
+        super(rowProcessor.getResponseProcessor().getOutputFactory(), rowProcessor, outputRequired, numThreads);
         this.dataPath = dataPath;
         this.dataFile = dataFile;
         this.separator = separator;
         this.quote = quote;
+        this.memoryMapped = memoryMapped;
         this.provenance = new CSVDataSourceProvenance(this);
     }
 
@@ -180,6 +234,7 @@ public class CSVDataSource<T extends Output<T>> extends ColumnarDataSource<T> {
      */
     @Override
     public void postConfig() {
+        super.postConfig();
         this.dataFile = dataPath.toUri();
         this.provenance = new CSVDataSourceProvenance(this);
     }
@@ -189,6 +244,51 @@ public class CSVDataSource<T extends Output<T>> extends ColumnarDataSource<T> {
         return "CSVDataSource(file=" + dataFile + ",rowProcessor="+rowProcessor.getDescription()+")";
     }
 
+    /**
+     * Returns an iterator over the examples.
+     * <p>
+     * If numThreads is greater than one the whole file is read and processed in parallel before
+     * this method returns, so all the examples are held in memory at once. Otherwise if memoryMapped
+     * is true the file is read lazily through a {@link MappedCSVReader}.
+     * @return An iterator over the examples.
+     */
+    @Override
+    public Iterator<Example<T>> iterator() {
+        if (numThreads > 1) {
+            return parallelRead().iterator();
+        } else if (memoryMapped) {
+            try {
+                MappedCSVReader reader = new MappedCSVReader(dataPath, separator, quote);
+                return new MappedIterator<>(expandedRowProcessor(reader.getFields()), reader, outputRequired);
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to read data",e);
+            }
+        } else {
+            return super.iterator();
+        }
+    }
+
+    /**
+     * Reads and processes the file on {@link #numThreads} threads.
+     * @return The examples in file order.
+     */
+    private List<Example<T>> parallelRead() {
+        try {
+            ParallelCSVReader reader = new ParallelCSVReader(dataPath, separator, quote, Collections.emptyList(), numThreads);
+            List<String> fields = reader.getFields();
+            if (fields == null) {
+                // An empty file, read logs a warning and returns no rows.
+                return reader.read(() -> row -> Optional.empty());
+            }
+            // Expanded once, the expanded processor is shared by the ranges.
+            RowProcessor<T> processor = expandedRowProcessor(fields);
+            processor.getRequiredFields().ifPresent(reader::setProjection);
+            return reader.read(() -> row -> processor.generateExample(row, outputRequired));
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to read data",e);
+        }
+    }
+
     @Override
     public ColumnarIterator rowIterator() {
         try {
@@ -238,6 +338,62 @@ public class CSVDataSource<T extends Output<T>> extends ColumnarDataSource<T> {
         return pushbackStream;
     }
 
+    /**
+     * Converts the records of a {@link MappedCSVReader} into examples, without creating Strings
+     * for the field values. The RowProcessor must already have expanded it's regexes.
+     * @param <T> The output type.
+     */
+    private static final class MappedIterator<T extends Output<T>> implements Iterator<Example<T>> {
+        private final boolean outputRequired;
+        private final MappedCSVReader reader;
+        private final RowProcessor<T> processor;
+
+        private Example<T> buffer = null;
+        private boolean finished = false;
+
+        MappedIterator(RowProcessor<T> processor, MappedCSVReader reader, boolean outputRequired) {
+            this.processor = processor;
+            this.processor.getRequiredFields().ifPresent(reader::setProjection);
+            this.reader = reader;
+            this.outputRequired = outputRequired;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (buffer != null) {
+                return true;
+            }
+
+            while (buffer == null && !finished) {
+                if (reader.advance()) {
+                    Optional<Example<T>> exampleOpt = processor.generateExample(reader,outputRequired);
+                    if (exampleOpt.isPresent()) {
+                        buffer = exampleOpt.get();
+                    }
+                } else {
+                    finished = true;
+                    try {
+                        reader.close();
+                    } catch (IOException e) {
+                        logger.log(Level.WARNING, "Error closing reader at end of file", e);
+                    }
+                }
+            }
+            return buffer != null;
+        }
+
+        @Override
+        public Example<T> next() {
+            if (hasNext()) {
+                Example<T> ret = buffer;
+                buffer = null;
+                return ret;
+            } else {
+                throw new NoSuchElementException("No more data");
+            }
+        }
+    }
+
     /**
      * Provenance for {@link CSVDataSource}.
      */
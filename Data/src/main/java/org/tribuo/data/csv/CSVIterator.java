@@ -36,6 +36,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -55,11 +56,26 @@ public class CSVIterator extends ColumnarIterator implements AutoCloseable {
      */
     public final static char QUOTE = '"';
 
+    private final BufferedReader input;
+
     private final CSVReader reader;
 
+    private final char separator;
+
+    private final char quote;
+
     // Used as the row index
     private int recordNum = 0;
 
+    // Flags the columns in the projection, null if all columns are read.
+    private boolean[] projectionMask = null;
+
+    // Reads the records once a projection is set, null otherwise.
+    private ProjectedCSVTokenizer tokenizer = null;
+
+    // The projected values of the current record.
+    private String[] projectedValues = null;
+
     /**
      * Builds a CSVIterator for the supplied Reader. Defaults to {@link CSVIterator#SEPARATOR} for the separator
      * and {@link CSVIterator#QUOTE} for the quote.
@@ -145,8 +161,10 @@ public class CSVIterator extends ColumnarIterator implements AutoCloseable {
     public CSVIterator(Reader rdr, char separator, char quote, List<String> fields) {
         try {
             // If someone hands us a BufferedReader, then we'll double buffer it here.
-            Reader bomRemoved = new BufferedReader(CSVDataSource.removeBOM(rdr));
-            reader = new CSVReaderBuilder(bomRemoved).withCSVParser(new RFC4180ParserBuilder().withSeparator(separator).withQuoteChar(quote).build()).build();
+            input = new BufferedReader(CSVDataSource.removeBOM(rdr));
+            this.separator = separator;
+            this.quote = quote;
+            reader = new CSVReaderBuilder(input).withCSVParser(new RFC4180ParserBuilder().withSeparator(separator).withQuoteChar(quote).build()).build();
             try {
                 if (fields == null || fields.isEmpty()) {
                     String[] inducedHeader = reader.readNext();
@@ -172,26 +190,57 @@ public class CSVIterator extends ColumnarIterator implements AutoCloseable {
     }
 
     /**
-     * Zips together the headers and the line into a Map.
+     * Restricts the columns read into each row's data map to the supplied set.
+     * <p>
+     * Once a projection is set the remaining records are read by a tokenizer which
+     * only creates Strings for the projected columns, the other columns are scanned
+     * past without being copied. Setting the projection back to null keeps that
+     * tokenizer, but stores every column.
+     * @param projection The field names to read, or null to read all fields.
+     */
+    @Override
+    public void setProjection(Set<String> projection) {
+        super.setProjection(projection);
+        if ((fields == null) || ((projection == null) && (tokenizer == null))) {
+            projectionMask = null;
+        } else {
+            projectionMask = new boolean[fields.size()];
+            for (int i = 0; i < projectionMask.length; i++) {
+                projectionMask[i] = (projection == null) || projection.contains(fields.get(i));
+            }
+            projectedValues = new String[fields.size()];
+            if (tokenizer == null) {
+                tokenizer = new ProjectedCSVTokenizer(input, separator, quote);
+            }
+        }
+    }
+
+    /**
+     * Zips together the headers and the line into a Map, skipping columns outside the projection.
      * @param headers The field headers.
      * @param line The extracted line.
      * @param rowNum The row number used for error messages.
      * @return A map from header to value.
      */
-    private static Map<String,String> zip(List<String> headers, String[] line, long rowNum) {
+    private Map<String,String> zip(List<String> headers, String[] line, long rowNum) {
         if (headers.size() != line.length) {
             throw new IllegalArgumentException("On row " + rowNum + " headers has " + headers.size() + " elements, current line has " + line.length + " elements.");
         }
 
         Map<String,String> map = new HashMap<>();
         for (int i = 0; i < headers.size(); i++) {
-            map.put(headers.get(i),line[i]);
+            if ((projectionMask == null) || projectionMask[i]) {
+                map.put(headers.get(i),line[i]);
+            }
         }
         return map;
     }
 
     @Override
     protected Optional<Row> getRow() {
+        if (tokenizer != null) {
+            return getProjectedRow();
+        }
         try {
             String[] rawRow = reader.readNext();
             if(rawRow != null) {
@@ -236,6 +285,50 @@ public class CSVIterator extends ColumnarIterator implements AutoCloseable {
         }
     }
 
+    /**
+     * Reads the next row using the projected tokenizer.
+     * @return The next row, or an empty optional at the end of the file.
+     */
+    private Optional<Row> getProjectedRow() {
+        try {
+            int numFields = tokenizer.readRecord(projectionMask, projectedValues);
+            while (numFields == 0) {
+                // Found an extraneous newline in the csv file
+                logger.warning("Ignoring extra newline at line " + tokenizer.getLinesRead());
+                numFields = tokenizer.readRecord(projectionMask, projectedValues);
+            }
+            if (numFields == -1) {
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    logger.log(Level.WARNING, "Error closing reader at end of file", e);
+                }
+                return Optional.empty();
+            } else if (numFields != fields.size()) {
+                throw new IllegalArgumentException("On row " + recordNum + " headers has " + fields.size() + " elements, current line has " + numFields + " elements.");
+            }
+            if ((recordNum + 1) % 50_000 == 0) {
+                logger.info(String.format("Read %d records on %d lines", recordNum + 1, tokenizer.getLinesRead()));
+            }
+            Map<String,String> map = new HashMap<>();
+            for (int i = 0; i < projectedValues.length; i++) {
+                if (projectionMask[i]) {
+                    map.put(fields.get(i), projectedValues[i]);
+                }
+            }
+            // Note this is intentionally recordNum++ as we count records from 0.
+            return Optional.of(new Row(recordNum++, fields, map));
+        } catch (IOException | RuntimeException e) {
+            long linesRead = tokenizer.getLinesRead();
+            try {
+                reader.close();
+            } catch (IOException e2) {
+                logger.log(Level.WARNING, "Error closing reader in another error", e2);
+            }
+            throw new IllegalArgumentException(String.format("Error reading CSV on record %d, line %d after the header", recordNum, linesRead), e);
+        }
+    }
+
     @Override
     public void close() throws IOException{
         if(reader != null) {
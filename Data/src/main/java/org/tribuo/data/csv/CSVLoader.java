@@ -45,6 +45,7 @@ import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.OffsetDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -80,6 +81,7 @@ public class CSVLoader<T extends Output<T>> {
     private final char separator;
     private final char quote;
     private final OutputFactory<T> outputFactory;
+    private final int numThreads;
 
     /**
      * Creates a CSVLoader using the supplied separator, quote and output factory.
@@ -88,9 +90,29 @@ public class CSVLoader<T extends Output<T>> {
      * @param outputFactory The output factory.
      */
     public CSVLoader(char separator, char quote, OutputFactory<T> outputFactory) {
+        this(separator, quote, outputFactory, 1);
+    }
+
+    /**
+     * Creates a CSVLoader using the supplied separator, quote, output factory and number of threads.
+     * <p>
+     * If numThreads is greater than one, files are split into ranges which start and end on record
+     * boundaries, and each range is parsed and converted on a worker thread. The examples are returned
+     * in file order. The separator and quote must be ASCII characters, and the quote character must
+     * only appear in quoted fields. URLs which are not files are always read sequentially.
+     * @param separator The separator character.
+     * @param quote The quote character.
+     * @param outputFactory The output factory.
+     * @param numThreads The number of threads to use when reading a file.
+     */
+    public CSVLoader(char separator, char quote, OutputFactory<T> outputFactory, int numThreads) {
+        if (numThreads < 1) {
+            throw new IllegalArgumentException("numThreads must be positive, found " + numThreads);
+        }
         this.separator = separator;
         this.quote = quote;
         this.outputFactory = outputFactory;
+        this.numThreads = numThreads;
     }
 
     /**
@@ -260,6 +282,25 @@ public class CSVLoader<T extends Output<T>> {
      */
     public ListDataSource<T> loadDataSource(URL csvPath, Set<String> responseNames, String[] header) throws IOException {
         List<String> headerList = header == null ? Collections.emptyList() : Arrays.asList(header);
+        if ((numThreads > 1) && "file".equals(csvPath.getProtocol())) {
+            try {
+                ParallelCSVReader reader = new ParallelCSVReader(Paths.get(csvPath.toURI()), separator, quote, headerList, numThreads);
+                DataSourceProvenance provenance = new CSVLoaderProvenance(
+                        csvPath,
+                        outputFactory.getProvenance(),
+                        String.join(",", responseNames), // If there are multiple responses, join them
+                        separator,
+                        quote
+                );
+                List<String> fields = reader.getFields() == null ? Collections.emptyList() : reader.getFields();
+                validateResponseNames(responseNames, fields, csvPath.toString());
+                String responseName = responseNames.size() == 1 ? responseNames.iterator().next() : null;
+                List<Example<T>> list = reader.read(() -> row -> Optional.of(convertRow(row.getRowData(), responseNames, responseName)));
+                return new ListDataSource<>(list, outputFactory, provenance);
+            } catch (URISyntaxException e) {
+                throw new FileNotFoundException("Failed to read from URL '" + csvPath + "' as it could not be converted to a URI");
+            }
+        }
         try (CSVIterator itr = new CSVIterator(csvPath.toURI(), separator, quote, headerList)) {
             //
             // CSVInteropProvenance constructor throws an exception on FileNotFound, so we include in the try/catch
@@ -284,25 +325,35 @@ public class CSVLoader<T extends Output<T>> {
         //
         // Create the examples.
         while (itr.hasNext()) {
-            Map<String, String> row = itr.next().getRowData();
-            T label = (responseNames.size() == 1) ?
-                    buildOutput(responseName, row) :
-                    buildMultiOutput(responseNames, row);
-            ArrayExample<T> example = new ArrayExample<>(label);
-            for (Map.Entry<String, String> ent : row.entrySet()) {
-                String columnName = ent.getKey();
-                if (!responseNames.contains(columnName)) {
-                    //
-                    // If it's not a response, it's a feature
-                    double value = Double.parseDouble(ent.getValue());
-                    example.add(columnName, value);
-                }
-            }
-            dataset.add(example);
+            dataset.add(convertRow(itr.next().getRowData(), responseNames, responseName));
         }
         return dataset;
     }
 
+    /**
+     * Converts a row into an example.
+     * @param row The row to convert.
+     * @param responseNames The response names.
+     * @param responseName The response name if there is a single response, otherwise null.
+     * @return An example.
+     */
+    private Example<T> convertRow(Map<String, String> row, Set<String> responseNames, String responseName) {
+        T label = (responseNames.size() == 1) ?
+                buildOutput(responseName, row) :
+                buildMultiOutput(responseNames, row);
+        ArrayExample<T> example = new ArrayExample<>(label);
+        for (Map.Entry<String, String> ent : row.entrySet()) {
+            String columnName = ent.getKey();
+            if (!responseNames.contains(columnName)) {
+                //
+                // If it's not a response, it's a feature
+                double value = Double.parseDouble(ent.getValue());
+                example.add(columnName, value);
+            }
+        }
+        return example;
+    }
+
     private static void validateResponseNames(Set<String> responseNames, List<String> headers, String csvPath) throws IllegalArgumentException {
         if (responseNames.isEmpty()) {
             throw new IllegalArgumentException("At least one response name must be specified, but responseNames is empty.");
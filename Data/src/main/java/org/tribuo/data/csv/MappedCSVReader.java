@@ -0,0 +1,478 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.tribuo.data.csv;
+
+import org.tribuo.data.columnar.ColumnarIterator;
+import org.tribuo.data.columnar.DoubleParser;
+import org.tribuo.data.columnar.IndexedRow;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+
+/**
+ * A byte level CSV reader which memory maps the file and exposes each record as an {@link IndexedRow}.
+ * <p>
+ * Field values are returned as reusable {@link CharSequence} slices of the mapped file, so reading
+ * a record doesn't create any Strings. Quoted fields which contain escaped quotes or carriage returns
+ * are unescaped into a reusable scratch buffer. The slices and the row are only valid until the next
+ * call to {@link #advance()}.
+ * <p>
+ * Parses RFC 4180 files in the same way as {@link CSVIterator}: the first record is the header unless
+ * the fields are supplied, records end with '\n', '\r\n' or '\r', line breaks inside quoted fields are
+ * converted to '\n', empty records are skipped, and a UTF-8 byte order mark is ignored. The separator
+ * and quote must be ASCII characters.
+ * <p>
+ * The file is mapped in windows of up to 1GB, so a single record must be smaller than that. The mapping
+ * is released when the buffer is garbage collected, {@link #close()} only closes the file.
+ */
+public final class MappedCSVReader implements IndexedRow, AutoCloseable {
+    private static final Logger logger = Logger.getLogger(MappedCSVReader.class.getName());
+
+    /**
+     * The default size of the mapped window in bytes.
+     */
+    static final int DEFAULT_WINDOW_SIZE = 1 << 30;
+
+    private static final int INITIAL_SCRATCH_SIZE = 1024;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final long fileSize;
+    private final int windowSize;
+    private final byte separator;
+    private final byte quote;
+
+    private final List<String> fields;
+    private final Map<String,Integer> fieldIndices;
+
+    private MappedByteBuffer window;
+    private long windowStart;
+    private int windowLimit;
+    private boolean windowAtEnd;
+    private int position;
+
+    private ByteSlice[] slices = new ByteSlice[0];
+    private int numFields = 0;
+
+    private ByteBuffer scratch = ByteBuffer.allocate(INITIAL_SCRATCH_SIZE);
+
+    private long recordIndex = -1;
+    private long nextIndex = 0;
+
+    // Flags the columns in the projection, null if all columns are read.
+    private boolean[] projectionMask = null;
+
+    /**
+     * Opens a reader on the supplied file, reading the header from the first record. Defaults to
+     * {@link CSVIterator#SEPARATOR} for the separator and {@link CSVIterator#QUOTE} for the quote.
+     * @param path The file to read.
+     * @throws IOException If the file could not be read.
+     */
+    public MappedCSVReader(Path path) throws IOException {
+        this(path, CSVIterator.SEPARATOR, CSVIterator.QUOTE);
+    }
+
+    /**
+     * Opens a reader on the supplied file, reading the header from the first record.
+     * @param path The file to read.
+     * @param separator The separator character.
+     * @param quote The quote character.
+     * @throws IOException If the file could not be read.
+     */
+    public MappedCSVReader(Path path, char separator, char quote) throws IOException {
+        this(path, separator, quote, Collections.emptyList());
+    }
+
+    /**
+     * Opens a reader on the supplied file. If the fields are null or empty the header is read from the
+     * first record.
+     * @param path The file to read.
+     * @param separator The separator character.
+     * @param quote The quote character.
+     * @param fields The headers to use.
+     * @throws IOException If the file could not be read.
+     */
+    public MappedCSVReader(Path path, char separator, char quote, List<String> fields) throws IOException {
+        this(path, separator, quote, fields, DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * Opens a reader on the supplied file using the specified window size.
+     * @param path The file to read.
+     * @param separator The separator character.
+     * @param quote The quote character.
+     * @param fields The headers to use.
+     * @param windowSize The maximum size of each mapped window.
+     * @throws IOException If the file could not be read.
+     */
+    MappedCSVReader(Path path, char separator, char quote, List<String> fields, int windowSize) throws IOException {
+        if (separator > 127 || quote > 127) {
+            throw new IllegalArgumentException("MappedCSVReader requires ASCII separator and quote characters, found '" + separator + "' and '" + quote + "'");
+        }
+        if (windowSize < 1) {
+            throw new IllegalArgumentException("windowSize must be positive, found " + windowSize);
+        }
+        this.path = path;
+        this.separator = (byte) separator;
+        this.quote = (byte) quote;
+        this.windowSize = windowSize;
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            this.fileSize = channel.size();
+            map(0);
+            if ((windowLimit >= 3) && (window.get(0) == (byte) 0xEF) && (window.get(1) == (byte) 0xBB) && (window.get(2) == (byte) 0xBF)) {
+                position = 3;
+            }
+            if (fields == null || fields.isEmpty()) {
+                if (readRecord()) {
+                    List<String> header = new ArrayList<>(numFields);
+                    for (int i = 0; i < numFields; i++) {
+                        header.add(slices[i].toString());
+                    }
+                    this.fields = Collections.unmodifiableList(header);
+                } else {
+                    logger.warning("Given an empty CSV");
+                    this.fields = Collections.emptyList();
+                }
+            } else {
+                this.fields = Collections.unmodifiableList(new ArrayList<>(fields));
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        this.fieldIndices = new HashMap<>();
+        for (int i = 0; i < this.fields.size(); i++) {
+            fieldIndices.put(this.fields.get(i), i);
+        }
+        this.numFields = 0;
+    }
+
+    /**
+     * Moves to the next non-empty record.
+     * @return True if there was another record, false at the end of the file.
+     */
+    public boolean advance() {
+        try {
+            while (readRecord()) {
+                if ((numFields == 1) && (slices[0].length() == 0)) {
+                    logger.warning("Ignoring empty record after row " + recordIndex + " in " + path);
+                } else if (numFields != fields.size()) {
+                    throw new IllegalArgumentException("On row " + nextIndex + " headers has " + fields.size() + " elements, current line has " + numFields + " elements.");
+                } else {
+                    recordIndex = nextIndex++;
+                    return true;
+                }
+            }
+            numFields = 0;
+            return false;
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to read " + path, e);
+        }
+    }
+
+    /**
+     * The number of fields in the current record.
+     * @return The number of fields.
+     */
+    public int size() {
+        return numFields;
+    }
+
+    @Override
+    public long getIndex() {
+        return recordIndex;
+    }
+
+    @Override
+    public List<String> getFields() {
+        return fields;
+    }
+
+    @Override
+    public int getFieldIndex(String fieldName) {
+        Integer idx = fieldIndices.get(fieldName);
+        return idx == null ? -1 : idx;
+    }
+
+    @Override
+    public CharSequence get(int columnIndex) {
+        if ((columnIndex < 0) || (columnIndex >= numFields)) {
+            throw new IndexOutOfBoundsException("Column " + columnIndex + " out of bounds for a record with " + numFields + " fields");
+        }
+        return slices[columnIndex];
+    }
+
+    /**
+     * Parses the specified column of the current record as a double, without creating a String.
+     * @param columnIndex The column index.
+     * @return The parsed value.
+     * @throws NumberFormatException If the value is not a valid double.
+     */
+    public double getDouble(int columnIndex) {
+        return DoubleParser.parseDouble(get(columnIndex));
+    }
+
+    /**
+     * Restricts the fields copied into the data map of {@link #toRow()} to the supplied set.
+     * <p>
+     * The fields are still accessible via {@link #get(int)}, as slices are only converted into
+     * Strings on request.
+     * @param projection The field names to read, or null to read all fields.
+     */
+    public void setProjection(Set<String> projection) {
+        if (projection == null) {
+            projectionMask = null;
+        } else {
+            projectionMask = new boolean[fields.size()];
+            for (int i = 0; i < projectionMask.length; i++) {
+                projectionMask[i] = projection.contains(fields.get(i));
+            }
+        }
+    }
+
+    @Override
+    public ColumnarIterator.Row toRow() {
+        Map<String,String> rowData = new HashMap<>();
+        for (int i = 0; i < numFields; i++) {
+            if ((projectionMask == null) || projectionMask[i]) {
+                rowData.put(fields.get(i), slices[i].toString());
+            }
+        }
+        return new ColumnarIterator.Row(recordIndex, fields, rowData);
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+
+    /**
+     * Maps the window starting at the supplied file offset.
+     * @param start The file offset.
+     * @throws IOException If the file could not be mapped.
+     */
+    private void map(long start) throws IOException {
+        long length = Math.min(windowSize, fileSize - start);
+        window = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+        windowStart = start;
+        windowLimit = (int) length;
+        windowAtEnd = start + length == fileSize;
+        position = 0;
+    }
+
+    /**
+     * Reads the next record, including empty ones, into the slices.
+     * @return True if a record was read, false at the end of the file.
+     * @throws IOException If the file could not be mapped.
+     */
+    private boolean readRecord() throws IOException {
+        while (true) {
+            if (position >= windowLimit) {
+                if (windowAtEnd) {
+                    return false;
+                } else {
+                    map(windowStart + position);
+                }
+            } else if (tokenise()) {
+                return true;
+            } else if (position == 0) {
+                throw new IllegalArgumentException("Record starting at byte " + windowStart + " of " + path + " is longer than the " + windowSize + " byte mapping window");
+            } else {
+                // The record runs past the end of the window, remap from its start.
+                map(windowStart + position);
+            }
+        }
+    }
+
+    /**
+     * Splits the record at the current position into fields.
+     * @return True if the record was complete, false if it runs past the end of the window.
+     */
+    private boolean tokenise() {
+        int p = position;
+        numFields = 0;
+        scratch.clear();
+        while (true) {
+            ByteSlice slice = nextSlice();
+            if ((p < windowLimit) && (window.get(p) == quote)) {
+                p++;
+                int contentStart = p;
+                int contentEnd;
+                boolean unescape = false;
+                boolean ascii = true;
+                while (true) {
+                    if (p >= windowLimit) {
+                        if (windowAtEnd) {
+                            throw new IllegalArgumentException("Unterminated quoted field starting at byte " + (windowStart + contentStart - 1) + " of " + path);
+                        }
+                        return false;
+                    }
+                    byte b = window.get(p);
+                    if (b == quote) {
+                        if ((p + 1 >= windowLimit) && !windowAtEnd) {
+                            return false;
+                        } else if ((p + 1 < windowLimit) && (window.get(p + 1) == quote)) {
+                            unescape = true;
+                            p += 2;
+                        } else {
+                            contentEnd = p;
+                            p++;
+                            break;
+                        }
+                    } else {
+                        if (b == '\r') {
+                            unescape = true;
+                        } else if (b < 0) {
+                            ascii = false;
+                        }
+                        p++;
+                    }
+                }
+                // Any characters between the closing quote and the delimiter are appended to the field.
+                int trailingStart = p;
+                while ((p < windowLimit) && !isDelimiter(window.get(p))) {
+                    if (window.get(p) < 0) {
+                        ascii = false;
+                    }
+                    p++;
+                }
+                if ((p >= windowLimit) && !windowAtEnd) {
+                    return false;
+                }
+                if (unescape || (p > trailingStart)) {
+                    int scratchStart = copyQuoted(contentStart, contentEnd, p - trailingStart);
+                    copyRaw(trailingStart, p);
+                    slice.set(scratch, scratchStart, scratch.position() - scratchStart, ascii);
+                } else {
+                    slice.set(window, contentStart, contentEnd - contentStart, ascii);
+                }
+            } else {
+                int fieldStart = p;
+                boolean ascii = true;
+                while (p < windowLimit) {
+                    byte b = window.get(p);
+                    if (isDelimiter(b)) {
+                        break;
+                    } else if (b < 0) {
+                        ascii = false;
+                    }
+                    p++;
+                }
+                if ((p >= windowLimit) && !windowAtEnd) {
+                    return false;
+                }
+                slice.set(window, fieldStart, p - fieldStart, ascii);
+            }
+
+            if (p >= windowLimit) {
+                // End of file
+                position = p;
+                return true;
+            }
+            byte delimiter = window.get(p);
+            p++;
+            if (delimiter != separator) {
+                // Line terminator, if the window ends between '\r' and '\n' the '\n' is read as an empty record and skipped.
+                if ((delimiter == '\r') && (p < windowLimit) && (window.get(p) == '\n')) {
+                    p++;
+                }
+                position = p;
+                return true;
+            }
+        }
+    }
+
+    private boolean isDelimiter(byte b) {
+        return (b == separator) || (b == '\n') || (b == '\r');
+    }
+
+    /**
+     * Returns the slice for the next field, growing the slice array if necessary.
+     * @return The slice.
+     */
+    private ByteSlice nextSlice() {
+        if (numFields == slices.length) {
+            int newLength = Math.max(8, slices.length * 2);
+            slices = Arrays.copyOf(slices, newLength);
+            for (int i = numFields; i < newLength; i++) {
+                slices[i] = new ByteSlice();
+            }
+        }
+        return slices[numFields++];
+    }
+
+    /**
+     * Copies a quoted field's content into the scratch buffer, collapsing escaped quotes and
+     * converting '\r\n' and '\r' into '\n'.
+     * <p>
+     * If the scratch buffer is too small a new one is allocated, the slices of earlier fields
+     * keep referring to the old buffer.
+     * @param start The start of the content in the window.
+     * @param end The end of the content in the window.
+     * @param extra The number of trailing bytes which will be appended after the content.
+     * @return The start of the copy in the scratch buffer.
+     */
+    private int copyQuoted(int start, int end, int extra) {
+        int required = (end - start) + extra;
+        if (scratch.remaining() < required) {
+            scratch = ByteBuffer.allocate(Math.max(scratch.capacity() * 2, required));
+        }
+        int scratchStart = scratch.position();
+        int p = start;
+        while (p < end) {
+            byte b = window.get(p);
+            if (b == quote) {
+                // Escaped quote, skip the first of the pair.
+                p++;
+                b = window.get(p);
+            } else if (b == '\r') {
+                b = '\n';
+                if ((p + 1 < end) && (window.get(p + 1) == '\n')) {
+                    p++;
+                }
+            }
+            scratch.put(b);
+            p++;
+        }
+        return scratchStart;
+    }
+
+    /**
+     * Copies bytes from the window into the scratch buffer, which must have enough space.
+     * @param start The start in the window.
+     * @param end The end in the window.
+     */
+    private void copyRaw(int start, int end) {
+        for (int p = start; p < end; p++) {
+            scratch.put(window.get(p));
+        }
+    }
+}
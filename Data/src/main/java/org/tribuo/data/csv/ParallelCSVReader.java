@@ -0,0 +1,394 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.tribuo.data.csv;
+
+import org.tribuo.data.columnar.ColumnarIterator;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * Reads a CSV file in parallel by splitting it into byte ranges which start and end on record boundaries.
+ * <p>
+ * The split points are found without parsing the file. The number of quote characters before each nominal
+ * split point is counted in parallel, and its parity says whether that point is inside a quoted field.
+ * Each split point is then moved forward to the end of the first record which finishes after it.
+ * This relies on the file being UTF-8, where the separator, quote and line terminator bytes never appear
+ * inside a multi-byte character, and on quote characters only appearing in RFC 4180 quoted fields.
+ * <p>
+ * Each range is parsed by a {@link CSVIterator} and the rows are passed to a per range processing function
+ * on a worker pool. Rows are given the same index they would have when reading the file sequentially,
+ * and the results are returned in file order.
+ */
+final class ParallelCSVReader {
+    private static final Logger logger = Logger.getLogger(ParallelCSVReader.class.getName());
+
+    /**
+     * The default size of each range in bytes.
+     */
+    static final int DEFAULT_CHUNK_SIZE = 32 * 1024 * 1024;
+
+    private static final int SCAN_BUFFER_SIZE = 64 * 1024;
+
+    private final Path path;
+    private final char separator;
+    private final char quote;
+    private final int numThreads;
+    private final int chunkSize;
+
+    private final List<String> fields;
+    private final long dataStart;
+
+    private Set<String> projection = null;
+
+    /**
+     * Creates a parallel reader for the supplied file, using {@link #DEFAULT_CHUNK_SIZE} byte ranges.
+     * <p>
+     * If the fields are null or empty they are read from the first record of the file.
+     * @param path The file to read.
+     * @param separator The separator character.
+     * @param quote The quote character.
+     * @param fields The headers to use.
+     * @param numThreads The number of worker threads.
+     * @throws IOException If the file could not be read.
+     */
+    ParallelCSVReader(Path path, char separator, char quote, List<String> fields, int numThreads) throws IOException {
+        this(path,separator,quote,fields,numThreads,DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Creates a parallel reader for the supplied file.
+     * <p>
+     * If the fields are null or empty they are read from the first record of the file.
+     * @param path The file to read.
+     * @param separator The separator character.
+     * @param quote The quote character.
+     * @param fields The headers to use.
+     * @param numThreads The number of worker threads.
+     * @param chunkSize The nominal size of each range in bytes.
+     * @throws IOException If the file could not be read.
+     */
+    ParallelCSVReader(Path path, char separator, char quote, List<String> fields, int numThreads, int chunkSize) throws IOException {
+        if (numThreads < 1) {
+            throw new IllegalArgumentException("numThreads must be positive, found " + numThreads);
+        }
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("chunkSize must be positive, found " + chunkSize);
+        }
+        if (separator > 127 || quote > 127) {
+            throw new IllegalArgumentException("Parallel reading requires ASCII separator and quote characters, found '" + separator + "' and '" + quote + "'");
+        }
+        this.path = path;
+        this.separator = separator;
+        this.quote = quote;
+        this.numThreads = numThreads;
+        this.chunkSize = chunkSize;
+        if (fields == null || fields.isEmpty()) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                long headerEnd = nextBoundary(channel, 0, false);
+                byte[] header = read(channel, 0, headerEnd);
+                try (CSVIterator itr = new CSVIterator(new InputStreamReader(new ByteArrayInputStream(header), StandardCharsets.UTF_8), separator, quote)) {
+                    this.fields = itr.getFields();
+                }
+                this.dataStart = headerEnd;
+            }
+        } else {
+            this.fields = Collections.unmodifiableList(new ArrayList<>(fields));
+            this.dataStart = 0;
+        }
+    }
+
+    /**
+     * The headers of the file, or null if the file is empty and no headers were supplied.
+     * @return The headers.
+     */
+    List<String> getFields() {
+        return fields;
+    }
+
+    /**
+     * Restricts the fields read into each row, see {@link ColumnarIterator#setProjection}.
+     * @param projection The field names to read, or null to read all fields.
+     */
+    void setProjection(Set<String> projection) {
+        this.projection = projection;
+    }
+
+    /**
+     * Reads the file and applies a processing function to each row.
+     * <p>
+     * The supplier is called once per range, on the worker thread, so functions which are not
+     * thread safe (e.g., ones which wrap a {@link org.tribuo.data.columnar.RowProcessor}) can be
+     * copied per range. Rows which produce an empty optional are dropped.
+     * @param processorSupplier Produces the row processing function for each range.
+     * @param <R> The result type.
+     * @return The processed rows in file order.
+     * @throws IOException If the file could not be read.
+     */
+    <R> List<R> read(Supplier<Function<ColumnarIterator.Row, Optional<R>>> processorSupplier) throws IOException {
+        if (fields == null) {
+            logger.warning("Given an empty CSV");
+            return Collections.emptyList();
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long[] boundaries = findBoundaries(channel, pool);
+            int numRanges = boundaries.length - 1;
+            logger.fine("Reading " + path + " as " + numRanges + " ranges");
+
+            // startIndices[i] completes with the number of rows before range i, once range i-1 has been parsed.
+            // Ranges are submitted in file order, so a range only waits on ones which have already started.
+            List<CompletableFuture<Long>> startIndices = new ArrayList<>(numRanges + 1);
+            startIndices.add(CompletableFuture.completedFuture(0L));
+            for (int i = 0; i < numRanges; i++) {
+                startIndices.add(new CompletableFuture<>());
+            }
+
+            List<Future<List<R>>> futures = new ArrayList<>(numRanges);
+            for (int i = 0; i < numRanges; i++) {
+                final int rangeIdx = i;
+                futures.add(pool.submit(() -> {
+                    CompletableFuture<Long> next = startIndices.get(rangeIdx + 1);
+                    try {
+                        List<ColumnarIterator.Row> rows = parse(channel, boundaries[rangeIdx], boundaries[rangeIdx + 1]);
+                        long startIdx = startIndices.get(rangeIdx).join();
+                        next.complete(startIdx + rows.size());
+                        Function<ColumnarIterator.Row, Optional<R>> processor = processorSupplier.get();
+                        List<R> output = new ArrayList<>(rows.size());
+                        for (ColumnarIterator.Row row : rows) {
+                            ColumnarIterator.Row indexedRow = new ColumnarIterator.Row(startIdx + row.getIndex(), fields, row.getRowData());
+                            processor.apply(indexedRow).ifPresent(output::add);
+                        }
+                        return output;
+                    } catch (Throwable t) {
+                        // Unblock the later ranges, they fail when joining on this future.
+                        next.completeExceptionally(t);
+                        throw t;
+                    }
+                }));
+            }
+
+            List<R> output = new ArrayList<>();
+            for (Future<List<R>> f : futures) {
+                output.addAll(f.get());
+            }
+            return output;
+        } catch (InterruptedException e) {
+            throw new IllegalStateException("Interrupted while reading " + path, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IllegalArgumentException) {
+                throw (IllegalArgumentException) e.getCause();
+            } else if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            } else {
+                throw new IllegalStateException("Failed to read " + path + " in parallel", e.getCause());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Computes the range boundaries, which are record boundaries.
+     * @param channel The file.
+     * @param pool The pool to scan on.
+     * @return The boundaries, starting at the data start and ending at the file size.
+     * @throws IOException If the file could not be read.
+     * @throws InterruptedException If the scan was interrupted.
+     * @throws ExecutionException If the scan failed.
+     */
+    private long[] findBoundaries(FileChannel channel, ExecutorService pool) throws IOException, InterruptedException, ExecutionException {
+        long fileSize = channel.size();
+        int numChunks = (int) Math.max(1, (fileSize - dataStart + chunkSize - 1) / chunkSize);
+        long[] nominal = new long[numChunks + 1];
+        for (int i = 0; i < numChunks; i++) {
+            nominal[i] = dataStart + ((long) i * chunkSize);
+        }
+        nominal[numChunks] = fileSize;
+
+        // Count the quotes in each chunk.
+        List<Future<Long>> quoteCounts = new ArrayList<>(numChunks);
+        for (int i = 0; i < numChunks; i++) {
+            final int chunkIdx = i;
+            quoteCounts.add(pool.submit(() -> countQuotes(channel, nominal[chunkIdx], nominal[chunkIdx + 1])));
+        }
+        boolean[] inQuotes = new boolean[numChunks];
+        long total = 0;
+        for (int i = 0; i < numChunks; i++) {
+            inQuotes[i] = (total & 1) == 1;
+            total += quoteCounts.get(i).get();
+        }
+
+        // Move each split point forward to the next record boundary.
+        List<Future<Long>> aligned = new ArrayList<>(numChunks);
+        for (int i = 1; i < numChunks; i++) {
+            final int chunkIdx = i;
+            aligned.add(pool.submit(() -> nextBoundary(channel, nominal[chunkIdx], inQuotes[chunkIdx])));
+        }
+        List<Long> boundaries = new ArrayList<>(numChunks + 1);
+        boundaries.add(dataStart);
+        for (Future<Long> f : aligned) {
+            long boundary = f.get();
+            // A record longer than a chunk means several split points move to the same boundary.
+            if (boundary > boundaries.get(boundaries.size() - 1)) {
+                boundaries.add(boundary);
+            }
+        }
+        if (fileSize > boundaries.get(boundaries.size() - 1)) {
+            boundaries.add(fileSize);
+        }
+
+        long[] output = new long[boundaries.size()];
+        for (int i = 0; i < output.length; i++) {
+            output[i] = boundaries.get(i);
+        }
+        return output;
+    }
+
+    /**
+     * Parses the rows in the supplied range, indexed from zero.
+     * @param channel The file.
+     * @param start The start of the range.
+     * @param end The end of the range.
+     * @return The rows.
+     * @throws IOException If the file could not be read.
+     */
+    private List<ColumnarIterator.Row> parse(FileChannel channel, long start, long end) throws IOException {
+        byte[] bytes = read(channel, start, end);
+        List<ColumnarIterator.Row> rows = new ArrayList<>();
+        try (CSVIterator itr = new CSVIterator(new InputStreamReader(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8), separator, quote, fields)) {
+            itr.setProjection(projection);
+            while (itr.hasNext()) {
+                rows.add(itr.next());
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Counts the quote characters in the range.
+     * @param channel The file.
+     * @param start The start of the range.
+     * @param end The end of the range.
+     * @return The number of quote bytes.
+     * @throws IOException If the file could not be read.
+     */
+    private long countQuotes(FileChannel channel, long start, long end) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+        long count = 0;
+        long position = start;
+        while (position < end) {
+            buffer.clear();
+            buffer.limit((int) Math.min(SCAN_BUFFER_SIZE, end - position));
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                break;
+            }
+            byte[] array = buffer.array();
+            for (int i = 0; i < read; i++) {
+                if (array[i] == quote) {
+                    count++;
+                }
+            }
+            position += read;
+        }
+        return count;
+    }
+
+    /**
+     * Finds the end of the first record terminator at or after the position which is not inside
+     * a quoted field. The terminators are '\n', '\r\n' and '\r', matching {@link java.io.BufferedReader#readLine}.
+     * @param channel The file.
+     * @param position The position to start scanning from.
+     * @param inQuotes Is the position inside a quoted field.
+     * @return The position after the terminator, or the file size if there isn't one.
+     * @throws IOException If the file could not be read.
+     */
+    private long nextBoundary(FileChannel channel, long position, boolean inQuotes) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+        long fileSize = channel.size();
+        boolean sawCarriageReturn = false;
+        while (position < fileSize) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                break;
+            }
+            byte[] array = buffer.array();
+            for (int i = 0; i < read; i++) {
+                byte b = array[i];
+                if (sawCarriageReturn) {
+                    return b == '\n' ? position + i + 1 : position + i;
+                } else if (b == quote) {
+                    inQuotes = !inQuotes;
+                } else if (!inQuotes) {
+                    if (b == '\n') {
+                        return position + i + 1;
+                    } else if (b == '\r') {
+                        sawCarriageReturn = true;
+                    }
+                }
+            }
+            position += read;
+        }
+        return fileSize;
+    }
+
+    /**
+     * Reads the range into a byte array.
+     * @param channel The file.
+     * @param start The start of the range.
+     * @param end The end of the range.
+     * @return The bytes.
+     * @throws IOException If the file could not be read.
+     */
+    private static byte[] read(FileChannel channel, long start, long end) throws IOException {
+        long length = end - start;
+        if (length > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("CSV range [" + start + "," + end + ") is too large to read in one piece, does the file have unterminated quotes?");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) length);
+        long position = start;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Unexpected end of file at " + position + " while reading range [" + start + "," + end + ")");
+            }
+            position += read;
+        }
+        return buffer.array();
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.tribuo.data.csv;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * A character level CSV tokenizer which only creates Strings for the columns in a projection.
+ * <p>
+ * Parses RFC 4180 records in the same way as the OpenCSV parser used by {@link CSVIterator}: records
+ * end with '\n', '\r\n' or '\r', line breaks inside quoted fields are converted to '\n', and escaped
+ * quotes are collapsed. As in {@link MappedCSVReader}, any characters between a closing quote and the
+ * next delimiter are appended to the field. Columns outside the projection are scanned but not copied.
+ * <p>
+ * Reads from the supplied reader through its own buffer, so once the tokenizer is in use the reader
+ * must not be read by anything else.
+ */
+final class ProjectedCSVTokenizer {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final Reader reader;
+    private final char separator;
+    private final char quote;
+
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int position = 0;
+    private int limit = 0;
+
+    private final StringBuilder builder = new StringBuilder();
+
+    private long linesRead = 0;
+
+    /**
+     * Creates a tokenizer reading from the current position of the reader.
+     * @param reader The reader.
+     * @param separator The separator character.
+     * @param quote The quote character.
+     */
+    ProjectedCSVTokenizer(Reader reader, char separator, char quote) {
+        this.reader = reader;
+        this.separator = separator;
+        this.quote = quote;
+    }
+
+    /**
+     * The number of lines consumed by this tokenizer.
+     * @return The number of lines read.
+     */
+    long getLinesRead() {
+        return linesRead;
+    }
+
+    /**
+     * Reads the next record. Fields whose index is flagged in the mask are stored in values, other fields
+     * are skipped, as are fields past the end of the mask.
+     * <p>
+     * A record consisting of a single empty field, i.e., a blank line, returns zero.
+     * @param mask The columns to store.
+     * @param values The output array, the same length as the mask.
+     * @return The number of fields in the record, 0 for a blank line, or -1 at the end of the input.
+     * @throws IOException If the reader failed.
+     * @throws IllegalArgumentException If the input ends inside a quoted field.
+     */
+    int readRecord(boolean[] mask, String[] values) throws IOException {
+        if (peek() == -1) {
+            return -1;
+        }
+        linesRead++;
+        int numFields = 0;
+        boolean emptyField;
+        while (true) {
+            boolean keep = (numFields < mask.length) && mask[numFields];
+            builder.setLength(0);
+            int length = 0;
+            int c = read();
+            if (c == quote) {
+                while (true) {
+                    c = read();
+                    if (c == -1) {
+                        throw new IllegalArgumentException("Unterminated quoted field on line " + linesRead);
+                    } else if (c == quote) {
+                        if (peek() == quote) {
+                            read();
+                        } else {
+                            break;
+                        }
+                    } else if (c == '\r' || c == '\n') {
+                        if ((c == '\r') && (peek() == '\n')) {
+                            read();
+                        }
+                        c = '\n';
+                        linesRead++;
+                    }
+                    length++;
+                    if (keep) {
+                        builder.append((char) c);
+                    }
+                }
+                c = read();
+            }
+            while ((c != -1) && (c != separator) && (c != '\n') && (c != '\r')) {
+                length++;
+                if (keep) {
+                    builder.append((char) c);
+                }
+                c = read();
+            }
+            if (keep) {
+                values[numFields] = builder.toString();
+            }
+            emptyField = length == 0;
+            numFields++;
+            if (c != separator) {
+                if ((c == '\r') && (peek() == '\n')) {
+                    read();
+                }
+                break;
+            }
+        }
+        return ((numFields == 1) && emptyField) ? 0 : numFields;
+    }
+
+    /**
+     * Returns the next character without consuming it.
+     * @return The next character, or -1 at the end of the input.
+     * @throws IOException If the reader failed.
+     */
+    private int peek() throws IOException {
+        if ((position == limit) && !fill()) {
+            return -1;
+        }
+        return buffer[position];
+    }
+
+    /**
+     * Consumes the next character.
+     * @return The next character, or -1 at the end of the input.
+     * @throws IOException If the reader failed.
+     */
+    private int read() throws IOException {
+        if ((position == limit) && !fill()) {
+            return -1;
+        }
+        return buffer[position++];
+    }
+
+    /**
+     * Refills the buffer.
+     * @return True if any characters were read, false at the end of the input.
+     * @throws IOException If the reader failed.
+     */
+    private boolean fill() throws IOException {
+        int read;
+        do {
+            read = reader.read(buffer, 0, buffer.length);
+        } while (read == 0);
+        if (read == -1) {
+            return false;
+        }
+        position = 0;
+        limit = read;
+        return true;
+    }
+}
@@ -64,6 +64,9 @@ public class ResultSetIterator extends ColumnarIterator {
             if(!resultSet.isClosed() && resultSet.next()) {
                 Map<String, String> rowMap = new HashMap<>();
                 for(int i=0; i < fields.size(); i++) {
+                    if (!isProjected(fields.get(i))) {
+                        continue;
+                    }
                     Object obj = null;
                     try {
                         obj = resultSet.getObject(i + 1);
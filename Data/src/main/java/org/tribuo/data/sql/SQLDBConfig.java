@@ -25,6 +25,7 @@ import com.oracle.labs.mlrg.olcut.provenance.impl.ConfiguredObjectProvenanceImpl
 
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
@@ -45,9 +46,19 @@ import java.util.Properties;
  *
  * {@link java.sql.DriverManager}'s default logic will be used to determine which {@link java.sql.Driver} to use for
  * a given connection string.
+ *
+ * Queries are run on forward only, read only statements with the configured fetch size. Some drivers ignore the
+ * fetch size and buffer the whole result set in memory unless auto-commit is disabled (e.g., PostgreSQL), setting
+ * {@code streamResults} disables auto-commit on the connections used for queries. MySQL instead requires a fetch size
+ * of {@link Integer#MIN_VALUE} to stream results.
  */
 public class SQLDBConfig implements Configurable, Provenancable<ConfiguredObjectProvenance> {
 
+    /**
+     * The default number of rows fetched in each round trip to the database.
+     */
+    public static final int DEFAULT_FETCH_SIZE = 1000;
+
     @Config(description="Connection string, including host, port and db.")
     private String connectionString;
     @Config(description="Database username.",redact=true)
@@ -66,7 +77,10 @@ public class SQLDBConfig implements Configurable, Provenancable<ConfiguredObject
     private String db;
 
     @Config(description="Size of batches to fetch from DB for queries")
-    private int fetchSize = 1000;
+    private int fetchSize = DEFAULT_FETCH_SIZE;
+
+    @Config(description="Disable auto-commit on query connections, so drivers which require it stream results in fetchSize batches.")
+    private boolean streamResults = false;
 
     private SQLDBConfig() {}
 
@@ -76,6 +90,21 @@ public class SQLDBConfig implements Configurable, Provenancable<ConfiguredObject
         this.password = password;
     }
 
+    /**
+     * Constructs a SQLDBConfig with the supplied fetch behaviour.
+     * @param connectionString The JDBC connection string.
+     * @param username The username, may be null.
+     * @param password The password, may be null.
+     * @param properties Other properties to pass to the driver.
+     * @param fetchSize The number of rows to fetch in each round trip.
+     * @param streamResults Disable auto-commit on query connections so the driver streams results.
+     */
+    public SQLDBConfig(String connectionString, String username, String password, Map<String, String> properties, int fetchSize, boolean streamResults) {
+        this(connectionString, username, password, properties);
+        this.fetchSize = fetchSize;
+        this.streamResults = streamResults;
+    }
+
     public SQLDBConfig(String host, String port, String db, String username, String password, Map<String, String> properties) {
         this(makeConnectionString(host, port, db), properties);
         this.host = host;
@@ -147,12 +176,58 @@ public class SQLDBConfig implements Configurable, Provenancable<ConfiguredObject
      * @throws SQLException If the connection failed.
      */
     public Statement getStatement() throws SQLException {
-        Statement stmt = getConnection().createStatement();
+        Connection conn = getQueryConnection();
+        try {
+            Statement stmt = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            stmt.setFetchSize(fetchSize);
+            stmt.setFetchDirection(ResultSet.FETCH_FORWARD);
+            return stmt;
+        } catch (SQLException e) {
+            conn.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Prepares a query on the supplied connection, using the same fetch settings as {@link #getStatement()}.
+     * @param conn The connection, usually from {@link #getQueryConnection()}.
+     * @param sql The query.
+     * @return A prepared statement.
+     * @throws SQLException If the statement could not be prepared.
+     */
+    public PreparedStatement prepareQuery(Connection conn, String sql) throws SQLException {
+        PreparedStatement stmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
         stmt.setFetchSize(fetchSize);
         stmt.setFetchDirection(ResultSet.FETCH_FORWARD);
         return stmt;
     }
 
+    /**
+     * Opens a connection for running queries, disabling auto-commit if {@code streamResults} is set.
+     * @return A connection.
+     * @throws SQLException If the connection could not be opened.
+     */
+    public Connection getQueryConnection() throws SQLException {
+        Connection conn = getConnection();
+        if (streamResults) {
+            try {
+                conn.setAutoCommit(false);
+            } catch (SQLException e) {
+                conn.close();
+                throw e;
+            }
+        }
+        return conn;
+    }
+
+    /**
+     * The number of rows fetched in each round trip to the database.
+     * @return The fetch size.
+     */
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
     @Override
     public String toString() {
         if (connectionString != null) {
@@ -17,6 +17,7 @@
 package org.tribuo.data.sql;
 
 import com.oracle.labs.mlrg.olcut.config.Config;
+import com.oracle.labs.mlrg.olcut.config.PropertyException;
 import com.oracle.labs.mlrg.olcut.provenance.ObjectProvenance;
 import com.oracle.labs.mlrg.olcut.provenance.PrimitiveProvenance;
 import com.oracle.labs.mlrg.olcut.provenance.Provenance;
@@ -32,14 +33,34 @@ import org.tribuo.data.columnar.FieldProcessor;
 import org.tribuo.data.columnar.RowProcessor;
 import org.tribuo.provenance.ConfiguredDataSourceProvenance;
 
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -49,6 +70,15 @@ import java.util.logging.Logger;
  * The {@link java.sql.Connection}s it creates are closed when the iterator is empty
  * (ie. when hasNext is called and returns false). Calling close() on SQLDatasource itself closes all connections
  * created since close was last called.
+ * <p>
+ * Results are fetched in batches using the fetch size from the {@link SQLDBConfig}. If numPartitions is greater
+ * than one, the query is split into that many queries on disjoint ranges of the numeric partitionColumn. The
+ * range is computed from the minimum and maximum values of the column in the query results. The partitions are
+ * fetched concurrently over separate connections, each buffering at most one fetch batch ahead of the consumer,
+ * and their rows are streamed in partition order. Rows with a null partition key are read by the first partition.
+ * The examples are therefore ordered by partition key range, not in the query's order, and the row indices
+ * number the rows from 1 in the order they are returned. Rows are converted into examples on numThreads threads
+ * in either mode, see {@link ColumnarDataSource}.
  *
  * <p>
  *
@@ -66,14 +96,77 @@ public class SQLDataSource<T extends Output<T>> extends ColumnarDataSource<T> im
     @Config(mandatory = true,description="SQL query to run.")
     private String sqlString;
 
+    @Config(description="Numeric column used to split the query into partitions, required if numPartitions is greater than one.")
+    private String partitionColumn;
+
+    @Config(description="Number of partitions to split the query into, each read concurrently over a separate connection.")
+    private int numPartitions = 1;
+
     private final Set<Statement> statements = new HashSet<>();
 
+    // The partitioned iterators which haven't been closed, guarded by itself.
+    private final Set<PartitionedIterator> partitionedIterators = new HashSet<>();
+
     private SQLDataSource() {}
 
     public SQLDataSource(String sqlString, SQLDBConfig sqlConfig, OutputFactory<T> outputFactory, RowProcessor<T> rowProcessor, boolean outputRequired) throws SQLException {
-        super(outputFactory, rowProcessor, outputRequired);
+        this(sqlString, sqlConfig, outputFactory, rowProcessor, outputRequired, null, 1);
+    }
+
+    /**
+     * Constructs a SQLDataSource which splits the query into partitions on the numeric partitionColumn,
+     * reading the partitions concurrently over separate connections.
+     * @param sqlString The query to run.
+     * @param sqlConfig The database configuration.
+     * @param outputFactory The output factory.
+     * @param rowProcessor The row processor which converts rows into examples.
+     * @param outputRequired Is an output required for each example.
+     * @param partitionColumn The numeric column to partition the query on.
+     * @param numPartitions The number of partitions.
+     * @throws SQLException Declared for compatibility with the other constructor.
+     */
+    public SQLDataSource(String sqlString, SQLDBConfig sqlConfig, OutputFactory<T> outputFactory, RowProcessor<T> rowProcessor, boolean outputRequired, String partitionColumn, int numPartitions) throws SQLException {
+        this(sqlString, sqlConfig, outputFactory, rowProcessor, outputRequired, partitionColumn, numPartitions, 1);
+    }
+
+    /**
+     * Constructs a SQLDataSource which splits the query into partitions on the numeric partitionColumn,
+     * reading the partitions concurrently over separate connections, and converts the rows into
+     * examples on numThreads threads.
+     * @param sqlString The query to run.
+     * @param sqlConfig The database configuration.
+     * @param outputFactory The output factory.
+     * @param rowProcessor The row processor which converts rows into examples.
+     * @param outputRequired Is an output required for each example.
+     * @param partitionColumn The numeric column to partition the query on, may be null if numPartitions is one.
+     * @param numPartitions The number of partitions.
+     * @param numThreads The number of threads to use when generating examples.
+     * @throws SQLException Declared for compatibility with the other constructors.
+     */
+    public SQLDataSource(String sqlString, SQLDBConfig sqlConfig, OutputFactory<T> outputFactory, RowProcessor<T> rowProcessor, boolean outputRequired, String partitionColumn, int numPartitions, int numThreads) throws SQLException {
+        super(outputFactory, rowProcessor, outputRequired, numThreads);
+        if (numPartitions < 1) {
+            throw new IllegalArgumentException("numPartitions must be positive, found " + numPartitions);
+        } else if ((numPartitions > 1) && ((partitionColumn == null) || partitionColumn.isEmpty())) {
+            throw new IllegalArgumentException("partitionColumn must be set when numPartitions is greater than one");
+        }
         this.sqlConfig = sqlConfig;
         this.sqlString = sqlString;
+        this.partitionColumn = partitionColumn;
+        this.numPartitions = numPartitions;
+    }
+
+    /**
+     * Used by the OLCUT configuration system, and should not be called by external code.
+     */
+    @Override
+    public void postConfig() {
+        super.postConfig();
+        if (numPartitions < 1) {
+            throw new PropertyException("","numPartitions","numPartitions must be positive, found " + numPartitions);
+        } else if ((numPartitions > 1) && ((partitionColumn == null) || partitionColumn.isEmpty())) {
+            throw new PropertyException("","partitionColumn","partitionColumn must be set when numPartitions is greater than one");
+        }
     }
 
     @Override
@@ -81,22 +174,137 @@ public class SQLDataSource<T extends Output<T>> extends ColumnarDataSource<T> im
         return "SQLDataSource(sqlString=\"" + sqlString + "\", sqlConfig=\"" + sqlConfig.toString() + "\", rowProcessor=" + rowProcessor.getDescription() +")";
     }
 
+    /**
+     * Returns an iterator over the rows of the query.
+     * <p>
+     * If numPartitions is greater than one the partitions are fetched concurrently, and their rows
+     * are returned in partition order, see {@link SQLDataSource}.
+     * @return An iterator over the rows.
+     */
     @Override
     public ColumnarIterator rowIterator() {
+        if (numPartitions > 1) {
+            return partitionedIterator();
+        }
         try {
             Statement stmt = sqlConfig.getStatement();
             statements.add(stmt);
-            return new ResultSetIterator(stmt.executeQuery(sqlString), stmt.getFetchSize());
+            return new ResultSetIterator(stmt.executeQuery(sqlString), batchSize(stmt.getFetchSize()));
         } catch (SQLException e) {
             throw new IllegalArgumentException("Error Processing SQL", e);
         }
     }
 
+    /**
+     * Computes the partition boundaries from the range of the partition column.
+     * <p>
+     * Partition i covers {@code [boundaries[i], boundaries[i+1])}, and the last partition
+     * includes its upper bound.
+     * @return The numPartitions + 1 boundaries, or an empty array if the column has no non-null values.
+     */
+    long[] partitionBoundaries() {
+        String boundsQuery = "SELECT MIN(" + partitionColumn + "), MAX(" + partitionColumn + ") FROM (" + sqlString + ") tribuo_bounds";
+        try (Connection conn = sqlConfig.getQueryConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(boundsQuery)) {
+            if (!rs.next()) {
+                return new long[0];
+            }
+            BigDecimal min = rs.getBigDecimal(1);
+            BigDecimal max = rs.getBigDecimal(2);
+            if ((min == null) || (max == null)) {
+                return new long[0];
+            }
+            BigInteger lower = min.setScale(0, RoundingMode.FLOOR).toBigIntegerExact();
+            BigInteger range = max.setScale(0, RoundingMode.CEILING).toBigIntegerExact().subtract(lower);
+            long[] boundaries = new long[numPartitions + 1];
+            for (int i = 0; i <= numPartitions; i++) {
+                boundaries[i] = lower.add(range.multiply(BigInteger.valueOf(i)).divide(BigInteger.valueOf(numPartitions))).longValueExact();
+            }
+            return boundaries;
+        } catch (SQLException e) {
+            throw new IllegalArgumentException("Error computing the range of " + partitionColumn, e);
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("The range of " + partitionColumn + " does not fit in a long", e);
+        }
+    }
+
+    /**
+     * Builds the partition queries and opens an iterator over them.
+     * @return The partitioned row iterator.
+     */
+    private PartitionedIterator partitionedIterator() {
+        List<String> queries = new ArrayList<>();
+        List<long[]> queryParams = new ArrayList<>();
+        long[] boundaries = partitionBoundaries();
+        if (boundaries.length == 0) {
+            logger.warning("No non-null values found in " + partitionColumn + ", reading the query as a single partition");
+            queries.add(sqlString);
+            queryParams.add(new long[0]);
+        } else {
+            String partitioned = "SELECT * FROM (" + sqlString + ") tribuo_partition WHERE ";
+            for (int i = 0; i < numPartitions; i++) {
+                String range = partitionColumn + " >= ? AND " + partitionColumn + (i == numPartitions - 1 ? " <= ?" : " < ?");
+                if (i == 0) {
+                    range = "(" + range + ") OR " + partitionColumn + " IS NULL";
+                }
+                queries.add(partitioned + range);
+                queryParams.add(new long[]{boundaries[i], boundaries[i + 1]});
+            }
+        }
+        PartitionedIterator itr = new PartitionedIterator(sqlConfig, queries, queryParams, this::removeIterator);
+        synchronized (partitionedIterators) {
+            partitionedIterators.add(itr);
+        }
+        return itr;
+    }
+
+    /**
+     * Stops tracking a partitioned iterator once it has been closed.
+     * @param itr The closed iterator.
+     */
+    private void removeIterator(PartitionedIterator itr) {
+        synchronized (partitionedIterators) {
+            partitionedIterators.remove(itr);
+        }
+    }
+
+    /**
+     * The number of partitioned iterators which are still open.
+     * @return The number of open partitioned iterators.
+     */
+    int numOpenPartitionedIterators() {
+        synchronized (partitionedIterators) {
+            return partitionedIterators.size();
+        }
+    }
+
+    /**
+     * Converts a fetch size into a spliterator batch size, as drivers use zero or negative
+     * fetch sizes for their default or streaming modes.
+     * @param fetchSize The fetch size.
+     * @return A positive batch size.
+     */
+    private static int batchSize(int fetchSize) {
+        return fetchSize > 0 ? fetchSize : SQLDBConfig.DEFAULT_FETCH_SIZE;
+    }
+
     @Override
     public void close() {
+        List<PartitionedIterator> open;
+        synchronized (partitionedIterators) {
+            open = new ArrayList<>(partitionedIterators);
+            partitionedIterators.clear();
+        }
+        // Closed outside the lock, as a closing iterator removes itself from the set.
+        for (PartitionedIterator itr : open) {
+            itr.close();
+        }
         for (Statement statement: statements) {
             try {
+                Connection conn = statement.getConnection();
                 statement.close();
+                conn.close();
             } catch (SQLException e) {
                 logger.log(Level.WARNING, "Error closing statement", e);
             }
@@ -166,4 +374,248 @@ public class SQLDataSource<T extends Output<T>> extends ColumnarDataSource<T> im
         }
 
     }
+
+    /**
+     * Fetches the partitions concurrently over separate connections, returning their rows in partition order.
+     * <p>
+     * Each partition has its own thread which opens the connection and runs the partition's query, then
+     * waits for the first row to be requested before fetching into a queue which holds one fetch batch. The
+     * queries run concurrently, and the rows buffered ahead of the consumer are bounded by the number of
+     * partitions times the fetch size. Rows are numbered from 1 in the order they are returned. The statements
+     * and connections are closed when the rows are exhausted, when a partition fails, or when {@link #close()}
+     * is called.
+     */
+    private static final class PartitionedIterator extends ColumnarIterator implements AutoCloseable {
+        private static final AtomicInteger poolCounter = new AtomicInteger();
+
+        private static final long KEEP_ALIVE_SECONDS = 30;
+
+        private final Connection[] connections;
+        private final PreparedStatement[] partitionStatements;
+        private final ResultSetIterator[] partitions;
+        private final List<BlockingQueue<Optional<Row>>> queues = new ArrayList<>();
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final Consumer<PartitionedIterator> onClose;
+        private final ThreadPoolExecutor pool;
+
+        private int current = 0;
+        private long nextIndex = 1;
+        private volatile boolean closed = false;
+
+        PartitionedIterator(SQLDBConfig sqlConfig, List<String> queries, List<long[]> queryParams, Consumer<PartitionedIterator> onClose) {
+            int numPartitions = queries.size();
+            this.onClose = onClose;
+            this.connections = new Connection[numPartitions];
+            this.partitionStatements = new PreparedStatement[numPartitions];
+            this.partitions = new ResultSetIterator[numPartitions];
+            String prefix = "sql-partition-" + poolCounter.getAndIncrement() + "-";
+            AtomicInteger threadCounter = new AtomicInteger();
+            pool = new ThreadPoolExecutor(numPartitions, numPartitions, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), (Runnable r) -> {
+                Thread t = new Thread(r, prefix + threadCounter.getAndIncrement());
+                t.setDaemon(true);
+                return t;
+            });
+            pool.allowCoreThreadTimeOut(true);
+            List<CompletableFuture<Void>> opened = new ArrayList<>(numPartitions);
+            for (int i = 0; i < numPartitions; i++) {
+                CompletableFuture<Void> partitionOpened = new CompletableFuture<>();
+                opened.add(partitionOpened);
+                BlockingQueue<Optional<Row>> queue = new ArrayBlockingQueue<>(batchSize(sqlConfig.getFetchSize()));
+                queues.add(queue);
+                int idx = i;
+                pool.execute(() -> fetch(idx, sqlConfig, queries.get(idx), queryParams.get(idx), partitionOpened, queue));
+            }
+            // The threads exit once their partitions have been fetched.
+            pool.shutdown();
+            Throwable openFailure = null;
+            for (CompletableFuture<Void> f : opened) {
+                try {
+                    f.get();
+                } catch (ExecutionException e) {
+                    if (openFailure == null) {
+                        openFailure = e.getCause();
+                    }
+                } catch (InterruptedException e) {
+                    close();
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while opening the partitions", e);
+                }
+            }
+            if (openFailure != null) {
+                close();
+                if (openFailure instanceof SQLException) {
+                    throw new IllegalArgumentException("Error Processing SQL", openFailure);
+                } else if (openFailure instanceof RuntimeException) {
+                    throw (RuntimeException) openFailure;
+                } else if (openFailure instanceof Error) {
+                    throw (Error) openFailure;
+                } else {
+                    throw new IllegalStateException("Failed to open partition", openFailure);
+                }
+            }
+            this.fields = partitions[0].getFields();
+        }
+
+        /**
+         * Opens a partition's query, then once the consumer has started fetches its rows into the queue.
+         * @param idx The partition index.
+         * @param sqlConfig The database configuration.
+         * @param query The partition's query.
+         * @param params The query parameters.
+         * @param opened Completed when the query has been run, or exceptionally if it failed.
+         * @param queue The queue for the partition's rows.
+         */
+        private void fetch(int idx, SQLDBConfig sqlConfig, String query, long[] params, CompletableFuture<Void> opened, BlockingQueue<Optional<Row>> queue) {
+            ResultSetIterator itr;
+            try {
+                itr = open(idx, sqlConfig, query, params);
+                opened.complete(null);
+            } catch (Throwable t) {
+                opened.completeExceptionally(t);
+                return;
+            }
+            try {
+                started.await();
+                // The projection is set before the first row is requested.
+                itr.setProjection(projection);
+                while (itr.hasNext()) {
+                    queue.put(Optional.of(itr.next()));
+                }
+            } catch (InterruptedException e) {
+                // Closed, so stop fetching.
+                return;
+            } catch (Throwable t) {
+                failure.compareAndSet(null, t);
+            }
+            try {
+                // The empty row marks the end of the partition.
+                queue.put(Optional.empty());
+            } catch (InterruptedException e) {
+                // Closed while waiting for the consumer.
+            }
+        }
+
+        /**
+         * Opens a connection and runs a partition's query, closing them if the iterator has already been closed.
+         * @param idx The partition index.
+         * @param sqlConfig The database configuration.
+         * @param query The partition's query.
+         * @param params The query parameters.
+         * @return An iterator over the partition's rows.
+         * @throws SQLException If the query failed.
+         */
+        private ResultSetIterator open(int idx, SQLDBConfig sqlConfig, String query, long[] params) throws SQLException {
+            Connection conn = sqlConfig.getQueryConnection();
+            if (!register(idx, conn, null)) {
+                conn.close();
+                throw new IllegalStateException("Closed while opening partition " + idx);
+            }
+            PreparedStatement stmt = sqlConfig.prepareQuery(conn, query);
+            if (!register(idx, conn, stmt)) {
+                stmt.close();
+                conn.close();
+                throw new IllegalStateException("Closed while opening partition " + idx);
+            }
+            for (int j = 0; j < params.length; j++) {
+                stmt.setLong(j + 1, params[j]);
+            }
+            ResultSetIterator itr = new ResultSetIterator(stmt.executeQuery(), batchSize(stmt.getFetchSize()));
+            partitions[idx] = itr;
+            return itr;
+        }
+
+        /**
+         * Records a partition's connection and statement so {@link #close()} releases them.
+         * @param idx The partition index.
+         * @param conn The connection.
+         * @param stmt The statement, or null if it hasn't been prepared.
+         * @return False if the iterator is already closed, in which case the caller must close them.
+         */
+        private synchronized boolean register(int idx, Connection conn, PreparedStatement stmt) {
+            if (closed) {
+                return false;
+            }
+            connections[idx] = conn;
+            partitionStatements[idx] = stmt;
+            return true;
+        }
+
+        @Override
+        protected Optional<Row> getRow() {
+            if (closed) {
+                return Optional.empty();
+            }
+            started.countDown();
+            while (current < queues.size()) {
+                checkFailure();
+                Optional<Row> next;
+                try {
+                    next = queues.get(current).take();
+                } catch (InterruptedException e) {
+                    close();
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while reading partition " + current, e);
+                }
+                if (next.isPresent()) {
+                    return Optional.of(new Row(nextIndex++, fields, next.get().getRowData()));
+                }
+                checkFailure();
+                current++;
+            }
+            close();
+            return Optional.empty();
+        }
+
+        /**
+         * Closes the iterator and rethrows the failure if any partition failed.
+         */
+        private void checkFailure() {
+            Throwable t = failure.get();
+            if (t != null) {
+                close();
+                if (t instanceof RuntimeException) {
+                    throw (RuntimeException) t;
+                } else if (t instanceof Error) {
+                    throw (Error) t;
+                } else {
+                    throw new IllegalStateException("Failed to read partition", t);
+                }
+            }
+        }
+
+        /**
+         * Stops the fetch threads, closes the statements and connections, and stops the data source tracking this iterator.
+         */
+        @Override
+        public void close() {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                pool.shutdownNow();
+                for (PreparedStatement stmt : partitionStatements) {
+                    if (stmt != null) {
+                        try {
+                            stmt.close();
+                        } catch (SQLException e) {
+                            logger.log(Level.WARNING, "Error closing statement", e);
+                        }
+                    }
+                }
+                for (Connection conn : connections) {
+                    if (conn != null) {
+                        try {
+                            conn.close();
+                        } catch (SQLException e) {
+                            logger.log(Level.WARNING, "Error closing connection", e);
+                        }
+                    }
+                }
+            }
+            // Outside the lock, as the data source takes its own lock to remove this iterator.
+            onClose.accept(this);
+        }
+    }
 }
@@ -26,6 +26,9 @@ import java.util.List;
 /**
  * A pipeline that takes a String and returns a List of {@link Feature}s.
  * This list is not guaranteed to have unique elements.
+ * <p>
+ * Pipelines used by a {@link org.tribuo.data.columnar.processors.field.TextFieldProcessor} are called
+ * concurrently when examples are generated in parallel, so they must be thread safe.
  */
 public interface TextPipeline extends Configurable, Provenancable<ConfiguredObjectProvenance> {
 
@@ -25,6 +25,9 @@ import java.util.List;
 
 /**
  * A TextProcessor takes some text and optionally a feature tag and generates a list of {@link Feature}s from that text.
+ * <p>
+ * TextProcessors must be thread safe, e.g., {@link org.tribuo.data.text.impl.NgramProcessor} keeps a per thread
+ * copy of its tokenizer.
  */
 public interface TextProcessor extends Configurable, Provenancable<ConfiguredObjectProvenance> {
 
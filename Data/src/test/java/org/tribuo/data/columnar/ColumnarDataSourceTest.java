@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.tribuo.data.columnar;
+
+import org.junit.jupiter.api.Test;
+import org.tribuo.Example;
+import org.tribuo.Feature;
+import org.tribuo.data.columnar.processors.field.DoubleFieldProcessor;
+import org.tribuo.provenance.DataSourceProvenance;
+import org.tribuo.provenance.SimpleDataSourceProvenance;
+import org.tribuo.test.MockOutput;
+import org.tribuo.test.MockOutputFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ColumnarDataSourceTest {
+
+    private static final int NUM_ROWS = 2000;
+
+    @Test
+    public void testParallelOrder() {
+        for (int numThreads : new int[]{1, 2, 4}) {
+            ListDataSource source = new ListDataSource(new DoubleFieldProcessor("x"), NUM_ROWS, numThreads);
+            int count = 0;
+            for (Example<MockOutput> example : source) {
+                List<Feature> features = new ArrayList<>();
+                example.forEach(features::add);
+                assertEquals(1, features.size());
+                assertEquals(count + 1, features.get(0).getValue(), 0.0);
+                count++;
+            }
+            assertEquals(NUM_ROWS, count);
+        }
+    }
+
+    @Test
+    public void testParallelFailure() {
+        // The failing row is several batches in, after other batches have completed.
+        int failingRow = 1500;
+        ListDataSource source = new ListDataSource(new ThrowingProcessor("x", failingRow), NUM_ROWS, 4);
+        Iterator<Example<MockOutput>> itr = source.iterator();
+        int count = 0;
+        try {
+            while (itr.hasNext()) {
+                itr.next();
+                count++;
+            }
+        } catch (IllegalStateException e) {
+            assertEquals("Failed on row " + failingRow, e.getMessage());
+        }
+        // Examples are returned in order, so every batch before the failing one was returned.
+        assertEquals(failingRow - (failingRow % 256), count);
+
+        // A failure on the calling thread's first batch is also rethrown.
+        ListDataSource early = new ListDataSource(new ThrowingProcessor("x", 0), NUM_ROWS, 4);
+        assertThrows(IllegalStateException.class, () -> early.iterator().hasNext());
+    }
+
+    @Test
+    public void testWorkerThreadsExit() throws InterruptedException {
+        ListDataSource source = new ListDataSource(new DoubleFieldProcessor("x"), NUM_ROWS, 4);
+        int count = 0;
+        for (Example<MockOutput> example : source) {
+            count++;
+        }
+        assertEquals(NUM_ROWS, count);
+        ListDataSource failing = new ListDataSource(new ThrowingProcessor("x", 300), NUM_ROWS, 4);
+        assertThrows(IllegalStateException.class, () -> {
+            for (Example<MockOutput> example : failing) {
+                // consume
+            }
+        });
+        // The pools are shut down when the rows run out or a batch fails.
+        long deadline = System.currentTimeMillis() + 10000;
+        while (countWorkers() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertEquals(0, countWorkers());
+    }
+
+    private static int countWorkers() {
+        int count = 0;
+        for (Thread t : Thread.getAllStackTraces().keySet()) {
+            if (t.isAlive() && t.getName().startsWith("columnar-data-source-")) {
+                assertTrue(t.isDaemon());
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * A double processor which throws on one value.
+     */
+    private static final class ThrowingProcessor extends DoubleFieldProcessor {
+        private final String failingValue;
+
+        ThrowingProcessor(String fieldName, int failingRow) {
+            super(fieldName);
+            this.failingValue = Integer.toString(failingRow + 1);
+        }
+
+        @Override
+        public List<ColumnarFeature> process(String value) {
+            if (value.equals(failingValue)) {
+                throw new IllegalStateException("Failed on row " + (Integer.parseInt(value) - 1));
+            }
+            return super.process(value);
+        }
+    }
+
+    /**
+     * A columnar data source over rows whose "x" field is the row index plus one.
+     */
+    private static final class ListDataSource extends ColumnarDataSource<MockOutput> {
+        private final int numRows;
+
+        ListDataSource(FieldProcessor processor, int numRows, int numThreads) {
+            super(new MockOutputFactory(), makeRowProcessor(processor), true, numThreads);
+            this.numRows = numRows;
+        }
+
+        private static RowProcessor<MockOutput> makeRowProcessor(FieldProcessor processor) {
+            Map<String,FieldProcessor> fieldProcessors = new HashMap<>();
+            fieldProcessors.put(processor.getFieldName(), processor);
+            return new RowProcessor<>(Collections.emptyList(), null, new MockResponseProcessor("y"), fieldProcessors, Collections.emptyMap(), new HashSet<>());
+        }
+
+        @Override
+        protected ColumnarIterator rowIterator() {
+            return new ListIterator(numRows);
+        }
+
+        @Override
+        public DataSourceProvenance getProvenance() {
+            return new SimpleDataSourceProvenance("ListDataSource", getOutputFactory());
+        }
+    }
+
+    private static final class ListIterator extends ColumnarIterator {
+        private final int numRows;
+        private int idx = 0;
+
+        ListIterator(int numRows) {
+            this.numRows = numRows;
+            this.fields = Collections.unmodifiableList(Arrays.asList("x", "y"));
+        }
+
+        @Override
+        protected Optional<Row> getRow() {
+            if (idx < numRows) {
+                Map<String,String> data = new HashMap<>();
+                // Offset by one as an example with a zero valued feature has no features.
+                data.put("x", Integer.toString(idx + 1));
+                data.put("y", "label");
+                Row row = new Row(idx, fields, data);
+                idx++;
+                return Optional.of(row);
+            } else {
+                return Optional.empty();
+            }
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.tribuo.data.columnar;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.CharBuffer;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Checks {@link DoubleParser} agrees with {@link Double#parseDouble}.
+ */
+public class DoubleParserTest {
+
+    private static void check(String value) {
+        double expected = Double.parseDouble(value);
+        // Compare the bits so -0.0 and NaN are checked exactly.
+        assertEquals(Double.doubleToRawLongBits(expected), Double.doubleToRawLongBits(DoubleParser.parseDouble(value)), value);
+        assertEquals(Double.doubleToRawLongBits(expected), Double.doubleToRawLongBits(DoubleParser.parseDouble(CharBuffer.wrap(value))), value);
+    }
+
+    @Test
+    public void testValues() {
+        String[] values = new String[]{"0", "-0", "+1", "1.", "-.5", "1e-3", "1E+3", "00012.5000",
+                "123456789012345678", "1234567890123456789", "9007199254740993", "1e22", "1e23",
+                "0.000000000000000000001234", "12345e-30", "3.14159265358979323846",
+                "1.7976931348623157E308", "4.9e-324", "NaN", "-Infinity", "1d", "2.5f", "0x1p3", " 1", "1 "};
+        for (String value : values) {
+            check(value);
+        }
+    }
+
+    @Test
+    public void testRandom() {
+        SplittableRandom rng = new SplittableRandom(12345);
+        for (int i = 0; i < 100000; i++) {
+            check(Double.toString(rng.nextDouble() * Math.pow(10, rng.nextInt(-20, 20))));
+            check(Float.toString((float) rng.nextDouble()));
+            check(Long.toString(rng.nextLong()));
+            check(String.format(Locale.US, "%." + rng.nextInt(0, 10) + "f", rng.nextDouble() * 1000));
+        }
+    }
+
+    @Test
+    public void testInvalid() {
+        String[] values = new String[]{"", ".", "-", "e5", "1e", "1e+", "1.2.3", "abc", "1,5"};
+        for (String value : values) {
+            assertThrows(NumberFormatException.class, () -> DoubleParser.parseDouble(value), value);
+        }
+    }
+}
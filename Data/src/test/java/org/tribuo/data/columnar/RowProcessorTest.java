@@ -17,12 +17,15 @@
 package org.tribuo.data.columnar;
 
 import com.oracle.labs.mlrg.olcut.config.PropertyException;
+import com.oracle.labs.mlrg.olcut.provenance.ConfiguredObjectProvenance;
+import com.oracle.labs.mlrg.olcut.provenance.impl.ConfiguredObjectProvenanceImpl;
 import org.tribuo.Example;
 import org.tribuo.Feature;
 import org.tribuo.data.columnar.extractors.DateExtractor;
 import org.tribuo.data.columnar.extractors.OffsetDateTimeExtractor;
 import org.tribuo.data.columnar.extractors.FloatExtractor;
 import org.tribuo.data.columnar.extractors.IdentityExtractor;
+import org.tribuo.data.columnar.extractors.IndexExtractor;
 import org.tribuo.data.columnar.extractors.IntExtractor;
 import org.tribuo.data.columnar.processors.field.DoubleFieldProcessor;
 import org.tribuo.data.columnar.processors.field.IdentityProcessor;
@@ -41,9 +44,13 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
 /**
@@ -170,4 +177,122 @@ public class RowProcessorTest {
         assertThrows(PropertyException.class, () -> new RowProcessor<>(badExtractors,weightExtractor,response,fixed,Collections.emptySet()));
     }
 
+    @Test
+    public void indexedRowTest() {
+        Map<String, FieldProcessor> fixed = new HashMap<>();
+        fixed.put("Battles", new IdentityProcessor("Battles"));
+        fixed.put("Armadas", new DoubleFieldProcessor("Armadas"));
+        fixed.put("Archery", new DoubleFieldProcessor("Archery"));
+        fixed.put("Missing", new DoubleFieldProcessor("Missing"));
+
+        List<FieldExtractor<?>> metadataExtractors = new ArrayList<>();
+        metadataExtractors.add(new IntExtractor("Armadillos", "ID"));
+
+        List<String> fields = Arrays.asList("Armadillos","Armadas","Archery","Battles","Mass","Label");
+        String[] values = new String[]{"1"," 2.5 ","3e2","the\nbattle","9000","Sheep"};
+        Map<String,String> row = new HashMap<>();
+        for (int i = 0; i < fields.size(); i++) {
+            row.put(fields.get(i),values[i]);
+        }
+        IndexedRow indexedRow = new IndexedRow() {
+            @Override
+            public long getIndex() {
+                return 7;
+            }
+
+            @Override
+            public List<String> getFields() {
+                return fields;
+            }
+
+            @Override
+            public int getFieldIndex(String fieldName) {
+                return fields.indexOf(fieldName);
+            }
+
+            @Override
+            public CharSequence get(int columnIndex) {
+                return new StringBuilder(values[columnIndex]);
+            }
+
+            @Override
+            public ColumnarIterator.Row toRow() {
+                return new ColumnarIterator.Row(7, fields, row);
+            }
+        };
+
+        RowProcessor<MockOutput> processor = new RowProcessor<>(metadataExtractors,new FloatExtractor("Mass"),new MockResponseProcessor("Label"),fixed,Collections.emptySet());
+
+        Example<MockOutput> expected = processor.generateExample(7,row,true).get();
+        Example<MockOutput> actual = processor.generateExample(indexedRow,true).get();
+
+        assertEquals(3,actual.size());
+        assertEquals(expected.getOutput(),actual.getOutput());
+        assertEquals(expected.getWeight(),actual.getWeight());
+        assertEquals(expected.getMetadata(),actual.getMetadata());
+        Iterator<Feature> expectedItr = expected.iterator();
+        for (Feature f : actual) {
+            Feature e = expectedItr.next();
+            assertEquals(e.getName(),f.getName());
+            assertEquals(e.getValue(),f.getValue());
+        }
+
+        // Without extractors the row isn't copied
+        RowProcessor<MockOutput> plain = new RowProcessor<>(new MockResponseProcessor("Label"),fixed);
+        assertEquals(3,plain.generateExample(indexedRow,true).get().size());
+    }
+
+    @Test
+    public void requiredFieldsTest() {
+        Map<String, FieldProcessor> fixed = new HashMap<>();
+        fixed.put("Battles", new IdentityProcessor("Battles"));
+        fixed.put("Armadas", new DoubleFieldProcessor("Armadas"));
+
+        List<FieldExtractor<?>> metadataExtractors = new ArrayList<>();
+        metadataExtractors.add(new IdentityExtractor("Armadillos", Example.NAME));
+        metadataExtractors.add(new IndexExtractor("Index"));
+
+        MockResponseProcessor response = new MockResponseProcessor("Label");
+
+        RowProcessor<MockOutput> processor = new RowProcessor<>(metadataExtractors, new FloatExtractor("Mass"), response, fixed, Collections.emptySet());
+        Optional<Set<String>> required = processor.getRequiredFields();
+        assertTrue(required.isPresent());
+        assertEquals(new HashSet<>(Arrays.asList("Battles", "Armadas", "Armadillos", "Mass", "Label")), required.get());
+
+        // Unexpanded regexes could match any field
+        Map<String, FieldProcessor> regex = new HashMap<>();
+        regex.put("Car.*", new IdentityProcessor("Car"));
+        RowProcessor<MockOutput> regexProcessor = new RowProcessor<>(Collections.emptyList(), null, response, fixed, regex, Collections.emptySet());
+        assertFalse(regexProcessor.getRequiredFields().isPresent());
+
+        regexProcessor.expandRegexMapping(Arrays.asList("Armadillos", "Armadas", "Battles", "Carrots", "Cartography", "Label"));
+        required = regexProcessor.getRequiredFields();
+        assertTrue(required.isPresent());
+        assertEquals(new HashSet<>(Arrays.asList("Battles", "Armadas", "Carrots", "Cartography", "Label")), required.get());
+
+        // Extractors which don't report their fields could read any field
+        FieldExtractor<String> opaque = new FieldExtractor<String>() {
+            @Override
+            public String getMetadataName() {
+                return "opaque";
+            }
+
+            @Override
+            public Class<String> getValueType() {
+                return String.class;
+            }
+
+            @Override
+            public Optional<String> extract(ColumnarIterator.Row row) {
+                return Optional.of(row.getRowData().toString());
+            }
+
+            @Override
+            public ConfiguredObjectProvenance getProvenance() {
+                return new ConfiguredObjectProvenanceImpl(this, "FieldExtractor");
+            }
+        };
+        RowProcessor<MockOutput> opaqueProcessor = new RowProcessor<>(Collections.singletonList(opaque), response, fixed);
+        assertFalse(opaqueProcessor.getRequiredFields().isPresent());
+    }
 }
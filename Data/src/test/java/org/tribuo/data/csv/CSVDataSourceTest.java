@@ -35,6 +35,7 @@ import org.tribuo.test.MockOutputFactory;
 
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.file.Paths;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -146,4 +147,44 @@ public class CSVDataSourceTest {
         Dataset<MockOutput> ds2 = new MutableDataset<>(new CSVDataSource<>(regexDataFile, regexRowProcessor, true));
     }
 
+    @Test
+    public void testParallel() {
+        Dataset<MockOutput> sequential = new MutableDataset<>(new CSVDataSource<>(dataFile, rowProcessor, true));
+        Dataset<MockOutput> parallel = new MutableDataset<>(new CSVDataSource<>(Paths.get(dataFile), rowProcessor, true, CSVIterator.SEPARATOR, CSVIterator.QUOTE, 4));
+
+        assertEquals(sequential.size(), parallel.size());
+        assertEquals(sequential.getFeatureMap().size(), parallel.getFeatureMap().size());
+        for (int i = 0; i < sequential.size(); i++) {
+            assertEquals(sequential.getExample(i).getOutput(), parallel.getExample(i).getOutput());
+            assertEquals(sequential.getExample(i).size(), parallel.getExample(i).size());
+        }
+
+        Dataset<MockOutput> regexParallel = new MutableDataset<>(new CSVDataSource<>(Paths.get(regexDataFile), regexRowProcessor, true, CSVIterator.SEPARATOR, CSVIterator.QUOTE, 2));
+        assertEquals(6, regexParallel.size());
+        assertEquals(13, regexParallel.getFeatureMap().size());
+
+        assertThrows(IllegalArgumentException.class, () -> new CSVDataSource<>(Paths.get(dataFile), rowProcessor, true, CSVIterator.SEPARATOR, CSVIterator.QUOTE, 0));
+    }
+
+    @Test
+    public void testMemoryMapped() throws URISyntaxException {
+        Dataset<MockOutput> sequential = new MutableDataset<>(new CSVDataSource<>(dataFile, rowProcessor, true));
+        Dataset<MockOutput> mapped = new MutableDataset<>(new CSVDataSource<>(Paths.get(dataFile), rowProcessor, true, CSVIterator.SEPARATOR, CSVIterator.QUOTE, 1, true));
+
+        assertEquals(sequential.size(), mapped.size());
+        assertEquals(sequential.getFeatureMap().size(), mapped.getFeatureMap().size());
+        for (int i = 0; i < sequential.size(); i++) {
+            assertEquals(sequential.getExample(i), mapped.getExample(i));
+        }
+
+        URI bomDataFile = CSVDataSourceTest.class.getResource("/org/tribuo/data/csv/test-bom.csv").toURI();
+        Dataset<MockOutput> bomMapped = new MutableDataset<>(new CSVDataSource<>(Paths.get(bomDataFile), rowProcessor, true, CSVIterator.SEPARATOR, CSVIterator.QUOTE, 1, true));
+        assertEquals(6, bomMapped.size());
+        assertEquals(13, bomMapped.getFeatureMap().size());
+
+        Dataset<MockOutput> regexMapped = new MutableDataset<>(new CSVDataSource<>(Paths.get(regexDataFile), regexRowProcessor, true, CSVIterator.SEPARATOR, CSVIterator.QUOTE, 1, true));
+        assertEquals(6, regexMapped.size());
+        assertEquals(13, regexMapped.getFeatureMap().size());
+    }
+
 }
@@ -21,16 +21,20 @@ import org.junit.jupiter.api.Test;
 import org.tribuo.data.columnar.ColumnarIterator;
 
 import java.io.IOException;
+import java.io.StringReader;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 public class CSVIteratorTest {
 
@@ -161,4 +165,74 @@ public class CSVIteratorTest {
         assertFalse(iter.hasNext(), "Iterator should be empty after reading");
     }
 
+    @Test
+    public void testProjection() throws IOException {
+        CSVIterator iter = new CSVIterator(path);
+        iter.setProjection(new HashSet<>(Arrays.asList("A", "RESPONSE", "Z")));
+        for(int i=0; i < pathReference.size();i++) {
+            ColumnarIterator.Row iterRow = iter.next();
+            ColumnarIterator.Row refRow = pathReference.get(i);
+            Map<String,String> projected = new HashMap<>();
+            projected.put("A", refRow.getRowData().get("A"));
+            projected.put("RESPONSE", refRow.getRowData().get("RESPONSE"));
+            assertEquals(refRow.getIndex(), iterRow.getIndex(), "Failure on row " + i + " of " + path.toString());
+            assertEquals(refRow.getFields(), iterRow.getFields(), "Failure on row " + i + " of " + path.toString());
+            assertEquals(projected, iterRow.getRowData(), "Failure on row " + i + " of " + path.toString());
+        }
+        assertFalse(iter.hasNext(), "Iterator should be empty after reading");
+    }
+
+    @Test
+    public void testProjectedTokenizer() throws IOException {
+        String tricky = "A,B,C\r\n" +
+                "1,\"two, with a comma\",3\n" +
+                "4,\"five\r\nover two lines\",6\r\n" +
+                "\n" +
+                "7,\"\"\"quoted\"\" eight\",9\r" +
+                "10,\u00EBl\u00EBv\u00EBn,\"twelve\"\n" +
+                "\"\",,15";
+        List<ColumnarIterator.Row> full = new ArrayList<>();
+        try (CSVIterator iter = new CSVIterator(new StringReader(tricky))) {
+            iter.forEachRemaining(full::add);
+        }
+        assertEquals(5, full.size());
+
+        for (List<String> columns : Arrays.asList(Arrays.asList("A", "B", "C"), Arrays.asList("B"), Arrays.asList("A", "C"), Arrays.<String>asList())) {
+            try (CSVIterator iter = new CSVIterator(new StringReader(tricky))) {
+                iter.setProjection(new HashSet<>(columns));
+                for (ColumnarIterator.Row expected : full) {
+                    ColumnarIterator.Row actual = iter.next();
+                    Map<String,String> projected = new HashMap<>(expected.getRowData());
+                    projected.keySet().retainAll(columns);
+                    assertEquals(expected.getIndex(), actual.getIndex());
+                    assertEquals(expected.getFields(), actual.getFields());
+                    assertEquals(projected, actual.getRowData(), "Failure on row " + expected.getIndex() + " projecting " + columns);
+                }
+                assertFalse(iter.hasNext(), "Iterator should be empty after reading");
+            }
+        }
+
+        for (URI uri : Arrays.asList(path, quotePath, doubleLineBreak)) {
+            List<ColumnarIterator.Row> expected = new ArrayList<>();
+            new CSVIterator(uri).forEachRemaining(expected::add);
+            CSVIterator projected = new CSVIterator(uri);
+            projected.setProjection(new HashSet<>(projected.getFields()));
+            List<ColumnarIterator.Row> actual = new ArrayList<>();
+            projected.forEachRemaining(actual::add);
+            assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.get(i).getRowData(), actual.get(i).getRowData(), "Failure on row " + i + " of " + uri);
+            }
+        }
+
+        CSVIterator badRow = new CSVIterator(new StringReader("A,B\n1,2\n3\n"));
+        badRow.setProjection(Collections.singleton("A"));
+        badRow.next();
+        assertThrows(IllegalArgumentException.class, badRow::next);
+
+        CSVIterator unterminated = new CSVIterator(new StringReader("A,B\n1,\"2\n"));
+        unterminated.setProjection(Collections.singleton("A"));
+        assertThrows(IllegalArgumentException.class, unterminated::next);
+    }
+
 }
@@ -48,6 +48,15 @@ public class CSVLoaderTest {
         checkDataTestCsv(loader.loadDataSource(path, Collections.singleton("RESPONSE")));
     }
 
+    @Test
+    public void testLoadParallel() throws IOException {
+        URL path = CSVLoaderTest.class.getResource("/org/tribuo/data/csv/test.csv");
+        CSVLoader<MockOutput> loader = new CSVLoader<>(CSVIterator.SEPARATOR, CSVIterator.QUOTE, new MockOutputFactory(), 4);
+        checkDataTestCsv(loader.loadDataSource(path, "RESPONSE"));
+        URL bomPath = CSVLoaderTest.class.getResource("/org/tribuo/data/csv/test-bom.csv");
+        checkDataTestCsv(loader.loadDataSource(bomPath, "RESPONSE"));
+    }
+
     @Test
     public void testLoadBOM() throws IOException {
         URL path = CSVLoaderTest.class.getResource("/org/tribuo/data/csv/test-bom.csv");
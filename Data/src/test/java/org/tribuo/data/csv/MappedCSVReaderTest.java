@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.tribuo.data.csv;
+
+import org.junit.jupiter.api.Test;
+import org.tribuo.data.columnar.ColumnarIterator;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the {@link MappedCSVReader} produces the same rows as a {@link CSVIterator}.
+ */
+public class MappedCSVReaderTest {
+
+    private static final String TRICKY = "A,B,C\r\n" +
+            "1,\"two, with a comma\",3\n" +
+            "4,\"five\r\nover two lines\",6\r\n" +
+            "\n" +
+            "7,\"\"\"quoted\"\" eight\",9\r" +
+            "10,\u00FCn\u00EFc\u00F6d\u00E9,\"twelve\"\n" +
+            "13,,15";
+
+    private static Path write(String contents) throws IOException {
+        File temp = File.createTempFile("tribuo-mapped-csv-test", ".csv");
+        temp.deleteOnExit();
+        Files.write(temp.toPath(), contents.getBytes(StandardCharsets.UTF_8));
+        return temp.toPath();
+    }
+
+    private static Path resource(String name) throws URISyntaxException {
+        return Paths.get(MappedCSVReaderTest.class.getResource("/org/tribuo/data/csv/" + name).toURI());
+    }
+
+    private static List<ColumnarIterator.Row> sequential(Path path, char separator) throws IOException {
+        List<ColumnarIterator.Row> rows = new ArrayList<>();
+        try (CSVIterator itr = new CSVIterator(new InputStreamReader(Files.newInputStream(path), StandardCharsets.UTF_8), separator, CSVIterator.QUOTE)) {
+            while (itr.hasNext()) {
+                rows.add(itr.next());
+            }
+        }
+        return rows;
+    }
+
+    private static List<ColumnarIterator.Row> mapped(MappedCSVReader reader) throws IOException {
+        List<ColumnarIterator.Row> rows = new ArrayList<>();
+        try {
+            while (reader.advance()) {
+                rows.add(reader.toRow());
+            }
+        } finally {
+            reader.close();
+        }
+        return rows;
+    }
+
+    private static void assertSameRows(List<ColumnarIterator.Row> expected, List<ColumnarIterator.Row> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getIndex(), actual.get(i).getIndex());
+            assertEquals(expected.get(i).getFields(), actual.get(i).getFields());
+            assertEquals(expected.get(i).getRowData(), actual.get(i).getRowData());
+        }
+    }
+
+    @Test
+    public void testResources() throws IOException, URISyntaxException {
+        for (String name : Arrays.asList("test.csv", "testQuote.csv", "test-bom.csv", "test-double-line-break.csv", "test-multioutput.csv")) {
+            Path path = resource(name);
+            assertSameRows(sequential(path, ','), mapped(new MappedCSVReader(path)));
+        }
+        Path tsv = resource("testQuote.tsv");
+        assertSameRows(sequential(tsv, '\t'), mapped(new MappedCSVReader(tsv, '\t', CSVIterator.QUOTE)));
+    }
+
+    @Test
+    public void testWindows() throws IOException {
+        Path path = write(TRICKY);
+        List<ColumnarIterator.Row> expected = sequential(path, ',');
+        assertEquals(5, expected.size());
+
+        // Small windows force records to be remapped when they cross a window boundary.
+        for (int windowSize = 32; windowSize < TRICKY.length() + 8; windowSize++) {
+            MappedCSVReader reader = new MappedCSVReader(path, CSVIterator.SEPARATOR, CSVIterator.QUOTE, Collections.emptyList(), windowSize);
+            assertSameRows(expected, mapped(reader));
+        }
+
+        MappedCSVReader tooSmall = new MappedCSVReader(path, CSVIterator.SEPARATOR, CSVIterator.QUOTE, Arrays.asList("A","B","C"), 8);
+        assertThrows(IllegalArgumentException.class, () -> mapped(tooSmall));
+    }
+
+    @Test
+    public void testFieldAccess() throws IOException {
+        Path path = write("X,Y,Z\n1.5,\"-2e3\",abc\n");
+        try (MappedCSVReader reader = new MappedCSVReader(path)) {
+            assertEquals(Arrays.asList("X","Y","Z"), reader.getFields());
+            assertEquals(1, reader.getFieldIndex("Y"));
+            assertEquals(-1, reader.getFieldIndex("W"));
+            assertTrue(reader.advance());
+            assertEquals(0, reader.getIndex());
+            assertEquals(3, reader.size());
+            assertEquals(1.5, reader.getDouble(0));
+            assertEquals(-2000.0, reader.getDouble(1));
+            assertEquals("abc", reader.get(2).toString());
+            assertEquals("b", reader.get(2).subSequence(1, 2).toString());
+            assertThrows(NumberFormatException.class, () -> reader.getDouble(2));
+            assertThrows(IndexOutOfBoundsException.class, () -> reader.get(3));
+            assertFalse(reader.advance());
+        }
+    }
+
+    @Test
+    public void testInvalid() throws IOException {
+        Path badRow = write("A,B\n1,2\n3\n");
+        assertThrows(IllegalArgumentException.class, () -> mapped(new MappedCSVReader(badRow)));
+
+        Path unterminated = write("A,B\n1,\"2\n");
+        assertThrows(IllegalArgumentException.class, () -> mapped(new MappedCSVReader(unterminated)));
+
+        Path empty = write("");
+        MappedCSVReader reader = new MappedCSVReader(empty);
+        assertTrue(reader.getFields().isEmpty());
+        assertFalse(reader.advance());
+        reader.close();
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.tribuo.data.csv;
+
+import org.junit.jupiter.api.Test;
+import org.tribuo.data.columnar.ColumnarIterator;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the parallel reader produces the same rows as a sequential {@link CSVIterator}.
+ */
+public class ParallelCSVReaderTest {
+
+    private static final String QUOTED = "A,B,C\n" +
+            "1,\"two, with a comma\",3\n" +
+            "4,\"five\nover two lines\",6\r\n" +
+            "\n" +
+            "7,\"\"\"quoted\"\" eight\",9\r" +
+            "10,11,\"twelve\r\n\"\n" +
+            "13,,15";
+
+    private static Path write(String contents) throws IOException {
+        File temp = File.createTempFile("tribuo-parallel-csv-test", ".csv");
+        temp.deleteOnExit();
+        Files.write(temp.toPath(), contents.getBytes(StandardCharsets.UTF_8));
+        return temp.toPath();
+    }
+
+    private static List<ColumnarIterator.Row> sequential(Path path, List<String> fields) throws IOException {
+        List<ColumnarIterator.Row> rows = new ArrayList<>();
+        try (CSVIterator itr = new CSVIterator(new InputStreamReader(Files.newInputStream(path), StandardCharsets.UTF_8), CSVIterator.SEPARATOR, CSVIterator.QUOTE, fields)) {
+            while (itr.hasNext()) {
+                rows.add(itr.next());
+            }
+        }
+        return rows;
+    }
+
+    private static void assertSameRows(List<ColumnarIterator.Row> expected, List<ColumnarIterator.Row> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getIndex(), actual.get(i).getIndex());
+            assertEquals(expected.get(i).getFields(), actual.get(i).getFields());
+            assertEquals(expected.get(i).getRowData(), actual.get(i).getRowData());
+        }
+    }
+
+    @Test
+    public void testChunkSizes() throws IOException {
+        Path path = write(QUOTED);
+        List<ColumnarIterator.Row> expected = sequential(path, Collections.emptyList());
+        assertEquals(5, expected.size());
+
+        // Every chunk size up to the file length, so the split points land on every byte.
+        for (int chunkSize = 1; chunkSize <= QUOTED.length() + 1; chunkSize++) {
+            ParallelCSVReader reader = new ParallelCSVReader(path, CSVIterator.SEPARATOR, CSVIterator.QUOTE, Collections.emptyList(), 3, chunkSize);
+            assertEquals(Arrays.asList("A","B","C"), reader.getFields());
+            List<ColumnarIterator.Row> actual = reader.read(() -> Optional::of);
+            assertSameRows(expected, actual);
+        }
+    }
+
+    @Test
+    public void testSuppliedHeader() throws IOException {
+        String contents = "\uFEFF1,2\n3,4\n5,6\n";
+        Path path = write(contents);
+        List<String> fields = Arrays.asList("X","Y");
+        List<ColumnarIterator.Row> expected = sequential(path, fields);
+        assertEquals(3, expected.size());
+
+        ParallelCSVReader reader = new ParallelCSVReader(path, CSVIterator.SEPARATOR, CSVIterator.QUOTE, fields, 2, 4);
+        assertSameRows(expected, reader.read(() -> Optional::of));
+    }
+
+    @Test
+    public void testFiltering() throws IOException {
+        Path path = write(QUOTED);
+        ParallelCSVReader reader = new ParallelCSVReader(path, CSVIterator.SEPARATOR, CSVIterator.QUOTE, Collections.emptyList(), 4, 8);
+        List<Long> indices = reader.read(() -> row -> row.getIndex() % 2 == 0 ? Optional.of(row.getIndex()) : Optional.empty());
+        assertEquals(Arrays.asList(0L, 2L, 4L), indices);
+    }
+
+    @Test
+    public void testEmpty() throws IOException {
+        Path empty = write("");
+        ParallelCSVReader reader = new ParallelCSVReader(empty, CSVIterator.SEPARATOR, CSVIterator.QUOTE, Collections.emptyList(), 2, 4);
+        assertTrue(reader.read(() -> Optional::of).isEmpty());
+
+        Path headerOnly = write("A,B\n");
+        reader = new ParallelCSVReader(headerOnly, CSVIterator.SEPARATOR, CSVIterator.QUOTE, Collections.emptyList(), 2, 4);
+        assertEquals(Arrays.asList("A","B"), reader.getFields());
+        assertTrue(reader.read(() -> Optional::of).isEmpty());
+    }
+
+    @Test
+    public void testInvalid() throws IOException {
+        Path path = write(QUOTED);
+        assertThrows(IllegalArgumentException.class, () -> new ParallelCSVReader(path, CSVIterator.SEPARATOR, CSVIterator.QUOTE, Collections.emptyList(), 0));
+        assertThrows(IllegalArgumentException.class, () -> new ParallelCSVReader(path, '\u00A7', CSVIterator.QUOTE, Collections.emptyList(), 2));
+
+        // A row with the wrong number of fields fails the read rather than hanging the later ranges.
+        Path bad = write("A,B\n1,2\n3\n4,5\n6,7\n");
+        ParallelCSVReader reader = new ParallelCSVReader(bad, CSVIterator.SEPARATOR, CSVIterator.QUOTE, Collections.emptyList(), 2, 2);
+        assertThrows(IllegalArgumentException.class, () -> reader.read(() -> Optional::of));
+    }
+}
@@ -0,0 +1,300 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.tribuo.data.sql;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.tribuo.Example;
+import org.tribuo.Feature;
+import org.tribuo.MutableDataset;
+import org.tribuo.data.columnar.FieldExtractor;
+import org.tribuo.data.columnar.FieldProcessor;
+import org.tribuo.data.columnar.RowProcessor;
+import org.tribuo.data.columnar.extractors.IdentityExtractor;
+import org.tribuo.data.columnar.extractors.IndexExtractor;
+import org.tribuo.data.columnar.processors.field.DoubleFieldProcessor;
+import org.tribuo.data.columnar.processors.field.IdentityProcessor;
+import org.tribuo.data.columnar.processors.field.TextFieldProcessor;
+import org.tribuo.data.columnar.processors.response.FieldResponseProcessor;
+import org.tribuo.data.text.impl.BasicPipeline;
+import org.tribuo.test.MockOutput;
+import org.tribuo.test.MockOutputFactory;
+import org.tribuo.util.tokens.impl.BreakIteratorTokenizer;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests {@link SQLDataSource} against an in-memory H2 database.
+ */
+public class SQLDataSourceTest {
+
+    private static final String CONNECTION_STRING = "jdbc:h2:mem:tribuo_sql_test;DB_CLOSE_DELAY=-1";
+
+    private static final int NUM_ROWS = 1000;
+    private static final int NUM_NULL_IDS = 3;
+
+    private static final String[] WORDS = {"red", "green", "blue", "sheep", "monkey", "baboon", "river", "stone"};
+
+    // Keeps the in-memory database alive for the duration of the tests.
+    private static Connection connection;
+
+    @BeforeAll
+    public static void setUp() throws SQLException {
+        connection = DriverManager.getConnection(CONNECTION_STRING);
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("CREATE TABLE DATA (ID INT, KEY VARCHAR(16), A DOUBLE, B VARCHAR(16), DESCRIPTION VARCHAR(256), RESPONSE VARCHAR(16))");
+        }
+        try (PreparedStatement stmt = connection.prepareStatement("INSERT INTO DATA VALUES (?, ?, ?, ?, ?, ?)")) {
+            for (int i = 0; i < NUM_ROWS + NUM_NULL_IDS; i++) {
+                if (i < NUM_ROWS) {
+                    // Ids are spread out so the partitions are not all the same size.
+                    stmt.setInt(1, (i * i) % 4999);
+                } else {
+                    stmt.setNull(1, Types.INTEGER);
+                }
+                stmt.setString(2, "key-" + i);
+                stmt.setDouble(3, i / 7.0);
+                stmt.setString(4, WORDS[i % WORDS.length]);
+                StringBuilder description = new StringBuilder();
+                for (int j = 0; j < 6; j++) {
+                    description.append(WORDS[(i * 31 + j * 7) % WORDS.length]).append(' ');
+                }
+                stmt.setString(5, description.toString().trim());
+                stmt.setString(6, i % 3 == 0 ? "Yes" : "No");
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+    }
+
+    @AfterAll
+    public static void tearDown() throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("DROP TABLE DATA");
+        }
+        connection.close();
+    }
+
+    private static RowProcessor<MockOutput> buildRowProcessor() {
+        Map<String, FieldProcessor> fieldProcessors = new HashMap<>();
+        fieldProcessors.put("A", new DoubleFieldProcessor("A"));
+        fieldProcessors.put("B", new IdentityProcessor("B"));
+        fieldProcessors.put("DESCRIPTION", new TextFieldProcessor("DESCRIPTION", new BasicPipeline(new BreakIteratorTokenizer(Locale.US), 2)));
+
+        List<FieldExtractor<?>> metadataExtractors = new ArrayList<>();
+        metadataExtractors.add(new IdentityExtractor("KEY", Example.NAME));
+        metadataExtractors.add(new IndexExtractor("index"));
+
+        FieldResponseProcessor<MockOutput> responseProcessor = new FieldResponseProcessor<>("RESPONSE", "UNK", new MockOutputFactory());
+
+        return new RowProcessor<>(metadataExtractors, null, responseProcessor, fieldProcessors, Collections.emptySet());
+    }
+
+    private static SQLDBConfig config() {
+        return new SQLDBConfig(CONNECTION_STRING, Collections.emptyMap());
+    }
+
+    private static Map<Object, String> keyedExamples(MutableDataset<MockOutput> dataset) {
+        Map<Object, String> examples = new HashMap<>();
+        for (Example<MockOutput> e : dataset) {
+            StringBuilder builder = new StringBuilder();
+            builder.append(e.getOutput().toString());
+            for (Feature f : e) {
+                builder.append(',');
+                builder.append(f.toString());
+            }
+            examples.put(e.getMetadataValue(Example.NAME).get(), builder.toString());
+        }
+        return examples;
+    }
+
+    private static List<String> keys(MutableDataset<MockOutput> dataset) {
+        List<String> keys = new ArrayList<>();
+        for (Example<MockOutput> e : dataset) {
+            keys.add((String) e.getMetadataValue(Example.NAME).get());
+        }
+        return keys;
+    }
+
+    /**
+     * Computes the partition which reads the row with the supplied key, matching the ids inserted in {@link #setUp}.
+     * @param key The row key.
+     * @param boundaries The partition boundaries.
+     * @return The partition index.
+     */
+    private static int partition(String key, long[] boundaries) {
+        int i = Integer.parseInt(key.substring("key-".length()));
+        if (i >= NUM_ROWS) {
+            // Null ids are read by the first partition.
+            return 0;
+        }
+        long id = (i * i) % 4999;
+        for (int p = 0; p < boundaries.length - 2; p++) {
+            if (id < boundaries[p + 1]) {
+                return p;
+            }
+        }
+        return boundaries.length - 2;
+    }
+
+    private static int countPartitionThreads() {
+        int count = 0;
+        for (Thread t : Thread.getAllStackTraces().keySet()) {
+            if (t.isAlive() && t.getName().startsWith("sql-partition-")) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Test
+    public void testPartitioned() throws SQLException {
+        String query = "SELECT * FROM DATA";
+        RowProcessor<MockOutput> rowProcessor = buildRowProcessor();
+
+        MutableDataset<MockOutput> sequential;
+        try (SQLDataSource<MockOutput> source = new SQLDataSource<>(query, config(), new MockOutputFactory(), rowProcessor, true)) {
+            sequential = new MutableDataset<>(source);
+        }
+        assertEquals(NUM_ROWS + NUM_NULL_IDS, sequential.size());
+
+        List<String> sequentialKeys = keys(sequential);
+
+        for (int numPartitions : new int[]{2, 4, 7}) {
+            SQLDataSource<MockOutput> source = new SQLDataSource<>(query, config(), new MockOutputFactory(), rowProcessor, true, "ID", numPartitions);
+            MutableDataset<MockOutput> partitioned = new MutableDataset<>(source);
+
+            assertEquals(sequential.size(), partitioned.size());
+            assertEquals(sequential.getFeatureMap().size(), partitioned.getFeatureMap().size());
+            assertEquals(keyedExamples(sequential), keyedExamples(partitioned));
+
+            // The examples are ordered by partition, keeping the query's order within each partition,
+            // and the row indices count from 1 in the order they are returned.
+            long[] boundaries = source.partitionBoundaries();
+            List<String> partitionedKeys = keys(partitioned);
+            List<String> expectedKeys = new ArrayList<>();
+            for (int p = 0; p < numPartitions; p++) {
+                for (String key : sequentialKeys) {
+                    if (partition(key, boundaries) == p) {
+                        expectedKeys.add(key);
+                    }
+                }
+            }
+            assertEquals(expectedKeys, partitionedKeys);
+            for (int i = 0; i < partitioned.size(); i++) {
+                assertEquals(i + 1L, partitioned.getExample(i).getMetadataValue("index").get());
+            }
+
+            // Converting the rows on several threads gives the same examples in the same order.
+            SQLDataSource<MockOutput> threaded = new SQLDataSource<>(query, config(), new MockOutputFactory(), rowProcessor, true, "ID", numPartitions, 3);
+            MutableDataset<MockOutput> threadedDataset = new MutableDataset<>(threaded);
+            assertEquals(partitionedKeys, keys(threadedDataset));
+            assertEquals(keyedExamples(partitioned), keyedExamples(threadedDataset));
+            for (int i = 0; i < threadedDataset.size(); i++) {
+                assertEquals(i + 1L, threadedDataset.getExample(i).getMetadataValue("index").get());
+            }
+        }
+    }
+
+    @Test
+    public void testPartitionedClose() throws SQLException, InterruptedException {
+        RowProcessor<MockOutput> rowProcessor = buildRowProcessor();
+        // A small fetch size so the partitions fill their queues and wait for the consumer.
+        SQLDBConfig smallFetch = new SQLDBConfig(CONNECTION_STRING, null, null, Collections.emptyMap(), 7, false);
+        SQLDataSource<MockOutput> source = new SQLDataSource<>("SELECT * FROM DATA", smallFetch, new MockOutputFactory(), rowProcessor, true, "ID", 4);
+        Iterator<Example<MockOutput>> itr = source.iterator();
+        assertTrue(itr.hasNext());
+        itr.next();
+        assertTrue(countPartitionThreads() > 0);
+        assertEquals(1, source.numOpenPartitionedIterators());
+
+        // Closing the source stops the fetch threads of the abandoned iterator.
+        source.close();
+        assertEquals(0, source.numOpenPartitionedIterators());
+        long deadline = System.currentTimeMillis() + 10000;
+        while (countPartitionThreads() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertEquals(0, countPartitionThreads());
+
+        // Exhausting an iterator stops its threads without closing the source.
+        SQLDataSource<MockOutput> exhausted = new SQLDataSource<>("SELECT * FROM DATA", smallFetch, new MockOutputFactory(), rowProcessor, true, "ID", 4);
+        assertEquals(NUM_ROWS + NUM_NULL_IDS, new MutableDataset<>(exhausted).size());
+        // The exhausted iterator is no longer tracked by the source.
+        assertEquals(0, exhausted.numOpenPartitionedIterators());
+        deadline = System.currentTimeMillis() + 10000;
+        while (countPartitionThreads() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertEquals(0, countPartitionThreads());
+    }
+
+    @Test
+    public void testFetchSize() throws SQLException {
+        RowProcessor<MockOutput> rowProcessor = buildRowProcessor();
+        SQLDBConfig streamingConfig = new SQLDBConfig(CONNECTION_STRING, null, null, Collections.emptyMap(), 7, true);
+        assertEquals(7, streamingConfig.getFetchSize());
+
+        try (SQLDataSource<MockOutput> source = new SQLDataSource<>("SELECT * FROM DATA", streamingConfig, new MockOutputFactory(), rowProcessor, true)) {
+            assertEquals(NUM_ROWS + NUM_NULL_IDS, new MutableDataset<>(source).size());
+        }
+
+        SQLDataSource<MockOutput> partitioned = new SQLDataSource<>("SELECT * FROM DATA", streamingConfig, new MockOutputFactory(), rowProcessor, true, "ID", 3);
+        assertEquals(NUM_ROWS + NUM_NULL_IDS, new MutableDataset<>(partitioned).size());
+    }
+
+    @Test
+    public void testPartitionEdgeCases() throws SQLException {
+        RowProcessor<MockOutput> rowProcessor = buildRowProcessor();
+
+        // Only null keys, read as a single partition
+        SQLDataSource<MockOutput> nullKeys = new SQLDataSource<>("SELECT * FROM DATA WHERE ID IS NULL", config(), new MockOutputFactory(), rowProcessor, true, "ID", 4);
+        assertEquals(NUM_NULL_IDS, new MutableDataset<>(nullKeys).size());
+
+        // A single key value, so most partitions are empty
+        SQLDataSource<MockOutput> singleKey = new SQLDataSource<>("SELECT * FROM DATA WHERE ID = 0", config(), new MockOutputFactory(), rowProcessor, true, "ID", 4);
+        assertEquals(1, new MutableDataset<>(singleKey).size());
+
+        // No rows
+        SQLDataSource<MockOutput> empty = new SQLDataSource<>("SELECT * FROM DATA WHERE 1 = 0", config(), new MockOutputFactory(), rowProcessor, true, "ID", 4);
+        assertFalse(empty.iterator().hasNext());
+
+        assertThrows(IllegalArgumentException.class, () -> new SQLDataSource<>("SELECT * FROM DATA", config(), new MockOutputFactory(), rowProcessor, true, "ID", 0));
+        assertThrows(IllegalArgumentException.class, () -> new SQLDataSource<>("SELECT * FROM DATA", config(), new MockOutputFactory(), rowProcessor, true, null, 2));
+
+        SQLDataSource<MockOutput> badColumn = new SQLDataSource<>("SELECT * FROM DATA", config(), new MockOutputFactory(), rowProcessor, true, "MISSING", 2);
+        assertThrows(IllegalArgumentException.class, badColumn::iterator);
+    }
+}
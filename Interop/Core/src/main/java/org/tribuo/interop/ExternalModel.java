@@ -32,16 +32,27 @@ import org.tribuo.provenance.ModelProvenance;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * This is the base class for third party models which are trained externally and
  * loaded into Tribuo for prediction.
  * <p>
  * Batch size defaults to {@link ExternalModel#DEFAULT_BATCH_SIZE}
+ * <p>
+ * Batch prediction can be pipelined, see {@link #predictAsync} and {@link #setPipelineDepth}.
  * @param <T> The output subclass that this model operates on.
  * @param <U> The internal representation of features.
  * @param <V> The internal representation of outputs.
@@ -53,11 +64,28 @@ public abstract class ExternalModel<T extends Output<T>,U,V> extends Model<T> {
      */
     public static final int DEFAULT_BATCH_SIZE = 16;
 
+    /**
+     * The number of seconds an idle pipeline thread waits before exiting.
+     */
+    public static final long PIPELINE_KEEP_ALIVE_SECONDS = 30;
+
+    private static final AtomicInteger pipelinePoolCounter = new AtomicInteger();
+
     protected final int[] featureForwardMapping;
     protected final int[] featureBackwardMapping;
 
     private int batchSize = DEFAULT_BATCH_SIZE;
 
+    /**
+     * The number of batches in flight when pipelining, 0 predicts batches serially. Not serialized.
+     */
+    private transient int pipelineDepth = 0;
+
+    /**
+     * The threads which run the pipeline stages, created when pipelining is enabled. Not serialized.
+     */
+    private transient volatile ThreadPoolExecutor pipelinePool;
+
     protected ExternalModel(String name, ModelProvenance provenance,
                             ImmutableFeatureMap featureIDMap, ImmutableOutputInfo<T> outputIDInfo,
                             boolean generatesProbabilities, Map<String,Integer> featureMapping) {
@@ -105,6 +133,26 @@ public abstract class ExternalModel<T extends Output<T>,U,V> extends Model<T> {
 
     @Override
     protected List<Prediction<T>> innerPredict(Iterable<Example<T>> examples) {
+        if (pipelineDepth > 0) {
+            try {
+                return predictAsync(examples, getPipelinePool()).join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                } else {
+                    throw new IllegalStateException("Pipelined prediction failed", e.getCause());
+                }
+            }
+        }
+        return predictSerially(examples);
+    }
+
+    /**
+     * Predicts the examples one batch at a time on the calling thread.
+     * @param examples The examples to predict.
+     * @return The predictions in the same order as the examples.
+     */
+    private List<Prediction<T>> predictSerially(Iterable<Example<T>> examples) {
         List<Prediction<T>> predictions = new ArrayList<>();
         List<Example<T>> batchExamples = new ArrayList<>();
         for (Example<T> example : examples) {
@@ -124,6 +172,17 @@ public abstract class ExternalModel<T extends Output<T>,U,V> extends Model<T> {
     }
 
     private List<Prediction<T>> predictBatch(List<Example<T>> batch) {
+        ConvertedBatch<U> converted = convertBatch(batch);
+        V output = externalPrediction(converted.features);
+        return decodeBatch(output, converted.numValidFeatures, batch);
+    }
+
+    /**
+     * Looks up and renumbers the features of a batch, then converts them into the external format.
+     * @param batch The examples.
+     * @return The converted batch.
+     */
+    private ConvertedBatch<U> convertBatch(List<Example<T>> batch) {
         List<SparseVector> vectors = new ArrayList<>();
         int[] numValidFeatures = new int[batch.size()];
         for (int i = 0; i < batch.size(); i++) {
@@ -131,16 +190,95 @@ public abstract class ExternalModel<T extends Output<T>,U,V> extends Model<T> {
             vectors.add(renumberFeatureIndices(features));
             numValidFeatures[i] = features.numActiveElements();
         }
-        U transformedFeatures = convertFeaturesList(vectors);
-        V output = externalPrediction(transformedFeatures);
+        return new ConvertedBatch<>(convertFeaturesList(vectors),numValidFeatures);
+    }
+
+    /**
+     * Converts a batch of external outputs into predictions, checking one was produced per example.
+     * @param output The external output.
+     * @param numValidFeatures The number of valid features in each example.
+     * @param batch The examples.
+     * @return The predictions.
+     */
+    private List<Prediction<T>> decodeBatch(V output, int[] numValidFeatures, List<Example<T>> batch) {
         List<Prediction<T>> predictions = convertOutput(output,numValidFeatures,batch);
-        if (predictions.size() != vectors.size()) {
-            throw new IllegalStateException("Unexpected number of predictions received from external model batch, found " + predictions.size() + ", expected " + vectors.size() + ".");
+        if (predictions.size() != batch.size()) {
+            throw new IllegalStateException("Unexpected number of predictions received from external model batch, found " + predictions.size() + ", expected " + batch.size() + ".");
         } else {
             return predictions;
         }
     }
 
+    /**
+     * Predicts the examples in batches, pipelining the three stages of batch prediction.
+     * <p>
+     * Feature conversion of batch N+1 runs while the external model predicts batch N, and while
+     * the outputs of batch N-1 are converted into predictions. Each stage processes the batches in
+     * order, one at a time, so at most three tasks run concurrently on the supplied executor, though
+     * consecutive tasks of a stage may run on different executor threads. The number of batches which
+     * have been converted but not decoded is bounded by the pipeline depth. Converted inputs are
+     * owned by their batch until the external model has consumed them, so inputs which reuse buffers
+     * (e.g., an ONNX transformer with a buffer pool) must not hand a buffer out again until it is
+     * released, and transformers whose pool is smaller than the depth allocate the extra inputs.
+     * Inputs which were converted but never predicted because an earlier batch failed are passed
+     * to {@link #releaseFeatures}.
+     * <p>
+     * If the pipeline depth is 0 the batches are predicted one after another in a single task on
+     * the executor, without any overlap.
+     * <p>
+     * If any batch fails the returned future completes exceptionally with that failure.
+     * @param examples The examples to predict.
+     * @param executor The executor which runs the stages.
+     * @return A future containing the predictions in the same order as the examples.
+     */
+    public CompletableFuture<List<Prediction<T>>> predictAsync(Iterable<Example<T>> examples, Executor executor) {
+        int depth = pipelineDepth;
+        if (depth == 0) {
+            return CompletableFuture.supplyAsync(() -> predictSerially(examples), executor);
+        }
+        List<CompletableFuture<List<Prediction<T>>>> decoded = new ArrayList<>();
+        CompletableFuture<ConvertedBatch<U>> prevConvert = CompletableFuture.completedFuture(null);
+        CompletableFuture<V> prevInference = CompletableFuture.completedFuture(null);
+        CompletableFuture<List<Prediction<T>>> prevDecode = CompletableFuture.completedFuture(null);
+        List<Example<T>> batchExamples = new ArrayList<>();
+        Iterator<Example<T>> itr = examples.iterator();
+        while (itr.hasNext()) {
+            batchExamples.add(itr.next());
+            if ((batchExamples.size() == batchSize) || !itr.hasNext()) {
+                List<Example<T>> batch = batchExamples;
+                batchExamples = new ArrayList<>();
+                // Conversion waits for the previous conversion, and for the batch depth places back to be decoded.
+                int idx = decoded.size();
+                CompletableFuture<List<Prediction<T>>> slot = idx >= depth ? decoded.get(idx - depth) : CompletableFuture.completedFuture(null);
+                CompletableFuture<ConvertedBatch<U>> convert = prevConvert.thenCombineAsync(slot, (a, b) -> convertBatch(batch), executor);
+                CompletableFuture<ConvertedBatch<U>> curConvert = convert;
+                AtomicBoolean consumed = new AtomicBoolean(false);
+                CompletableFuture<V> inference = convert.thenCombineAsync(prevInference, (c, a) -> {
+                    consumed.set(true);
+                    return externalPrediction(c.features);
+                }, executor).whenComplete((o, t) -> {
+                    // If an earlier batch failed the inputs were never handed to the external model.
+                    if (!consumed.get() && !curConvert.isCompletedExceptionally()) {
+                        releaseFeatures(curConvert.join().features);
+                    }
+                });
+                CompletableFuture<List<Prediction<T>>> decode = inference.thenCombineAsync(prevDecode,
+                        (o, a) -> decodeBatch(o, curConvert.join().numValidFeatures, batch), executor);
+                decoded.add(decode);
+                prevConvert = convert;
+                prevInference = inference;
+                prevDecode = decode;
+            }
+        }
+        return CompletableFuture.allOf(decoded.toArray(new CompletableFuture<?>[0])).thenApply(v -> {
+            List<Prediction<T>> predictions = new ArrayList<>();
+            for (CompletableFuture<List<Prediction<T>>> f : decoded) {
+                predictions.addAll(f.join());
+            }
+            return predictions;
+        });
+    }
+
     /**
      * Renumbers the indices in a {@link SparseVector} switching from
      * Tribuo's internal indices to the external ones for this model.
@@ -187,6 +325,16 @@ public abstract class ExternalModel<T extends Output<T>,U,V> extends Model<T> {
      */
     protected abstract V externalPrediction(U input);
 
+    /**
+     * Releases an input which was converted but not passed to {@link #externalPrediction}, e.g.,
+     * because an earlier batch in a pipelined prediction failed. Once an input is passed to
+     * {@link #externalPrediction} that method is responsible for releasing it.
+     * <p>
+     * The default implementation does nothing, subclasses whose inputs hold resources should override it.
+     * @param input The input in the external model's format.
+     */
+    protected void releaseFeatures(U input) {}
+
     /**
      * Converts the output of the external model into a {@link Prediction}.
      * @param output The output of the external model.
@@ -237,6 +385,60 @@ public abstract class ExternalModel<T extends Output<T>,U,V> extends Model<T> {
         }
     }
 
+    /**
+     * Gets the pipeline depth used by batch prediction, 0 if batches are predicted serially.
+     * @return The pipeline depth.
+     */
+    public int getPipelineDepth() {
+        return pipelineDepth;
+    }
+
+    /**
+     * Sets the number of batches which may be in flight at once when predicting multiple examples.
+     * <p>
+     * When positive, {@link #predict(Iterable)} and {@link #predict(org.tribuo.Dataset)} use
+     * {@link #predictAsync} on a pool of three daemon threads owned by this model, overlapping feature
+     * conversion, external prediction and output conversion of consecutive batches. The pool threads
+     * exit after {@link #PIPELINE_KEEP_ALIVE_SECONDS} seconds idle, so it doesn't need shutting down.
+     * A depth of 0 (the default) predicts each batch in turn. This setting is not serialized.
+     * <p>
+     * Pipelining requires the external model's prediction function to be callable from a different
+     * thread than the one which converted its input.
+     * @param pipelineDepth The pipeline depth.
+     */
+    public void setPipelineDepth(int pipelineDepth) {
+        if (pipelineDepth < 0) {
+            throw new IllegalArgumentException("Pipeline depth must be non-negative, found " + pipelineDepth);
+        }
+        this.pipelineDepth = pipelineDepth;
+    }
+
+    /**
+     * Gets the pipeline thread pool, creating it if necessary.
+     * @return The pipeline thread pool.
+     */
+    private ThreadPoolExecutor getPipelinePool() {
+        ThreadPoolExecutor pool = pipelinePool;
+        if (pool == null) {
+            synchronized (this) {
+                pool = pipelinePool;
+                if (pool == null) {
+                    String prefix = "tribuo-pipeline-" + pipelinePoolCounter.getAndIncrement() + "-";
+                    AtomicInteger threadCounter = new AtomicInteger();
+                    // One thread per stage is enough as each stage runs its batches in order.
+                    pool = new ThreadPoolExecutor(3, 3, PIPELINE_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), (Runnable r) -> {
+                        Thread t = new Thread(r, prefix + threadCounter.getAndIncrement());
+                        t.setDaemon(true);
+                        return t;
+                    });
+                    pool.allowCoreThreadTimeOut(true);
+                    pipelinePool = pool;
+                }
+            }
+        }
+        return pool;
+    }
+
     /**
      * Creates an immutable feature map from a set of feature names.
      * <p>
@@ -265,4 +467,18 @@ public abstract class ExternalModel<T extends Output<T>,U,V> extends Model<T> {
         return factory.constructInfoForExternalModel(outputs);
     }
 
+    /**
+     * A batch of features in the external format, along with the number of valid features in each example.
+     * @param <U> The internal representation of features.
+     */
+    private static final class ConvertedBatch<U> {
+        final U features;
+        final int[] numValidFeatures;
+
+        ConvertedBatch(U features, int[] numValidFeatures) {
+            this.features = features;
+            this.numValidFeatures = numValidFeatures;
+        }
+    }
+
 }
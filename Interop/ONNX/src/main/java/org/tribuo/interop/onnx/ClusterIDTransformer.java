@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.tribuo.interop.onnx;
+
+import ai.onnxruntime.OnnxJavaType;
+import ai.onnxruntime.OnnxTensor;
+import ai.onnxruntime.OnnxValue;
+import ai.onnxruntime.OrtException;
+import com.oracle.labs.mlrg.olcut.provenance.ConfiguredObjectProvenance;
+import com.oracle.labs.mlrg.olcut.provenance.impl.ConfiguredObjectProvenanceImpl;
+import org.tribuo.Example;
+import org.tribuo.ImmutableOutputInfo;
+import org.tribuo.Prediction;
+import org.tribuo.clustering.ClusterID;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Can convert an {@link OnnxValue} containing distances to cluster centroids into a {@link Prediction} or a {@link ClusterID}.
+ * <p>
+ * Expects a single float tensor of shape [batchSize][numClusters], and assigns each example
+ * to the cluster with the smallest distance, which is the cluster's id.
+ */
+public class ClusterIDTransformer implements OutputTransformer<ClusterID> {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    public Prediction<ClusterID> transformToPrediction(List<OnnxValue> tensor, ImmutableOutputInfo<ClusterID> outputIDInfo, int numValidFeatures, Example<ClusterID> example) {
+        ClusterID id = transformToOutput(tensor,outputIDInfo);
+        return new Prediction<>(id,numValidFeatures,example);
+    }
+
+    @Override
+    public ClusterID transformToOutput(List<OnnxValue> tensor, ImmutableOutputInfo<ClusterID> outputIDInfo) {
+        float[][] distances = getBatchDistances(tensor);
+        if (distances.length != 1) {
+            throw new IllegalArgumentException("Supplied tensor has too many results, distances.length = " + distances.length);
+        }
+        return new ClusterID(argmin(distances[0]));
+    }
+
+    private static int argmin(float[] distances) {
+        int minIdx = -1;
+        float min = Float.POSITIVE_INFINITY;
+        for (int i = 0; i < distances.length; i++) {
+            if (distances[i] < min) {
+                minIdx = i;
+                min = distances[i];
+            }
+        }
+        return minIdx;
+    }
+
+    private float[][] getBatchDistances(List<OnnxValue> valueList) {
+        if (valueList.size() != 1) {
+            throw new IllegalArgumentException("Supplied output has incorrect number of elements, expected 1, found " + valueList.size());
+        }
+
+        OnnxValue value = valueList.get(0);
+        if (value instanceof OnnxTensor) {
+            OnnxTensor tensor = (OnnxTensor) value;
+            long[] shape = tensor.getInfo().getShape();
+            if (shape.length != 2) {
+                throw new IllegalArgumentException("Expected shape [batchSize][numClusters], found " + Arrays.toString(shape));
+            } else {
+                try {
+                    if (tensor.getInfo().type == OnnxJavaType.FLOAT) {
+                        // Will return a float array
+                        return (float[][]) tensor.getValue();
+                    } else {
+                        throw new IllegalArgumentException("Supplied output was an invalid tensor type, expected float, found " + tensor.getInfo().type);
+                    }
+                } catch (OrtException e) {
+                    throw new IllegalStateException("Failed to read tensor value",e);
+                }
+            }
+        } else {
+            throw new IllegalArgumentException("Supplied output was not an OnnxTensor, found " + value.getClass().toString());
+        }
+    }
+
+    @Override
+    public List<Prediction<ClusterID>> transformToBatchPrediction(List<OnnxValue> tensor, ImmutableOutputInfo<ClusterID> outputIDInfo, int[] numValidFeatures, List<Example<ClusterID>> examples) {
+        List<ClusterID> ids = transformToBatchOutput(tensor,outputIDInfo);
+        List<Prediction<ClusterID>> output = new ArrayList<>();
+
+        if ((ids.size() != examples.size()) || (ids.size() != numValidFeatures.length)) {
+            throw new IllegalArgumentException("Invalid number of predictions received from the ONNXExternalModel, expected " + numValidFeatures.length + ", received " + ids.size());
+        }
+
+        for (int i = 0; i < ids.size(); i++) {
+            output.add(new Prediction<>(ids.get(i),numValidFeatures[i],examples.get(i)));
+        }
+
+        return output;
+    }
+
+    @Override
+    public List<ClusterID> transformToBatchOutput(List<OnnxValue> tensor, ImmutableOutputInfo<ClusterID> outputIDInfo) {
+        float[][] distances = getBatchDistances(tensor);
+        List<ClusterID> output = new ArrayList<>();
+
+        for (int i = 0; i < distances.length; i++) {
+            output.add(new ClusterID(argmin(distances[i])));
+        }
+
+        return output;
+    }
+
+    @Override
+    public boolean generatesProbabilities() {
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return "ClusterIDTransformer()";
+    }
+
+    @Override
+    public ConfiguredObjectProvenance getProvenance() {
+        return new ConfiguredObjectProvenanceImpl(this,"OutputTransformer");
+    }
+}
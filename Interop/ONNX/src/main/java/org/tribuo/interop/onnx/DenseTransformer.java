@@ -19,16 +19,25 @@ package org.tribuo.interop.onnx;
 import ai.onnxruntime.OnnxTensor;
 import ai.onnxruntime.OrtEnvironment;
 import ai.onnxruntime.OrtException;
+import com.oracle.labs.mlrg.olcut.config.Config;
+import com.oracle.labs.mlrg.olcut.config.PropertyException;
 import com.oracle.labs.mlrg.olcut.provenance.ConfiguredObjectProvenance;
 import com.oracle.labs.mlrg.olcut.provenance.impl.ConfiguredObjectProvenanceImpl;
 import org.tribuo.math.la.SparseVector;
 import org.tribuo.math.la.VectorTuple;
 
+import java.nio.FloatBuffer;
 import java.util.List;
 import java.util.logging.Logger;
 
 /**
  * Converts a sparse Tribuo example into a dense float vector, then wraps it in an {@link OnnxTensor}.
+ * <p>
+ * If {@code bufferPoolSize} is positive the vectors are written straight into a pool of reusable
+ * direct buffers which back the tensors without a further copy. A buffer isn't reused until its tensor
+ * is passed to {@link #release}, as {@link ONNXExternalModel} does. When every buffer is held by a live
+ * tensor a new buffer is allocated instead, so the pool should be as large as the number of tensors
+ * alive at once, e.g., the number of predicting threads times the pipeline depth.
  */
 public class DenseTransformer implements ExampleTransformer {
     private static final long serialVersionUID = 1L;
@@ -44,13 +53,62 @@ public class DenseTransformer implements ExampleTransformer {
      */
     public static final int WARNING_THRESHOLD = 10;
 
+    @Config(description="Number of reusable direct buffers, 0 allocates a new array for each tensor.")
+    private int bufferPoolSize = 0;
+
     private int warningCount = 0;
 
-    private float[] innerTransform(SparseVector vector) {
+    private transient volatile FloatBufferPool pool;
+
+    /**
+     * Creates a DenseTransformer which allocates new arrays for each tensor.
+     */
+    public DenseTransformer() {}
+
+    /**
+     * Creates a DenseTransformer which writes tensors into a pool of reusable direct buffers.
+     * @param bufferPoolSize The number of buffers, 0 disables the pool.
+     */
+    public DenseTransformer(int bufferPoolSize) {
+        if (bufferPoolSize < 0) {
+            throw new IllegalArgumentException("bufferPoolSize must be non-negative, found " + bufferPoolSize);
+        }
+        this.bufferPoolSize = bufferPoolSize;
+    }
+
+    /**
+     * Used by the OLCUT configuration system, and should not be called by external code.
+     */
+    @Override
+    public void postConfig() {
+        if (bufferPoolSize < 0) {
+            throw new PropertyException("","bufferPoolSize","bufferPoolSize must be non-negative, found " + bufferPoolSize);
+        }
+    }
+
+    private FloatBufferPool getPool() {
+        FloatBufferPool p = pool;
+        if (p == null) {
+            synchronized (this) {
+                p = pool;
+                if (p == null) {
+                    p = new FloatBufferPool(bufferPoolSize);
+                    pool = p;
+                }
+            }
+        }
+        return p;
+    }
+
+    private void checkSize(SparseVector vector) {
         if ((warningCount < WARNING_THRESHOLD) && (vector.size() > THRESHOLD)) {
             logger.warning("Large dense example requested, dimension = " + vector.size() + ", numActiveElements = " + vector.numActiveElements());
             warningCount++;
         }
+    }
+
+    private float[] innerTransform(SparseVector vector) {
+        checkSize(vector);
         float[] output = new float[vector.size()];
 
         for (VectorTuple f : vector) {
@@ -60,8 +118,27 @@ public class DenseTransformer implements ExampleTransformer {
         return output;
     }
 
+    /**
+     * Writes the vector into the buffer starting at startPos, the buffer must already be zeroed.
+     * @param buffer The buffer to write to.
+     * @param startPos The starting position of the buffer.
+     * @param vector The vector to transform.
+     */
+    private void innerTransform(FloatBuffer buffer, int startPos, SparseVector vector) {
+        for (VectorTuple f : vector) {
+            buffer.put(f.index + startPos, (float) f.value);
+        }
+    }
+
     @Override
     public OnnxTensor transform(OrtEnvironment env, SparseVector vector) throws OrtException {
+        if (bufferPoolSize > 0) {
+            checkSize(vector);
+            FloatBufferPool p = getPool();
+            FloatBufferPool.Lease lease = p.acquire(vector.size());
+            innerTransform(lease.buffer, 0, vector);
+            return p.createTensor(env,lease,new long[]{1,vector.size()});
+        }
         float[][] output = new float[1][];
         output[0] = innerTransform(vector);
         return OnnxTensor.createTensor(env,output);
@@ -69,6 +146,22 @@ public class DenseTransformer implements ExampleTransformer {
 
     @Override
     public OnnxTensor transform(OrtEnvironment env, List<SparseVector> vectors) throws OrtException {
+        if ((bufferPoolSize > 0) && !vectors.isEmpty()) {
+            int size = vectors.get(0).size();
+            checkSize(vectors.get(0));
+            FloatBufferPool p = getPool();
+            FloatBufferPool.Lease lease = p.acquire(size * vectors.size());
+            int position = 0;
+            for (SparseVector v : vectors) {
+                if (v.size() != size) {
+                    p.release(lease);
+                    throw new IllegalArgumentException("Vectors are not all the same dimension, expected " + size + ", found " + v.size());
+                }
+                innerTransform(lease.buffer, position, v);
+                position += size;
+            }
+            return p.createTensor(env,lease,new long[]{vectors.size(),size});
+        }
         float[][] output = new float[vectors.size()][];
 
         int i = 0;
@@ -80,9 +173,23 @@ public class DenseTransformer implements ExampleTransformer {
         return OnnxTensor.createTensor(env,output);
     }
 
+    /**
+     * Closes the tensor, and returns its buffer to the pool if it came from one.
+     * @param tensor The tensor to release.
+     */
+    @Override
+    public void release(OnnxTensor tensor) {
+        FloatBufferPool p = pool;
+        if (p != null) {
+            p.release(tensor);
+        } else {
+            tensor.close();
+        }
+    }
+
     @Override
     public String toString() {
-        return "DenseTransformer()";
+        return "DenseTransformer(bufferPoolSize=" + bufferPoolSize + ")";
     }
 
     @Override
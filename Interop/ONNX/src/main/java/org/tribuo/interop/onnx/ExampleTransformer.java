@@ -57,4 +57,15 @@ public interface ExampleTransformer extends Configurable, Provenancable<Configur
      */
     public OnnxTensor transform(OrtEnvironment env, List<SparseVector> vectors) throws OrtException;
 
+    /**
+     * Closes a tensor produced by this transformer once it is no longer needed.
+     * <p>
+     * Transformers which reuse buffers return the tensor's buffer for reuse here, so their tensors
+     * should be released with this method rather than closed directly.
+     * @param tensor The tensor to release.
+     */
+    default void release(OnnxTensor tensor) {
+        tensor.close();
+    }
+
 }
@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.tribuo.interop.onnx;
+
+import ai.onnxruntime.OnnxTensor;
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A fixed size pool of direct {@link FloatBuffer}s used to back input tensors.
+ * <p>
+ * A buffer is owned by the tensor built over it from {@link #createTensor} until that tensor
+ * is passed to {@link #release}, and it is never handed out again before then. If every buffer
+ * is owned by a live tensor, {@link #acquire} allocates a fresh buffer which isn't pooled, so
+ * a pool smaller than the number of live tensors costs allocations but never overwrites a
+ * tensor's input. Tensors which are closed directly rather than released keep their buffer
+ * out of the pool.
+ * <p>
+ * Buffers grow to fit the largest request they have served, and are zeroed before they're returned.
+ * The pool is thread safe, and a buffer may be released on a different thread to the one which acquired it.
+ */
+final class FloatBufferPool {
+
+    private static final int ZERO_CHUNK = 4096;
+
+    private static final float[] ZEROS = new float[ZERO_CHUNK];
+
+    private final Slot[] slots;
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    private final Map<OnnxTensor,Slot> owners = Collections.synchronizedMap(new IdentityHashMap<>());
+
+    /**
+     * Creates a pool of poolSize buffers.
+     * @param poolSize The number of buffers.
+     */
+    FloatBufferPool(int poolSize) {
+        if (poolSize < 1) {
+            throw new IllegalArgumentException("poolSize must be positive, found " + poolSize);
+        }
+        this.slots = new Slot[poolSize];
+        for (int i = 0; i < poolSize; i++) {
+            slots[i] = new Slot();
+        }
+    }
+
+    /**
+     * Borrows a free buffer, zeroed, with position zero and limit numElements. If no buffer
+     * is free this allocates one outside the pool.
+     * <p>
+     * The lease must be passed to {@link #createTensor}, or returned with {@link #release(Lease)}
+     * if the tensor isn't created.
+     * @param numElements The number of floats required.
+     * @return A lease on a direct native order float buffer.
+     */
+    Lease acquire(int numElements) {
+        int start = Math.floorMod(next.getAndIncrement(), slots.length);
+        for (int i = 0; i < slots.length; i++) {
+            Slot slot = slots[(start + i) % slots.length];
+            if (slot.inUse.compareAndSet(false, true)) {
+                FloatBuffer buffer = slot.buffer;
+                if ((buffer == null) || (buffer.capacity() < numElements)) {
+                    // Fresh direct buffers are already zeroed.
+                    buffer = allocate(numElements);
+                    slot.buffer = buffer;
+                } else {
+                    buffer.clear();
+                    int remaining = numElements;
+                    while (remaining > 0) {
+                        int length = Math.min(remaining, ZERO_CHUNK);
+                        buffer.put(ZEROS, 0, length);
+                        remaining -= length;
+                    }
+                }
+                buffer.clear();
+                buffer.limit(numElements);
+                return new Lease(buffer, slot);
+            }
+        }
+        return new Lease(allocate(numElements), null);
+    }
+
+    /**
+     * Creates a tensor over the leased buffer, which then owns the buffer until it is released.
+     * <p>
+     * Reads the buffer from position zero.
+     * @param env The OrtEnvironment to create the tensor in.
+     * @param lease The lease.
+     * @param shape The tensor shape.
+     * @return The tensor.
+     * @throws OrtException If the tensor could not be created, in which case the lease is returned.
+     */
+    OnnxTensor createTensor(OrtEnvironment env, Lease lease, long[] shape) throws OrtException {
+        lease.buffer.rewind();
+        OnnxTensor tensor;
+        try {
+            tensor = OnnxTensor.createTensor(env, lease.buffer, shape);
+        } catch (OrtException | RuntimeException e) {
+            release(lease);
+            throw e;
+        }
+        if (lease.slot != null) {
+            owners.put(tensor, lease.slot);
+        }
+        return tensor;
+    }
+
+    /**
+     * Returns a buffer whose tensor was never created.
+     * @param lease The lease.
+     */
+    void release(Lease lease) {
+        if (lease.slot != null) {
+            lease.slot.inUse.set(false);
+        }
+    }
+
+    /**
+     * Closes the tensor and returns its buffer to the pool.
+     * @param tensor A tensor created by {@link #createTensor}.
+     */
+    void release(OnnxTensor tensor) {
+        tensor.close();
+        Slot slot = owners.remove(tensor);
+        if (slot != null) {
+            slot.inUse.set(false);
+        }
+    }
+
+    /**
+     * Allocates a new zeroed direct float buffer in the native byte order.
+     * @param numElements The number of floats.
+     * @return A direct float buffer.
+     */
+    static FloatBuffer allocate(int numElements) {
+        return ByteBuffer.allocateDirect(numElements * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
+    }
+
+    /**
+     * A buffer borrowed from the pool.
+     */
+    static final class Lease {
+        /**
+         * The zeroed buffer.
+         */
+        final FloatBuffer buffer;
+        private final Slot slot;
+
+        private Lease(FloatBuffer buffer, Slot slot) {
+            this.buffer = buffer;
+            this.slot = slot;
+        }
+    }
+
+    /**
+     * A pooled buffer, only read or written by the current owner.
+     */
+    private static final class Slot {
+        final AtomicBoolean inUse = new AtomicBoolean(false);
+        FloatBuffer buffer;
+    }
+}
@@ -26,8 +26,6 @@ import com.oracle.labs.mlrg.olcut.provenance.impl.ConfiguredObjectProvenanceImpl
 import org.tribuo.math.la.SparseVector;
 import org.tribuo.math.la.VectorTuple;
 
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
 import java.util.List;
 
@@ -37,6 +35,11 @@ import java.util.List;
  * [0,0,1] = (i*j)+1, ..., [i,j,k] = i*j*k.
  * <p>
  * ONNX expects images in the format [channels,height,width].
+ * <p>
+ * If {@code bufferPoolSize} is positive the direct buffers backing the tensors come from a pool
+ * instead of being allocated for each tensor. A buffer isn't reused until its tensor is passed to
+ * {@link #release}, as {@link ONNXExternalModel} does. When every buffer is held by a live tensor
+ * a new buffer is allocated instead.
  */
 public class ImageTransformer implements ExampleTransformer {
     private static final long serialVersionUID = 1L;
@@ -50,18 +53,38 @@ public class ImageTransformer implements ExampleTransformer {
     @Config(mandatory=true,description="Number of channels.")
     private int channels;
 
+    @Config(description="Number of reusable direct buffers, 0 allocates a new buffer for each tensor.")
+    private int bufferPoolSize = 0;
+
+    private transient volatile FloatBufferPool pool;
+
     /**
      * For olcut.
      */
     private ImageTransformer() {}
 
     public ImageTransformer(int channels, int height, int width) {
+        this(channels, height, width, 0);
+    }
+
+    /**
+     * Creates an ImageTransformer which writes tensors into a pool of reusable direct buffers.
+     * @param channels The number of channels.
+     * @param height The image height.
+     * @param width The image width.
+     * @param bufferPoolSize The number of buffers, 0 disables the pool.
+     */
+    public ImageTransformer(int channels, int height, int width, int bufferPoolSize) {
         if (width < 1 || height < 1 || channels < 1) {
             throw new PropertyException("","Inputs must be positive integers, found [c="+channels+",h="+height+",w="+width+"]");
         }
+        if (bufferPoolSize < 0) {
+            throw new PropertyException("","bufferPoolSize","bufferPoolSize must be non-negative, found " + bufferPoolSize);
+        }
         this.width = width;
         this.height = height;
         this.channels = channels;
+        this.bufferPoolSize = bufferPoolSize;
     }
 
     /**
@@ -72,6 +95,30 @@ public class ImageTransformer implements ExampleTransformer {
         if (width < 1 || height < 1 || channels < 1) {
             throw new PropertyException("","Inputs must be positive integers, found [c="+channels+",h="+height+",w="+width+"]");
         }
+        if (bufferPoolSize < 0) {
+            throw new PropertyException("","bufferPoolSize","bufferPoolSize must be non-negative, found " + bufferPoolSize);
+        }
+    }
+
+    /**
+     * Returns the buffer pool, or null if it's disabled.
+     * @return The pool.
+     */
+    private FloatBufferPool getPool() {
+        if (bufferPoolSize == 0) {
+            return null;
+        }
+        FloatBufferPool p = pool;
+        if (p == null) {
+            synchronized (this) {
+                p = pool;
+                if (p == null) {
+                    p = new FloatBufferPool(bufferPoolSize);
+                    pool = p;
+                }
+            }
+        }
+        return p;
     }
 
     /**
@@ -90,10 +137,17 @@ public class ImageTransformer implements ExampleTransformer {
 
     @Override
     public OnnxTensor transform(OrtEnvironment env, SparseVector vector) throws OrtException {
-        FloatBuffer buffer = ByteBuffer.allocateDirect(vector.size()*4).order(ByteOrder.nativeOrder()).asFloatBuffer();
+        long[] shape = new long[]{1,channels,height,width};
+        FloatBufferPool p = getPool();
+        if (p != null) {
+            FloatBufferPool.Lease lease = p.acquire(vector.size());
+            innerTransform(lease.buffer,0,vector);
+            return p.createTensor(env,lease,shape);
+        }
+        FloatBuffer buffer = FloatBufferPool.allocate(vector.size());
         innerTransform(buffer,0,vector);
         buffer.rewind(); // rewind the buffer as createTensor now reads from the current position.
-        return OnnxTensor.createTensor(env,buffer,new long[]{1,channels,height,width});
+        return OnnxTensor.createTensor(env,buffer,shape);
     }
 
     @Override
@@ -102,23 +156,46 @@ public class ImageTransformer implements ExampleTransformer {
             return OnnxTensor.createTensor(env,FloatBuffer.allocate(0),new long[]{0,channels,height,width});
         } else {
             int initialSize = vectors.get(0).size();
-            FloatBuffer buffer = ByteBuffer.allocateDirect(initialSize * vectors.size() * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
+            long[] shape = new long[]{vectors.size(), channels, height, width};
+            FloatBufferPool p = getPool();
+            FloatBufferPool.Lease lease = p != null ? p.acquire(initialSize * vectors.size()) : null;
+            FloatBuffer buffer = lease != null ? lease.buffer : FloatBufferPool.allocate(initialSize * vectors.size());
             int position = 0;
             for (SparseVector v : vectors) {
-                innerTransform(buffer, position, v);
-                position += v.size();
                 if (v.size() != initialSize) {
+                    if (lease != null) {
+                        p.release(lease);
+                    }
                     throw new IllegalArgumentException("Vectors are not all the same dimension, expected " + initialSize + ", found " + v.size());
                 }
+                innerTransform(buffer, position, v);
+                position += v.size();
+            }
+            if (lease != null) {
+                return p.createTensor(env, lease, shape);
             }
             buffer.rewind(); // rewind the buffer as createTensor now reads from the current position.
-            return OnnxTensor.createTensor(env, buffer, new long[]{vectors.size(), channels, height, width});
+            return OnnxTensor.createTensor(env, buffer, shape);
+        }
+    }
+
+    /**
+     * Closes the tensor, and returns its buffer to the pool if it came from one.
+     * @param tensor The tensor to release.
+     */
+    @Override
+    public void release(OnnxTensor tensor) {
+        FloatBufferPool p = pool;
+        if (p != null) {
+            p.release(tensor);
+        } else {
+            tensor.close();
         }
     }
 
     @Override
     public String toString() {
-        return "ImageTransformer(channels="+channels+",height="+height+",width="+width+")";
+        return "ImageTransformer(channels="+channels+",height="+height+",width="+width+",bufferPoolSize="+bufferPoolSize+")";
     }
 
     @Override
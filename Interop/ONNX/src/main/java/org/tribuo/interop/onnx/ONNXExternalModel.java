@@ -52,12 +52,21 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * A Tribuo wrapper around a ONNX model.
  * <p>
+ * By default all predictions run through a single {@link OrtSession}, configured by the user supplied
+ * {@link OrtSession.SessionOptions}. When serving many concurrent callers this either serialises
+ * them on one intra-op thread pool or oversubscribes the cores, so {@link #setConcurrentSessions}
+ * replaces it with a pool of sessions over the same environment, each with a fixed thread budget.
+ * Callers beyond the number of sessions wait for a free session.
+ * <p>
  * N.B. ONNX support is experimental, and may change without a major version bump.
  */
 public final class ONNXExternalModel<T extends Output<T>> extends ExternalModel<T, OnnxTensor, List<OnnxValue>> implements AutoCloseable {
@@ -69,8 +78,26 @@ public final class ONNXExternalModel<T extends Output<T>> extends ExternalModel<
 
     private transient OrtSession.SessionOptions options;
 
+    /**
+     * The single session, null if there is a session pool.
+     */
     private transient OrtSession session;
 
+    /**
+     * All the pooled sessions, null if there is a single session.
+     */
+    private transient List<OrtSession> pooledSessions;
+
+    /**
+     * The pooled sessions which are not currently running, null if there is a single session.
+     */
+    private transient BlockingQueue<OrtSession> idleSessions;
+
+    /**
+     * Held for reading while running a session, and for writing while replacing them.
+     */
+    private transient ReentrantReadWriteLock sessionLock;
+
     private final byte[] modelArray;
 
     private final String inputName;
@@ -92,6 +119,7 @@ public final class ONNXExternalModel<T extends Output<T>> extends ExternalModel<
         this.outputTransformer = outputTransformer;
         this.env = OrtEnvironment.getEnvironment("tribuo-"+name);
         this.session = env.createSession(modelArray,options);
+        this.sessionLock = new ReentrantReadWriteLock();
     }
 
     private ONNXExternalModel(String name, ModelProvenance provenance,
@@ -108,6 +136,7 @@ public final class ONNXExternalModel<T extends Output<T>> extends ExternalModel<
         this.outputTransformer = outputTransformer;
         this.env = OrtEnvironment.getEnvironment("tribuo-"+name);
         this.session = env.createSession(modelArray,options);
+        this.sessionLock = new ReentrantReadWriteLock();
     }
 
     /**
@@ -117,13 +146,114 @@ public final class ONNXExternalModel<T extends Output<T>> extends ExternalModel<
      * @param newOptions The new session options.
      * @throws OrtException If the model failed to rebuild the session with the supplied options.
      */
-    public synchronized void rebuild(OrtSession.SessionOptions newOptions) throws OrtException {
-        session.close();
-        if (options != null) {
-            options.close();
+    public void rebuild(OrtSession.SessionOptions newOptions) throws OrtException {
+        sessionLock.writeLock().lock();
+        try {
+            closePooledSessions();
+            if (session != null) {
+                session.close();
+                session = null;
+            }
+            if (options != null) {
+                options.close();
+            }
+            options = newOptions;
+            session = env.createSession(modelArray,newOptions);
+        } finally {
+            sessionLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Replaces the session with a pool of {@code numSessions} sessions, so up to that many threads
+     * can predict concurrently, each session running the model on its own intra-op thread pool of
+     * {@code threadsPerSession} threads.
+     * <p>
+     * If {@code threadsPerSession} is 0 the available processors are divided evenly between the sessions,
+     * so the pool as a whole doesn't oversubscribe the machine. With many more callers than cores,
+     * one thread per session and one session per core usually gives the best throughput, while a
+     * few callers on a large model benefit from fewer sessions with more threads. {@link SessionPoolBenchmark}
+     * measures the throughput of a model for different numbers of sessions.
+     * <p>
+     * The sessions are created from the model's session options, so they keep its execution providers
+     * and other settings, after those options are updated in place to use sequential execution with
+     * {@code threadsPerSession} intra-op threads. Each session holds its own copy of the model weights,
+     * and the pool replaces the existing session, which is closed. Predictions wait while the sessions
+     * are created. Calling {@link #rebuild} returns to a single session. The pool is not serialized.
+     * @param numSessions The number of sessions, must be positive.
+     * @param threadsPerSession The number of intra-op threads per session, or 0 to divide the available processors.
+     * @throws OrtException If the sessions could not be created.
+     */
+    public void setConcurrentSessions(int numSessions, int threadsPerSession) throws OrtException {
+        if (numSessions < 1) {
+            throw new IllegalArgumentException("numSessions must be positive, found " + numSessions);
+        } else if (threadsPerSession < 0) {
+            throw new IllegalArgumentException("threadsPerSession must be non-negative, found " + threadsPerSession);
+        }
+        int numThreads = threadsPerSession == 0 ? Math.max(1, Runtime.getRuntime().availableProcessors() / numSessions) : threadsPerSession;
+        sessionLock.writeLock().lock();
+        try {
+            if (options == null) {
+                options = new OrtSession.SessionOptions();
+            }
+            options.setIntraOpNumThreads(numThreads);
+            options.setInterOpNumThreads(1);
+            options.setExecutionMode(OrtSession.SessionOptions.ExecutionMode.SEQUENTIAL);
+            List<OrtSession> newSessions = new ArrayList<>(numSessions);
+            try {
+                for (int i = 0; i < numSessions; i++) {
+                    newSessions.add(env.createSession(modelArray,options));
+                }
+            } catch (OrtException e) {
+                for (OrtSession s : newSessions) {
+                    s.close();
+                }
+                throw e;
+            }
+            closePooledSessions();
+            if (session != null) {
+                try {
+                    session.close();
+                } catch (OrtException e) {
+                    logger.log(Level.SEVERE,"Exception thrown when closing session",e);
+                }
+                session = null;
+            }
+            pooledSessions = newSessions;
+            idleSessions = new ArrayBlockingQueue<>(numSessions, false, newSessions);
+        } finally {
+            sessionLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of sessions available to concurrent callers.
+     * @return The number of sessions.
+     */
+    public int getNumSessions() {
+        sessionLock.readLock().lock();
+        try {
+            return pooledSessions == null ? 1 : pooledSessions.size();
+        } finally {
+            sessionLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Closes the session pool if there is one. Must hold the write lock.
+     */
+    private void closePooledSessions() {
+        if (pooledSessions != null) {
+            for (OrtSession s : pooledSessions) {
+                try {
+                    s.close();
+                } catch (OrtException e) {
+                    logger.log(Level.SEVERE,"Exception thrown when closing session",e);
+                }
+            }
+            pooledSessions = null;
+            idleSessions = null;
         }
-        options = newOptions;
-        env.createSession(modelArray,newOptions);
     }
 
     @Override
@@ -147,16 +277,27 @@ public final class ONNXExternalModel<T extends Output<T>> extends ExternalModel<
     /**
      * Runs the session to make a prediction.
      * <p>
-     * Closes the input tensor after the prediction has been made.
+     * Releases the input tensor back to the feature transformer after the prediction has been made,
+     * which closes it and lets any pooled buffer behind it be reused.
      * @param input The input in the external model's format.
      * @return A tensor representing the output.
      */
     @Override
     protected List<OnnxValue> externalPrediction(OnnxTensor input) {
+        sessionLock.readLock().lock();
         try {
             // Note the output of the session is closed by the conversion methods, and should not be closed by the result object.
-            OrtSession.Result output = session.run(Collections.singletonMap(inputName,input));
-            input.close();
+            OrtSession.Result output;
+            if (idleSessions == null) {
+                output = session.run(Collections.singletonMap(inputName,input));
+            } else {
+                OrtSession pooled = idleSessions.take();
+                try {
+                    output = pooled.run(Collections.singletonMap(inputName,input));
+                } finally {
+                    idleSessions.add(pooled);
+                }
+            }
             ArrayList<OnnxValue> outputs = new ArrayList<>();
             for (Map.Entry<String,OnnxValue> v : output) {
                 outputs.add(v.getValue());
@@ -164,9 +305,24 @@ public final class ONNXExternalModel<T extends Output<T>> extends ExternalModel<
             return outputs;
         } catch (OrtException e) {
             throw new IllegalStateException("Failed to execute ONNX model",e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for an ONNX session",e);
+        } finally {
+            sessionLock.readLock().unlock();
+            featureTransformer.release(input);
         }
     }
 
+    /**
+     * Releases an input tensor which was never run back to the feature transformer.
+     * @param input The input in the external model's format.
+     */
+    @Override
+    protected void releaseFeatures(OnnxTensor input) {
+        featureTransformer.release(input);
+    }
+
     /**
      * Converts a tensor into a prediction.
      * Closes the output tensor after it's been converted.
@@ -216,6 +372,12 @@ public final class ONNXExternalModel<T extends Output<T>> extends ExternalModel<
 
     @Override
     public void close() {
+        sessionLock.writeLock().lock();
+        try {
+            closePooledSessions();
+        } finally {
+            sessionLock.writeLock().unlock();
+        }
         if (session != null) {
             try {
                 session.close();
@@ -321,6 +483,7 @@ public final class ONNXExternalModel<T extends Output<T>> extends ExternalModel<
             this.env = OrtEnvironment.getEnvironment();
             this.options = new OrtSession.SessionOptions();
             this.session = env.createSession(modelArray,options);
+            this.sessionLock = new ReentrantReadWriteLock();
         } catch (OrtException e) {
             throw new IllegalStateException("Could not construct ONNX Runtime session during deserialization.");
         }
@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.tribuo.interop.onnx;
+
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+import com.oracle.labs.mlrg.olcut.config.ArgumentException;
+import com.oracle.labs.mlrg.olcut.config.ConfigurationManager;
+import com.oracle.labs.mlrg.olcut.config.Option;
+import com.oracle.labs.mlrg.olcut.config.Options;
+import com.oracle.labs.mlrg.olcut.config.UsageException;
+import com.oracle.labs.mlrg.olcut.util.LabsLogFormatter;
+import org.tribuo.Dataset;
+import org.tribuo.MutableDataset;
+import org.tribuo.classification.Label;
+import org.tribuo.classification.LabelFactory;
+import org.tribuo.datasource.LibSVMDataSource;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+/**
+ * Measures the prediction throughput of an ONNX classifier as the number of concurrent sessions varies,
+ * to choose the arguments to {@link ONNXExternalModel#setConcurrentSessions}.
+ * <p>
+ * Loads a LibSVM format dataset whose feature ids are the model's input indices and whose labels are
+ * the model's output indices. For each session count a fixed number of caller threads each predict
+ * the dataset repeatedly, after a warm up pass, and the examples predicted per second are logged.
+ * A session count of 0 measures the model's single session without a pool.
+ */
+public final class SessionPoolBenchmark {
+
+    private static final Logger logger = Logger.getLogger(SessionPoolBenchmark.class.getName());
+
+    private SessionPoolBenchmark() {}
+
+    /**
+     * Command line options.
+     */
+    public static class SessionPoolBenchmarkOptions implements Options {
+        @Override
+        public String getOptionsDescription() {
+            return "Measures ONNX classifier throughput against the number of concurrent sessions.";
+        }
+        @Option(charName='f',longName="model-path",usage="Path to the ONNX model.")
+        public Path modelPath;
+        @Option(charName='n',longName="input-name",usage="Name of the model's input node.")
+        public String inputName;
+        @Option(charName='v',longName="testing-file",usage="Path to the LibSVM format data.")
+        public Path dataPath;
+        @Option(longName="libsvm-zero-indexed",usage="Is the libsvm file zero indexed.")
+        public boolean zeroIndexed = false;
+        @Option(longName="max-feature-id",usage="The maximum feature id the model accepts.")
+        public int maxFeatureID;
+        @Option(longName="image-shape",usage="Channels, height and width of an image input. Uses a vector input if unset.")
+        public List<Integer> imageShape;
+        @Option(charName='s',longName="session-counts",usage="The session counts to measure, 0 is the single session. Defaults to 0,1,2,4,8.")
+        public List<Integer> sessionCounts = Arrays.asList(0,1,2,4,8);
+        @Option(charName='t',longName="threads-per-session",usage="Intra-op threads per session, 0 divides the available processors.")
+        public int threadsPerSession = 0;
+        @Option(charName='p',longName="callers",usage="Number of concurrent caller threads, defaults to the available processors.")
+        public int numCallers = Runtime.getRuntime().availableProcessors();
+        @Option(charName='i',longName="iterations",usage="Number of times each caller predicts the dataset.")
+        public int iterations = 10;
+        @Option(charName='b',longName="batch-size",usage="Prediction batch size.")
+        public int batchSize = 32;
+    }
+
+    /**
+     * Runs the benchmark.
+     * @param args The command line arguments.
+     * @throws IOException If the model or data failed to load.
+     * @throws OrtException If onnx-runtime failed.
+     * @throws InterruptedException If interrupted while waiting for the callers.
+     * @throws ExecutionException If a prediction failed.
+     */
+    public static void main(String[] args) throws IOException, OrtException, InterruptedException, ExecutionException {
+        LabsLogFormatter.setAllLogFormatters();
+        SessionPoolBenchmarkOptions o = new SessionPoolBenchmarkOptions();
+        try (ConfigurationManager cm = new ConfigurationManager(args, o)) {
+            run(o);
+        } catch (UsageException e) {
+            System.out.println(e.getUsage());
+        } catch (ArgumentException e) {
+            System.out.println("Invalid argument: " + e.getMessage());
+        }
+    }
+
+    private static void run(SessionPoolBenchmarkOptions o) throws IOException, OrtException, InterruptedException, ExecutionException {
+        if (o.modelPath == null) {
+            throw new ArgumentException("model-path", "Must supply the ONNX model.");
+        } else if (o.inputName == null) {
+            throw new ArgumentException("input-name", "Must supply the model's input name.");
+        } else if (o.dataPath == null) {
+            throw new ArgumentException("testing-file", "Must supply the data.");
+        } else if (o.maxFeatureID < 1) {
+            throw new ArgumentException("max-feature-id", "Must be positive, found " + o.maxFeatureID);
+        }
+        LabelFactory labelFactory = new LabelFactory();
+        LibSVMDataSource<Label> source = new LibSVMDataSource<>(o.dataPath, labelFactory, o.zeroIndexed, o.maxFeatureID);
+        Dataset<Label> dataset = new MutableDataset<>(source);
+
+        // Mirrors the feature names generated by LibSVMDataSource.
+        int numInputs = source.isZeroIndexed() ? o.maxFeatureID + 1 : o.maxFeatureID;
+        String formatString = "%0" + Integer.toString(o.maxFeatureID).length() + "d";
+        Map<String, Integer> featureMapping = new HashMap<>();
+        for (int i = 0; i < numInputs; i++) {
+            featureMapping.put(String.format(formatString, i), i);
+        }
+        Map<Label, Integer> outputMapping = new HashMap<>();
+        for (Label l : dataset.getOutputInfo().getDomain()) {
+            outputMapping.put(l, Integer.parseInt(l.getLabel()));
+        }
+
+        ExampleTransformer transformer;
+        if (o.imageShape == null) {
+            transformer = new DenseTransformer(o.numCallers);
+        } else if (o.imageShape.size() == 3) {
+            transformer = new ImageTransformer(o.imageShape.get(0), o.imageShape.get(1), o.imageShape.get(2), o.numCallers);
+        } else {
+            throw new ArgumentException("image-shape", "Must have three elements, found " + o.imageShape);
+        }
+
+        ExecutorService callers = Executors.newFixedThreadPool(o.numCallers);
+        // The environment loads the native library, so it must exist before the session options.
+        try (OrtEnvironment env = OrtEnvironment.getEnvironment();
+             ONNXExternalModel<Label> model = ONNXExternalModel.createOnnxModel(labelFactory, featureMapping,
+                outputMapping, transformer, new LabelTransformer(), new OrtSession.SessionOptions(), o.modelPath, o.inputName)) {
+            model.setBatchSize(o.batchSize);
+            logger.info(String.format("Predicting %d examples %d times on each of %d callers",
+                    dataset.size(), o.iterations, o.numCallers));
+            for (int numSessions : o.sessionCounts) {
+                if (numSessions == 0) {
+                    model.rebuild(new OrtSession.SessionOptions());
+                } else {
+                    model.setConcurrentSessions(numSessions, o.threadsPerSession);
+                }
+                // Warm up the sessions before timing them.
+                timeCallers(model, dataset, callers, o.numCallers, 1);
+                long nanos = timeCallers(model, dataset, callers, o.numCallers, o.iterations);
+                double examplesPerSecond = ((double) dataset.size() * o.iterations * o.numCallers) / (nanos / 1e9);
+                logger.info(String.format("sessions=%d, time=%.1f ms, throughput=%.1f examples/s",
+                        numSessions, nanos / 1e6, examplesPerSecond));
+            }
+        } finally {
+            callers.shutdown();
+        }
+    }
+
+    /**
+     * Predicts the dataset {@code iterations} times on each of {@code numCallers} threads.
+     * @return The elapsed time in nanoseconds.
+     */
+    private static long timeCallers(ONNXExternalModel<Label> model, Dataset<Label> dataset, ExecutorService callers,
+                                    int numCallers, int iterations) throws InterruptedException, ExecutionException {
+        List<Future<?>> futures = new ArrayList<>(numCallers);
+        long start = System.nanoTime();
+        for (int i = 0; i < numCallers; i++) {
+            futures.add(callers.submit(() -> {
+                for (int j = 0; j < iterations; j++) {
+                    model.predict(dataset);
+                }
+            }));
+        }
+        for (Future<?> f : futures) {
+            f.get();
+        }
+        return System.nanoTime() - start;
+    }
+}
@@ -16,16 +16,21 @@
 
 package org.tribuo.interop.onnx;
 
+import ai.onnxruntime.OnnxTensor;
 import ai.onnxruntime.OrtEnvironment;
 import ai.onnxruntime.OrtException;
 import ai.onnxruntime.OrtSession;
+import com.oracle.labs.mlrg.olcut.provenance.ConfiguredObjectProvenance;
+import com.oracle.labs.mlrg.olcut.provenance.impl.ConfiguredObjectProvenanceImpl;
 import org.tribuo.DataSource;
 import org.tribuo.Dataset;
 import org.tribuo.MutableDataset;
+import org.tribuo.Prediction;
 import org.tribuo.classification.Label;
 import org.tribuo.classification.LabelFactory;
 import org.tribuo.classification.evaluation.LabelEvaluation;
 import org.tribuo.datasource.LibSVMDataSource;
+import org.tribuo.math.la.SparseVector;
 import org.junit.jupiter.api.Test;
 import org.tribuo.test.Helpers;
 
@@ -34,10 +39,24 @@ import java.net.URISyntaxException;
 import java.net.URL;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class TestOnnxRuntime {
 
@@ -81,6 +100,290 @@ public class TestOnnxRuntime {
         }
     }
 
+    /**
+     * This test checks that the pooled transformers produce the same tensors as the allocating ones,
+     * and that a pooled model evaluates identically.
+     * @throws IOException If it failed to read the file.
+     * @throws OrtException If onnx-runtime failed.
+     * @throws URISyntaxException If the URL failed to parse.
+     */
+    @Test
+    public void testPooledBuffers() throws IOException, OrtException, URISyntaxException {
+        LabelFactory labelFactory = new LabelFactory();
+        try (OrtEnvironment env = OrtEnvironment.getEnvironment()) {
+            List<SparseVector> batch = Arrays.asList(
+                    SparseVector.createSparseVector(6, new int[]{0,3}, new double[]{1.0,2.0}),
+                    SparseVector.createSparseVector(6, new int[]{1,5}, new double[]{3.0,4.0}));
+            List<SparseVector> smallBatch = Collections.singletonList(
+                    SparseVector.createSparseVector(6, new int[]{2}, new double[]{5.0}));
+            ExampleTransformer[] allocating = new ExampleTransformer[]{new DenseTransformer(), new ImageTransformer(1,2,3)};
+            ExampleTransformer[] pooled = new ExampleTransformer[]{new DenseTransformer(1), new ImageTransformer(1,2,3,1)};
+            for (int i = 0; i < pooled.length; i++) {
+                // Transforming twice checks the reused buffer is zeroed and shrunk to fit.
+                for (List<SparseVector> vectors : Arrays.asList(batch, smallBatch, batch)) {
+                    OnnxTensor expected = allocating[i].transform(env, vectors);
+                    OnnxTensor actual = pooled[i].transform(env, vectors);
+                    assertArrayEquals(expected.getInfo().getShape(), actual.getInfo().getShape());
+                    assertEquals(expected.getFloatBuffer(), actual.getFloatBuffer());
+                    allocating[i].release(expected);
+                    pooled[i].release(actual);
+                }
+                OnnxTensor expected = allocating[i].transform(env, smallBatch.get(0));
+                OnnxTensor actual = pooled[i].transform(env, smallBatch.get(0));
+                assertEquals(expected.getFloatBuffer(), actual.getFloatBuffer());
+                allocating[i].release(expected);
+                pooled[i].release(actual);
+            }
+
+            // A pool smaller than the number of live tensors allocates rather than overwriting them.
+            ExampleTransformer[] small = new ExampleTransformer[]{new DenseTransformer(1), new ImageTransformer(1,2,3,1)};
+            for (int j = 0; j < small.length; j++) {
+                ExampleTransformer transformer = small[j];
+                List<OnnxTensor> live = new ArrayList<>();
+                List<OnnxTensor> expected = new ArrayList<>();
+                for (int i = 0; i < 3; i++) {
+                    SparseVector vector = SparseVector.createSparseVector(6, new int[]{i}, new double[]{i + 1.0});
+                    live.add(transformer.transform(env, vector));
+                    expected.add(allocating[j].transform(env, vector));
+                }
+                for (int i = 0; i < live.size(); i++) {
+                    assertEquals(expected.get(i).getFloatBuffer(), live.get(i).getFloatBuffer());
+                    transformer.release(live.get(i));
+                    expected.get(i).close();
+                }
+            }
+
+            OrtSession.SessionOptions sessionOptions = new OrtSession.SessionOptions();
+            URL data = TestOnnxRuntime.class.getResource("/org/tribuo/interop/onnx/mnist_test_head.libsvm");
+            DataSource<Label> transposedMNIST = new LibSVMDataSource<>(data, labelFactory, false, 784);
+            Dataset<Label> dataset = new MutableDataset<>(transposedMNIST);
+
+            Map<String, Integer> featureMapping = new HashMap<>();
+            for (int i = 0; i < 784; i++) {
+                featureMapping.put(String.format("%03d", i), 783 - i);
+            }
+            Map<Label, Integer> outputMapping = new HashMap<>();
+            for (Label l : dataset.getOutputInfo().getDomain()) {
+                outputMapping.put(l, Integer.parseInt(l.getLabel()));
+            }
+
+            Path testResource = Paths.get(TestOnnxRuntime.class.getResource("/org/tribuo/interop/onnx/lr_mnist.onnx").toURI());
+            ONNXExternalModel<Label> pooledModel = ONNXExternalModel.createOnnxModel(
+                    labelFactory, featureMapping, outputMapping, new DenseTransformer(2),
+                    new LabelTransformer(), sessionOptions, testResource, "float_input");
+
+            LabelEvaluation evaluation = labelFactory.getEvaluator().evaluate(pooledModel, transposedMNIST);
+            assertEquals(0.967741, evaluation.accuracy(), 1e-6);
+            assertEquals(0.024285, evaluation.balancedErrorRate(), 1e-6);
+
+            Helpers.testModelSerialization(pooledModel,Label.class);
+        }
+    }
+
+    /**
+     * This test checks that pipelined batch prediction matches serial batch prediction.
+     * @throws IOException If it failed to read the file.
+     * @throws OrtException If onnx-runtime failed.
+     * @throws URISyntaxException If the URL failed to parse.
+     */
+    @Test
+    public void testPipelinedPrediction() throws IOException, OrtException, URISyntaxException {
+        LabelFactory labelFactory = new LabelFactory();
+        try (OrtEnvironment env = OrtEnvironment.getEnvironment()) {
+            OrtSession.SessionOptions sessionOptions = new OrtSession.SessionOptions();
+            URL data = TestOnnxRuntime.class.getResource("/org/tribuo/interop/onnx/mnist_test_head.libsvm");
+            Dataset<Label> dataset = new MutableDataset<>(new LibSVMDataSource<>(data, labelFactory, false, 784));
+
+            Map<String, Integer> featureMapping = new HashMap<>();
+            for (int i = 0; i < 784; i++) {
+                featureMapping.put(String.format("%03d", i), 783 - i);
+            }
+            Map<Label, Integer> outputMapping = new HashMap<>();
+            for (Label l : dataset.getOutputInfo().getDomain()) {
+                outputMapping.put(l, Integer.parseInt(l.getLabel()));
+            }
+
+            Path testResource = Paths.get(TestOnnxRuntime.class.getResource("/org/tribuo/interop/onnx/lr_mnist.onnx").toURI());
+            // The pool is smaller than the number of batches in flight, so the extra inputs aren't pooled.
+            ONNXExternalModel<Label> model = ONNXExternalModel.createOnnxModel(
+                    labelFactory, featureMapping, outputMapping, new DenseTransformer(1),
+                    new LabelTransformer(), sessionOptions, testResource, "float_input");
+            model.setBatchSize(5);
+            List<Prediction<Label>> serial = model.predict(dataset);
+
+            ExecutorService executor = Executors.newFixedThreadPool(4);
+            try {
+                // Depth 0 predicts serially on the executor.
+                checkPredictions(serial, model.predictAsync(dataset, executor).join());
+
+                model.setPipelineDepth(3);
+                List<Prediction<Label>> pipelined = model.predict(dataset);
+                checkPredictions(serial, pipelined);
+                // Repeated calls reuse the model's pipeline threads.
+                checkPredictions(serial, model.predict(dataset));
+
+                checkPredictions(serial, model.predictAsync(dataset, executor).join());
+            } finally {
+                executor.shutdown();
+            }
+        }
+    }
+
+    /**
+     * This test checks that when a pipelined batch fails every converted input is released, including
+     * the ones converted after the failure which never reach the session.
+     * @throws IOException If it failed to read the file.
+     * @throws OrtException If onnx-runtime failed.
+     * @throws URISyntaxException If the URL failed to parse.
+     */
+    @Test
+    public void testPipelinedFailureReleasesInputs() throws IOException, OrtException, URISyntaxException {
+        LabelFactory labelFactory = new LabelFactory();
+        try (OrtEnvironment env = OrtEnvironment.getEnvironment()) {
+            OrtSession.SessionOptions sessionOptions = new OrtSession.SessionOptions();
+            URL data = TestOnnxRuntime.class.getResource("/org/tribuo/interop/onnx/mnist_test_head.libsvm");
+            Dataset<Label> dataset = new MutableDataset<>(new LibSVMDataSource<>(data, labelFactory, false, 784));
+
+            Map<String, Integer> featureMapping = new HashMap<>();
+            for (int i = 0; i < 784; i++) {
+                featureMapping.put(String.format("%03d", i), 783 - i);
+            }
+            Map<Label, Integer> outputMapping = new HashMap<>();
+            for (Label l : dataset.getOutputInfo().getDomain()) {
+                outputMapping.put(l, Integer.parseInt(l.getLabel()));
+            }
+
+            Path testResource = Paths.get(TestOnnxRuntime.class.getResource("/org/tribuo/interop/onnx/lr_mnist.onnx").toURI());
+            TrackingTransformer transformer = new TrackingTransformer(new DenseTransformer(3), 2);
+            ONNXExternalModel<Label> model = ONNXExternalModel.createOnnxModel(
+                    labelFactory, featureMapping, outputMapping, transformer,
+                    new LabelTransformer(), sessionOptions, testResource, "float_input");
+            model.setBatchSize(5);
+            model.setPipelineDepth(3);
+
+            ExecutorService executor = Executors.newFixedThreadPool(4);
+            try {
+                CompletionException e = assertThrows(CompletionException.class, () -> model.predictAsync(dataset, executor).join());
+                assertTrue(e.getCause() instanceof IllegalStateException);
+                // Batches 3 and 4 are converted while batch 2 fails, batch 5 waits for batch 2 to be decoded.
+                assertEquals(5, transformer.numTransformed.get());
+                assertTrue(transformer.live.isEmpty(), "Unreleased inputs " + transformer.live.size());
+
+                // The pool has every buffer back, so the next prediction succeeds and releases them all again.
+                transformer.failingBatch = -1;
+                model.predictAsync(dataset, executor).join();
+                assertTrue(transformer.live.isEmpty(), "Unreleased inputs " + transformer.live.size());
+            } finally {
+                executor.shutdown();
+            }
+        }
+    }
+
+    /**
+     * A transformer which records the tensors it has handed out and not had released, and produces
+     * a tensor of the wrong shape for one batch so the session fails on it.
+     */
+    private static final class TrackingTransformer implements ExampleTransformer {
+        private static final long serialVersionUID = 1L;
+
+        private final DenseTransformer delegate;
+        private final AtomicInteger numTransformed = new AtomicInteger();
+        private final Set<OnnxTensor> live = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+        private volatile int failingBatch;
+
+        TrackingTransformer(DenseTransformer delegate, int failingBatch) {
+            this.delegate = delegate;
+            this.failingBatch = failingBatch;
+        }
+
+        @Override
+        public OnnxTensor transform(OrtEnvironment env, SparseVector vector) throws OrtException {
+            OnnxTensor tensor = delegate.transform(env, vector);
+            live.add(tensor);
+            return tensor;
+        }
+
+        @Override
+        public OnnxTensor transform(OrtEnvironment env, List<SparseVector> vectors) throws OrtException {
+            OnnxTensor tensor;
+            if (numTransformed.getAndIncrement() == failingBatch) {
+                tensor = OnnxTensor.createTensor(env, new float[vectors.size()][3]);
+            } else {
+                tensor = delegate.transform(env, vectors);
+            }
+            live.add(tensor);
+            return tensor;
+        }
+
+        @Override
+        public void release(OnnxTensor tensor) {
+            assertTrue(live.remove(tensor), "Released a tensor twice");
+            delegate.release(tensor);
+        }
+
+        @Override
+        public ConfiguredObjectProvenance getProvenance() {
+            return new ConfiguredObjectProvenanceImpl(this,"ExampleTransformer");
+        }
+    }
+
+    /**
+     * This test checks that many concurrent callers sharing a session pool get the same predictions as a single session.
+     * @throws Exception If onnx-runtime failed, or it failed to read the file.
+     */
+    @Test
+    public void testConcurrentSessions() throws Exception {
+        LabelFactory labelFactory = new LabelFactory();
+        try (OrtEnvironment env = OrtEnvironment.getEnvironment()) {
+            OrtSession.SessionOptions sessionOptions = new OrtSession.SessionOptions();
+            URL data = TestOnnxRuntime.class.getResource("/org/tribuo/interop/onnx/mnist_test_head.libsvm");
+            Dataset<Label> dataset = new MutableDataset<>(new LibSVMDataSource<>(data, labelFactory, false, 784));
+
+            Map<String, Integer> featureMapping = new HashMap<>();
+            for (int i = 0; i < 784; i++) {
+                featureMapping.put(String.format("%03d", i), 783 - i);
+            }
+            Map<Label, Integer> outputMapping = new HashMap<>();
+            for (Label l : dataset.getOutputInfo().getDomain()) {
+                outputMapping.put(l, Integer.parseInt(l.getLabel()));
+            }
+
+            Path testResource = Paths.get(TestOnnxRuntime.class.getResource("/org/tribuo/interop/onnx/lr_mnist.onnx").toURI());
+            ONNXExternalModel<Label> model = ONNXExternalModel.createOnnxModel(
+                    labelFactory, featureMapping, outputMapping, new DenseTransformer(),
+                    new LabelTransformer(), sessionOptions, testResource, "float_input");
+            List<Prediction<Label>> expected = model.predict(dataset);
+
+            model.setConcurrentSessions(2, 1);
+            assertEquals(2, model.getNumSessions());
+            ExecutorService executor = Executors.newFixedThreadPool(6);
+            try {
+                List<Future<List<Prediction<Label>>>> futures = new ArrayList<>();
+                for (int i = 0; i < 12; i++) {
+                    futures.add(executor.submit(() -> model.predict(dataset)));
+                }
+                for (Future<List<Prediction<Label>>> f : futures) {
+                    checkPredictions(expected, f.get());
+                }
+            } finally {
+                executor.shutdown();
+            }
+
+            model.rebuild(new OrtSession.SessionOptions());
+            assertEquals(1, model.getNumSessions());
+            checkPredictions(expected, model.predict(dataset));
+        }
+    }
+
+    private static void checkPredictions(List<Prediction<Label>> expected, List<Prediction<Label>> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getExample(), actual.get(i).getExample());
+            assertEquals(expected.get(i).getOutput().getLabel(), actual.get(i).getOutput().getLabel());
+            assertEquals(expected.get(i).getOutput().getScore(), actual.get(i).getOutput().getScore(), 1e-6);
+        }
+    }
+
     /**
      * This test checks that the model works when using the feature mapping logic as the model was trained with
      * a transposed feature mapping, but the data is loaded in using the standard mapping.
@@ -0,0 +1,709 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.tribuo.interop.onnx.export;
+
+import org.tribuo.ImmutableFeatureMap;
+import org.tribuo.ImmutableOutputInfo;
+import org.tribuo.Model;
+import org.tribuo.Output;
+import org.tribuo.Tribuo;
+import org.tribuo.classification.Label;
+import org.tribuo.classification.ensemble.FullyWeightedVotingCombiner;
+import org.tribuo.classification.ensemble.VotingCombiner;
+import org.tribuo.classification.liblinear.LibLinearClassificationModel;
+import org.tribuo.classification.sgd.linear.LinearSGDModel;
+import org.tribuo.clustering.kmeans.KMeansModel;
+import org.tribuo.common.tree.LeafNode;
+import org.tribuo.common.tree.Node;
+import org.tribuo.common.tree.SplitNode;
+import org.tribuo.common.tree.TreeModel;
+import org.tribuo.ensemble.EnsembleCombiner;
+import org.tribuo.ensemble.WeightedEnsembleModel;
+import org.tribuo.math.la.DenseMatrix;
+import org.tribuo.math.la.DenseVector;
+import org.tribuo.math.util.ExpNormalizer;
+import org.tribuo.math.util.NoopNormalizer;
+import org.tribuo.math.util.Normalizer;
+import org.tribuo.math.util.SigmoidNormalizer;
+import org.tribuo.math.util.VectorNormalizer;
+import org.tribuo.regression.Regressor;
+import org.tribuo.regression.ensemble.AveragingCombiner;
+import org.tribuo.regression.liblinear.LibLinearRegressionModel;
+import org.tribuo.regression.rtree.IndependentRegressionTreeModel;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.function.Function;
+
+/**
+ * Exports Tribuo models as ONNX models, so they can be deployed on the ONNX Runtime
+ * or loaded back into Tribuo with {@code ONNXExternalModel}.
+ * <p>
+ * Supports:
+ * <ul>
+ *     <li>classification and regression {@link LinearSGDModel}s,</li>
+ *     <li>{@link LibLinearClassificationModel} and {@link LibLinearRegressionModel},</li>
+ *     <li>classification and regression {@link TreeModel}s, including {@link IndependentRegressionTreeModel},
+ *     written with the ONNX-ML tree ensemble operators,</li>
+ *     <li>{@link WeightedEnsembleModel}s of any supported models, combined with a {@link VotingCombiner},
+ *     {@link FullyWeightedVotingCombiner} or {@link AveragingCombiner},</li>
+ *     <li>{@link KMeansModel}s.</li>
+ * </ul>
+ * The exported graph has a single float input called {@value #INPUT_NAME} of shape [batchSize, numFeatures],
+ * with the columns in the order of the model's feature ids, and a single float output called {@value #OUTPUT_NAME}
+ * of shape [batchSize, numOutputs] with the columns in the order of the model's output ids. Classification models
+ * output the scores for each label, regression models output the value for each dimension, and k-means models
+ * output the distance to each centroid. Features which are absent from an example should be set to zero, matching
+ * Tribuo's sparse semantics, which is what {@code DenseTransformer} does.
+ * <p>
+ * The feature and output names are stored in the model metadata under {@value #FEATURE_NAMES_KEY}
+ * and {@value #OUTPUT_NAMES_KEY}, one name per line in id order.
+ * <p>
+ * The exported model computes in single precision, so predictions may differ from the Tribuo model
+ * in the last few digits, and examples which lie exactly on a tree split may take a different branch.
+ */
+public final class ONNXExporter {
+
+    /**
+     * The name of the graph input.
+     */
+    public static final String INPUT_NAME = "input";
+
+    /**
+     * The name of the graph output.
+     */
+    public static final String OUTPUT_NAME = "output";
+
+    /**
+     * The metadata key for the feature names.
+     */
+    public static final String FEATURE_NAMES_KEY = "tribuo.feature_names";
+
+    /**
+     * The metadata key for the output names.
+     */
+    public static final String OUTPUT_NAMES_KEY = "tribuo.output_names";
+
+    /**
+     * The metadata key for the class name of the exported model.
+     */
+    public static final String MODEL_CLASS_KEY = "tribuo.model_class";
+
+    private static final String PRODUCER_NAME = "Tribuo";
+
+    private ONNXExporter() {}
+
+    /**
+     * Exports the model as an ONNX model.
+     * @param model The model to export.
+     * @param domain The model domain, usually a reverse DNS name.
+     * @param modelVersion The model version.
+     * @return The serialized ONNX model.
+     * @throws IllegalArgumentException If the model, or one of its ensemble members, can't be exported.
+     */
+    public static byte[] exportModel(Model<?> model, String domain, long modelVersion) {
+        ImmutableFeatureMap featureMap = model.getFeatureIDMap();
+        ONNXGraph graph = new ONNXGraph(model.getName());
+        graph.addInput(INPUT_NAME, featureMap.size());
+        String output = writeModel(graph, model, INPUT_NAME, featureMap);
+        List<String> outputNames = outputNames(model);
+        graph.addOutput(output, OUTPUT_NAME, outputNames.size());
+
+        StringJoiner featureNames = new StringJoiner("\n");
+        for (int i = 0; i < featureMap.size(); i++) {
+            featureNames.add(featureMap.get(i).getName());
+        }
+        Map<String,String> metadata = new LinkedHashMap<>();
+        metadata.put(FEATURE_NAMES_KEY, featureNames.toString());
+        metadata.put(OUTPUT_NAMES_KEY, String.join("\n", outputNames));
+        metadata.put(MODEL_CLASS_KEY, model.getClass().getName());
+
+        return graph.toModelProto(PRODUCER_NAME, Tribuo.VERSION, domain, modelVersion,
+                model.getProvenance().toString(), metadata);
+    }
+
+    /**
+     * Exports the model as an ONNX model, writing it to the supplied path.
+     * @param model The model to export.
+     * @param domain The model domain, usually a reverse DNS name.
+     * @param modelVersion The model version.
+     * @param path The path to write to.
+     * @throws IOException If the file could not be written.
+     * @throws IllegalArgumentException If the model, or one of its ensemble members, can't be exported.
+     */
+    public static void exportModel(Model<?> model, String domain, long modelVersion, Path path) throws IOException {
+        Files.write(path, exportModel(model, domain, modelVersion));
+    }
+
+    /**
+     * Writes the model into the graph.
+     * @param graph The graph to write to.
+     * @param model The model to write.
+     * @param input The input tensor.
+     * @param inputFeatures The feature ids of the input tensor's columns.
+     * @return The output tensor, of shape [batchSize, numOutputs].
+     */
+    @SuppressWarnings("unchecked") // Tree output types are checked before the casts.
+    private static String writeModel(ONNXGraph graph, Model<?> model, String input, ImmutableFeatureMap inputFeatures) {
+        String features = remapFeatures(graph, input, inputFeatures, model.getFeatureIDMap());
+        if (model instanceof WeightedEnsembleModel) {
+            return writeEnsemble(graph, (WeightedEnsembleModel<?>) model, features);
+        } else if (model instanceof IndependentRegressionTreeModel) {
+            return writeIndependentTrees(graph, (IndependentRegressionTreeModel) model, features);
+        } else if (model instanceof TreeModel) {
+            ImmutableOutputInfo<?> outputInfo = model.getOutputIDInfo();
+            Output<?> output = outputInfo.size() > 0 ? outputInfo.getOutput(0) : null;
+            if (output instanceof Label) {
+                return writeClassificationTree(graph, (TreeModel<Label>) model, features);
+            } else if (output instanceof Regressor) {
+                return writeRegressionTree(graph, (TreeModel<Regressor>) model, features);
+            } else {
+                throw new IllegalArgumentException("Tree models can only be exported for classification or regression, found outputs " + outputInfo.getDomain());
+            }
+        } else if (model instanceof LinearSGDModel) {
+            LinearSGDModel linear = (LinearSGDModel) model;
+            String scores = writeLinear(graph, linear.getWeightsCopy(), features);
+            return writeNormalizer(graph, linear.getNormalizer(), scores);
+        } else if (model instanceof org.tribuo.regression.sgd.linear.LinearSGDModel) {
+            return writeLinear(graph, ((org.tribuo.regression.sgd.linear.LinearSGDModel) model).getWeightsCopy(), features);
+        } else if (model instanceof LibLinearClassificationModel) {
+            return writeLibLinearClassification(graph, (LibLinearClassificationModel) model, features);
+        } else if (model instanceof LibLinearRegressionModel) {
+            return writeLibLinearRegression(graph, (LibLinearRegressionModel) model, features);
+        } else if (model instanceof KMeansModel) {
+            return writeKMeans(graph, (KMeansModel) model, features);
+        } else {
+            throw new IllegalArgumentException("Exporting " + model.getClass().getName() + " to ONNX is not supported.");
+        }
+    }
+
+    /**
+     * Selects the model's features from the input, if its feature ids differ from the input's.
+     * <p>
+     * Ensemble members can be trained on a subset of the ensemble's features.
+     */
+    private static String remapFeatures(ONNXGraph graph, String input, ImmutableFeatureMap inputFeatures, ImmutableFeatureMap modelFeatures) {
+        boolean identity = inputFeatures.size() == modelFeatures.size();
+        long[] indices = new long[modelFeatures.size()];
+        for (int i = 0; i < indices.length; i++) {
+            String name = modelFeatures.get(i).getName();
+            int id = inputFeatures.getID(name);
+            if (id < 0) {
+                throw new IllegalArgumentException("Feature " + name + " is not present in the input feature map.");
+            }
+            indices[i] = id;
+            identity &= id == i;
+        }
+        if (identity) {
+            return input;
+        } else {
+            String indexTensor = graph.addLongs("feature_indices", indices, indices.length);
+            return graph.node("Gather", input, indexTensor).attr("axis", 1).output();
+        }
+    }
+
+    /**
+     * Permutes the member's output columns into the ensemble's output id order, with zeros for
+     * any outputs the member did not observe.
+     */
+    private static <T extends Output<T>> String remapOutputs(ONNXGraph graph, String memberOutput,
+                                                             ImmutableOutputInfo<T> memberInfo, ImmutableOutputInfo<T> ensembleInfo) {
+        int numMember = memberInfo.size();
+        int numEnsemble = ensembleInfo.size();
+        boolean identity = numMember == numEnsemble;
+        float[] permutation = new float[numMember * numEnsemble];
+        for (int i = 0; i < numMember; i++) {
+            String name = outputName(memberInfo.getOutput(i));
+            int id = -1;
+            for (int j = 0; j < numEnsemble; j++) {
+                if (outputName(ensembleInfo.getOutput(j)).equals(name)) {
+                    id = j;
+                    break;
+                }
+            }
+            if (id < 0) {
+                throw new IllegalArgumentException("Output " + name + " is not present in the ensemble output info.");
+            }
+            permutation[i * numEnsemble + id] = 1.0f;
+            identity &= id == i;
+        }
+        if (identity) {
+            return memberOutput;
+        } else {
+            String permutationTensor = graph.addFloats("output_permutation", permutation, numMember, numEnsemble);
+            return graph.node("MatMul", memberOutput, permutationTensor).output();
+        }
+    }
+
+    private static <T extends Output<T>> String writeEnsemble(ONNXGraph graph, WeightedEnsembleModel<T> model, String input) {
+        EnsembleCombiner<T> combiner = model.getCombiner();
+        boolean voting = combiner instanceof VotingCombiner;
+        boolean fullyWeighted = combiner instanceof FullyWeightedVotingCombiner;
+        if (!voting && !fullyWeighted && !(combiner instanceof AveragingCombiner)) {
+            throw new IllegalArgumentException("Exporting ensembles combined with " + combiner.getClass().getName() + " to ONNX is not supported.");
+        }
+        ImmutableOutputInfo<T> outputInfo = model.getOutputIDInfo();
+        float[] weights = model.getWeights();
+        List<Model<T>> members = model.getModels();
+
+        String depth = null;
+        String oneHotValues = null;
+        if (voting) {
+            depth = graph.addLongs("depth", new long[]{outputInfo.size()}, 1);
+            oneHotValues = graph.addFloats("one_hot_values", new float[]{0.0f, 1.0f}, 2);
+        }
+
+        String[] weighted = new String[members.size()];
+        double weightSum = 0.0;
+        for (int i = 0; i < weighted.length; i++) {
+            Model<T> member = members.get(i);
+            String output = writeModel(graph, member, input, model.getFeatureIDMap());
+            output = remapOutputs(graph, output, member.getOutputIDInfo(), outputInfo);
+            if (voting) {
+                String vote = graph.node("ArgMax", output).attr("axis", 1).attr("keepdims", 0).output();
+                output = graph.node("OneHot", vote, depth, oneHotValues).output();
+            }
+            String weight = graph.addFloats("member_weight", new float[]{weights[i]}, 1);
+            weighted[i] = graph.node("Mul", output, weight).output();
+            weightSum += weights[i];
+        }
+        String sum = weighted.length == 1 ? weighted[0] : graph.node("Sum", weighted).output();
+
+        if (fullyWeighted) {
+            String total = graph.node("ReduceSum", sum).attr("axes", new long[]{1}).attr("keepdims", 1).output();
+            return graph.node("Div", sum, total).output();
+        } else {
+            String total = graph.addFloats("weight_sum", new float[]{(float) weightSum}, 1);
+            return graph.node("Div", sum, total).output();
+        }
+    }
+
+    /**
+     * Writes a linear model as a Gemm.
+     * @param weights The weights, of size [numOutputs, numFeatures + 1] with the bias in the last column.
+     */
+    private static String writeLinear(ONNXGraph graph, DenseMatrix weights, String input) {
+        int numOutputs = weights.getDimension1Size();
+        int numFeatures = weights.getDimension2Size() - 1;
+        float[] w = new float[numOutputs * numFeatures];
+        float[] bias = new float[numOutputs];
+        for (int i = 0; i < numOutputs; i++) {
+            for (int j = 0; j < numFeatures; j++) {
+                w[i * numFeatures + j] = (float) weights.get(i, j);
+            }
+            bias[i] = (float) weights.get(i, numFeatures);
+        }
+        return writeGemm(graph, w, bias, numOutputs, numFeatures, input);
+    }
+
+    private static String writeGemm(ONNXGraph graph, float[] weights, float[] bias, int numOutputs, int numFeatures, String input) {
+        String weightTensor = graph.addFloats("weights", weights, numOutputs, numFeatures);
+        String biasTensor = graph.addFloats("bias", bias, numOutputs);
+        return graph.node("Gemm", input, weightTensor, biasTensor).attr("transB", 1).output();
+    }
+
+    private static String writeNormalizer(ONNXGraph graph, VectorNormalizer normalizer, String input) {
+        if (normalizer instanceof NoopNormalizer) {
+            return input;
+        } else if (normalizer instanceof ExpNormalizer) {
+            return graph.node("Softmax", input).attr("axis", 1).output();
+        } else if (normalizer instanceof SigmoidNormalizer) {
+            return graph.node("Sigmoid", input).output();
+        } else if (normalizer instanceof Normalizer) {
+            String min = graph.node("ReduceMin", input).attr("axes", new long[]{1}).attr("keepdims", 1).output();
+            String offset = graph.addFloats("offset", new float[]{0.01f}, 1);
+            String shift = graph.node("Sub", min, offset).output();
+            String shifted = graph.node("Sub", input, shift).output();
+            String sum = graph.node("ReduceSum", shifted).attr("axes", new long[]{1}).attr("keepdims", 1).output();
+            return graph.node("Div", shifted, sum).output();
+        } else {
+            throw new IllegalArgumentException("Exporting " + normalizer.getClass().getName() + " to ONNX is not supported.");
+        }
+    }
+
+    private static String writeLibLinearClassification(ONNXGraph graph, LibLinearClassificationModel model, String input) {
+        de.bwaldvogel.liblinear.Model libLinearModel = model.getInnerModels().get(0);
+        int[] labels = libLinearModel.getLabels();
+        int numOutputs = model.getOutputIDInfo().size();
+        if (labels.length != numOutputs) {
+            throw new IllegalArgumentException("Exporting a LibLinear model which did not observe all the labels is not supported, observed " + labels.length + " of " + numOutputs);
+        }
+        int numFeatures = model.getFeatureIDMap().size();
+        float[] weights = new float[numOutputs * numFeatures];
+        float[] bias = new float[numOutputs];
+        int numVectors = copyLibLinearWeights(libLinearModel, numFeatures, weights, bias, labels);
+        if (numVectors == 1) {
+            // Binary models have a single weight vector, and the second label's score is the negation of the first.
+            for (int j = 0; j < numFeatures; j++) {
+                weights[labels[1] * numFeatures + j] = -weights[labels[0] * numFeatures + j];
+            }
+            bias[labels[1]] = -bias[labels[0]];
+        }
+        String scores = writeGemm(graph, weights, bias, numOutputs, numFeatures, input);
+        if (libLinearModel.isProbabilityModel()) {
+            scores = graph.node("Sigmoid", scores).output();
+            if (numOutputs > 2) {
+                String sum = graph.node("ReduceSum", scores).attr("axes", new long[]{1}).attr("keepdims", 1).output();
+                scores = graph.node("Div", scores, sum).output();
+            }
+        }
+        return scores;
+    }
+
+    private static String writeLibLinearRegression(ONNXGraph graph, LibLinearRegressionModel model, String input) {
+        List<de.bwaldvogel.liblinear.Model> models = model.getInnerModels();
+        int numOutputs = models.size();
+        int numFeatures = model.getFeatureIDMap().size();
+        float[] weights = new float[numOutputs * numFeatures];
+        float[] bias = new float[numOutputs];
+        // The inner models are in the canonical order of the dimension names, not the output id order.
+        ImmutableOutputInfo<Regressor> outputInfo = model.getOutputIDInfo();
+        String[] dimensionNames = Regressor.extractNames(outputInfo);
+        for (int i = 0; i < numOutputs; i++) {
+            int id = outputInfo.getID(new Regressor(dimensionNames[i], Double.NaN));
+            copyLibLinearWeights(models.get(i), numFeatures, weights, bias, new int[]{id});
+        }
+        return writeGemm(graph, weights, bias, numOutputs, numFeatures, input);
+    }
+
+    /**
+     * Copies the liblinear weight vectors into the rows of a Gemm weight matrix.
+     * <p>
+     * Tribuo appends a bias feature with value 1.0 after the last feature, so its weight becomes the Gemm bias.
+     * @param model The liblinear model.
+     * @param numFeatures The number of Tribuo features.
+     * @param weights The Gemm weights, of size [numOutputs, numFeatures].
+     * @param bias The Gemm bias, of size [numOutputs].
+     * @param rows The row to write each liblinear weight vector into.
+     * @return The number of weight vectors in the liblinear model.
+     */
+    private static int copyLibLinearWeights(de.bwaldvogel.liblinear.Model model, int numFeatures, float[] weights, float[] bias, int[] rows) {
+        double[] w = model.getFeatureWeights();
+        int numRows = model.getNrFeature() + (model.getBias() >= 0 ? 1 : 0);
+        int numVectors = w.length / numRows;
+        for (int k = 0; k < numVectors; k++) {
+            int row = rows[k];
+            for (int j = 0; j < Math.min(numFeatures, numRows); j++) {
+                weights[row * numFeatures + j] = (float) w[j * numVectors + k];
+            }
+            bias[row] = numFeatures < numRows ? (float) w[numFeatures * numVectors + k] : 0.0f;
+        }
+        return numVectors;
+    }
+
+    private static String writeClassificationTree(ONNXGraph graph, TreeModel<Label> model, String input) {
+        ImmutableOutputInfo<Label> outputInfo = model.getOutputIDInfo();
+        int numOutputs = outputInfo.size();
+        int[] targets = allTargets(numOutputs);
+        TreeEnsemble ensemble = new TreeEnsemble();
+        ensemble.addTree(model.getRoot(), targets, (LeafNode<Label> leaf) -> {
+            Map<String,Label> scores = leaf.getDistribution();
+            float[] values = new float[numOutputs];
+            for (int i = 0; i < numOutputs; i++) {
+                Label label = scores.get(outputInfo.getOutput(i).getLabel());
+                values[i] = label == null ? 0.0f : (float) label.getScore();
+            }
+            return values;
+        });
+        long[] classLabels = new long[numOutputs];
+        for (int i = 0; i < numOutputs; i++) {
+            classLabels[i] = i;
+        }
+        ONNXGraph.Node node = graph.node(ONNXGraph.ML_DOMAIN, "TreeEnsembleClassifier", new String[]{input}, 2);
+        ensemble.writeNodes(node);
+        node.attr("class_treeids", ensemble.leafTreeIds())
+            .attr("class_nodeids", ensemble.leafNodeIds())
+            .attr("class_ids", ensemble.leafTargetIds())
+            .attr("class_weights", ensemble.leafWeights())
+            .attr("classlabels_int64s", classLabels)
+            .attr("post_transform", "NONE");
+        // The first output is the predicted label, the second the scores.
+        return node.output(1);
+    }
+
+    private static String writeRegressionTree(ONNXGraph graph, TreeModel<Regressor> model, String input) {
+        ImmutableOutputInfo<Regressor> outputInfo = model.getOutputIDInfo();
+        int numOutputs = outputInfo.size();
+        TreeEnsemble ensemble = new TreeEnsemble();
+        ensemble.addTree(model.getRoot(), allTargets(numOutputs), (LeafNode<Regressor> leaf) -> {
+            float[] values = new float[numOutputs];
+            for (int i = 0; i < numOutputs; i++) {
+                values[i] = dimensionValue(leaf, outputInfo.getOutput(i).getNames()[0]);
+            }
+            return values;
+        });
+        return writeTreeRegressor(graph, ensemble, numOutputs, input);
+    }
+
+    private static String writeIndependentTrees(ONNXGraph graph, IndependentRegressionTreeModel model, String input) {
+        ImmutableOutputInfo<Regressor> outputInfo = model.getOutputIDInfo();
+        int numOutputs = outputInfo.size();
+        TreeEnsemble ensemble = new TreeEnsemble();
+        for (Map.Entry<String,Node<Regressor>> e : model.getRoots().entrySet()) {
+            String name = e.getKey();
+            int id = outputInfo.getID(new Regressor(name, Double.NaN));
+            if (id < 0) {
+                throw new IllegalArgumentException("Regression dimension " + name + " is not present in the output info.");
+            }
+            ensemble.addTree(e.getValue(), new int[]{id}, (LeafNode<Regressor> leaf) -> new float[]{dimensionValue(leaf, name)});
+        }
+        return writeTreeRegressor(graph, ensemble, numOutputs, input);
+    }
+
+    private static String writeTreeRegressor(ONNXGraph graph, TreeEnsemble ensemble, int numOutputs, String input) {
+        ONNXGraph.Node node = graph.node(ONNXGraph.ML_DOMAIN, "TreeEnsembleRegressor", new String[]{input}, 1);
+        ensemble.writeNodes(node);
+        node.attr("target_treeids", ensemble.leafTreeIds())
+            .attr("target_nodeids", ensemble.leafNodeIds())
+            .attr("target_ids", ensemble.leafTargetIds())
+            .attr("target_weights", ensemble.leafWeights())
+            .attr("n_targets", numOutputs)
+            .attr("aggregate_function", "SUM")
+            .attr("post_transform", "NONE");
+        return node.output();
+    }
+
+    private static float dimensionValue(LeafNode<Regressor> leaf, String name) {
+        return (float) leaf.getOutput().getDimension(name)
+                .orElseThrow(() -> new IllegalArgumentException("Leaf output " + leaf.getOutput() + " does not contain dimension " + name))
+                .getValue();
+    }
+
+    private static String writeKMeans(ONNXGraph graph, KMeansModel model, String input) {
+        DenseVector[] centroids = model.getCentroidVectors();
+        int numCentroids = centroids.length;
+        int numFeatures = model.getFeatureIDMap().size();
+        float[] flat = new float[numCentroids * numFeatures];
+        float[] squaredNorms = new float[numCentroids];
+        float[] normalized = new float[numCentroids * numFeatures];
+        for (int i = 0; i < numCentroids; i++) {
+            double norm = centroids[i].twoNorm();
+            for (int j = 0; j < numFeatures; j++) {
+                double value = centroids[i].get(j);
+                flat[i * numFeatures + j] = (float) value;
+                normalized[i * numFeatures + j] = (float) (value / norm);
+            }
+            squaredNorms[i] = (float) (norm * norm);
+        }
+        long[] axis = new long[]{1};
+        switch (model.getDistanceType()) {
+            case EUCLIDEAN: {
+                // ||x - c||^2 = ||x||^2 - 2 x.c + ||c||^2, clamped at zero to remove rounding errors.
+                String centroidTensor = graph.addFloats("centroids", flat, numCentroids, numFeatures);
+                String inputNorms = graph.node("ReduceSumSquare", input).attr("axes", axis).attr("keepdims", 1).output();
+                String products = graph.node("Gemm", input, centroidTensor).attr("transB", 1).attr("alpha", -2.0f).output();
+                String centroidNorms = graph.addFloats("centroid_norms", squaredNorms, numCentroids);
+                String partial = graph.node("Add", products, inputNorms).output();
+                String squared = graph.node("Add", partial, centroidNorms).output();
+                String clamped = graph.node("Relu", squared).output();
+                return graph.node("Sqrt", clamped).output();
+            }
+            case L1: {
+                String centroidTensor = graph.addFloats("centroids", flat, numCentroids, numFeatures);
+                String expanded = graph.node("Unsqueeze", input).attr("axes", axis).output();
+                String difference = graph.node("Sub", expanded, centroidTensor).output();
+                String absolute = graph.node("Abs", difference).output();
+                return graph.node("ReduceSum", absolute).attr("axes", new long[]{2}).attr("keepdims", 0).output();
+            }
+            case COSINE: {
+                String centroidTensor = graph.addFloats("normalized_centroids", normalized, numCentroids, numFeatures);
+                String products = graph.node("Gemm", input, centroidTensor).attr("transB", 1).output();
+                String inputNorms = graph.node("ReduceSumSquare", input).attr("axes", axis).attr("keepdims", 1).output();
+                String norms = graph.node("Sqrt", inputNorms).output();
+                String similarity = graph.node("Div", products, norms).output();
+                String one = graph.addFloats("one", new float[]{1.0f}, 1);
+                return graph.node("Sub", one, similarity).output();
+            }
+            default:
+                throw new IllegalArgumentException("Exporting k-means with distance " + model.getDistanceType() + " to ONNX is not supported.");
+        }
+    }
+
+    /**
+     * The names of the output columns, in id order.
+     */
+    private static List<String> outputNames(Model<?> model) {
+        List<String> names = new ArrayList<>();
+        if (model instanceof KMeansModel) {
+            int numCentroids = ((KMeansModel) model).getCentroidVectors().length;
+            for (int i = 0; i < numCentroids; i++) {
+                names.add(Integer.toString(i));
+            }
+        } else {
+            ImmutableOutputInfo<?> outputInfo = model.getOutputIDInfo();
+            for (int i = 0; i < outputInfo.size(); i++) {
+                names.add(outputName(outputInfo.getOutput(i)));
+            }
+        }
+        return names;
+    }
+
+    private static String outputName(Output<?> output) {
+        if (output instanceof Label) {
+            return ((Label) output).getLabel();
+        } else if (output instanceof Regressor) {
+            return ((Regressor) output).getNames()[0];
+        } else {
+            return output.toString();
+        }
+    }
+
+    private static int[] allTargets(int numOutputs) {
+        int[] targets = new int[numOutputs];
+        for (int i = 0; i < numOutputs; i++) {
+            targets[i] = i;
+        }
+        return targets;
+    }
+
+    /**
+     * Converts a split value into the largest float which is less than or equal to it.
+     * <p>
+     * A plain cast rounds to the nearest float, which may be above the split value, sending
+     * float feature values between the two down the less than or equal branch when Tribuo
+     * sends them down the greater than branch.
+     * @param splitValue The split value.
+     * @return The float threshold.
+     */
+    static float floatSplitValue(double splitValue) {
+        float threshold = (float) splitValue;
+        if (threshold > splitValue) {
+            threshold = Math.nextDown(threshold);
+        }
+        return threshold;
+    }
+
+    /**
+     * Accumulates the node and leaf attributes of the ONNX-ML tree ensemble operators.
+     * <p>
+     * Tribuo sends an example to the greater than branch if its feature value is strictly greater
+     * than the split value, so split nodes are written as BRANCH_LEQ with the less than or equal
+     * child as the true branch. Nodes are numbered in breadth first order within each tree.
+     * <p>
+     * ONNX thresholds are floats, so each split value is rounded down to the largest float not
+     * greater than it (see {@link #floatSplitValue}). Feature values which are exactly representable
+     * as floats then take the same branch as in Tribuo. Other feature values are rounded to float
+     * when the input tensor is built, so a value within one float ulp of a split may still take the
+     * other branch.
+     */
+    private static final class TreeEnsemble {
+        private final List<Long> treeIds = new ArrayList<>();
+        private final List<Long> nodeIds = new ArrayList<>();
+        private final List<Long> featureIds = new ArrayList<>();
+        private final List<Float> splitValues = new ArrayList<>();
+        private final List<String> modes = new ArrayList<>();
+        private final List<Long> trueIds = new ArrayList<>();
+        private final List<Long> falseIds = new ArrayList<>();
+
+        private final List<Long> leafTreeIds = new ArrayList<>();
+        private final List<Long> leafNodeIds = new ArrayList<>();
+        private final List<Long> leafTargetIds = new ArrayList<>();
+        private final List<Float> leafWeights = new ArrayList<>();
+
+        private int numTrees = 0;
+
+        /**
+         * Adds a tree to the ensemble.
+         * @param root The tree root.
+         * @param targets The target ids written by each leaf.
+         * @param leafValues Computes each leaf's value for each of the targets.
+         */
+        <T extends Output<T>> void addTree(Node<T> root, int[] targets, Function<LeafNode<T>,float[]> leafValues) {
+            long treeId = numTrees++;
+            List<Node<T>> nodes = new ArrayList<>();
+            nodes.add(root);
+            for (int i = 0; i < nodes.size(); i++) {
+                Node<T> node = nodes.get(i);
+                treeIds.add(treeId);
+                nodeIds.add((long) i);
+                if (node instanceof LeafNode) {
+                    modes.add("LEAF");
+                    featureIds.add(0L);
+                    splitValues.add(0.0f);
+                    trueIds.add(0L);
+                    falseIds.add(0L);
+                    float[] values = leafValues.apply((LeafNode<T>) node);
+                    for (int j = 0; j < targets.length; j++) {
+                        leafTreeIds.add(treeId);
+                        leafNodeIds.add((long) i);
+                        leafTargetIds.add((long) targets[j]);
+                        leafWeights.add(values[j]);
+                    }
+                } else if (node instanceof SplitNode) {
+                    SplitNode<T> split = (SplitNode<T>) node;
+                    modes.add("BRANCH_LEQ");
+                    featureIds.add((long) split.getFeatureID());
+                    splitValues.add(floatSplitValue(split.splitValue()));
+                    trueIds.add((long) nodes.size());
+                    nodes.add(split.getLessThanOrEqual());
+                    falseIds.add((long) nodes.size());
+                    nodes.add(split.getGreaterThan());
+                } else {
+                    throw new IllegalArgumentException("Unexpected tree node " + node);
+                }
+            }
+        }
+
+        void writeNodes(ONNXGraph.Node node) {
+            node.attr("nodes_treeids", toLongArray(treeIds))
+                .attr("nodes_nodeids", toLongArray(nodeIds))
+                .attr("nodes_featureids", toLongArray(featureIds))
+                .attr("nodes_values", toFloatArray(splitValues))
+                .attr("nodes_modes", modes.toArray(new String[0]))
+                .attr("nodes_truenodeids", toLongArray(trueIds))
+                .attr("nodes_falsenodeids", toLongArray(falseIds));
+        }
+
+        long[] leafTreeIds() {
+            return toLongArray(leafTreeIds);
+        }
+
+        long[] leafNodeIds() {
+            return toLongArray(leafNodeIds);
+        }
+
+        long[] leafTargetIds() {
+            return toLongArray(leafTargetIds);
+        }
+
+        float[] leafWeights() {
+            return toFloatArray(leafWeights);
+        }
+
+        private static long[] toLongArray(List<Long> list) {
+            long[] array = new long[list.size()];
+            for (int i = 0; i < array.length; i++) {
+                array[i] = list.get(i);
+            }
+            return array;
+        }
+
+        private static float[] toFloatArray(List<Float> list) {
+            float[] array = new float[list.size()];
+            for (int i = 0; i < array.length; i++) {
+                array[i] = list.get(i);
+            }
+            return array;
+        }
+    }
+}
@@ -0,0 +1,343 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.tribuo.interop.onnx.export;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds an ONNX graph and serializes it into an ONNX {@code ModelProto}.
+ * <p>
+ * Tensor names are generated from a per graph counter, so each call to {@link #node}
+ * or the initializer methods returns a fresh name. Graph inputs and outputs are float
+ * matrices whose first dimension is a symbolic batch dimension.
+ * <p>
+ * The graph targets ONNX opset {@value #OPSET} and ONNX-ML opset {@value #ML_OPSET}.
+ */
+final class ONNXGraph {
+
+    /**
+     * The ONNX-ML operator domain, which contains the tree ensemble operators.
+     */
+    static final String ML_DOMAIN = "ai.onnx.ml";
+
+    static final long IR_VERSION = 6;
+    static final long OPSET = 11;
+    static final long ML_OPSET = 1;
+
+    private static final String BATCH_DIMENSION = "batch";
+
+    // TensorProto.DataType
+    private static final int FLOAT = 1;
+    private static final int INT64 = 7;
+
+    // AttributeProto.AttributeType
+    private static final int ATTR_FLOAT = 1;
+    private static final int ATTR_INT = 2;
+    private static final int ATTR_STRING = 3;
+    private static final int ATTR_FLOATS = 6;
+    private static final int ATTR_INTS = 7;
+    private static final int ATTR_STRINGS = 8;
+
+    private final String name;
+    private final List<ProtoWriter> inputs = new ArrayList<>();
+    private final List<ProtoWriter> outputs = new ArrayList<>();
+    private final List<ProtoWriter> initializers = new ArrayList<>();
+    private final List<Node> nodes = new ArrayList<>();
+    private int counter = 0;
+
+    /**
+     * Creates an empty graph.
+     * @param name The graph name.
+     */
+    ONNXGraph(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Adds a float input of shape [batch, numColumns].
+     * @param inputName The input name.
+     * @param numColumns The number of columns.
+     */
+    void addInput(String inputName, long numColumns) {
+        inputs.add(valueInfo(inputName, numColumns));
+    }
+
+    /**
+     * Exposes a tensor as a float output of shape [batch, numColumns].
+     * @param tensorName The name of the tensor to output.
+     * @param outputName The name of the graph output.
+     * @param numColumns The number of columns.
+     */
+    void addOutput(String tensorName, String outputName, long numColumns) {
+        nodes.add(new Node(freshName("Identity"), "", "Identity", new String[]{tensorName}, new String[]{outputName}));
+        outputs.add(valueInfo(outputName, numColumns));
+    }
+
+    /**
+     * Adds a float constant to the graph.
+     * @param prefix The prefix of the tensor name.
+     * @param values The values in row major order.
+     * @param dims The tensor shape.
+     * @return The tensor name.
+     */
+    String addFloats(String prefix, float[] values, long... dims) {
+        String tensorName = freshName(prefix);
+        ProtoWriter tensor = tensorHeader(tensorName, FLOAT, values.length, dims);
+        tensor.writePackedFloats(4, values);
+        initializers.add(tensor);
+        return tensorName;
+    }
+
+    /**
+     * Adds an int64 constant to the graph.
+     * @param prefix The prefix of the tensor name.
+     * @param values The values in row major order.
+     * @param dims The tensor shape.
+     * @return The tensor name.
+     */
+    String addLongs(String prefix, long[] values, long... dims) {
+        String tensorName = freshName(prefix);
+        ProtoWriter tensor = tensorHeader(tensorName, INT64, values.length, dims);
+        tensor.writePackedInts(7, values);
+        initializers.add(tensor);
+        return tensorName;
+    }
+
+    /**
+     * Adds a node from the default operator domain with a single output.
+     * @param opType The operator.
+     * @param nodeInputs The input tensor names.
+     * @return The node, which can be used to set attributes and read the output name.
+     */
+    Node node(String opType, String... nodeInputs) {
+        return node("", opType, nodeInputs, 1);
+    }
+
+    /**
+     * Adds a node.
+     * @param domain The operator domain, the empty string is the default ONNX domain.
+     * @param opType The operator.
+     * @param nodeInputs The input tensor names.
+     * @param numOutputs The number of outputs.
+     * @return The node, which can be used to set attributes and read the output names.
+     */
+    Node node(String domain, String opType, String[] nodeInputs, int numOutputs) {
+        String[] nodeOutputs = new String[numOutputs];
+        for (int i = 0; i < numOutputs; i++) {
+            nodeOutputs[i] = freshName(opType.toLowerCase());
+        }
+        Node node = new Node(freshName(opType), domain, opType, nodeInputs, nodeOutputs);
+        nodes.add(node);
+        return node;
+    }
+
+    /**
+     * Serializes this graph into an ONNX model.
+     * @param producerName The producer name.
+     * @param producerVersion The producer version.
+     * @param domain The model domain.
+     * @param modelVersion The model version.
+     * @param docString The model description.
+     * @param metadata The metadata properties.
+     * @return The serialized {@code ModelProto}.
+     */
+    byte[] toModelProto(String producerName, String producerVersion, String domain,
+                        long modelVersion, String docString, Map<String,String> metadata) {
+        ProtoWriter graph = new ProtoWriter();
+        for (Node n : nodes) {
+            graph.writeMessage(1, n.toProto());
+        }
+        graph.writeString(2, name);
+        for (ProtoWriter t : initializers) {
+            graph.writeMessage(5, t);
+        }
+        for (ProtoWriter i : inputs) {
+            graph.writeMessage(11, i);
+        }
+        for (ProtoWriter o : outputs) {
+            graph.writeMessage(12, o);
+        }
+
+        ProtoWriter model = new ProtoWriter();
+        model.writeInt(1, IR_VERSION);
+        model.writeString(2, producerName);
+        model.writeString(3, producerVersion);
+        model.writeString(4, domain);
+        model.writeInt(5, modelVersion);
+        model.writeString(6, docString);
+        model.writeMessage(7, graph);
+        model.writeMessage(8, opset("", OPSET));
+        model.writeMessage(8, opset(ML_DOMAIN, ML_OPSET));
+        for (Map.Entry<String,String> e : metadata.entrySet()) {
+            ProtoWriter entry = new ProtoWriter();
+            entry.writeString(1, e.getKey());
+            entry.writeString(2, e.getValue());
+            model.writeMessage(14, entry);
+        }
+        return model.toByteArray();
+    }
+
+    private String freshName(String prefix) {
+        return prefix + "_" + counter++;
+    }
+
+    private static ProtoWriter opset(String domain, long version) {
+        ProtoWriter opset = new ProtoWriter();
+        opset.writeString(1, domain);
+        opset.writeInt(2, version);
+        return opset;
+    }
+
+    private static ProtoWriter tensorHeader(String tensorName, int dataType, int numValues, long[] dims) {
+        long size = 1;
+        for (long d : dims) {
+            size *= d;
+        }
+        if (size != numValues) {
+            throw new IllegalArgumentException("Tensor " + tensorName + " has " + numValues + " values, but its shape requires " + size);
+        }
+        ProtoWriter tensor = new ProtoWriter();
+        tensor.writePackedInts(1, dims);
+        tensor.writeInt(2, dataType);
+        tensor.writeString(8, tensorName);
+        return tensor;
+    }
+
+    private static ProtoWriter valueInfo(String valueName, long numColumns) {
+        ProtoWriter batchDim = new ProtoWriter();
+        batchDim.writeString(2, BATCH_DIMENSION);
+        ProtoWriter columnDim = new ProtoWriter();
+        columnDim.writeInt(1, numColumns);
+        ProtoWriter shape = new ProtoWriter();
+        shape.writeMessage(1, batchDim);
+        shape.writeMessage(1, columnDim);
+
+        ProtoWriter tensorType = new ProtoWriter();
+        tensorType.writeInt(1, FLOAT);
+        tensorType.writeMessage(2, shape);
+        ProtoWriter type = new ProtoWriter();
+        type.writeMessage(1, tensorType);
+
+        ProtoWriter info = new ProtoWriter();
+        info.writeString(1, valueName);
+        info.writeMessage(2, type);
+        return info;
+    }
+
+    /**
+     * A node in the graph.
+     */
+    static final class Node {
+        private final String name;
+        private final String domain;
+        private final String opType;
+        private final String[] inputs;
+        private final String[] outputs;
+        private final List<ProtoWriter> attributes = new ArrayList<>();
+
+        private Node(String name, String domain, String opType, String[] inputs, String[] outputs) {
+            this.name = name;
+            this.domain = domain;
+            this.opType = opType;
+            this.inputs = inputs;
+            this.outputs = outputs;
+        }
+
+        /**
+         * Returns the name of the first output.
+         * @return The output name.
+         */
+        String output() {
+            return outputs[0];
+        }
+
+        /**
+         * Returns the name of the specified output.
+         * @param i The output index.
+         * @return The output name.
+         */
+        String output(int i) {
+            return outputs[i];
+        }
+
+        Node attr(String attrName, long value) {
+            ProtoWriter attr = attribute(attrName, ATTR_INT);
+            attr.writeInt(3, value);
+            return this;
+        }
+
+        Node attr(String attrName, float value) {
+            ProtoWriter attr = attribute(attrName, ATTR_FLOAT);
+            attr.writeFloat(2, value);
+            return this;
+        }
+
+        Node attr(String attrName, String value) {
+            ProtoWriter attr = attribute(attrName, ATTR_STRING);
+            attr.writeString(4, value);
+            return this;
+        }
+
+        Node attr(String attrName, long[] values) {
+            ProtoWriter attr = attribute(attrName, ATTR_INTS);
+            attr.writePackedInts(8, values);
+            return this;
+        }
+
+        Node attr(String attrName, float[] values) {
+            ProtoWriter attr = attribute(attrName, ATTR_FLOATS);
+            attr.writePackedFloats(7, values);
+            return this;
+        }
+
+        Node attr(String attrName, String[] values) {
+            ProtoWriter attr = attribute(attrName, ATTR_STRINGS);
+            for (String s : values) {
+                attr.writeBytes(9, s.getBytes(StandardCharsets.UTF_8));
+            }
+            return this;
+        }
+
+        private ProtoWriter attribute(String attrName, int type) {
+            ProtoWriter attr = new ProtoWriter();
+            attr.writeString(1, attrName);
+            attr.writeInt(20, type);
+            attributes.add(attr);
+            return attr;
+        }
+
+        private ProtoWriter toProto() {
+            ProtoWriter node = new ProtoWriter();
+            for (String i : inputs) {
+                node.writeString(1, i);
+            }
+            for (String o : outputs) {
+                node.writeString(2, o);
+            }
+            node.writeString(3, name);
+            node.writeString(4, opType);
+            for (ProtoWriter a : attributes) {
+                node.writeMessage(5, a);
+            }
+            node.writeString(7, domain);
+            return node;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.tribuo.interop.onnx.export;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A minimal protocol buffers encoder, sufficient to write the ONNX message types.
+ * <p>
+ * Fields are written in the order the methods are called, and repeated numeric fields
+ * are written in the packed encoding, which all protobuf parsers accept.
+ */
+final class ProtoWriter {
+
+    private static final int VARINT = 0;
+    private static final int LENGTH_DELIMITED = 2;
+    private static final int FIXED32 = 5;
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    /**
+     * Writes an int32, int64 or enum field.
+     * @param field The field number.
+     * @param value The value.
+     */
+    void writeInt(int field, long value) {
+        writeTag(field, VARINT);
+        writeVarint(value);
+    }
+
+    /**
+     * Writes a float field.
+     * @param field The field number.
+     * @param value The value.
+     */
+    void writeFloat(int field, float value) {
+        writeTag(field, FIXED32);
+        writeFixed32(Float.floatToIntBits(value));
+    }
+
+    /**
+     * Writes a string field in UTF-8.
+     * @param field The field number.
+     * @param value The value.
+     */
+    void writeString(int field, String value) {
+        writeBytes(field, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Writes a bytes field.
+     * @param field The field number.
+     * @param value The value.
+     */
+    void writeBytes(int field, byte[] value) {
+        writeTag(field, LENGTH_DELIMITED);
+        writeVarint(value.length);
+        out.write(value, 0, value.length);
+    }
+
+    /**
+     * Writes a nested message field.
+     * @param field The field number.
+     * @param message The nested message.
+     */
+    void writeMessage(int field, ProtoWriter message) {
+        writeBytes(field, message.toByteArray());
+    }
+
+    /**
+     * Writes a packed repeated float field.
+     * @param field The field number.
+     * @param values The values.
+     */
+    void writePackedFloats(int field, float[] values) {
+        writeTag(field, LENGTH_DELIMITED);
+        writeVarint(values.length * 4L);
+        for (float f : values) {
+            writeFixed32(Float.floatToIntBits(f));
+        }
+    }
+
+    /**
+     * Writes a packed repeated int32 or int64 field.
+     * @param field The field number.
+     * @param values The values.
+     */
+    void writePackedInts(int field, long[] values) {
+        ProtoWriter packed = new ProtoWriter();
+        for (long l : values) {
+            packed.writeVarint(l);
+        }
+        writeBytes(field, packed.toByteArray());
+    }
+
+    /**
+     * Returns the encoded message.
+     * @return The message bytes.
+     */
+    byte[] toByteArray() {
+        return out.toByteArray();
+    }
+
+    private void writeTag(int field, int wireType) {
+        writeVarint(((long) field << 3) | wireType);
+    }
+
+    private void writeVarint(long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private void writeFixed32(int value) {
+        out.write(value & 0xFF);
+        out.write((value >>> 8) & 0xFF);
+        out.write((value >>> 16) & 0xFF);
+        out.write((value >>> 24) & 0xFF);
+    }
+}
@@ -0,0 +1,25 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * This package contains an exporter which writes Tribuo models in the ONNX format.
+ * <p>
+ * Exported models can be deployed on the ONNX Runtime, or loaded back into Tribuo
+ * using {@code org.tribuo.interop.onnx.ONNXExternalModel}.
+ * <p>
+ * N.B. ONNX support is experimental, and may change without a major version bump.
+ */
+package org.tribuo.interop.onnx.export;
@@ -0,0 +1,270 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.tribuo.interop.onnx.export;
+
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+import com.oracle.labs.mlrg.olcut.util.Pair;
+import org.junit.jupiter.api.Test;
+import org.tribuo.Dataset;
+import org.tribuo.ImmutableFeatureMap;
+import org.tribuo.Model;
+import org.tribuo.MutableDataset;
+import org.tribuo.Output;
+import org.tribuo.OutputFactory;
+import org.tribuo.Prediction;
+import org.tribuo.Trainer;
+import org.tribuo.classification.Label;
+import org.tribuo.classification.LabelFactory;
+import org.tribuo.classification.baseline.DummyClassifierTrainer;
+import org.tribuo.classification.dtree.CARTClassificationTrainer;
+import org.tribuo.classification.ensemble.FullyWeightedVotingCombiner;
+import org.tribuo.classification.ensemble.VotingCombiner;
+import org.tribuo.classification.example.LabelledDataGenerator;
+import org.tribuo.classification.liblinear.LibLinearClassificationTrainer;
+import org.tribuo.classification.liblinear.LinearClassificationType;
+import org.tribuo.classification.sgd.linear.LinearSGDTrainer;
+import org.tribuo.classification.sgd.linear.LogisticRegressionTrainer;
+import org.tribuo.classification.sgd.objectives.Hinge;
+import org.tribuo.clustering.ClusterID;
+import org.tribuo.clustering.ClusteringFactory;
+import org.tribuo.clustering.example.ClusteringDataGenerator;
+import org.tribuo.clustering.kmeans.KMeansTrainer;
+import org.tribuo.ensemble.BaggingTrainer;
+import org.tribuo.impl.ArrayExample;
+import org.tribuo.interop.onnx.ClusterIDTransformer;
+import org.tribuo.interop.onnx.DenseTransformer;
+import org.tribuo.interop.onnx.LabelTransformer;
+import org.tribuo.interop.onnx.ONNXExternalModel;
+import org.tribuo.interop.onnx.OutputTransformer;
+import org.tribuo.interop.onnx.RegressorTransformer;
+import org.tribuo.math.optimisers.AdaGrad;
+import org.tribuo.provenance.SimpleDataSourceProvenance;
+import org.tribuo.regression.RegressionFactory;
+import org.tribuo.regression.Regressor;
+import org.tribuo.regression.ensemble.AveragingCombiner;
+import org.tribuo.regression.example.RegressionDataGenerator;
+import org.tribuo.regression.liblinear.LibLinearRegressionTrainer;
+import org.tribuo.regression.rtree.CARTJointRegressionTrainer;
+import org.tribuo.regression.rtree.CARTRegressionTrainer;
+import org.tribuo.regression.sgd.objectives.SquaredLoss;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestONNXExporter {
+
+    private static final LabelFactory labelFactory = new LabelFactory();
+    private static final RegressionFactory regressionFactory = new RegressionFactory();
+    private static final ClusteringFactory clusteringFactory = new ClusteringFactory();
+
+    private static final double TOLERANCE = 1e-4;
+
+    @Test
+    public void testLinearSGD() throws IOException, OrtException {
+        Pair<Dataset<Label>,Dataset<Label>> labelData = LabelledDataGenerator.denseTrainTest();
+        checkClassification(new LogisticRegressionTrainer().train(labelData.getA()), labelData.getB());
+        checkClassification(new LinearSGDTrainer(new Hinge(), new AdaGrad(0.1,0.1), 5, Trainer.DEFAULT_SEED).train(labelData.getA()), labelData.getB());
+
+        Pair<Dataset<Regressor>,Dataset<Regressor>> regressionData = RegressionDataGenerator.multiDimDenseTrainTest();
+        org.tribuo.regression.sgd.linear.LinearSGDTrainer regressionTrainer =
+                new org.tribuo.regression.sgd.linear.LinearSGDTrainer(new SquaredLoss(), new AdaGrad(0.1,0.1), 5, Trainer.DEFAULT_SEED);
+        checkRegression(regressionTrainer.train(regressionData.getA()), regressionData.getB());
+    }
+
+    @Test
+    public void testLibLinear() throws IOException, OrtException {
+        Pair<Dataset<Label>,Dataset<Label>> labelData = LabelledDataGenerator.denseTrainTest();
+        checkClassification(new LibLinearClassificationTrainer().train(labelData.getA()), labelData.getB());
+        LibLinearClassificationTrainer logistic = new LibLinearClassificationTrainer(
+                new LinearClassificationType(LinearClassificationType.LinearType.L2R_LR), 1.0, 0.01);
+        checkClassification(logistic.train(labelData.getA()), labelData.getB());
+
+        // Binary models have a single weight vector.
+        Pair<Dataset<Label>,Dataset<Label>> binaryData = LabelledDataGenerator.binarySparseTrainTest();
+        checkClassification(new LibLinearClassificationTrainer().train(binaryData.getA()), binaryData.getB());
+        checkClassification(logistic.train(binaryData.getA()), binaryData.getB());
+
+        Pair<Dataset<Regressor>,Dataset<Regressor>> regressionData = RegressionDataGenerator.multiDimDenseTrainTest();
+        checkRegression(new LibLinearRegressionTrainer().train(regressionData.getA()), regressionData.getB());
+    }
+
+    @Test
+    public void testTrees() throws IOException, OrtException {
+        Pair<Dataset<Label>,Dataset<Label>> labelData = LabelledDataGenerator.sparseTrainTest();
+        checkClassification(new CARTClassificationTrainer().train(labelData.getA()), labelData.getB());
+
+        Pair<Dataset<Regressor>,Dataset<Regressor>> regressionData = RegressionDataGenerator.multiDimSparseTrainTest();
+        checkRegression(new CARTRegressionTrainer().train(regressionData.getA()), regressionData.getB());
+        checkRegression(new CARTJointRegressionTrainer().train(regressionData.getA()), regressionData.getB());
+    }
+
+    @Test
+    public void testFloatSplitValues() throws IOException, OrtException {
+        double split = (0.1 + 0.2) / 2.0;
+        // The nearest float is above the split, so a plain cast would flip the comparison.
+        assertTrue((float) split > split);
+        float threshold = ONNXExporter.floatSplitValue(split);
+        assertTrue(threshold <= split);
+        assertTrue(Math.nextUp(threshold) > split);
+        assertEquals(0.5f, ONNXExporter.floatSplitValue(0.5));
+        assertEquals(Float.MAX_VALUE, ONNXExporter.floatSplitValue(Double.MAX_VALUE));
+
+        // CART splits between 0.1 and 0.2, and the test features straddle the float nearest that split.
+        MutableDataset<Regressor> train = new MutableDataset<>(new SimpleDataSourceProvenance("threshold-train", regressionFactory), regressionFactory);
+        for (int i = 0; i < 10; i++) {
+            train.add(new ArrayExample<>(new Regressor("y", 0.0), new String[]{"x"}, new double[]{0.1}));
+            train.add(new ArrayExample<>(new Regressor("y", 1.0), new String[]{"x"}, new double[]{0.2}));
+        }
+        MutableDataset<Regressor> test = new MutableDataset<>(new SimpleDataSourceProvenance("threshold-test", regressionFactory), regressionFactory);
+        for (float x : new float[]{0.1f, threshold, Math.nextUp(threshold), (float) split, 0.2f}) {
+            test.add(new ArrayExample<>(new Regressor("y", 0.0), new String[]{"x"}, new double[]{x}));
+        }
+        Model<Regressor> model = new CARTRegressionTrainer().train(train);
+        assertEquals(1.0, model.predict(test.getExample(3)).getOutput().getValues()[0]);
+        checkRegression(model, test);
+    }
+
+    @Test
+    public void testEnsembles() throws IOException, OrtException {
+        // Bagged members see a subset of the features, which the export has to select from the input.
+        Pair<Dataset<Label>,Dataset<Label>> labelData = LabelledDataGenerator.sparseTrainTest();
+        checkClassification(new BaggingTrainer<>(new CARTClassificationTrainer(), new VotingCombiner(), 5).train(labelData.getA()), labelData.getB());
+        checkClassification(new BaggingTrainer<>(new LogisticRegressionTrainer(), new FullyWeightedVotingCombiner(), 3).train(labelData.getA()), labelData.getB());
+
+        Pair<Dataset<Regressor>,Dataset<Regressor>> regressionData = RegressionDataGenerator.multiDimSparseTrainTest();
+        checkRegression(new BaggingTrainer<>(new CARTRegressionTrainer(), new AveragingCombiner(), 5).train(regressionData.getA()), regressionData.getB());
+    }
+
+    @Test
+    public void testKMeans() throws IOException, OrtException {
+        Pair<Dataset<ClusterID>,Dataset<ClusterID>> data = ClusteringDataGenerator.denseTrainTest();
+        for (KMeansTrainer.Distance distance : KMeansTrainer.Distance.values()) {
+            Model<ClusterID> model = new KMeansTrainer(4, 10, distance, 1, Trainer.DEFAULT_SEED).train(data.getA());
+            Map<ClusterID,Integer> outputMapping = new HashMap<>();
+            for (int i = 0; i < 4; i++) {
+                outputMapping.put(new ClusterID(i), i);
+            }
+            ONNXExternalModel<ClusterID> onnxModel = roundTrip(model, clusteringFactory, outputMapping, new ClusterIDTransformer());
+            List<Prediction<ClusterID>> expected = model.predict(data.getB());
+            List<Prediction<ClusterID>> actual = onnxModel.predict(data.getB());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.get(i).getOutput().getID(), actual.get(i).getOutput().getID(), distance.toString());
+            }
+        }
+    }
+
+    @Test
+    public void testMetadata() throws OrtException {
+        Pair<Dataset<Label>,Dataset<Label>> data = LabelledDataGenerator.denseTrainTest();
+        Model<Label> model = new LogisticRegressionTrainer().train(data.getA());
+        byte[] bytes = ONNXExporter.exportModel(model, "org.tribuo.test", 3);
+        try (OrtEnvironment env = OrtEnvironment.getEnvironment();
+             OrtSession session = env.createSession(bytes, new OrtSession.SessionOptions())) {
+            Map<String,String> metadata = session.getMetadata().getCustomMetadata();
+            ImmutableFeatureMap featureMap = model.getFeatureIDMap();
+            String[] featureNames = metadata.get(ONNXExporter.FEATURE_NAMES_KEY).split("\n");
+            assertEquals(featureMap.size(), featureNames.length);
+            for (int i = 0; i < featureNames.length; i++) {
+                assertEquals(featureMap.get(i).getName(), featureNames[i]);
+            }
+            String[] outputNames = metadata.get(ONNXExporter.OUTPUT_NAMES_KEY).split("\n");
+            for (int i = 0; i < outputNames.length; i++) {
+                assertEquals(model.getOutputIDInfo().getOutput(i).getLabel(), outputNames[i]);
+            }
+            assertEquals(3, session.getMetadata().getVersion());
+            assertEquals(ONNXExporter.INPUT_NAME, session.getInputNames().iterator().next());
+            assertEquals(ONNXExporter.OUTPUT_NAME, session.getOutputNames().iterator().next());
+        }
+    }
+
+    @Test
+    public void testUnsupported() {
+        Pair<Dataset<Label>,Dataset<Label>> data = LabelledDataGenerator.denseTrainTest();
+        Model<Label> model = DummyClassifierTrainer.createUniformTrainer(Trainer.DEFAULT_SEED).train(data.getA());
+        assertThrows(IllegalArgumentException.class, () -> ONNXExporter.exportModel(model, "org.tribuo.test", 1));
+    }
+
+    private static void checkClassification(Model<Label> model, Dataset<Label> test) throws IOException, OrtException {
+        Map<Label,Integer> outputMapping = new HashMap<>();
+        for (Pair<Integer,Label> p : model.getOutputIDInfo()) {
+            outputMapping.put(p.getB(), p.getA());
+        }
+        ONNXExternalModel<Label> onnxModel = roundTrip(model, labelFactory, outputMapping, new LabelTransformer());
+        List<Prediction<Label>> expected = model.predict(test);
+        List<Prediction<Label>> actual = onnxModel.predict(test);
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Prediction<Label> e = expected.get(i);
+            Prediction<Label> a = actual.get(i);
+            assertEquals(e.getOutput().getLabel(), a.getOutput().getLabel(), model.getClass().getName());
+            for (Map.Entry<String,Label> score : e.getOutputScores().entrySet()) {
+                assertEquals(score.getValue().getScore(), a.getOutputScores().get(score.getKey()).getScore(), TOLERANCE, model.getClass().getName());
+            }
+        }
+    }
+
+    private static void checkRegression(Model<Regressor> model, Dataset<Regressor> test) throws IOException, OrtException {
+        Map<Regressor,Integer> outputMapping = new HashMap<>();
+        for (Pair<Integer,Regressor> p : model.getOutputIDInfo()) {
+            outputMapping.put(p.getB(), p.getA());
+        }
+        ONNXExternalModel<Regressor> onnxModel = roundTrip(model, regressionFactory, outputMapping, new RegressorTransformer());
+        List<Prediction<Regressor>> expected = model.predict(test);
+        List<Prediction<Regressor>> actual = onnxModel.predict(test);
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Regressor e = expected.get(i).getOutput();
+            Regressor a = actual.get(i).getOutput();
+            assertArrayEquals(e.getNames(), a.getNames());
+            double[] expectedValues = e.getValues();
+            double[] actualValues = a.getValues();
+            for (int j = 0; j < expectedValues.length; j++) {
+                assertEquals(expectedValues[j], actualValues[j], TOLERANCE * Math.max(1.0, Math.abs(expectedValues[j])), model.getClass().getName());
+            }
+        }
+    }
+
+    private static <T extends Output<T>> ONNXExternalModel<T> roundTrip(Model<T> model, OutputFactory<T> factory,
+                                                                        Map<T,Integer> outputMapping,
+                                                                        OutputTransformer<T> outputTransformer) throws IOException, OrtException {
+        Path path = Files.createTempFile("tribuo-onnx-export", ".onnx");
+        // The environment loads the native library, so it must exist before the session options are created.
+        try (OrtEnvironment env = OrtEnvironment.getEnvironment()) {
+            ONNXExporter.exportModel(model, "org.tribuo.test", 1, path);
+            Map<String,Integer> featureMapping = new HashMap<>();
+            ImmutableFeatureMap featureMap = model.getFeatureIDMap();
+            for (int i = 0; i < featureMap.size(); i++) {
+                featureMapping.put(featureMap.get(i).getName(), i);
+            }
+            return ONNXExternalModel.createOnnxModel(factory, featureMapping, outputMapping, new DenseTransformer(),
+                    outputTransformer, new OrtSession.SessionOptions(), path, ONNXExporter.INPUT_NAME);
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+}
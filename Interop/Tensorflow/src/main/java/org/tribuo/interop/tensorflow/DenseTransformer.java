@@ -26,6 +26,8 @@ import org.tribuo.math.la.SparseVector;
 import org.tribuo.math.la.VectorTuple;
 import org.tensorflow.Tensor;
 
+import java.nio.FloatBuffer;
+import java.util.Collections;
 import java.util.List;
 import java.util.logging.Logger;
 
@@ -50,75 +52,100 @@ public class DenseTransformer<T extends Output<T>> implements ExampleTransformer
 
     public DenseTransformer() { }
 
-    float[] innerTransform(Example<T> example, ImmutableFeatureMap featureIDMap) {
+    /**
+     * Writes the example into the array, starting at the offset. Implicitly pads unseen values with zero.
+     * @param example The example to write.
+     * @param featureIDMap The feature id mapping to use.
+     * @param output The array to write to, which must be zeroed.
+     * @param offset The start of the example in the array.
+     */
+    private void write(Example<T> example, ImmutableFeatureMap featureIDMap, float[] output, int offset) {
         if ((warningCount < WARNING_THRESHOLD) && (featureIDMap.size() > THRESHOLD)) {
             logger.warning("Large dense example requested, featureIDMap.size() = " + featureIDMap.size() + ", example.size() = " + example.size());
             warningCount++;
         }
-        float[] output = new float[featureIDMap.size()];
 
         for (Feature f : example) {
             int id = featureIDMap.getID(f.getName());
             if (id > -1) {
-                output[id] = (float) f.getValue();
+                output[offset + id] = (float) f.getValue();
             }
         }
-
-        return output;
     }
 
-    float[] innerTransform(SparseVector vector) {
+    /**
+     * Writes the vector into the array, starting at the offset. Implicitly pads unseen values with zero.
+     * @param vector The vector to write.
+     * @param output The array to write to, which must be zeroed.
+     * @param offset The start of the vector in the array.
+     */
+    private void write(SparseVector vector, float[] output, int offset) {
         if ((warningCount < WARNING_THRESHOLD) && (vector.size() > THRESHOLD)) {
             logger.warning("Large dense example requested, dimension = " + vector.size() + ", numActiveElements = " + vector.numActiveElements());
             warningCount++;
         }
-        float[] output = new float[vector.size()];
 
         for (VectorTuple f : vector) {
-            output[f.index] = (float) f.value;
+            output[offset + f.index] = (float) f.value;
         }
-
-        return output;
     }
 
     @Override
     public Tensor<?> transform(Example<T> example, ImmutableFeatureMap featureIDMap) {
-        float[][] output = new float[1][];
-        output[0] = innerTransform(example,featureIDMap);
-        return Tensor.create(output);
+        return transform(Collections.singletonList(example),featureIDMap);
     }
 
+    /**
+     * Converts a batch of examples into a single [batchSize, numFeatures] tensor.
+     * <p>
+     * The examples are written into a reused per thread buffer, which the tensor copies.
+     * @param examples The examples to transform.
+     * @param featureIDMap The feature id mapping to use.
+     * @return A 2d float tensor.
+     */
     @Override
     public Tensor<?> transform(List<Example<T>> examples, ImmutableFeatureMap featureIDMap) {
-        float[][] output = new float[examples.size()][];
+        int numFeatures = featureIDMap.size();
+        FloatBuffer buffer = TensorflowUtil.getFloatBuffer(examples.size() * numFeatures);
+        float[] array = buffer.array();
 
         int i = 0;
         for (Example<T> example : examples) {
-            output[i] = innerTransform(example,featureIDMap);
+            write(example,featureIDMap,array,i * numFeatures);
             i++;
         }
 
-        return Tensor.create(output);
+        return Tensor.create(new long[]{examples.size(),numFeatures},buffer);
     }
 
     @Override
     public Tensor<?> transform(SparseVector vector) {
-        float[][] output = new float[1][];
-        output[0] = innerTransform(vector);
-        return Tensor.create(output);
+        return transform(Collections.singletonList(vector));
     }
 
+    /**
+     * Converts a batch of vectors into a single [batchSize, dimension] tensor.
+     * <p>
+     * The vectors are written into a reused per thread buffer, which the tensor copies.
+     * @param vectors The vectors to transform, which must all have the same dimension.
+     * @return A 2d float tensor.
+     */
     @Override
     public Tensor<?> transform(List<SparseVector> vectors) {
-        float[][] output = new float[vectors.size()][];
+        int numFeatures = vectors.isEmpty() ? 0 : vectors.get(0).size();
+        FloatBuffer buffer = TensorflowUtil.getFloatBuffer(vectors.size() * numFeatures);
+        float[] array = buffer.array();
 
         int i = 0;
         for (SparseVector vector : vectors) {
-            output[i] = innerTransform(vector);
+            if (vector.size() != numFeatures) {
+                throw new IllegalArgumentException("All vectors in a batch must have the same dimension, found " + vector.size() + " and " + numFeatures);
+            }
+            write(vector,array,i * numFeatures);
             i++;
         }
 
-        return Tensor.create(output);
+        return Tensor.create(new long[]{vectors.size(),numFeatures},buffer);
     }
 
     @Override
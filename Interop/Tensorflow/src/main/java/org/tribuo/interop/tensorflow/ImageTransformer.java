@@ -28,6 +28,8 @@ import org.tribuo.math.la.SparseVector;
 import org.tribuo.math.la.VectorTuple;
 import org.tensorflow.Tensor;
 
+import java.nio.FloatBuffer;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -79,9 +81,7 @@ public class ImageTransformer<T extends Output<T>> implements ExampleTransformer
      */
     @Override
     public Tensor<?> transform(Example<T> example, ImmutableFeatureMap featureIDMap) {
-        float[][][][] image = new float[1][][][];
-        image[0] = innerTransform(example,featureIDMap);
-        return Tensor.create(image);
+        return transform(Collections.singletonList(example),featureIDMap);
     }
 
     /**
@@ -128,42 +128,77 @@ public class ImageTransformer<T extends Output<T>> implements ExampleTransformer
     /**
      * Transform implicitly pads unseen values with zero.
      * <p>
-     * Converts a batch of examples into a Tensor.
+     * Converts a batch of examples into a Tensor. The examples are written
+     * into a reused per thread buffer, which the tensor copies.
      * @param examples The examples to transform.
      * @param featureIDMap The feature id mapping to use.
      * @return A 4d tensor, (batch-id, width, height, channels) for this example.
      */
     @Override
     public Tensor<?> transform(List<Example<T>> examples, ImmutableFeatureMap featureIDMap) {
-        float[][][][] image = new float[examples.size()][][][];
+        return Tensor.create(new long[]{examples.size(),width,height,channels},innerTransform(examples,featureIDMap));
+    }
+
+    /**
+     * Writes a batch of examples into this thread's buffer, one flattened image per example.
+     * @param examples The examples to transform.
+     * @param featureIDMap The feature id mapping to use.
+     * @return The buffer containing the images.
+     */
+    FloatBuffer innerTransform(List<Example<T>> examples, ImmutableFeatureMap featureIDMap) {
+        int imageSize = width * height * channels;
+        FloatBuffer buffer = TensorflowUtil.getFloatBuffer(examples.size() * imageSize);
+        float[] array = buffer.array();
 
         int i = 0;
         for (Example<T> example : examples) {
-            image[i] = innerTransform(example,featureIDMap);
+            int offset = i * imageSize;
+            for (Feature f : example) {
+                int id = featureIDMap.getID(f.getName());
+                if (id > -1) {
+                    array[offset + flatIndex(id)] = (float) f.getValue();
+                }
+            }
             i++;
         }
 
-        return Tensor.create(image);
+        return buffer;
     }
 
     @Override
     public Tensor<?> transform(SparseVector vector) {
-        float[][][][] image = new float[1][][][];
-        image[0] = innerTransform(vector);
-        return Tensor.create(image);
+        return transform(Collections.singletonList(vector));
     }
 
     @Override
     public Tensor<?> transform(List<SparseVector> vectors) {
-        float[][][][] image = new float[vectors.size()][][][];
+        int imageSize = width * height * channels;
+        FloatBuffer buffer = TensorflowUtil.getFloatBuffer(vectors.size() * imageSize);
+        float[] array = buffer.array();
 
         int i = 0;
         for (SparseVector vector : vectors) {
-            image[i] = innerTransform(vector);
+            int offset = i * imageSize;
+            for (VectorTuple f : vector) {
+                array[offset + flatIndex(f.index)] = (float) f.value;
+            }
             i++;
         }
 
-        return Tensor.create(image);
+        return Tensor.create(new long[]{vectors.size(),width,height,channels},buffer);
+    }
+
+    /**
+     * Converts a linearised feature id into the row-major index of
+     * the (width,height,channels) image.
+     * @param id The feature id.
+     * @return The index into the flattened image.
+     */
+    private int flatIndex(int id) {
+        int curWidth = id % width;
+        int curHeight = (id / width) % height;
+        int curChannel = id / (width * height);
+        return ((curWidth * height) + curHeight) * channels + curChannel;
     }
 
     @Override
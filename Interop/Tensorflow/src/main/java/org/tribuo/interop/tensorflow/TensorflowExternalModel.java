@@ -115,9 +115,11 @@ public final class TensorflowExternalModel<T extends Output<T>> extends External
      */
     @Override
     protected Tensor<?> externalPrediction(Tensor<?> input) {
-        Tensor<?> output = session.runner().feed(inputName,input).fetch(outputName).run().get(0);
-        input.close();
-        return output;
+        try {
+            return session.runner().feed(inputName,input).fetch(outputName).run().get(0);
+        } finally {
+            input.close();
+        }
     }
 
     /**
@@ -22,7 +22,9 @@ import org.tensorflow.OperationBuilder;
 import org.tensorflow.Session;
 import org.tensorflow.Tensor;
 
+import java.nio.FloatBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -42,6 +44,8 @@ public class TensorflowUtil {
     public static final String PLACEHOLDER = "Placeholder";
     public static final String DTYPE = "dtype";
 
+    private static final ThreadLocal<FloatBuffer> floatBuffer = ThreadLocal.withInitial(() -> FloatBuffer.allocate(0));
+
     /**
      * Creates a new primitive boolean array of up to 8 dimensions, using the supplied shape.
      * <p>
@@ -228,6 +232,28 @@ public class TensorflowUtil {
         }
     }
 
+    /**
+     * Returns this thread's scratch buffer, zeroed, with position 0 and limit {@code size}.
+     * <p>
+     * {@link Tensor#create(long[], FloatBuffer)} copies the buffer's contents, so the buffer
+     * can be refilled as soon as the tensor has been created. The buffer grows to fit the
+     * largest request made on each thread and is then reused.
+     * @param size The number of floats required.
+     * @return A zeroed float buffer.
+     */
+    static FloatBuffer getFloatBuffer(int size) {
+        FloatBuffer buffer = floatBuffer.get();
+        if (buffer.capacity() < size) {
+            buffer = FloatBuffer.allocate(size);
+            floatBuffer.set(buffer);
+        } else {
+            Arrays.fill(buffer.array(), 0, size, 0.0f);
+        }
+        buffer.clear();
+        buffer.limit(size);
+        return buffer;
+    }
+
     /**
      * Closes a list of {@link Tensor}s.
      *
@@ -23,6 +23,7 @@ import org.tribuo.Output;
 import org.tribuo.Prediction;
 import org.tribuo.interop.tensorflow.TensorflowUtil;
 import org.tribuo.provenance.ModelProvenance;
+import org.tribuo.sequence.SequenceDataset;
 import org.tribuo.sequence.SequenceExample;
 import org.tribuo.sequence.SequenceModel;
 import org.tensorflow.Graph;
@@ -31,6 +32,7 @@ import org.tensorflow.Tensor;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -51,6 +53,8 @@ public class TensorflowSequenceModel<T extends Output<T>> extends SequenceModel<
     protected final String initOp;
     protected final String predictOp;
 
+    private int batchSize;
+
     TensorflowSequenceModel(String name,
                                    ModelProvenance description,
                                    ImmutableFeatureMap featureIDMap,
@@ -60,13 +64,15 @@ public class TensorflowSequenceModel<T extends Output<T>> extends SequenceModel<
                                    SequenceOutputTransformer<T> outputTransformer,
                                    String initOp,
                                    String predictOp,
-                                   Map<String, Object> tensorMap
+                                   Map<String, Object> tensorMap,
+                                   int batchSize
     ) {
         super(name, description, featureIDMap, outputIDMap);
         this.exampleTransformer = exampleTransformer;
         this.outputTransformer = outputTransformer;
         this.initOp = initOp;
         this.predictOp = predictOp;
+        this.batchSize = batchSize;
         this.modelGraph = new Graph();
         this.modelGraph.importGraphDef(graphDef);
         this.session = new Session(modelGraph);
@@ -79,22 +85,115 @@ public class TensorflowSequenceModel<T extends Output<T>> extends SequenceModel<
     @Override
     public List<Prediction<T>> predict(SequenceExample<T> example) {
         Map<String, Tensor<?>> feed = exampleTransformer.encode(example, featureIDMap);
+        try (Tensor<?> outputTensor = run(feed)) {
+            return outputTransformer.decode(outputTensor, example, outputIDMap);
+        } finally {
+            closeFeed(feed);
+        }
+    }
+
+    /**
+     * Predicts the examples in batches of {@link #getBatchSize()} sequences, feeding
+     * each batch to Tensorflow in a single run.
+     * <p>
+     * Packing variable length sequences into a batch (i.e., padding and masking) is
+     * performed by the {@link SequenceExampleTransformer}, and unpacking them by the
+     * {@link SequenceOutputTransformer}. Batching is opt-in, models are created with a
+     * batch size of one, which predicts each sequence separately. Set a larger batch size
+     * with {@link #setBatchSize} only if the transformers pad and mask variable length
+     * sequences, as otherwise a batch's predictions may differ from per-sequence predictions.
+     * @param examples the examples to predict.
+     * @return The predictions, in the same order as the examples.
+     */
+    @Override
+    public List<List<Prediction<T>>> predict(Iterable<SequenceExample<T>> examples) {
+        if (batchSize < 2) {
+            return super.predict(examples);
+        }
+        List<List<Prediction<T>>> predictions = new ArrayList<>();
+        List<SequenceExample<T>> batchExamples = new ArrayList<>(batchSize);
+        for (SequenceExample<T> example : examples) {
+            batchExamples.add(example);
+            if (batchExamples.size() == batchSize) {
+                predictions.addAll(predictBatch(batchExamples));
+                // clear the batch
+                batchExamples.clear();
+            }
+        }
+
+        if (!batchExamples.isEmpty()) {
+            // send the partial batch
+            predictions.addAll(predictBatch(batchExamples));
+        }
+        return predictions;
+    }
+
+    /**
+     * Predicts the dataset in batches, see {@link #predict(Iterable)}.
+     * @param examples the dataset to predict.
+     * @return The predictions, in the same order as the examples.
+     */
+    @Override
+    public List<List<Prediction<T>>> predict(SequenceDataset<T> examples) {
+        return predict((Iterable<SequenceExample<T>>) examples);
+    }
+
+    private List<List<Prediction<T>>> predictBatch(List<SequenceExample<T>> batchExamples) {
+        Map<String, Tensor<?>> feed = exampleTransformer.encode(batchExamples, featureIDMap);
+        try (Tensor<?> outputTensor = run(feed)) {
+            List<List<Prediction<T>>> predictions = outputTransformer.decode(outputTensor, batchExamples, outputIDMap);
+            if (predictions.size() != batchExamples.size()) {
+                throw new IllegalStateException("Output transformer returned " + predictions.size() + " predictions for a batch of " + batchExamples.size() + " examples.");
+            }
+            return predictions;
+        } finally {
+            closeFeed(feed);
+        }
+    }
+
+    /**
+     * Feeds the tensors into the session and fetches the prediction op.
+     * @param feed The feed dict.
+     * @return The output tensor.
+     */
+    private Tensor<?> run(Map<String, Tensor<?>> feed) {
         Session.Runner runner = session.runner();
         for (Map.Entry<String, Tensor<?>> item : feed.entrySet()) {
             runner.feed(item.getKey(), item.getValue());
         }
-        Tensor<?> outputTensor = runner
-                .fetch(predictOp)
-                .run()
-                .get(0);
-        List<Prediction<T>> prediction = outputTransformer.decode(outputTensor, example, outputIDMap);
-        //
-        // Close all the open tensors
-        outputTensor.close();
+        return runner.fetch(predictOp).run().get(0);
+    }
+
+    /**
+     * Closes all the tensors in the feed dict.
+     * @param feed The feed dict.
+     */
+    private static void closeFeed(Map<String, Tensor<?>> feed) {
         for (Tensor<?> tensor : feed.values()) {
             tensor.close();
         }
-        return prediction;
+    }
+
+    /**
+     * Gets the current testing batch size.
+     * @return The batch size.
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Sets a new batch size.
+     * <p>
+     * Throws {@link IllegalArgumentException} if the batch size isn't positive.
+     * @param batchSize The batch size to use.
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize > 0) {
+            this.batchSize = batchSize;
+        } else {
+            throw new IllegalArgumentException("Batch size must be positive, found " + batchSize);
+        }
     }
 
     /**
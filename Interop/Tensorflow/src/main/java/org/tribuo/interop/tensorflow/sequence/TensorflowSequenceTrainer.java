@@ -222,7 +222,8 @@ public class TensorflowSequenceTrainer<T extends Output<T>> implements SequenceT
                     outputTransformer,
                     initOp,
                     predictOp,
-                    tensorMap
+                    tensorMap,
+                    1
             );
 
         } catch (TensorFlowException e) {
@@ -23,6 +23,11 @@ import org.tribuo.impl.ArrayExample;
 import org.tribuo.test.MockOutput;
 import org.junit.jupiter.api.Test;
 
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
 /**
@@ -136,4 +141,42 @@ public class ImageTransformerTest {
         assertEquals(17, output[1][2][2],1e-10);
     }
 
+    @Test
+    public void testBatchTransform() {
+        ImmutableFeatureMap fmap = constructFeatureMap();
+        Example<MockOutput> e = constructExample();
+        Example<MockOutput> other = new ArrayExample<>(new MockOutput("Test"),new String[]{"E","N"},new double[]{4,13});
+
+        ImageTransformer<MockOutput> transformer = new ImageTransformer<>(3,3,2);
+        float[] expected = flatten(transformer.innerTransform(e,fmap));
+        float[] expectedOther = flatten(transformer.innerTransform(other,fmap));
+
+        FloatBuffer buffer = transformer.innerTransform(Arrays.asList(e,other),fmap);
+        assertEquals(expected.length + expectedOther.length, buffer.remaining());
+        float[] output = new float[buffer.remaining()];
+        buffer.get(output);
+        assertArrayEquals(expected, Arrays.copyOfRange(output, 0, expected.length));
+        assertArrayEquals(expectedOther, Arrays.copyOfRange(output, expected.length, output.length));
+
+        // The buffer is reused, check the smaller batch doesn't see stale values.
+        buffer = transformer.innerTransform(Collections.singletonList(other),fmap);
+        assertEquals(expectedOther.length, buffer.remaining());
+        output = new float[buffer.remaining()];
+        buffer.get(output);
+        assertArrayEquals(expectedOther, output);
+    }
+
+    private static float[] flatten(float[][][] image) {
+        float[] output = new float[image.length * image[0].length * image[0][0].length];
+        int i = 0;
+        for (float[][] row : image) {
+            for (float[] pixel : row) {
+                for (float value : pixel) {
+                    output[i] = value;
+                    i++;
+                }
+            }
+        }
+        return output;
+    }
 }
@@ -73,7 +73,7 @@ public class JsonDataSource<T extends Output<T>> extends ColumnarDataSource<T> {
      * @param outputRequired Is the output required to exist in the data file.
      */
     public JsonDataSource(Path dataPath, RowProcessor<T> rowProcessor, boolean outputRequired) {
-        this(dataPath.toUri(),dataPath,rowProcessor,outputRequired);
+        this(dataPath.toUri(),dataPath,rowProcessor,outputRequired,1);
     }
 
     /**
@@ -84,7 +84,21 @@ public class JsonDataSource<T extends Output<T>> extends ColumnarDataSource<T> {
      * @param outputRequired Is the output required to exist in the data file.
      */
     public JsonDataSource(URI dataFile, RowProcessor<T> rowProcessor, boolean outputRequired) {
-        this(dataFile,Paths.get(dataFile),rowProcessor,outputRequired);
+        this(dataFile,Paths.get(dataFile),rowProcessor,outputRequired,1);
+    }
+
+    /**
+     * Creates a JsonDataSource using the specified RowProcessor to process the data.
+     * <p>
+     * If numThreads is greater than one the examples are generated in batches on a worker pool,
+     * see {@link org.tribuo.data.columnar.ColumnarDataSource}.
+     * @param dataPath The Path to the data file.
+     * @param rowProcessor The row processor which converts a row into an {@link Example}.
+     * @param outputRequired Is the output required to exist in the data file.
+     * @param numThreads The number of threads to use when generating examples.
+     */
+    public JsonDataSource(Path dataPath, RowProcessor<T> rowProcessor, boolean outputRequired, int numThreads) {
+        this(dataPath.toUri(),dataPath,rowProcessor,outputRequired,numThreads);
     }
 
     /**
@@ -92,9 +106,10 @@ public class JsonDataSource<T extends Output<T>> extends ColumnarDataSource<T> {
      * @param dataFile A URI for the data file.
      * @param rowProcessor The row processor which converts a row into an {@link Example}.
      * @param outputRequired Is the output required to exist in the data file.
+     * @param numThreads The number of threads to use when generating examples.
      */
-    private JsonDataSource(URI dataFile, Path dataPath, RowProcessor<T> rowProcessor, boolean outputRequired) {
-        super(rowProcessor.getResponseProcessor().getOutputFactory(), rowProcessor, outputRequired);
+    private JsonDataSource(URI dataFile, Path dataPath, RowProcessor<T> rowProcessor, boolean outputRequired, int numThreads) {
+        super(rowProcessor.getResponseProcessor().getOutputFactory(), rowProcessor, outputRequired, numThreads);
         this.dataPath = dataPath;
         this.dataFile = dataFile;
         this.provenance = new JsonDataSourceProvenance(this);
@@ -105,6 +120,7 @@ public class JsonDataSource<T extends Output<T>> extends ColumnarDataSource<T> {
      */
     @Override
     public void postConfig() {
+        super.postConfig();
         this.dataFile = dataPath.toUri();
         this.provenance = new JsonDataSourceProvenance(this);
     }
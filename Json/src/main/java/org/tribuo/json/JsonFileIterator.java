@@ -31,10 +31,12 @@ import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -95,13 +97,31 @@ public class JsonFileIterator extends ColumnarIterator implements AutoCloseable
         this(Files.newBufferedReader(Paths.get(dataFile)));
     }
 
+    /**
+     * Restricts the fields converted into each row to the supplied set.
+     * <p>
+     * The first row is read when the iterator is constructed, so if it hasn't been consumed
+     * yet its unused fields are removed.
+     * @param projection The field names to read, or null to read all fields.
+     */
+    @Override
+    public void setProjection(Set<String> projection) {
+        super.setProjection(projection);
+        if ((projection != null) && currentRow.isPresent()) {
+            Row row = currentRow.get();
+            Map<String,String> rowData = new HashMap<>(row.getRowData());
+            rowData.keySet().retainAll(projection);
+            currentRow = Optional.of(new Row(row.getIndex(), row.getFields(), rowData));
+        }
+    }
+
     @Override
     protected Optional<Row> getRow() {
         // row is initially populated in the constructor
         if (nodeIterator.hasNext()) {
             JsonNode next = nodeIterator.next();
             if (next instanceof ObjectNode) {
-                Row row = new Row(rowNum, fields, JsonUtil.convertToMap((ObjectNode)next));
+                Row row = new Row(rowNum, fields, JsonUtil.convertToMap((ObjectNode)next, projection));
                 rowNum++;
                 return Optional.of(row);
             } else {
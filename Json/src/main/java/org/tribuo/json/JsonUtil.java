@@ -7,6 +7,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.Set;
 import java.util.logging.Logger;
 
 /**
@@ -34,10 +35,31 @@ public final class JsonUtil {
      * @return The map representing this json node.
      */
     public static Map<String,String> convertToMap(ObjectNode node) {
+        return convertToMap(node, null);
+    }
+
+    /**
+     * Converts a Json node into a Map from String to String for use in
+     * downstream processing by {@link org.tribuo.data.columnar.RowProcessor},
+     * only converting the fields in the supplied projection.
+     * <p>
+     * This method ignores any fields which are not primitives (i.e., it ignores
+     * fields which are arrays and objects) as those are not supported
+     * by the columnar processing infrastructure.
+     * <p>
+     * If the node is null it returns Collections#emptyMap.
+     * @param node The json object to convert.
+     * @param projection The fields to convert, if null all fields are converted.
+     * @return The map representing this json node.
+     */
+    public static Map<String,String> convertToMap(ObjectNode node, Set<String> projection) {
         if (node != null) {
             Map<String,String> entry = new HashMap<>();
             for (Iterator<Map.Entry<String, JsonNode>> itr = node.fields(); itr.hasNext(); ) {
                 Map.Entry<String, JsonNode> e = itr.next();
+                if ((projection != null) && !projection.contains(e.getKey())) {
+                    continue;
+                }
                 if (e.getValue() != null) {
                     if (e.getValue().isValueNode()) {
                         entry.put(e.getKey(), e.getValue().asText());
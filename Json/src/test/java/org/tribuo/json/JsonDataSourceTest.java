@@ -39,6 +39,7 @@ import org.tribuo.util.tokens.impl.BreakIteratorTokenizer;
 
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -48,6 +49,7 @@ import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
@@ -94,6 +96,24 @@ public class JsonDataSourceTest {
         assertEquals(prov,unmarshalledProvenance);
     }
 
+    @Test
+    public void parallelLoadTest() throws URISyntaxException {
+        URI dataFile = JsonDataSourceTest.class.getResource("/org/tribuo/json/test.json").toURI();
+
+        RowProcessor<MockOutput> rowProcessor = buildRowProcessor();
+
+        MutableDataset<MockOutput> sequential = new MutableDataset<>(new JsonDataSource<>(dataFile, rowProcessor, true));
+        MutableDataset<MockOutput> parallel = new MutableDataset<>(new JsonDataSource<>(Paths.get(dataFile), rowProcessor, true, 4));
+
+        assertEquals(sequential.size(), parallel.size());
+        assertEquals(sequential.getFeatureMap().size(), parallel.getFeatureMap().size());
+        for (int i = 0; i < sequential.size(); i++) {
+            assertEquals(sequential.getExample(i), parallel.getExample(i));
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> new JsonDataSource<>(Paths.get(dataFile), rowProcessor, true, 0));
+    }
+
     @Test
     public void loadEmptyTest() throws URISyntaxException {
         URI emptyFile = JsonDataSourceTest.class.getResource("/org/tribuo/json/empty.json").toURI();
@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.tribuo.math;
+
+import org.tribuo.math.la.Tensor;
+
+/**
+ * An objective function evaluated over a whole training set, used by batch
+ * optimisers such as {@link org.tribuo.math.optimisers.LBFGS}.
+ * <p>
+ * Follows the same sign convention as the gradients used in SGD, the value
+ * is something to be maximised (e.g., a log-likelihood) and the gradient
+ * points in the direction which increases it.
+ * <p>
+ * Implementations are called concurrently on disjoint ranges of examples, so
+ * must not mutate shared state. The {@link Parameters} are not modified
+ * during an evaluation.
+ */
+@FunctionalInterface
+public interface BatchObjective {
+
+    /**
+     * Computes the objective value summed over the examples in the range [start,end)
+     * using the current parameter values, and adds the gradient into the supplied accumulator.
+     * @param start The first example index (inclusive).
+     * @param end The last example index (exclusive).
+     * @param gradientAccumulator A {@link Tensor} array produced by {@link Parameters#getEmptyCopy()},
+     *                            which the gradients are added into.
+     * @return The summed objective value for the range.
+     */
+    public double valueAndGradient(int start, int end, Tensor[] gradientAccumulator);
+
+}
@@ -21,7 +21,7 @@ import org.tribuo.math.la.DenseMatrix;
 import org.tribuo.math.la.DenseSparseMatrix;
 import org.tribuo.math.la.SGDVector;
 import org.tribuo.math.la.Tensor;
-import org.tribuo.math.util.HeapMerger;
+import org.tribuo.math.util.AdaptiveMerger;
 import org.tribuo.math.util.Merger;
 
 /**
@@ -29,7 +29,7 @@ import org.tribuo.math.util.Merger;
  */
 public class LinearParameters implements Parameters {
 
-    private static final Merger merger = new HeapMerger();
+    private final Merger merger;
 
     // Last row in this DenseMatrix is the bias, added by
     // calling SparseVector.createSparseVector(example,featureInfo,true);
@@ -42,11 +42,53 @@ public class LinearParameters implements Parameters {
      * @param numLabels The number of outputs in the training dataset.
      */
     public LinearParameters(int numFeatures, int numLabels) {
+        this(numFeatures,numLabels,new AdaptiveMerger());
+    }
+
+    /**
+     * Constructor. The number of features and the number of outputs must be fixed and known in advance.
+     * <p>
+     * The merger is used to sum the gradients in {@link #merge}. Mergers such as {@link AdaptiveMerger}
+     * reuse buffers between calls, so each instance should be given its own merger.
+     * @param numFeatures The number of features in the training dataset (excluding the bias).
+     * @param numLabels The number of outputs in the training dataset.
+     * @param merger The merger to use when summing gradients.
+     */
+    public LinearParameters(int numFeatures, int numLabels, Merger merger) {
+        this.merger = merger;
         weights = new Tensor[1];
         weightMatrix = new DenseMatrix(numLabels,numFeatures);
         weights[0] = weightMatrix;
     }
 
+    /**
+     * Constructs a LinearParameters which wraps the supplied weight matrix, without copying it.
+     * <p>
+     * The matrix should be of size [numLabels, numFeatures] with the bias in the last column,
+     * and is used to continue training an existing set of weights.
+     * @param weightMatrix The weights.
+     */
+    public LinearParameters(DenseMatrix weightMatrix) {
+        this(weightMatrix,new AdaptiveMerger());
+    }
+
+    /**
+     * Constructs a LinearParameters which wraps the supplied weight matrix, without copying it,
+     * and sums gradients using the supplied merger.
+     * <p>
+     * The matrix should be of size [numLabels, numFeatures] with the bias in the last column.
+     * Mergers such as {@link AdaptiveMerger} reuse buffers between calls, so each instance should
+     * be given its own merger.
+     * @param weightMatrix The weights.
+     * @param merger The merger to use when summing gradients.
+     */
+    public LinearParameters(DenseMatrix weightMatrix, Merger merger) {
+        this.merger = merger;
+        this.weights = new Tensor[1];
+        this.weightMatrix = weightMatrix;
+        this.weights[0] = weightMatrix;
+    }
+
     /**
      * Generates an unnormalised prediction by leftMultiply'ing the weights with the incoming features.
      * @param example A feature vector
@@ -22,6 +22,9 @@ import com.oracle.labs.mlrg.olcut.provenance.Provenancable;
 import org.tribuo.math.la.Tensor;
 import org.tribuo.math.optimisers.ParameterAveraging;
 
+import java.util.Optional;
+import java.util.function.UnaryOperator;
+
 /**
  * Interface for gradient based optimisation methods.
  * <p>
@@ -67,6 +70,36 @@ public interface StochasticGradientOptimiser extends Configurable, Provenancable
      */
     public void reset();
 
+    /**
+     * Applies the supplied function to each piece of per parameter state held by this optimiser,
+     * replacing the state with the function's output.
+     * <p>
+     * Used to continue an optimisation after {@link StochasticGradientOptimiser#finalise()} when the
+     * parameters have changed shape, e.g., when new features are added during incremental training.
+     * Each state {@link Tensor} has the same shape as the corresponding parameter {@link Tensor}.
+     * <p>
+     * Returns false if the optimiser can't be continued after finalisation, or if its state can't be
+     * transformed, in which case it should be reset and re-initialised. The default implementation
+     * returns false.
+     * @param transform The function to apply to each state {@link Tensor}.
+     * @return True if the state was transformed and the optimiser can continue.
+     */
+    default public boolean transformState(UnaryOperator<Tensor> transform) {
+        return false;
+    }
+
+    /**
+     * Copies this optimiser along with its per parameter state, so an optimisation which has been
+     * finalised can be continued by the copy without modifying this optimiser.
+     * <p>
+     * Returns {@link Optional#empty()} if the optimiser can't be continued after finalisation,
+     * which is the default.
+     * @return A copy of this optimiser including its state.
+     */
+    default public Optional<StochasticGradientOptimiser> copyWithState() {
+        return Optional.empty();
+    }
+
     /**
      * Copies a gradient optimiser with it's configuration. Usually calls the copy constructor.
      * @return A gradient optimiser with the same configuration, but independent state.
@@ -38,4 +38,28 @@ public interface Kernel extends Configurable, Provenancable<ConfiguredObjectProv
      */
     public double similarity(SparseVector first, SparseVector second);
 
+    /**
+     * Returns true if this kernel can be computed from the dot product and the squared
+     * two norms of its inputs via {@link #similarityFromDot}.
+     * <p>
+     * Such kernels can be evaluated for many pairs of vectors at once using a matrix product.
+     * @return True if {@link #similarityFromDot} is supported.
+     */
+    default public boolean isDotProductKernel() {
+        return false;
+    }
+
+    /**
+     * Calculates the similarity between two vectors given their dot product and squared two norms.
+     * <p>
+     * Throws {@link UnsupportedOperationException} if {@link #isDotProductKernel} returns false.
+     * @param dot The dot product of the two vectors.
+     * @param firstSquaredNorm The squared two norm of the first vector.
+     * @param secondSquaredNorm The squared two norm of the second vector.
+     * @return The kernel value.
+     */
+    default public double similarityFromDot(double dot, double firstSquaredNorm, double secondSquaredNorm) {
+        throw new UnsupportedOperationException("Kernel " + toString() + " cannot be computed from the dot product.");
+    }
+
 }
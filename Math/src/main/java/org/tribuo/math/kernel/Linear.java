@@ -36,6 +36,16 @@ public class Linear implements Kernel {
         return a.dot(b);
     }
 
+    @Override
+    public boolean isDotProductKernel() {
+        return true;
+    }
+
+    @Override
+    public double similarityFromDot(double dot, double firstSquaredNorm, double secondSquaredNorm) {
+        return dot;
+    }
+
     @Override
     public String toString() {
         return "Linear()";
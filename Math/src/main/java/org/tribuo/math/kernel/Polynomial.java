@@ -58,6 +58,16 @@ public class Polynomial implements Kernel {
         return Math.pow(gamma * a.dot(b) + intercept, degree);
     }
 
+    @Override
+    public boolean isDotProductKernel() {
+        return true;
+    }
+
+    @Override
+    public double similarityFromDot(double dot, double firstSquaredNorm, double secondSquaredNorm) {
+        return Math.pow(gamma * dot + intercept, degree);
+    }
+
     @Override
     public String toString() {
         return "Polynomial(gamma="+gamma+",intercept="+intercept+",degree="+degree+")";
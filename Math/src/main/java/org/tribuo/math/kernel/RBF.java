@@ -48,6 +48,18 @@ public class RBF implements Kernel {
         return Math.exp(-gamma * Math.pow(a.subtract(b).twoNorm(),2.0));
     }
 
+    @Override
+    public boolean isDotProductKernel() {
+        return true;
+    }
+
+    @Override
+    public double similarityFromDot(double dot, double firstSquaredNorm, double secondSquaredNorm) {
+        // |u-v|^2 = |u|^2 + |v|^2 - 2 u.v, clamped as rounding can make it slightly negative.
+        double squaredDistance = Math.max(0.0, firstSquaredNorm + secondSquaredNorm - 2.0 * dot);
+        return Math.exp(-gamma * squaredDistance);
+    }
+
     @Override
     public String toString() {
         return "RBF(gamma="+gamma+")";
@@ -53,6 +53,16 @@ public class Sigmoid implements Kernel {
         return Math.tanh(gamma * a.dot(b) + intercept);
     }
 
+    @Override
+    public boolean isDotProductKernel() {
+        return true;
+    }
+
+    @Override
+    public double similarityFromDot(double dot, double firstSquaredNorm, double secondSquaredNorm) {
+        return Math.tanh(gamma * dot + intercept);
+    }
+
     @Override
     public String toString() {
         return "Sigmoid(gamma="+gamma+",intercept="+intercept+")";
@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.tribuo.math.la;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The primitive array kernels which underlie the dense operations in {@link DenseVector},
+ * {@link SparseVector} and {@link DenseMatrix}.
+ * <p>
+ * This class contains the scalar implementations which run on every JVM. When Tribuo is built on
+ * Java 16 or newer, the multi-release jar contains a subclass which uses the Vector API, in the
+ * layer for the Java version used by the build. When it runs on that version or newer with the
+ * {@code jdk.incubator.vector} module enabled (e.g., by passing {@code --add-modules jdk.incubator.vector})
+ * the subclass is loaded instead. If the subclass is not present or the module
+ * is not available then the scalar kernels are used.
+ * <p>
+ * The vectorised kernels can be disabled by setting the system property
+ * {@value #DISABLE_PROPERTY} to {@code true}.
+ * <p>
+ * The vectorised kernels may sum values in a different order to the scalar ones, so results
+ * can differ in the last few bits.
+ */
+class ArrayKernels {
+    private static final Logger logger = Logger.getLogger(ArrayKernels.class.getName());
+
+    /**
+     * System property which turns off the vectorised kernels.
+     */
+    static final String DISABLE_PROPERTY = "org.tribuo.math.la.disableVectorKernels";
+
+    private static final String VECTORIZED_CLASS_NAME = "org.tribuo.math.la.VectorizedKernels";
+
+    /**
+     * The kernels used by the linear algebra package.
+     */
+    static final ArrayKernels KERNELS = load();
+
+    ArrayKernels() {}
+
+    /**
+     * Computes the dot product of the first {@code length} elements of the two arrays.
+     * @param first The first array.
+     * @param second The second array.
+     * @param length The number of elements to use.
+     * @return The dot product.
+     */
+    double dot(double[] first, double[] second, int length) {
+        double score = 0.0;
+        for (int i = 0; i < length; i++) {
+            score += first[i] * second[i];
+        }
+        return score;
+    }
+
+    /**
+     * Computes the dot product between a dense array and a sparse vector represented
+     * by its indices and values.
+     * @param dense The dense array.
+     * @param indices The sparse indices.
+     * @param values The sparse values.
+     * @return The dot product.
+     */
+    double sparseDot(double[] dense, int[] indices, double[] values) {
+        double score = 0.0;
+        for (int i = 0; i < indices.length; i++) {
+            score += dense[indices[i]] * values[i];
+        }
+        return score;
+    }
+
+    /**
+     * Computes the squared euclidean distance between the first {@code length} elements
+     * of the two arrays.
+     * @param first The first array.
+     * @param second The second array.
+     * @param length The number of elements to use.
+     * @return The squared euclidean distance.
+     */
+    double squaredDistance(double[] first, double[] second, int length) {
+        double score = 0.0;
+        for (int i = 0; i < length; i++) {
+            double tmp = first[i] - second[i];
+            score += tmp * tmp;
+        }
+        return score;
+    }
+
+    /**
+     * Adds the first {@code length} elements of {@code source} into {@code destination}.
+     * @param source The values to add.
+     * @param destination The array to update in place.
+     * @param length The number of elements to use.
+     */
+    void addInPlace(double[] source, double[] destination, int length) {
+        for (int i = 0; i < length; i++) {
+            destination[i] += source[i];
+        }
+    }
+
+    /**
+     * Returns true if these are the vectorised kernels.
+     * @return True if the Vector API is in use.
+     */
+    boolean isVectorized() {
+        return false;
+    }
+
+    /**
+     * Loads the vectorised kernels if they are available, otherwise returns the scalar kernels.
+     * @return The array kernels.
+     */
+    private static ArrayKernels load() {
+        if (Boolean.getBoolean(DISABLE_PROPERTY)) {
+            return new ArrayKernels();
+        }
+        try {
+            Class<?> clazz = Class.forName(VECTORIZED_CLASS_NAME);
+            ArrayKernels kernels = (ArrayKernels) clazz.getDeclaredConstructor().newInstance();
+            logger.log(Level.FINE, "Using Vector API linear algebra kernels.");
+            return kernels;
+        } catch (ReflectiveOperationException | LinkageError e) {
+            // Either running on an older JVM, or jdk.incubator.vector is not enabled.
+            logger.log(Level.FINE, "Vector API kernels unavailable, using scalar kernels.", e);
+            return new ArrayKernels();
+        }
+    }
+}
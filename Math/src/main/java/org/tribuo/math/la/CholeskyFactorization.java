@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.tribuo.math.la;
+
+import java.util.Optional;
+
+/**
+ * The Cholesky factorization of a symmetric positive definite matrix, A = L * L^T where
+ * L is lower triangular.
+ * <p>
+ * Created by {@link DenseMatrix#choleskyFactorization()}.
+ */
+public final class CholeskyFactorization implements Matrix.Factorization {
+
+    /**
+     * The tolerance used when checking for symmetry and positive definiteness.
+     * <p>
+     * The positive definiteness check is relative to the largest diagonal entry
+     * so the factorization is invariant to the scale of the matrix.
+     */
+    public static final double TOLERANCE = 1e-14;
+
+    private final double[][] lMatrix;
+    private final int size;
+
+    private CholeskyFactorization(double[][] lMatrix) {
+        this.lMatrix = lMatrix;
+        this.size = lMatrix.length;
+    }
+
+    /**
+     * Computes the Cholesky factorization of the supplied matrix.
+     * <p>
+     * Returns {@link Optional#empty()} if the matrix is not square, not symmetric,
+     * or not positive definite.
+     * @param matrix The matrix to factorize.
+     * @return The Cholesky factorization if it exists.
+     */
+    static Optional<CholeskyFactorization> factorize(DenseMatrix matrix) {
+        int n = matrix.dim1;
+        if (n != matrix.dim2) {
+            return Optional.empty();
+        }
+        double maxDiagonal = 0.0;
+        for (int i = 0; i < n; i++) {
+            maxDiagonal = Math.max(maxDiagonal, matrix.get(i,i));
+        }
+        if (maxDiagonal <= 0.0) {
+            // Not positive definite
+            return Optional.empty();
+        }
+        double pivotTolerance = TOLERANCE * maxDiagonal;
+        double[][] lMatrix = new double[n][];
+        for (int i = 0; i < n; i++) {
+            lMatrix[i] = new double[i+1];
+            for (int j = 0; j <= i; j++) {
+                double value = matrix.get(i,j);
+                if (Math.abs(value - matrix.get(j,i)) > TOLERANCE * Math.max(1.0,Math.abs(value))) {
+                    // Not symmetric
+                    return Optional.empty();
+                }
+                // Rows of L are stored contiguously so this is a dot product of two row prefixes
+                value -= ArrayKernels.KERNELS.dot(lMatrix[i],lMatrix[j],j);
+                if (i == j) {
+                    if (value <= pivotTolerance) {
+                        // Not positive definite
+                        return Optional.empty();
+                    }
+                    lMatrix[i][i] = Math.sqrt(value);
+                } else {
+                    lMatrix[i][j] = value / lMatrix[j][j];
+                }
+            }
+        }
+        return Optional.of(new CholeskyFactorization(lMatrix));
+    }
+
+    @Override
+    public int dim1() {
+        return size;
+    }
+
+    @Override
+    public int dim2() {
+        return size;
+    }
+
+    /**
+     * Returns a copy of the lower triangular factor L.
+     * @return The lower triangular matrix.
+     */
+    public DenseMatrix lMatrix() {
+        double[][] output = new double[size][size];
+        for (int i = 0; i < size; i++) {
+            System.arraycopy(lMatrix[i],0,output[i],0,i+1);
+        }
+        return new DenseMatrix(output);
+    }
+
+    /**
+     * The determinant of a Cholesky factorized matrix is the
+     * squared product of the diagonal of L.
+     * @return The determinant.
+     */
+    @Override
+    public double determinant() {
+        double det = 1.0;
+        for (int i = 0; i < size; i++) {
+            det *= lMatrix[i][i] * lMatrix[i][i];
+        }
+        return det;
+    }
+
+    @Override
+    public DenseVector solve(SGDVector vector) {
+        if (vector.size() != size) {
+            throw new IllegalArgumentException("Size mismatch, expected " + size + ", received " + vector.size());
+        }
+        double[] output = vector.toArray();
+        solveInPlace(output);
+        return new DenseVector(output);
+    }
+
+    @Override
+    public DenseMatrix solve(Matrix matrix) {
+        if (matrix.getDimension1Size() != size) {
+            throw new IllegalArgumentException("Size mismatch, expected " + size + ", received " + matrix.getDimension1Size());
+        }
+        int numColumns = matrix.getDimension2Size();
+        double[][] output = new double[size][numColumns];
+        double[] column = new double[size];
+        for (int j = 0; j < numColumns; j++) {
+            for (int i = 0; i < size; i++) {
+                column[i] = matrix.get(i,j);
+            }
+            solveInPlace(column);
+            for (int i = 0; i < size; i++) {
+                output[i][j] = column[i];
+            }
+        }
+        return new DenseMatrix(output);
+    }
+
+    /**
+     * Solves L * L^T * x = b, overwriting b with x.
+     * @param values The right hand side b, overwritten with the solution.
+     */
+    private void solveInPlace(double[] values) {
+        // Forward substitution L * y = b
+        for (int i = 0; i < size; i++) {
+            values[i] = (values[i] - ArrayKernels.KERNELS.dot(lMatrix[i],values,i)) / lMatrix[i][i];
+        }
+        // Back substitution L^T * x = y
+        for (int i = size - 1; i >= 0; i--) {
+            double sum = values[i];
+            for (int k = i + 1; k < size; k++) {
+                sum -= lMatrix[k][i] * values[k];
+            }
+            values[i] = sum / lMatrix[i][i];
+        }
+    }
+}
@@ -21,6 +21,7 @@ import org.tribuo.math.util.VectorNormalizer;
 import java.util.Arrays;
 import java.util.NoSuchElementException;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.function.DoubleUnaryOperator;
 
 /**
@@ -119,6 +120,19 @@ public class DenseMatrix implements Matrix {
         return new DenseMatrix(newValues);
     }
 
+    /**
+     * Creates an identity matrix of the specified size.
+     * @param size The matrix size.
+     * @return The identity matrix.
+     */
+    public static DenseMatrix identity(int size) {
+        double[][] values = new double[size][size];
+        for (int i = 0; i < size; i++) {
+            values[i][i] = 1.0;
+        }
+        return new DenseMatrix(values);
+    }
+
     @Override
     public int[] getShape() {
         return shape;
@@ -162,6 +176,7 @@ public class DenseMatrix implements Matrix {
      * Copies the matrix.
      * @return A deep copy of the matrix.
      */
+    @Override
     public DenseMatrix copy() {
         return new DenseMatrix(this);
     }
@@ -259,13 +274,25 @@ public class DenseMatrix implements Matrix {
     public DenseVector leftMultiply(SGDVector input) {
         if (input.size() == dim2) {
             double[] output = new double[dim1];
-            if (input instanceof DenseVector) {
+            if (DenseVector.isPlain(input)) {
+                // If it's a plain dense vector we can use the array kernels on each row
+                double[] inputArr = ((DenseVector) input).elements;
+                for (int i = 0; i < dim1; i++) {
+                    output[i] = ArrayKernels.KERNELS.dot(values[i],inputArr,dim2);
+                }
+            } else if (input instanceof DenseVector) {
                 // If it's dense we can use loops
                 for (int i = 0; i < dim1; i++) {
                     for (int j = 0; j < dim2; j++) {
                         output[i] += get(i,j) * input.get(j);
                     }
                 }
+            } else if (input instanceof SparseVector) {
+                // If it's sparse we use the sparse array kernel on each row
+                SparseVector sparseInput = (SparseVector) input;
+                for (int i = 0; i < dim1; i++) {
+                    output[i] = ArrayKernels.KERNELS.sparseDot(values[i],sparseInput.indices,sparseInput.values);
+                }
             } else {
                 // If it's sparse we iterate the tuples
                 for (VectorTuple tuple : input) {
@@ -556,6 +583,22 @@ public class DenseMatrix implements Matrix {
         }
     }
 
+    @Override
+    public void intersectAndAddInPlace(Tensor other) {
+        if ((getClass() == DenseMatrix.class) && (other.getClass() == DenseMatrix.class)) {
+            DenseMatrix otherMat = (DenseMatrix) other;
+            if ((dim1 == otherMat.dim1) && (dim2 == otherMat.dim2)) {
+                for (int i = 0; i < dim1; i++) {
+                    ArrayKernels.KERNELS.addInPlace(otherMat.values[i],values[i],dim2);
+                }
+            } else {
+                throw new IllegalArgumentException("Matrices are not the same size, this("+dim1+","+dim2+"), other("+otherMat.dim1+","+otherMat.dim2+")");
+            }
+        } else {
+            intersectAndAddInPlace(other, DoubleUnaryOperator.identity());
+        }
+    }
+
     @Override
     public void hadamardProductInPlace(Tensor other, DoubleUnaryOperator f) {
         if (other instanceof Matrix) {
@@ -768,6 +811,36 @@ public class DenseMatrix implements Matrix {
         return new DenseVector(columnSum);
     }
 
+    /**
+     * Computes the Cholesky factorization of this matrix.
+     * <p>
+     * Returns {@link Optional#empty()} if the matrix is not symmetric positive definite.
+     * @return The Cholesky factorization, or empty.
+     */
+    public Optional<CholeskyFactorization> choleskyFactorization() {
+        return CholeskyFactorization.factorize(this);
+    }
+
+    /**
+     * Computes the QR factorization of this matrix using Householder reflections.
+     * <p>
+     * Returns {@link Optional#empty()} if the matrix has more columns than rows or is rank deficient.
+     * @return The QR factorization, or empty.
+     */
+    public Optional<QRFactorization> qrFactorization() {
+        return QRFactorization.factorize(this);
+    }
+
+    /**
+     * Computes the eigen decomposition of this matrix.
+     * <p>
+     * Returns {@link Optional#empty()} if the matrix is not symmetric, or if the decomposition did not converge.
+     * @return The eigen decomposition, or empty.
+     */
+    public Optional<EigenDecomposition> eigenDecomposition() {
+        return EigenDecomposition.decompose(this);
+    }
+
     private class DenseMatrixIterator implements MatrixIterator {
         private final DenseMatrix matrix;
         private final MatrixTuple tuple;
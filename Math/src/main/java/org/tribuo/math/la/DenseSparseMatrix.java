@@ -75,6 +75,15 @@ public class DenseSparseMatrix implements Matrix {
         return new DenseSparseMatrix(newValues);
     }
 
+    /**
+     * Copies the matrix.
+     * @return A deep copy of the matrix.
+     */
+    @Override
+    public DenseSparseMatrix copy() {
+        return new DenseSparseMatrix(this);
+    }
+
     @Override
     public int[] getShape() {
         return shape;
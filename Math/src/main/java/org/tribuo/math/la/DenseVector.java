@@ -282,6 +282,19 @@ public class DenseVector implements SGDVector {
         }
     }
 
+    @Override
+    public void intersectAndAddInPlace(Tensor other) {
+        if (isPlain(this) && (other instanceof SGDVector) && isPlain((SGDVector) other)) {
+            DenseVector otherVec = (DenseVector) other;
+            if (otherVec.size() != elements.length) {
+                throw new IllegalArgumentException("Can't intersect two vectors of different dimension, this = " + elements.length + ", other = " + otherVec.size());
+            }
+            ArrayKernels.KERNELS.addInPlace(otherVec.elements,elements,elements.length);
+        } else {
+            intersectAndAddInPlace(other, DoubleUnaryOperator.identity());
+        }
+    }
+
     @Override
     public void hadamardProductInPlace(Tensor other, DoubleUnaryOperator f) {
         if (other instanceof SGDVector) {
@@ -330,7 +343,9 @@ public class DenseVector implements SGDVector {
             throw new IllegalArgumentException("Can't dot two vectors of different dimension, this = " + elements.length + ", other = " + other.size());
         }
         double score = 0.0;
-        if (other instanceof DenseVector) {
+        if (isPlain(this) && isPlain(other)) {
+            score = ArrayKernels.KERNELS.dot(elements,((DenseVector) other).elements,elements.length);
+        } else if (other instanceof DenseVector) {
             for (int i = 0; i < elements.length; i++) {
                 score += get(i) * other.get(i);
             }
@@ -559,6 +574,8 @@ public class DenseVector implements SGDVector {
     public double euclideanDistance(SGDVector other) {
         if (other.size() != elements.length) {
             throw new IllegalArgumentException("Can't measure distance of two vectors of different lengths, this = " + elements.length + ", other = " + other.size());
+        } else if (isPlain(this) && isPlain(other)) {
+            return Math.sqrt(ArrayKernels.KERNELS.squaredDistance(elements,((DenseVector) other).elements,elements.length));
         } else if (other instanceof DenseVector) {
             double score = 0.0;
 
@@ -646,6 +663,18 @@ public class DenseVector implements SGDVector {
         }
     }
 
+    /**
+     * Checks if the supplied vector is exactly a {@link DenseVector} and not a subclass.
+     * <p>
+     * Subclasses may rescale values in {@link #get}, so the array kernels can only
+     * be applied directly to the backing array of a plain {@link DenseVector}.
+     * @param vector The vector to check.
+     * @return True if the vector is a plain {@link DenseVector}.
+     */
+    static boolean isPlain(SGDVector vector) {
+        return vector.getClass() == DenseVector.class;
+    }
+
     private static class DenseVectorIterator implements VectorIterator {
         private final DenseVector vector;
         private final VectorTuple tuple;
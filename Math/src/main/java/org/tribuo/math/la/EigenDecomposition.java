@@ -0,0 +1,276 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.tribuo.math.la;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Optional;
+import java.util.stream.IntStream;
+
+/**
+ * The eigen decomposition of a symmetric matrix, A = V * D * V^T, where D is diagonal
+ * and V is orthonormal.
+ * <p>
+ * Computed using the cyclic Jacobi eigenvalue algorithm. The eigenvalues are
+ * sorted in descending order, and the eigenvectors are the columns of V.
+ * <p>
+ * Created by {@link DenseMatrix#eigenDecomposition()}.
+ */
+public final class EigenDecomposition implements Matrix.Factorization {
+
+    /**
+     * The tolerance used when checking for symmetry and convergence.
+     */
+    public static final double TOLERANCE = 1e-14;
+
+    /**
+     * The maximum number of Jacobi sweeps before the decomposition is considered to have failed.
+     */
+    public static final int MAX_SWEEPS = 100;
+
+    private final double[] eigenvalues;
+    private final double[][] eigenvectors;
+    private final int size;
+
+    private EigenDecomposition(double[] eigenvalues, double[][] eigenvectors) {
+        this.eigenvalues = eigenvalues;
+        this.eigenvectors = eigenvectors;
+        this.size = eigenvalues.length;
+    }
+
+    /**
+     * Computes the eigen decomposition of the supplied matrix.
+     * <p>
+     * Returns {@link Optional#empty()} if the matrix is not square and symmetric, or if
+     * the algorithm failed to converge.
+     * @param matrix The matrix to decompose.
+     * @return The eigen decomposition if it exists.
+     */
+    static Optional<EigenDecomposition> decompose(DenseMatrix matrix) {
+        int n = matrix.dim1;
+        if (n != matrix.dim2) {
+            return Optional.empty();
+        }
+        double[][] a = matrix.copy().values;
+        double total = 0.0;
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                if (Math.abs(a[i][j] - a[j][i]) > TOLERANCE * Math.max(1.0,Math.abs(a[i][j]))) {
+                    // Not symmetric
+                    return Optional.empty();
+                }
+                total += a[i][j] * a[i][j];
+            }
+        }
+        double[][] v = new double[n][n];
+        for (int i = 0; i < n; i++) {
+            v[i][i] = 1.0;
+        }
+
+        boolean converged = false;
+        double threshold = TOLERANCE * TOLERANCE * total;
+        for (int sweep = 0; (sweep < MAX_SWEEPS) && !converged; sweep++) {
+            double offDiagonal = 0.0;
+            for (int p = 0; p < n; p++) {
+                for (int q = p + 1; q < n; q++) {
+                    offDiagonal += a[p][q] * a[p][q];
+                }
+            }
+            if (offDiagonal <= threshold) {
+                converged = true;
+            } else {
+                for (int p = 0; p < n; p++) {
+                    for (int q = p + 1; q < n; q++) {
+                        if (a[p][q] != 0.0) {
+                            rotate(a,v,p,q);
+                        }
+                    }
+                }
+            }
+        }
+        if (!converged) {
+            return Optional.empty();
+        }
+
+        // Sort into descending order of eigenvalue
+        int[] order = IntStream.range(0,n).boxed()
+                .sorted(Comparator.comparingDouble((Integer i) -> a[i][i]).reversed())
+                .mapToInt(Integer::intValue).toArray();
+        double[] eigenvalues = new double[n];
+        double[][] eigenvectors = new double[n][n];
+        for (int j = 0; j < n; j++) {
+            eigenvalues[j] = a[order[j]][order[j]];
+            for (int i = 0; i < n; i++) {
+                eigenvectors[i][j] = v[i][order[j]];
+            }
+        }
+        return Optional.of(new EigenDecomposition(eigenvalues,eigenvectors));
+    }
+
+    /**
+     * Applies the Jacobi rotation which zeros a[p][q] to both the matrix and the eigenvectors.
+     * @param a The matrix being diagonalised.
+     * @param v The accumulated eigenvectors.
+     * @param p The first index.
+     * @param q The second index.
+     */
+    private static void rotate(double[][] a, double[][] v, int p, int q) {
+        int n = a.length;
+        double theta = (a[q][q] - a[p][p]) / (2.0 * a[p][q]);
+        double t = Math.signum(theta) / (Math.abs(theta) + Math.hypot(theta, 1.0));
+        if (theta == 0.0) {
+            t = 1.0;
+        }
+        double c = 1.0 / Math.sqrt(t * t + 1.0);
+        double s = t * c;
+        for (int k = 0; k < n; k++) {
+            double akp = a[k][p];
+            double akq = a[k][q];
+            a[k][p] = c * akp - s * akq;
+            a[k][q] = s * akp + c * akq;
+        }
+        for (int k = 0; k < n; k++) {
+            double apk = a[p][k];
+            double aqk = a[q][k];
+            a[p][k] = c * apk - s * aqk;
+            a[q][k] = s * apk + c * aqk;
+        }
+        // Remove rounding error from the eliminated element
+        a[p][q] = 0.0;
+        a[q][p] = 0.0;
+        for (int k = 0; k < n; k++) {
+            double vkp = v[k][p];
+            double vkq = v[k][q];
+            v[k][p] = c * vkp - s * vkq;
+            v[k][q] = s * vkp + c * vkq;
+        }
+    }
+
+    @Override
+    public int dim1() {
+        return size;
+    }
+
+    @Override
+    public int dim2() {
+        return size;
+    }
+
+    /**
+     * Returns a copy of the eigenvalues, sorted in descending order.
+     * @return The eigenvalues.
+     */
+    public DenseVector eigenvalues() {
+        return DenseVector.createDenseVector(eigenvalues);
+    }
+
+    /**
+     * Returns a copy of the eigenvector matrix, where column i is the eigenvector
+     * corresponding to the i-th eigenvalue.
+     * @return The eigenvectors.
+     */
+    public DenseMatrix eigenvectors() {
+        return DenseMatrix.createDenseMatrix(eigenvectors);
+    }
+
+    /**
+     * Returns the eigenvector corresponding to the i-th eigenvalue.
+     * @param i The index of the eigenvector.
+     * @return The eigenvector.
+     */
+    public DenseVector getEigenvector(int i) {
+        double[] output = new double[size];
+        for (int j = 0; j < size; j++) {
+            output[j] = eigenvectors[j][i];
+        }
+        return new DenseVector(output);
+    }
+
+    /**
+     * The determinant is the product of the eigenvalues.
+     * @return The determinant.
+     */
+    @Override
+    public double determinant() {
+        double det = 1.0;
+        for (int i = 0; i < size; i++) {
+            det *= eigenvalues[i];
+        }
+        return det;
+    }
+
+    /**
+     * Solves A * b = y by computing V * D^-1 * V^T * y.
+     * <p>
+     * Throws {@link IllegalStateException} if the matrix is singular.
+     * @param vector The input vector y.
+     * @return The vector b.
+     */
+    @Override
+    public DenseVector solve(SGDVector vector) {
+        if (vector.size() != size) {
+            throw new IllegalArgumentException("Size mismatch, expected " + size + ", received " + vector.size());
+        }
+        checkSingular();
+        double[] input = vector.toArray();
+        double[] projected = new double[size];
+        for (int j = 0; j < size; j++) {
+            double sum = 0.0;
+            for (int i = 0; i < size; i++) {
+                sum += eigenvectors[i][j] * input[i];
+            }
+            projected[j] = sum / eigenvalues[j];
+        }
+        double[] output = new double[size];
+        for (int i = 0; i < size; i++) {
+            output[i] = ArrayKernels.KERNELS.dot(eigenvectors[i],projected,size);
+        }
+        return new DenseVector(output);
+    }
+
+    @Override
+    public DenseMatrix solve(Matrix matrix) {
+        if (matrix.getDimension1Size() != size) {
+            throw new IllegalArgumentException("Size mismatch, expected " + size + ", received " + matrix.getDimension1Size());
+        }
+        int numColumns = matrix.getDimension2Size();
+        double[][] output = new double[size][numColumns];
+        double[] column = new double[size];
+        for (int j = 0; j < numColumns; j++) {
+            for (int i = 0; i < size; i++) {
+                column[i] = matrix.get(i,j);
+            }
+            DenseVector solution = solve(new DenseVector(column));
+            for (int i = 0; i < size; i++) {
+                output[i][j] = solution.get(i);
+            }
+        }
+        return new DenseMatrix(output);
+    }
+
+    private void checkSingular() {
+        double max = 0.0;
+        for (double e : eigenvalues) {
+            max = Math.max(max, Math.abs(e));
+        }
+        for (double e : eigenvalues) {
+            if (Math.abs(e) <= TOLERANCE * max) {
+                throw new IllegalStateException("Matrix is singular, eigenvalues = " + Arrays.toString(eigenvalues));
+            }
+        }
+    }
+}
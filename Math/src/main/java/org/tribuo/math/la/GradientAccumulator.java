@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.tribuo.math.la;
+
+import java.util.Arrays;
+
+/**
+ * A reusable dense scatter-add buffer for summing sparse gradients.
+ * <p>
+ * {@link SparseVector}s are added into a dense array, recording which indices have
+ * been touched, and {@link #drain()} gathers the touched indices back out as a
+ * {@link SparseVector} and clears only those entries. This makes the cost of a merge
+ * linear in the number of active elements, and the buffer can be reused across
+ * minibatches without reallocating.
+ * <p>
+ * Not thread safe.
+ */
+public final class GradientAccumulator {
+
+    private final double[] buffer;
+    private final boolean[] touched;
+    private final int[] touchedIndices;
+    private int numTouched;
+
+    /**
+     * Constructs an accumulator for vectors of the supplied dimension.
+     * @param dimension The dimension.
+     */
+    public GradientAccumulator(int dimension) {
+        this.buffer = new double[dimension];
+        this.touched = new boolean[dimension];
+        this.touchedIndices = new int[dimension];
+    }
+
+    /**
+     * The dimension of the vectors this accumulator sums.
+     * @return The dimension.
+     */
+    public int size() {
+        return buffer.length;
+    }
+
+    /**
+     * The number of distinct indices added since the last drain.
+     * @return The number of touched indices.
+     */
+    public int numTouched() {
+        return numTouched;
+    }
+
+    /**
+     * Adds the supplied vector into the accumulator.
+     * @param vector The vector to add.
+     */
+    public void add(SparseVector vector) {
+        if (vector.size() != buffer.length) {
+            throw new IllegalArgumentException("Vector dimension " + vector.size() + " doesn't match the accumulator dimension " + buffer.length);
+        }
+        int[] indices = vector.indices;
+        double[] values = vector.values;
+        for (int i = 0; i < indices.length; i++) {
+            int idx = indices[i];
+            if (!touched[idx]) {
+                touched[idx] = true;
+                touchedIndices[numTouched] = idx;
+                numTouched++;
+            }
+            buffer[idx] += values[i];
+        }
+    }
+
+    /**
+     * Returns the sum of the vectors added since the last drain, and resets the accumulator.
+     * <p>
+     * Indices which were added but summed to zero are kept in the output.
+     * @return The summed vector.
+     */
+    public SparseVector drain() {
+        int[] indices = new int[numTouched];
+        double[] values = new double[numTouched];
+        if (numTouched > (buffer.length >>> 3)) {
+            // Dense enough that a linear scan is cheaper than sorting the touched indices.
+            int counter = 0;
+            for (int i = 0; i < buffer.length && counter < numTouched; i++) {
+                if (touched[i]) {
+                    indices[counter] = i;
+                    values[counter] = buffer[i];
+                    counter++;
+                    touched[i] = false;
+                    buffer[i] = 0.0;
+                }
+            }
+        } else {
+            System.arraycopy(touchedIndices,0,indices,0,numTouched);
+            Arrays.sort(indices);
+            for (int i = 0; i < indices.length; i++) {
+                int idx = indices[i];
+                values[i] = buffer[idx];
+                touched[idx] = false;
+                buffer[idx] = 0.0;
+            }
+        }
+        numTouched = 0;
+        return new SparseVector(buffer.length,indices,values);
+    }
+}
@@ -128,4 +128,63 @@ public interface Matrix extends Tensor, Iterable<MatrixTuple> {
      */
     public SGDVector getRow(int i);
 
+    /**
+     * Interface for matrix factorizations and decompositions.
+     * <p>
+     * Factorizations are immutable, and can be used to solve linear systems
+     * involving the factorized matrix.
+     */
+    public interface Factorization {
+        /**
+         * First dimension of the factorized matrix.
+         * @return First dimension size.
+         */
+        public int dim1();
+
+        /**
+         * Second dimension of the factorized matrix.
+         * @return Second dimension size.
+         */
+        public int dim2();
+
+        /**
+         * Compute the matrix determinant of the factorized matrix.
+         * <p>
+         * Throws {@link IllegalStateException} if the factorized matrix is not square.
+         * @return The determinant value.
+         */
+        public double determinant();
+
+        /**
+         * Solves a system of linear equations A * b = y, where y is the input vector,
+         * A is the matrix which produced this factorization, and b is the returned value.
+         * <p>
+         * For non-square factorizations (e.g., a QR factorization of a tall matrix) this returns
+         * the least squares solution.
+         * @param vector The input vector y.
+         * @return The vector b.
+         */
+        public DenseVector solve(SGDVector vector);
+
+        /**
+         * Solves the system A * X = B, where B is the input matrix, and A is the matrix which
+         * produced this factorization.
+         * @param matrix The input matrix B.
+         * @return The matrix X.
+         */
+        public DenseMatrix solve(Matrix matrix);
+
+        /**
+         * Generates the inverse of the matrix with this factorization.
+         * <p>
+         * Throws {@link IllegalStateException} if the factorized matrix is not square.
+         * @return The matrix inverse.
+         */
+        default public DenseMatrix inverse() {
+            if (dim1() != dim2()) {
+                throw new IllegalStateException("Can only invert a square matrix, found (" + dim1() + "," + dim2() + ")");
+            }
+            return solve(DenseMatrix.identity(dim1()));
+        }
+    }
 }
@@ -0,0 +1,233 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.tribuo.math.la;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * The QR factorization of a matrix with at least as many rows as columns, A = Q * R,
+ * computed using Householder reflections.
+ * <p>
+ * Q is an orthonormal matrix with the same shape as A, and R is a square upper
+ * triangular matrix. The factorization can be used to solve least squares problems.
+ * <p>
+ * Created by {@link DenseMatrix#qrFactorization()}.
+ */
+public final class QRFactorization implements Matrix.Factorization {
+
+    /**
+     * The tolerance below which a diagonal element of R is considered to be zero.
+     */
+    public static final double TOLERANCE = 1e-14;
+
+    // The Householder vectors are stored below the diagonal, R is stored above it.
+    private final double[][] qr;
+    private final double[] rDiagonal;
+    private final int dim1;
+    private final int dim2;
+
+    private QRFactorization(double[][] qr, double[] rDiagonal) {
+        this.qr = qr;
+        this.rDiagonal = rDiagonal;
+        this.dim1 = qr.length;
+        this.dim2 = rDiagonal.length;
+    }
+
+    /**
+     * Computes the QR factorization of the supplied matrix.
+     * <p>
+     * Returns {@link Optional#empty()} if the matrix has more columns than rows, or if it is rank deficient.
+     * @param matrix The matrix to factorize.
+     * @return The QR factorization if it exists.
+     */
+    static Optional<QRFactorization> factorize(DenseMatrix matrix) {
+        int m = matrix.dim1;
+        int n = matrix.dim2;
+        if (m < n) {
+            return Optional.empty();
+        }
+        double[][] qr = matrix.copy().values;
+        double[] rDiagonal = new double[n];
+        for (int k = 0; k < n; k++) {
+            // Compute the two norm of the k-th column below the diagonal
+            double norm = 0.0;
+            for (int i = k; i < m; i++) {
+                norm = Math.hypot(norm, qr[i][k]);
+            }
+            if (norm != 0.0) {
+                // Form the k-th Householder vector
+                if (qr[k][k] < 0) {
+                    norm = -norm;
+                }
+                for (int i = k; i < m; i++) {
+                    qr[i][k] /= norm;
+                }
+                qr[k][k] += 1.0;
+                // Apply the transformation to the remaining columns
+                for (int j = k + 1; j < n; j++) {
+                    double s = 0.0;
+                    for (int i = k; i < m; i++) {
+                        s += qr[i][k] * qr[i][j];
+                    }
+                    s = -s / qr[k][k];
+                    for (int i = k; i < m; i++) {
+                        qr[i][j] += s * qr[i][k];
+                    }
+                }
+            }
+            rDiagonal[k] = -norm;
+            if (Math.abs(rDiagonal[k]) <= TOLERANCE) {
+                // Rank deficient
+                return Optional.empty();
+            }
+        }
+        return Optional.of(new QRFactorization(qr, rDiagonal));
+    }
+
+    @Override
+    public int dim1() {
+        return dim1;
+    }
+
+    @Override
+    public int dim2() {
+        return dim2;
+    }
+
+    /**
+     * Generates the orthonormal factor Q, which has the same shape as the factorized matrix.
+     * @return The Q matrix.
+     */
+    public DenseMatrix qMatrix() {
+        double[][] q = new double[dim1][dim2];
+        for (int k = dim2 - 1; k >= 0; k--) {
+            q[k][k] = 1.0;
+            for (int j = k; j < dim2; j++) {
+                double s = 0.0;
+                for (int i = k; i < dim1; i++) {
+                    s += qr[i][k] * q[i][j];
+                }
+                s = -s / qr[k][k];
+                for (int i = k; i < dim1; i++) {
+                    q[i][j] += s * qr[i][k];
+                }
+            }
+        }
+        return new DenseMatrix(q);
+    }
+
+    /**
+     * Generates the upper triangular factor R, which is square with size {@link #dim2()}.
+     * @return The R matrix.
+     */
+    public DenseMatrix rMatrix() {
+        double[][] r = new double[dim2][dim2];
+        for (int i = 0; i < dim2; i++) {
+            r[i][i] = rDiagonal[i];
+            for (int j = i + 1; j < dim2; j++) {
+                r[i][j] = qr[i][j];
+            }
+        }
+        return new DenseMatrix(r);
+    }
+
+    /**
+     * The determinant of the factorized matrix, which must be square.
+     * <p>
+     * Each Householder reflection has determinant -1, so this is the product of the diagonal of R
+     * multiplied by -1 for each reflection.
+     * @return The determinant.
+     */
+    @Override
+    public double determinant() {
+        if (dim1 != dim2) {
+            throw new IllegalStateException("Determinant is only defined for square matrices, found (" + dim1 + "," + dim2 + ")");
+        }
+        double det = (dim2 % 2 == 0) ? 1.0 : -1.0;
+        for (int i = 0; i < dim2; i++) {
+            det *= rDiagonal[i];
+        }
+        return det;
+    }
+
+    /**
+     * Computes the least squares solution to A * b = y.
+     * @param vector The input vector y.
+     * @return The vector b which minimises the squared error.
+     */
+    @Override
+    public DenseVector solve(SGDVector vector) {
+        if (vector.size() != dim1) {
+            throw new IllegalArgumentException("Size mismatch, expected " + dim1 + ", received " + vector.size());
+        }
+        double[] values = vector.toArray();
+        solveInPlace(values);
+        return new DenseVector(Arrays.copyOf(values,dim2));
+    }
+
+    /**
+     * Computes the least squares solution to A * X = B.
+     * @param matrix The input matrix B.
+     * @return The matrix X which minimises the squared error.
+     */
+    @Override
+    public DenseMatrix solve(Matrix matrix) {
+        if (matrix.getDimension1Size() != dim1) {
+            throw new IllegalArgumentException("Size mismatch, expected " + dim1 + ", received " + matrix.getDimension1Size());
+        }
+        int numColumns = matrix.getDimension2Size();
+        double[][] output = new double[dim2][numColumns];
+        double[] column = new double[dim1];
+        for (int j = 0; j < numColumns; j++) {
+            for (int i = 0; i < dim1; i++) {
+                column[i] = matrix.get(i,j);
+            }
+            solveInPlace(column);
+            for (int i = 0; i < dim2; i++) {
+                output[i][j] = column[i];
+            }
+        }
+        return new DenseMatrix(output);
+    }
+
+    /**
+     * Computes Q^T * y and then solves R * b = Q^T * y, writing b into the first {@link #dim2()}
+     * elements of the supplied array.
+     * @param values The right hand side y, overwritten with the solution.
+     */
+    private void solveInPlace(double[] values) {
+        // Compute Q^T * y
+        for (int k = 0; k < dim2; k++) {
+            double s = 0.0;
+            for (int i = k; i < dim1; i++) {
+                s += qr[i][k] * values[i];
+            }
+            s = -s / qr[k][k];
+            for (int i = k; i < dim1; i++) {
+                values[i] += s * qr[i][k];
+            }
+        }
+        // Solve R * b = Q^T * y
+        for (int k = dim2 - 1; k >= 0; k--) {
+            values[k] /= rDiagonal[k];
+            for (int i = 0; i < k; i++) {
+                values[i] -= values[k] * qr[i][k];
+            }
+        }
+    }
+}
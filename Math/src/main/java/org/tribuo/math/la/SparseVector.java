@@ -521,6 +521,8 @@ public class SparseVector implements SGDVector {
             }
 
             return score;
+        } else if (DenseVector.isPlain(other)) {
+            return ArrayKernels.KERNELS.sparseDot(((DenseVector) other).elements,indices,values);
         } else if (other instanceof DenseVector) {
             double score = 0.0;
 
@@ -47,6 +47,17 @@ public interface Tensor extends Serializable {
      */
     public int[] getShape();
 
+    /**
+     * Returns a deep copy of this {@link Tensor}.
+     * <p>
+     * The default implementation throws {@link UnsupportedOperationException}, all the
+     * Tensor implementations in Tribuo override it.
+     * @return A copy of this Tensor.
+     */
+    default public Tensor copy() {
+        throw new UnsupportedOperationException(getClass().getName() + " does not support copy()");
+    }
+
     /**
      * Reshapes the Tensor to the supplied shape. Throws {@link IllegalArgumentException} if the shape isn't compatible.
      * @param shape The desired shape.
@@ -21,8 +21,9 @@
  * a dense array of sparse row vectors.
  * </p>
  * <p>
- * It's a single threaded implementation in pure Java. We're looking at ways of improving the speed
- * using new technologies coming in future releases of Java.
+ * It's a single threaded implementation in pure Java. When running on Java 16 or newer with the
+ * {@code jdk.incubator.vector} module enabled, the core dense kernels (dot products, distances and
+ * matrix-vector products) use the Vector API, falling back to scalar loops otherwise.
  * </p>
  */
 package org.tribuo.math.la;
\ No newline at end of file
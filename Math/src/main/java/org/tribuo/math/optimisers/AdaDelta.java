@@ -23,6 +23,9 @@ import org.tribuo.math.Parameters;
 import org.tribuo.math.StochasticGradientOptimiser;
 import org.tribuo.math.la.Tensor;
 
+import java.util.Optional;
+import java.util.function.UnaryOperator;
+
 /**
  * An implementation of the AdaDelta gradient optimiser.
  * <p>
@@ -102,6 +105,31 @@ public class AdaDelta implements StochasticGradientOptimiser {
         velocitySquared = null;
     }
 
+    @Override
+    public boolean transformState(UnaryOperator<Tensor> transform) {
+        if (gradsSquared != null) {
+            for (int i = 0; i < gradsSquared.length; i++) {
+                gradsSquared[i] = transform.apply(gradsSquared[i]);
+                velocitySquared[i] = transform.apply(velocitySquared[i]);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Optional<StochasticGradientOptimiser> copyWithState() {
+        AdaDelta copy = copy();
+        if (gradsSquared != null) {
+            copy.gradsSquared = new Tensor[gradsSquared.length];
+            copy.velocitySquared = new Tensor[velocitySquared.length];
+            for (int i = 0; i < gradsSquared.length; i++) {
+                copy.gradsSquared[i] = gradsSquared[i].copy();
+                copy.velocitySquared[i] = velocitySquared[i].copy();
+            }
+        }
+        return Optional.of(copy);
+    }
+
     @Override
     public AdaDelta copy() {
         return new AdaDelta(rho,epsilon);
@@ -23,7 +23,9 @@ import org.tribuo.math.Parameters;
 import org.tribuo.math.StochasticGradientOptimiser;
 import org.tribuo.math.la.Tensor;
 
+import java.util.Optional;
 import java.util.function.DoubleUnaryOperator;
+import java.util.function.UnaryOperator;
 import java.util.logging.Logger;
 
 /**
@@ -105,6 +107,28 @@ public class AdaGrad implements StochasticGradientOptimiser {
         gradsSquared = null;
     }
 
+    @Override
+    public boolean transformState(UnaryOperator<Tensor> transform) {
+        if (gradsSquared != null) {
+            for (int i = 0; i < gradsSquared.length; i++) {
+                gradsSquared[i] = transform.apply(gradsSquared[i]);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Optional<StochasticGradientOptimiser> copyWithState() {
+        AdaGrad copy = copy();
+        if (gradsSquared != null) {
+            copy.gradsSquared = new Tensor[gradsSquared.length];
+            for (int i = 0; i < gradsSquared.length; i++) {
+                copy.gradsSquared[i] = gradsSquared[i].copy();
+            }
+        }
+        return Optional.of(copy);
+    }
+
     @Override
     public AdaGrad copy() {
         return new AdaGrad(initialLearningRate,epsilon);
@@ -23,7 +23,9 @@ import org.tribuo.math.Parameters;
 import org.tribuo.math.StochasticGradientOptimiser;
 import org.tribuo.math.la.Tensor;
 
+import java.util.Optional;
 import java.util.function.DoubleUnaryOperator;
+import java.util.function.UnaryOperator;
 
 /**
  * An implementation of the Adam gradient optimiser.
@@ -128,6 +130,32 @@ public class Adam implements StochasticGradientOptimiser {
         iterations = 0;
     }
 
+    @Override
+    public boolean transformState(UnaryOperator<Tensor> transform) {
+        if (firstMoment != null) {
+            for (int i = 0; i < firstMoment.length; i++) {
+                firstMoment[i] = transform.apply(firstMoment[i]);
+                secondMoment[i] = transform.apply(secondMoment[i]);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Optional<StochasticGradientOptimiser> copyWithState() {
+        Adam copy = copy();
+        copy.iterations = iterations;
+        if (firstMoment != null) {
+            copy.firstMoment = new Tensor[firstMoment.length];
+            copy.secondMoment = new Tensor[secondMoment.length];
+            for (int i = 0; i < firstMoment.length; i++) {
+                copy.firstMoment[i] = firstMoment[i].copy();
+                copy.secondMoment[i] = secondMoment[i].copy();
+            }
+        }
+        return Optional.of(copy);
+    }
+
     @Override
     public Adam copy() {
         return new Adam(initialLearningRate,betaOne,betaTwo,epsilon);
@@ -0,0 +1,481 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.tribuo.math.optimisers;
+
+import com.oracle.labs.mlrg.olcut.config.Config;
+import com.oracle.labs.mlrg.olcut.config.Configurable;
+import com.oracle.labs.mlrg.olcut.config.PropertyException;
+import com.oracle.labs.mlrg.olcut.provenance.ConfiguredObjectProvenance;
+import com.oracle.labs.mlrg.olcut.provenance.Provenancable;
+import com.oracle.labs.mlrg.olcut.provenance.impl.ConfiguredObjectProvenanceImpl;
+import org.tribuo.math.BatchObjective;
+import org.tribuo.math.Parameters;
+import org.tribuo.math.la.DenseMatrix;
+import org.tribuo.math.la.DenseVector;
+import org.tribuo.math.la.Tensor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * An implementation of the limited memory BFGS quasi-Newton optimiser, along with
+ * the orthant-wise extension (OWL-QN) used when there is an L1 penalty.
+ * <p>
+ * Unlike the {@link org.tribuo.math.StochasticGradientOptimiser} implementations this is
+ * a full batch optimiser, each evaluation computes the objective and gradient over the whole
+ * training set. The examples are split into contiguous chunks, one per thread, each of which
+ * accumulates into its own gradient copy before they are summed.
+ * <p>
+ * Minimises the negation of the supplied {@link BatchObjective} plus
+ * {@code l2/2 ||w||^2 + l1 ||w||_1}. All the parameters are regularised, including any biases.
+ * When {@code l1} is zero this is standard L-BFGS with a backtracking line search.
+ * <p>
+ * Only supports {@link Parameters} which are made of {@link DenseVector}s and {@link DenseMatrix}s.
+ * <p>
+ * See:
+ * <pre>
+ * Nocedal J, Wright S.
+ * "Numerical Optimization (2nd Edition)"
+ * Springer, 2006.
+ * </pre>
+ * and for OWL-QN:
+ * <pre>
+ * Andrew G, Gao J.
+ * "Scalable Training of L1-Regularized Log-Linear Models"
+ * Proceedings of the 24th International Conference on Machine Learning (ICML 2007).
+ * </pre>
+ */
+public class LBFGS implements Configurable, Provenancable<ConfiguredObjectProvenance> {
+    private static final Logger logger = Logger.getLogger(LBFGS.class.getName());
+
+    /**
+     * Sufficient decrease constant for the Armijo condition.
+     */
+    private static final double ARMIJO = 1e-4;
+
+    /**
+     * Maximum number of step halvings in the line search.
+     */
+    private static final int MAX_LINE_SEARCH = 30;
+
+    @Config(description="The number of correction pairs used to approximate the Hessian.")
+    private int memory = 10;
+
+    @Config(description="The maximum number of iterations.")
+    private int maxIterations = 100;
+
+    @Config(description="Stop when the relative decrease in the objective falls below this value.")
+    private double tolerance = 1e-6;
+
+    @Config(description="L1 regularisation penalty, if non-zero uses OWL-QN.")
+    private double l1 = 0.0;
+
+    @Config(description="L2 regularisation penalty.")
+    private double l2 = 0.0;
+
+    @Config(description="The number of threads used to evaluate the objective.")
+    private int numThreads = 1;
+
+    @Config(description="Log the objective after this many iterations. If -1 don't log anything.")
+    private int loggingInterval = -1;
+
+    /**
+     * For olcut.
+     */
+    private LBFGS() { }
+
+    /**
+     * Constructs an L-BFGS optimiser, using OWL-QN if l1 is non-zero.
+     * @param memory The number of correction pairs to store.
+     * @param maxIterations The maximum number of iterations.
+     * @param tolerance The relative decrease in the objective below which the optimisation stops.
+     * @param l1 The L1 penalty.
+     * @param l2 The L2 penalty.
+     * @param numThreads The number of threads used to evaluate the objective.
+     */
+    public LBFGS(int memory, int maxIterations, double tolerance, double l1, double l2, int numThreads) {
+        this.memory = memory;
+        this.maxIterations = maxIterations;
+        this.tolerance = tolerance;
+        this.l1 = l1;
+        this.l2 = l2;
+        this.numThreads = numThreads;
+        postConfig();
+    }
+
+    /**
+     * Constructs an L-BFGS optimiser with an L2 penalty, storing 10 correction pairs and using
+     * a tolerance of 1e-6.
+     * @param maxIterations The maximum number of iterations.
+     * @param l2 The L2 penalty.
+     * @param numThreads The number of threads used to evaluate the objective.
+     */
+    public LBFGS(int maxIterations, double l2, int numThreads) {
+        this(10,maxIterations,1e-6,0.0,l2,numThreads);
+    }
+
+    /**
+     * Used by the OLCUT configuration system, and should not be called by external code.
+     */
+    @Override
+    public void postConfig() {
+        if (memory < 1) {
+            throw new PropertyException("","memory","memory must be positive, found " + memory);
+        }
+        if (maxIterations < 1) {
+            throw new PropertyException("","maxIterations","maxIterations must be positive, found " + maxIterations);
+        }
+        if (tolerance < 0.0) {
+            throw new PropertyException("","tolerance","tolerance must be non-negative, found " + tolerance);
+        }
+        if (l1 < 0.0) {
+            throw new PropertyException("","l1","l1 must be non-negative, found " + l1);
+        }
+        if (l2 < 0.0) {
+            throw new PropertyException("","l2","l2 must be non-negative, found " + l2);
+        }
+        if (numThreads < 1) {
+            throw new PropertyException("","numThreads","numThreads must be positive, found " + numThreads);
+        }
+    }
+
+    /**
+     * Optimises the supplied parameters in place.
+     * <p>
+     * The objective is evaluated on the example ranges [start,end) which partition [0,numExamples).
+     * This method is thread safe, all the optimisation state is local to the call.
+     * @param parameters The parameters to optimise, their current value is the starting point.
+     * @param numExamples The number of examples in the training set.
+     * @param objective The objective to maximise.
+     * @return The final value of the regularised minimisation objective.
+     */
+    public double optimise(Parameters parameters, int numExamples, BatchObjective objective) {
+        Tensor[] tensors = parameters.get();
+        int size = 0;
+        for (Tensor t : tensors) {
+            size += Tensor.shapeSum(t.getShape());
+        }
+        double[] x = new double[size];
+        flatten(tensors,x);
+
+        int threads = Math.min(numThreads,Math.max(1,numExamples));
+        ExecutorService pool = threads > 1 ? Executors.newFixedThreadPool(threads) : null;
+        try {
+            double[] grad = new double[size];
+            double[] newX = new double[size];
+            double[] newGrad = new double[size];
+            double[] pseudoGrad = new double[size];
+            double[] direction = new double[size];
+
+            // Ring buffer of correction pairs, head is the next slot to write.
+            double[][] s = new double[memory][];
+            double[][] y = new double[memory][];
+            double[] rho = new double[memory];
+            double[] alpha = new double[memory];
+            int stored = 0;
+            int head = 0;
+
+            double value = evaluate(parameters,x,grad,numExamples,objective,pool,threads);
+            int iteration = 0;
+            while (iteration < maxIterations) {
+                pseudoGradient(x,grad,pseudoGrad);
+                double pgNorm = Math.sqrt(dot(pseudoGrad,pseudoGrad));
+                if (pgNorm == 0.0) {
+                    break;
+                }
+
+                computeDirection(pseudoGrad,direction,s,y,rho,alpha,stored,head);
+                if (l1 != 0.0) {
+                    // Constrain the direction to the orthant of the pseudo-gradient.
+                    for (int i = 0; i < size; i++) {
+                        if (direction[i] * pseudoGrad[i] >= 0.0) {
+                            direction[i] = 0.0;
+                        }
+                    }
+                }
+                double dirDeriv = dot(direction,pseudoGrad);
+                if (dirDeriv >= 0.0) {
+                    // The curvature approximation has broken down, restart from steepest descent.
+                    stored = 0;
+                    for (int i = 0; i < size; i++) {
+                        direction[i] = -pseudoGrad[i];
+                    }
+                }
+
+                // Scale the first step as the direction hasn't been scaled by any curvature information.
+                double step = stored == 0 ? 1.0 / pgNorm : 1.0;
+                double newValue = Double.NaN;
+                boolean accepted = false;
+                for (int j = 0; j < MAX_LINE_SEARCH && !accepted; j++) {
+                    for (int i = 0; i < size; i++) {
+                        newX[i] = x[i] + step * direction[i];
+                    }
+                    if (l1 != 0.0) {
+                        project(x,pseudoGrad,newX);
+                    }
+                    newValue = evaluate(parameters,newX,newGrad,numExamples,objective,pool,threads);
+                    double decrease = 0.0;
+                    for (int i = 0; i < size; i++) {
+                        decrease += (newX[i] - x[i]) * pseudoGrad[i];
+                    }
+                    if (newValue <= value + ARMIJO * decrease) {
+                        accepted = true;
+                    } else {
+                        step *= 0.5;
+                    }
+                }
+                if (!accepted) {
+                    logger.log(Level.WARNING,"Line search failed at iteration " + iteration + ", stopping with objective " + value);
+                    break;
+                }
+
+                // Store the correction pair using the gradient of the smooth part of the objective.
+                if (s[head] == null) {
+                    s[head] = new double[size];
+                    y[head] = new double[size];
+                }
+                double sy = 0.0;
+                for (int i = 0; i < size; i++) {
+                    s[head][i] = newX[i] - x[i];
+                    y[head][i] = newGrad[i] - grad[i];
+                    sy += s[head][i] * y[head][i];
+                }
+                if (sy > 0.0) {
+                    rho[head] = 1.0 / sy;
+                    head = (head + 1) % memory;
+                    stored = Math.min(stored + 1, memory);
+                }
+
+                double relativeDecrease = (value - newValue) / Math.max(Math.max(Math.abs(value),Math.abs(newValue)),1.0);
+                double[] tmp = x;
+                x = newX;
+                newX = tmp;
+                tmp = grad;
+                grad = newGrad;
+                newGrad = tmp;
+                value = newValue;
+                iteration++;
+
+                if ((loggingInterval != -1) && (iteration % loggingInterval == 0)) {
+                    logger.info("At iteration " + iteration + ", objective = " + value);
+                }
+                if (relativeDecrease < tolerance) {
+                    break;
+                }
+            }
+            // The last evaluation may have been a rejected line search step.
+            unflatten(x,parameters.get());
+            logger.fine("LBFGS finished after " + iteration + " iterations, objective = " + value);
+            return value;
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Writes x into the parameters, evaluates the objective in parallel and writes the
+     * gradient of the smooth part of the minimisation objective into grad.
+     * @return The value of the regularised minimisation objective.
+     */
+    private double evaluate(Parameters parameters, double[] x, double[] grad, int numExamples, BatchObjective objective, ExecutorService pool, int threads) {
+        unflatten(x,parameters.get());
+        double value;
+        Tensor[] gradient;
+        if (pool == null) {
+            gradient = parameters.getEmptyCopy();
+            value = objective.valueAndGradient(0,numExamples,gradient);
+        } else {
+            List<Future<Double>> futures = new ArrayList<>();
+            List<Tensor[]> accumulators = new ArrayList<>();
+            int chunkSize = (numExamples + threads - 1) / threads;
+            for (int i = 0; i < threads; i++) {
+                int start = i * chunkSize;
+                int end = Math.min(numExamples, start + chunkSize);
+                Tensor[] accumulator = parameters.getEmptyCopy();
+                accumulators.add(accumulator);
+                futures.add(pool.submit(() -> objective.valueAndGradient(start,end,accumulator)));
+            }
+            try {
+                value = 0.0;
+                for (Future<Double> f : futures) {
+                    value += f.get();
+                }
+            } catch (InterruptedException | ExecutionException e) {
+                throw new IllegalStateException("Failed to evaluate the objective in parallel",e);
+            }
+            gradient = accumulators.get(0);
+            for (int i = 1; i < accumulators.size(); i++) {
+                Tensor[] other = accumulators.get(i);
+                for (int j = 0; j < gradient.length; j++) {
+                    gradient[j].intersectAndAddInPlace(other[j]);
+                }
+            }
+        }
+        flatten(gradient,grad);
+
+        double loss = -value;
+        for (int i = 0; i < grad.length; i++) {
+            grad[i] = -grad[i] + l2 * x[i];
+            loss += 0.5 * l2 * x[i] * x[i] + l1 * Math.abs(x[i]);
+        }
+        return loss;
+    }
+
+    /**
+     * Computes the pseudo-gradient of the L1 regularised objective, or copies
+     * the gradient if there is no L1 penalty.
+     */
+    private void pseudoGradient(double[] x, double[] grad, double[] pseudoGrad) {
+        if (l1 == 0.0) {
+            System.arraycopy(grad,0,pseudoGrad,0,grad.length);
+        } else {
+            for (int i = 0; i < x.length; i++) {
+                if (x[i] > 0.0) {
+                    pseudoGrad[i] = grad[i] + l1;
+                } else if (x[i] < 0.0) {
+                    pseudoGrad[i] = grad[i] - l1;
+                } else if (grad[i] + l1 < 0.0) {
+                    pseudoGrad[i] = grad[i] + l1;
+                } else if (grad[i] - l1 > 0.0) {
+                    pseudoGrad[i] = grad[i] - l1;
+                } else {
+                    pseudoGrad[i] = 0.0;
+                }
+            }
+        }
+    }
+
+    /**
+     * Zeros any element of newX which has left the orthant chosen at x.
+     */
+    private static void project(double[] x, double[] pseudoGrad, double[] newX) {
+        for (int i = 0; i < x.length; i++) {
+            double orthant = x[i] != 0.0 ? Math.signum(x[i]) : -Math.signum(pseudoGrad[i]);
+            if (Math.signum(newX[i]) != orthant) {
+                newX[i] = 0.0;
+            }
+        }
+    }
+
+    /**
+     * The L-BFGS two loop recursion, writes -H * gradient into direction.
+     */
+    private static void computeDirection(double[] gradient, double[] direction, double[][] s, double[][] y, double[] rho, double[] alpha, int stored, int head) {
+        int memory = s.length;
+        System.arraycopy(gradient,0,direction,0,gradient.length);
+        for (int k = 0; k < stored; k++) {
+            int idx = (head - 1 - k + memory) % memory;
+            alpha[idx] = rho[idx] * dot(s[idx],direction);
+            axpy(-alpha[idx],y[idx],direction);
+        }
+        if (stored > 0) {
+            int newest = (head - 1 + memory) % memory;
+            double gamma = 1.0 / (rho[newest] * dot(y[newest],y[newest]));
+            for (int i = 0; i < direction.length; i++) {
+                direction[i] *= gamma;
+            }
+        }
+        for (int k = stored - 1; k >= 0; k--) {
+            int idx = (head - 1 - k + memory) % memory;
+            double beta = rho[idx] * dot(y[idx],direction);
+            axpy(alpha[idx] - beta,s[idx],direction);
+        }
+        for (int i = 0; i < direction.length; i++) {
+            direction[i] = -direction[i];
+        }
+    }
+
+    private static double dot(double[] a, double[] b) {
+        double sum = 0.0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    private static void axpy(double a, double[] x, double[] y) {
+        for (int i = 0; i < x.length; i++) {
+            y[i] += a * x[i];
+        }
+    }
+
+    /**
+     * Copies the values out of the tensors into a single array.
+     */
+    private static void flatten(Tensor[] tensors, double[] output) {
+        int offset = 0;
+        for (Tensor t : tensors) {
+            if (t instanceof DenseVector) {
+                DenseVector v = (DenseVector) t;
+                for (int i = 0; i < v.size(); i++) {
+                    output[offset++] = v.get(i);
+                }
+            } else if (t instanceof DenseMatrix) {
+                DenseMatrix m = (DenseMatrix) t;
+                for (int i = 0; i < m.getDimension1Size(); i++) {
+                    for (int j = 0; j < m.getDimension2Size(); j++) {
+                        output[offset++] = m.get(i,j);
+                    }
+                }
+            } else {
+                throw new IllegalStateException("LBFGS only supports DenseVector and DenseMatrix, found " + t.getClass().getName());
+            }
+        }
+    }
+
+    /**
+     * Copies the values from a single array into the tensors.
+     */
+    private static void unflatten(double[] input, Tensor[] tensors) {
+        int offset = 0;
+        for (Tensor t : tensors) {
+            if (t instanceof DenseVector) {
+                DenseVector v = (DenseVector) t;
+                for (int i = 0; i < v.size(); i++) {
+                    v.set(i,input[offset++]);
+                }
+            } else if (t instanceof DenseMatrix) {
+                DenseMatrix m = (DenseMatrix) t;
+                for (int i = 0; i < m.getDimension1Size(); i++) {
+                    for (int j = 0; j < m.getDimension2Size(); j++) {
+                        m.set(i,j,input[offset++]);
+                    }
+                }
+            } else {
+                throw new IllegalStateException("LBFGS only supports DenseVector and DenseMatrix, found " + t.getClass().getName());
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "LBFGS(memory="+memory+",maxIterations="+maxIterations+",tolerance="+tolerance+",l1="+l1+",l2="+l2+",numThreads="+numThreads+")";
+    }
+
+    @Override
+    public ConfiguredObjectProvenance getProvenance() {
+        return new ConfiguredObjectProvenanceImpl(this,"LBFGS");
+    }
+}
@@ -23,7 +23,9 @@ import org.tribuo.math.Parameters;
 import org.tribuo.math.StochasticGradientOptimiser;
 import org.tribuo.math.la.Tensor;
 
+import java.util.Optional;
 import java.util.function.DoubleUnaryOperator;
+import java.util.function.UnaryOperator;
 import java.util.logging.Logger;
 
 /**
@@ -166,6 +168,29 @@ public abstract class SGD implements StochasticGradientOptimiser {
         iteration = 0;
     }
 
+    @Override
+    public boolean transformState(UnaryOperator<Tensor> transform) {
+        if (momentum != null) {
+            for (int i = 0; i < momentum.length; i++) {
+                momentum[i] = transform.apply(momentum[i]);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Optional<StochasticGradientOptimiser> copyWithState() {
+        SGD copy = (SGD) copy();
+        copy.iteration = iteration;
+        if (momentum != null) {
+            copy.momentum = new Tensor[momentum.length];
+            for (int i = 0; i < momentum.length; i++) {
+                copy.momentum[i] = momentum[i].copy();
+            }
+        }
+        return Optional.of(copy);
+    }
+
     @Override
     public ConfiguredObjectProvenance getProvenance() {
         return new ConfiguredObjectProvenanceImpl(this,"StochasticGradientOptimiser");
@@ -26,5 +26,10 @@
  * learned parameters across the gradient descent run. This is usually used for convex problems, for non-convex ones
  * your milage may vary.
  * </p>
+ * <p>
+ * Also provides {@link org.tribuo.math.optimisers.LBFGS}, a full batch quasi-Newton optimiser
+ * (with OWL-QN for L1 regularisation) which evaluates a {@link org.tribuo.math.BatchObjective}
+ * over the whole training set in parallel.
+ * </p>
  */
 package org.tribuo.math.optimisers;
\ No newline at end of file
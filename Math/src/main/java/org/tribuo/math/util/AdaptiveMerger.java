@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.tribuo.math.util;
+
+import org.tribuo.math.la.DenseSparseMatrix;
+import org.tribuo.math.la.GradientAccumulator;
+import org.tribuo.math.la.SparseVector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Merges {@link SparseVector}s by choosing between a heap merge and a dense
+ * scatter-add based on the density of the inputs.
+ * <p>
+ * When the summed number of active elements is a small fraction of the dimension it uses
+ * {@link HeapMerger#merge(List, int, int[], double[])}, otherwise it adds the vectors into a
+ * {@link GradientAccumulator} which is reused across calls. {@link DenseSparseMatrix}
+ * inputs make this choice separately for each row.
+ * <p>
+ * As the accumulator and buffers are reused this merger is not thread safe, each
+ * training run should use its own instance.
+ */
+public class AdaptiveMerger implements Merger {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The default fraction of the dimension above which the dense accumulator is used.
+     */
+    public static final double DEFAULT_DENSITY_THRESHOLD = 0.05;
+
+    private final double densityThreshold;
+
+    private transient GradientAccumulator accumulator;
+    private transient int[] indicesBuffer;
+    private transient double[] valuesBuffer;
+
+    /**
+     * Constructs an adaptive merger using {@link #DEFAULT_DENSITY_THRESHOLD}.
+     */
+    public AdaptiveMerger() {
+        this(DEFAULT_DENSITY_THRESHOLD);
+    }
+
+    /**
+     * Constructs an adaptive merger.
+     * @param densityThreshold The ratio of summed active elements to dimension above which the
+     *                         dense accumulator is used. 0.0 always uses the accumulator,
+     *                         {@link Double#POSITIVE_INFINITY} always uses the heap merge.
+     */
+    public AdaptiveMerger(double densityThreshold) {
+        if (densityThreshold < 0.0 || Double.isNaN(densityThreshold)) {
+            throw new IllegalArgumentException("densityThreshold must be non-negative, found " + densityThreshold);
+        }
+        this.densityThreshold = densityThreshold;
+    }
+
+    @Override
+    public DenseSparseMatrix merge(DenseSparseMatrix[] inputs) {
+        int denseLength = inputs[0].getDimension1Size();
+        int sparseLength = inputs[0].getDimension2Size();
+        SparseVector[] output = new SparseVector[denseLength];
+        List<SparseVector> vectors = new ArrayList<>(inputs.length);
+        for (int i = 0; i < denseLength; i++) {
+            vectors.clear();
+            for (DenseSparseMatrix m : inputs) {
+                SparseVector vec = m.getRow(i);
+                if (vec.numActiveElements() > 0) {
+                    vectors.add(vec);
+                }
+            }
+            output[i] = merge(vectors,sparseLength);
+        }
+        return new DenseSparseMatrix(Arrays.asList(output));
+    }
+
+    @Override
+    public SparseVector merge(SparseVector[] inputs) {
+        return merge(Arrays.asList(inputs),inputs[0].size());
+    }
+
+    /**
+     * Merges the non-empty vectors, picking the strategy based on their density.
+     * @param vectors The vectors to merge.
+     * @param dimension The vector dimension.
+     * @return The summed vector.
+     */
+    private SparseVector merge(List<SparseVector> vectors, int dimension) {
+        if (vectors.isEmpty()) {
+            return new SparseVector(dimension,new int[0],0.0);
+        } else if (vectors.size() == 1) {
+            return vectors.get(0).copy();
+        }
+        int totalLength = 0;
+        for (SparseVector v : vectors) {
+            totalLength += v.numActiveElements();
+        }
+        if (totalLength >= densityThreshold * dimension) {
+            if (accumulator == null || accumulator.size() != dimension) {
+                accumulator = new GradientAccumulator(dimension);
+            }
+            for (SparseVector v : vectors) {
+                accumulator.add(v);
+            }
+            return accumulator.drain();
+        } else {
+            if (indicesBuffer == null || indicesBuffer.length < totalLength) {
+                indicesBuffer = new int[totalLength];
+                valuesBuffer = new double[totalLength];
+            }
+            return HeapMerger.merge(vectors,dimension,indicesBuffer,valuesBuffer);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "AdaptiveMerger(densityThreshold=" + densityThreshold + ")";
+    }
+}
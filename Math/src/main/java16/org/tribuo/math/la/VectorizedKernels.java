@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.tribuo.math.la;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link ArrayKernels} implemented using the Vector API.
+ * <p>
+ * This class is compiled into the multi-release jar layer for the Java version used by the build, and is
+ * loaded reflectively by {@link ArrayKernels}. It requires the {@code jdk.incubator.vector}
+ * module to be enabled at runtime, if it isn't then the scalar kernels are used.
+ */
+final class VectorizedKernels extends ArrayKernels {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    VectorizedKernels() {}
+
+    @Override
+    double dot(double[] first, double[] second, int length) {
+        DoubleVector acc = DoubleVector.zero(SPECIES);
+        int bound = SPECIES.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector a = DoubleVector.fromArray(SPECIES, first, i);
+            DoubleVector b = DoubleVector.fromArray(SPECIES, second, i);
+            acc = a.fma(b, acc);
+        }
+        double score = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            score += first[i] * second[i];
+        }
+        return score;
+    }
+
+    @Override
+    double sparseDot(double[] dense, int[] indices, double[] values) {
+        DoubleVector acc = DoubleVector.zero(SPECIES);
+        int bound = SPECIES.loopBound(indices.length);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector a = DoubleVector.fromArray(SPECIES, dense, 0, indices, i);
+            DoubleVector b = DoubleVector.fromArray(SPECIES, values, i);
+            acc = a.fma(b, acc);
+        }
+        double score = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < indices.length; i++) {
+            score += dense[indices[i]] * values[i];
+        }
+        return score;
+    }
+
+    @Override
+    double squaredDistance(double[] first, double[] second, int length) {
+        DoubleVector acc = DoubleVector.zero(SPECIES);
+        int bound = SPECIES.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector diff = DoubleVector.fromArray(SPECIES, first, i).sub(DoubleVector.fromArray(SPECIES, second, i));
+            acc = diff.fma(diff, acc);
+        }
+        double score = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            double tmp = first[i] - second[i];
+            score += tmp * tmp;
+        }
+        return score;
+    }
+
+    @Override
+    void addInPlace(double[] source, double[] destination, int length) {
+        int bound = SPECIES.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector a = DoubleVector.fromArray(SPECIES, destination, i);
+            DoubleVector b = DoubleVector.fromArray(SPECIES, source, i);
+            a.add(b).intoArray(destination, i);
+        }
+        for (; i < length; i++) {
+            destination[i] += source[i];
+        }
+    }
+
+    @Override
+    boolean isVectorized() {
+        return true;
+    }
+}
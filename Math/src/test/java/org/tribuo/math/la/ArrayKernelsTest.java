@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.tribuo.math.la;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Checks the kernels selected at runtime agree with the scalar kernels.
+ */
+public class ArrayKernelsTest {
+
+    /**
+     * Set by the vector-api profile, which puts the vector kernels on the test classpath.
+     */
+    private static final String EXPECT_VECTOR_PROPERTY = "org.tribuo.math.la.expectVectorKernels";
+
+    private static final ArrayKernels scalar = new ArrayKernels();
+
+    private static double[] generate(SplittableRandom rng, int length) {
+        double[] output = new double[length];
+        for (int i = 0; i < length; i++) {
+            output[i] = rng.nextDouble() - 0.5;
+        }
+        return output;
+    }
+
+    @Test
+    public void vectorKernelsActive() {
+        assumeTrue(Boolean.getBoolean(EXPECT_VECTOR_PROPERTY), "The vector kernels are only built on Java 16 or newer.");
+        assertEquals("org.tribuo.math.la.VectorizedKernels", ArrayKernels.KERNELS.getClass().getName());
+    }
+
+    @Test
+    public void kernelAgreement() {
+        SplittableRandom rng = new SplittableRandom(42);
+        // Lengths chosen to exercise both the vector loop and the scalar tail.
+        for (int length : new int[]{0,1,3,7,8,17,64,127}) {
+            double[] first = generate(rng,length);
+            double[] second = generate(rng,length);
+            assertEquals(scalar.dot(first,second,length),ArrayKernels.KERNELS.dot(first,second,length),1e-12);
+            assertEquals(scalar.squaredDistance(first,second,length),ArrayKernels.KERNELS.squaredDistance(first,second,length),1e-12);
+
+            int[] indices = new int[length/2];
+            for (int i = 0; i < indices.length; i++) {
+                indices[i] = i*2;
+            }
+            double[] values = generate(rng,indices.length);
+            assertEquals(scalar.sparseDot(first,indices,values),ArrayKernels.KERNELS.sparseDot(first,indices,values),1e-12);
+
+            double[] scalarDest = second.clone();
+            double[] kernelDest = second.clone();
+            scalar.addInPlace(first,scalarDest,length);
+            ArrayKernels.KERNELS.addInPlace(first,kernelDest,length);
+            assertArrayEquals(scalarDest,kernelDest,1e-12);
+        }
+    }
+
+    @Test
+    public void leftMultiply() {
+        DenseMatrix a = DenseMatrixTest.generateA();
+        SparseVector sparse = SparseVector.createSparseVector(4,new int[]{0,2},new double[]{1.0,-2.0});
+        DenseVector dense = sparse.densify();
+        DenseVector expected = DenseVector.createDenseVector(new double[]{-5.0,-9.0,-13.0,-17.0});
+        assertEquals(expected,a.leftMultiply(sparse));
+        assertEquals(expected,a.leftMultiply(dense));
+    }
+
+    @Test
+    public void denseAdd() {
+        DenseMatrix a = DenseMatrixTest.generateA();
+        DenseMatrix b = DenseMatrixTest.generateA();
+        b.scaleInPlace(-1.0);
+        a.intersectAndAddInPlace(b);
+        assertEquals(0.0,a.twoNorm(),1e-12);
+
+        DenseVector c = DenseVector.createDenseVector(new double[]{1,2,3,4,5});
+        DenseVector d = DenseVector.createDenseVector(new double[]{5,4,3,2,1});
+        c.intersectAndAddInPlace(d);
+        assertEquals(DenseVector.createDenseVector(new double[]{6,6,6,6,6}),c);
+    }
+}
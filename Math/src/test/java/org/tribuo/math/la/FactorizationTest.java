@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.tribuo.math.la;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FactorizationTest {
+
+    // A symmetric positive definite matrix, L = [[2,0,0],[6,1,0],[-8,5,3]]
+    private static DenseMatrix generateSPD() {
+        return DenseMatrix.createDenseMatrix(new double[][]{{4,12,-16},{12,37,-43},{-16,-43,98}});
+    }
+
+    private static DenseMatrix generateNonSymmetric() {
+        return DenseMatrix.createDenseMatrix(new double[][]{{1,2},{3,4}});
+    }
+
+    private static void assertSolves(DenseMatrix matrix, Matrix.Factorization factorization) {
+        DenseVector target = DenseVector.createDenseVector(new double[]{1,2,3});
+        DenseVector solution = factorization.solve(target);
+        assertEquals(0.0, matrix.leftMultiply(solution).euclideanDistance(target), 1e-10);
+        assertEquals(DenseMatrix.identity(3), matrix.matrixMultiply(factorization.inverse()));
+    }
+
+    @Test
+    public void choleskyTest() {
+        DenseMatrix spd = generateSPD();
+        CholeskyFactorization chol = spd.choleskyFactorization().get();
+        DenseMatrix expectedL = DenseMatrix.createDenseMatrix(new double[][]{{2,0,0},{6,1,0},{-8,5,3}});
+        assertEquals(expectedL, chol.lMatrix());
+        assertEquals(36.0, chol.determinant(), 1e-10);
+        assertSolves(spd, chol);
+
+        assertFalse(generateNonSymmetric().choleskyFactorization().isPresent());
+        // Symmetric but indefinite
+        DenseMatrix indefinite = DenseMatrix.createDenseMatrix(new double[][]{{1,2},{2,1}});
+        assertFalse(indefinite.choleskyFactorization().isPresent());
+    }
+
+    @Test
+    public void choleskyScaleTest() {
+        // The pivot check is relative, so a tiny but well conditioned matrix factorizes
+        DenseMatrix small = DenseMatrix.createDenseMatrix(new double[][]{{4e-16,2e-16},{2e-16,3e-16}});
+        CholeskyFactorization chol = small.choleskyFactorization().get();
+        assertEquals(8e-32, chol.determinant(), 1e-40);
+
+        // while a huge numerically singular matrix doesn't, even though its last pivot is large in absolute terms
+        DenseMatrix nearlySingular = DenseMatrix.createDenseMatrix(new double[][]{{1e18,1e18},{1e18,1e18 + 1e3}});
+        assertFalse(nearlySingular.choleskyFactorization().isPresent());
+    }
+
+    @Test
+    public void qrTest() {
+        DenseMatrix spd = generateSPD();
+        QRFactorization qr = spd.qrFactorization().get();
+        assertEquals(36.0, qr.determinant(), 1e-8);
+        assertEquals(spd, qr.qMatrix().matrixMultiply(qr.rMatrix()));
+        assertSolves(spd, qr);
+
+        assertEquals(-2.0, generateNonSymmetric().qrFactorization().get().determinant(), 1e-10);
+
+        // Least squares fit of y = 3.5 + 1.4x
+        DenseMatrix tall = DenseMatrix.createDenseMatrix(new double[][]{{1,1},{1,2},{1,3},{1,4}});
+        DenseVector fit = tall.qrFactorization().get().solve(DenseVector.createDenseVector(new double[]{6,5,7,10}));
+        assertEquals(3.5, fit.get(0), 1e-10);
+        assertEquals(1.4, fit.get(1), 1e-10);
+
+        // Wide and rank deficient matrices are rejected
+        assertFalse(tall.transpose().qrFactorization().isPresent());
+        DenseMatrix rankDeficient = DenseMatrix.createDenseMatrix(new double[][]{{1,2},{2,4},{3,6}});
+        assertFalse(rankDeficient.qrFactorization().isPresent());
+    }
+
+    @Test
+    public void eigenTest() {
+        DenseMatrix spd = generateSPD();
+        EigenDecomposition eig = spd.eigenDecomposition().get();
+        assertEquals(36.0, eig.determinant(), 1e-8);
+        assertSolves(spd, eig);
+        DenseVector eigenvalues = eig.eigenvalues();
+        for (int i = 0; i < 3; i++) {
+            DenseVector v = eig.getEigenvector(i);
+            assertEquals(1.0, v.twoNorm(), 1e-10);
+            assertEquals(0.0, spd.leftMultiply(v).euclideanDistance(v.scale(eigenvalues.get(i))), 1e-8);
+            if (i > 0) {
+                assertTrue(eigenvalues.get(i-1) >= eigenvalues.get(i));
+            }
+        }
+
+        assertFalse(generateNonSymmetric().eigenDecomposition().isPresent());
+    }
+}
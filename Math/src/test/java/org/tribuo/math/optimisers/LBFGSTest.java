@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.tribuo.math.optimisers;
+
+import org.junit.jupiter.api.Test;
+import org.tribuo.math.BatchObjective;
+import org.tribuo.math.Parameters;
+import org.tribuo.math.la.DenseVector;
+import org.tribuo.math.la.Tensor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class LBFGSTest {
+
+    private static final double[] TARGET = new double[]{3.0, -2.0, 0.5, -0.25, 1.5};
+
+    /**
+     * A single vector of parameters.
+     */
+    private static final class VectorParameters implements Parameters {
+        private Tensor[] weights = new Tensor[]{new DenseVector(TARGET.length)};
+
+        @Override
+        public Tensor[] getEmptyCopy() {
+            return new Tensor[]{new DenseVector(TARGET.length)};
+        }
+
+        @Override
+        public Tensor[] get() {
+            return weights;
+        }
+
+        @Override
+        public void set(Tensor[] newWeights) {
+            weights = newWeights;
+        }
+
+        @Override
+        public void update(Tensor[] gradients) {
+            weights[0].intersectAndAddInPlace(gradients[0]);
+        }
+
+        @Override
+        public Tensor[] merge(Tensor[][] gradients, int size) {
+            for (int i = 1; i < size; i++) {
+                gradients[0][0].intersectAndAddInPlace(gradients[i][0]);
+            }
+            return gradients[0];
+        }
+    }
+
+    /**
+     * Each example contributes -1/2 (a_i w_i - t_i)^2 for coordinate i = example % dim,
+     * with a per example scale so the problem isn't perfectly conditioned.
+     */
+    private static BatchObjective quadratic(Parameters parameters) {
+        return (int start, int end, Tensor[] gradient) -> {
+            DenseVector w = (DenseVector) parameters.get()[0];
+            DenseVector g = (DenseVector) gradient[0];
+            double value = 0.0;
+            for (int i = start; i < end; i++) {
+                int dim = i % TARGET.length;
+                double scale = 1.0 + dim;
+                double residual = scale * w.get(dim) - scale * TARGET[dim];
+                value -= 0.5 * residual * residual;
+                g.add(dim, -residual * scale);
+            }
+            return value;
+        };
+    }
+
+    @Test
+    public void testQuadratic() {
+        int numExamples = TARGET.length * 4;
+        VectorParameters params = new VectorParameters();
+        LBFGS lbfgs = new LBFGS(50,0.0,1);
+        double loss = lbfgs.optimise(params,numExamples,quadratic(params));
+        DenseVector w = (DenseVector) params.get()[0];
+        for (int i = 0; i < TARGET.length; i++) {
+            assertEquals(TARGET[i], w.get(i), 1e-4);
+        }
+        assertEquals(0.0, loss, 1e-6);
+    }
+
+    @Test
+    public void testParallelMatchesSerial() {
+        int numExamples = TARGET.length * 7;
+        VectorParameters serial = new VectorParameters();
+        new LBFGS(5,50,1e-9,0.0,0.1,1).optimise(serial,numExamples,quadratic(serial));
+        VectorParameters parallel = new VectorParameters();
+        new LBFGS(5,50,1e-9,0.0,0.1,4).optimise(parallel,numExamples,quadratic(parallel));
+        DenseVector s = (DenseVector) serial.get()[0];
+        DenseVector p = (DenseVector) parallel.get()[0];
+        for (int i = 0; i < TARGET.length; i++) {
+            assertEquals(s.get(i), p.get(i), 1e-8);
+        }
+    }
+
+    @Test
+    public void testL1() {
+        // One example per dimension, so the solution is the soft thresholded target scaled by 1/(1+dim)^2.
+        int numExamples = TARGET.length;
+        double l1 = 1.0;
+        VectorParameters params = new VectorParameters();
+        new LBFGS(10,200,1e-12,l1,0.0,1).optimise(params,numExamples,quadratic(params));
+        DenseVector w = (DenseVector) params.get()[0];
+        for (int i = 0; i < TARGET.length; i++) {
+            double scaleSq = (1.0 + i) * (1.0 + i);
+            double unpenalised = scaleSq * TARGET[i];
+            double expected = Math.signum(unpenalised) * Math.max(Math.abs(unpenalised) - l1, 0.0) / scaleSq;
+            assertEquals(expected, w.get(i), 1e-5);
+        }
+    }
+}
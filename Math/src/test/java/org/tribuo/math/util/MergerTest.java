@@ -16,8 +16,10 @@
 
 package org.tribuo.math.util;
 
+import org.tribuo.math.LinearParameters;
 import org.tribuo.math.la.DenseSparseMatrix;
 import org.tribuo.math.la.SparseVector;
+import org.tribuo.math.la.Tensor;
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -151,6 +153,39 @@ public class MergerTest {
         testMerger(merger);
     }
 
+    @Test
+    public void testAdaptiveMerger() {
+        testMerger(new AdaptiveMerger());
+        // Always use the dense accumulator
+        testMerger(new AdaptiveMerger(0.0));
+        // Always use the heap
+        testMerger(new AdaptiveMerger(Double.POSITIVE_INFINITY));
+    }
+
+    @Test
+    public void testAdaptiveMergerSparseVectors() {
+        // Large dimension with few active elements exercises the sorted gather in the accumulator.
+        SparseVector[] vectors = new SparseVector[3];
+        vectors[0] = SparseVector.createSparseVector(1000,new int[]{999,3,500},new double[]{1,2,3});
+        vectors[1] = SparseVector.createSparseVector(1000,new int[]{3,42},new double[]{-2,5});
+        vectors[2] = SparseVector.createSparseVector(1000,new int[]{0,500,998},new double[]{7,1,1});
+        SparseVector expected = new HeapMerger().merge(vectors);
+        AdaptiveMerger dense = new AdaptiveMerger(0.0);
+        assertEquals(expected, dense.merge(vectors));
+        // Check the accumulator was reset
+        assertEquals(expected, dense.merge(vectors));
+        assertEquals(expected, new AdaptiveMerger(Double.POSITIVE_INFINITY).merge(vectors));
+    }
+
+    @Test
+    public void testLinearParametersMerger() {
+        for (Merger merger : new Merger[]{new HeapMerger(), new AdaptiveMerger(0.0), new AdaptiveMerger(Double.POSITIVE_INFINITY)}) {
+            LinearParameters parameters = new LinearParameters(20,2,merger);
+            Tensor[][] gradients = new Tensor[][]{{generateAB()},{generateAB()}};
+            assertEquals(generateAABB(), parameters.merge(gradients,2)[0]);
+        }
+    }
+
     public void testMerger(Merger merger) {
         DenseSparseMatrix[] array = new DenseSparseMatrix[2];
         array[0] = generateA();
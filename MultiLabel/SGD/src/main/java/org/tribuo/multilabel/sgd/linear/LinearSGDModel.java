@@ -22,9 +22,9 @@ import org.tribuo.ImmutableOutputInfo;
 import org.tribuo.Prediction;
 import org.tribuo.classification.Label;
 import org.tribuo.common.sgd.AbstractLinearSGDModel;
+import org.tribuo.common.sgd.LinearScorer;
 import org.tribuo.math.LinearParameters;
 import org.tribuo.math.la.DenseMatrix;
-import org.tribuo.math.la.DenseVector;
 import org.tribuo.math.util.VectorNormalizer;
 import org.tribuo.multilabel.MultiLabel;
 import org.tribuo.provenance.ModelProvenance;
@@ -68,21 +68,22 @@ public class LinearSGDModel extends AbstractLinearSGDModel<MultiLabel> {
 
     @Override
     public Prediction<MultiLabel> predict(Example<MultiLabel> example) {
-        PredAndActive predTuple = predictSingle(example);
-        DenseVector outputs = predTuple.prediction;
-        outputs.normalize(normalizer);
+        LinearScorer scorer = getScorer();
+        double[] outputs = scorer.getBuffer();
+        int numUsed = scorer.score(example,outputs);
+        normalizer.normalizeInPlace(outputs);
         Map<String,MultiLabel> fullLabels = new HashMap<>();
         Set<Label> predictedLabels = new HashSet<>();
-        for (int i = 0; i < outputs.size(); i++) {
+        for (int i = 0; i < outputs.length; i++) {
             String labelName = outputIDInfo.getOutput(i).getLabelString();
-            double labelScore = outputs.get(i);
+            double labelScore = outputs[i];
             Label score = new Label(outputIDInfo.getOutput(i).getLabelString(),labelScore);
             if (labelScore > threshold) {
                 predictedLabels.add(score);
             }
             fullLabels.put(labelName,new MultiLabel(score));
         }
-        return new Prediction<>(new MultiLabel(predictedLabels), fullLabels, predTuple.numActiveFeatures - 1, example, generatesProbabilities);
+        return new Prediction<>(new MultiLabel(predictedLabels), fullLabels, numUsed, example, generatesProbabilities);
     }
 
     @Override
@@ -92,6 +93,8 @@ public class LinearSGDModel extends AbstractLinearSGDModel<MultiLabel> {
 
     @Override
     protected LinearSGDModel copy(String newName, ModelProvenance newProvenance) {
-        return new LinearSGDModel(newName,newProvenance,featureIDMap,outputIDInfo,new DenseMatrix(baseWeights),normalizer,generatesProbabilities,threshold);
+        LinearSGDModel copy = new LinearSGDModel(newName,newProvenance,featureIDMap,outputIDInfo,new DenseMatrix(baseWeights),normalizer,generatesProbabilities,threshold);
+        copy.setCompileScorer(isCompileScorer());
+        return copy;
     }
 }
@@ -29,6 +29,7 @@ import org.tribuo.regression.evaluation.RegressionEvaluation;
 import org.tribuo.regression.evaluation.RegressionEvaluator;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
@@ -125,9 +126,19 @@ public final class RegressionFactory implements OutputFactory<Regressor> {
 
         MutableRegressionInfo info = new MutableRegressionInfo();
 
+        // Each id maps to a single dimension, but an observation must contain every dimension,
+        // so combine them into a single Regressor.
+        List<Regressor.DimensionTuple> dimensions = new ArrayList<>();
         for (Map.Entry<Regressor,Integer> e : mapping.entrySet()) {
-            info.observe(e.getKey());
+            String[] names = e.getKey().getNames();
+            if (names.length != 1) {
+                throw new IllegalArgumentException("Mapping must contain a single regression dimension per id, but contains " + Arrays.toString(names) + " -> " + e.getValue());
+            }
+            for (Regressor.DimensionTuple t : e.getKey()) {
+                dimensions.add(t);
+            }
         }
+        info.observe(new Regressor(dimensions.toArray(new Regressor.DimensionTuple[0])));
 
         return new ImmutableRegressionInfo(info,mapping);
     }
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.tribuo.regression;
+
+import org.junit.jupiter.api.Test;
+import org.tribuo.ImmutableOutputInfo;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class RegressionFactoryTest {
+
+    @Test
+    public void externalModelInfo() {
+        RegressionFactory factory = new RegressionFactory();
+
+        Map<Regressor,Integer> single = new HashMap<>();
+        single.put(new Regressor("a", Double.NaN), 0);
+        ImmutableOutputInfo<Regressor> singleInfo = factory.constructInfoForExternalModel(single);
+        assertEquals(1, singleInfo.size());
+        assertEquals(0, singleInfo.getID(new Regressor("a", Double.NaN)));
+
+        // The ids don't have to follow the dimension names.
+        Map<Regressor,Integer> multi = new HashMap<>();
+        multi.put(new Regressor("c", Double.NaN), 0);
+        multi.put(new Regressor("a", Double.NaN), 1);
+        multi.put(new Regressor("b", Double.NaN), 2);
+        ImmutableOutputInfo<Regressor> multiInfo = factory.constructInfoForExternalModel(multi);
+        assertEquals(3, multiInfo.size());
+        assertEquals(0, multiInfo.getID(new Regressor("c", Double.NaN)));
+        assertEquals(1, multiInfo.getID(new Regressor("a", Double.NaN)));
+        assertEquals(2, multiInfo.getID(new Regressor("b", Double.NaN)));
+        assertEquals("c", multiInfo.getOutput(0).getNames()[0]);
+        assertArrayEquals(new String[]{"a","b","c"}, Regressor.extractNames(multiInfo));
+
+        // Each id must map to a single dimension.
+        Map<Regressor,Integer> invalid = new HashMap<>();
+        invalid.put(new Regressor(new String[]{"a","b"}, new double[]{Double.NaN, Double.NaN}), 0);
+        invalid.put(new Regressor("c", Double.NaN), 1);
+        assertThrows(IllegalArgumentException.class, () -> factory.constructInfoForExternalModel(invalid));
+    }
+
+}
@@ -25,7 +25,6 @@ import org.tribuo.ImmutableOutputInfo;
 import org.tribuo.Model;
 import org.tribuo.Prediction;
 import org.tribuo.common.liblinear.LibLinearModel;
-import org.tribuo.common.liblinear.LibLinearTrainer;
 import org.tribuo.provenance.ModelProvenance;
 import org.tribuo.regression.Regressor;
 import de.bwaldvogel.liblinear.FeatureNode;
@@ -74,7 +73,7 @@ public class LibLinearRegressionModel extends LibLinearModel<Regressor> {
 
     @Override
     public Prediction<Regressor> predict(Example<Regressor> example) {
-        FeatureNode[] features = LibLinearTrainer.exampleToNodes(example, featureIDMap, null);
+        FeatureNode[] features = exampleToNodes(example);
         // Bias feature is always set
         if (features.length == 1) {
             throw new IllegalArgumentException("No features found in Example " + example.toString());
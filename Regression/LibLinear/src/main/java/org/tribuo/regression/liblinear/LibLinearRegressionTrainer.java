@@ -35,6 +35,10 @@ import de.bwaldvogel.liblinear.Problem;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Logger;
 
 /**
@@ -79,7 +83,26 @@ public class LibLinearRegressionTrainer extends LibLinearTrainer<Regressor> {
      * @param epsilon The insensitivity of the regression loss to small differences.
      */
     public LibLinearRegressionTrainer(LinearRegressionType trainerType, double cost, int maxIterations, double terminationCriterion, double epsilon) {
+        this(trainerType,cost,maxIterations,terminationCriterion,epsilon,1);
+    }
+
+    /**
+     * Creates a trainer for a LibLinear model which trains the per dimension models concurrently.
+     * <p>
+     * The dimensions share the extracted features, so this uses no more memory than training
+     * them sequentially apart from the per thread liblinear working state. Note the dual solvers
+     * draw from liblinear's global random number generator, so when using more than one thread
+     * their models depend on the order the threads are scheduled in.
+     * @param trainerType Loss function and optimisation method combination.
+     * @param cost Cost penalty for each incorrectly classified training point.
+     * @param maxIterations The maximum number of dataset iterations.
+     * @param terminationCriterion How close does the optimisation function need to be before terminating that subproblem (usually set to 0.1).
+     * @param epsilon The insensitivity of the regression loss to small differences.
+     * @param numThreads The number of threads to use, also used to convert the dataset.
+     */
+    public LibLinearRegressionTrainer(LinearRegressionType trainerType, double cost, int maxIterations, double terminationCriterion, double epsilon, int numThreads) {
         super(trainerType,cost,maxIterations,terminationCriterion,epsilon);
+        setNumThreads(numThreads);
     }
 
     /**
@@ -97,21 +120,51 @@ public class LibLinearRegressionTrainer extends LibLinearTrainer<Regressor> {
     protected List<Model> trainModels(Parameter curParams, int numFeatures, FeatureNode[][] features, double[][] outputs) {
         ArrayList<Model> models = new ArrayList<>();
 
-        for (int i = 0; i < outputs.length; i++) {
-            Problem data = new Problem();
-
-            data.l = features.length;
-            data.y = outputs[i];
-            data.x = features;
-            data.n = numFeatures;
-            data.bias = 1.0;
-
-            models.add(Linear.train(data, curParams));
+        if ((numThreads == 1) || (outputs.length == 1)) {
+            for (int i = 0; i < outputs.length; i++) {
+                models.add(Linear.train(createProblem(numFeatures,features,outputs[i]), curParams));
+            }
+        } else {
+            // Each dimension is an independent problem over the same read-only features.
+            ExecutorService pool = Executors.newFixedThreadPool(Math.min(numThreads, outputs.length));
+            try {
+                List<Future<Model>> futures = new ArrayList<>(outputs.length);
+                for (int i = 0; i < outputs.length; i++) {
+                    final Problem data = createProblem(numFeatures,features,outputs[i]);
+                    futures.add(pool.submit(() -> Linear.train(data, curParams)));
+                }
+                for (Future<Model> f : futures) {
+                    models.add(f.get());
+                }
+            } catch (InterruptedException | ExecutionException e) {
+                throw new IllegalStateException("Failed to train the per dimension liblinear models", e);
+            } finally {
+                pool.shutdown();
+            }
         }
 
         return models;
     }
 
+    /**
+     * Creates a liblinear problem for a single output dimension.
+     * @param numFeatures The number of features, including the bias.
+     * @param features The features.
+     * @param outputs The regression targets for this dimension.
+     * @return The liblinear problem.
+     */
+    private static Problem createProblem(int numFeatures, FeatureNode[][] features, double[] outputs) {
+        Problem data = new Problem();
+
+        data.l = features.length;
+        data.y = outputs;
+        data.x = features;
+        data.n = numFeatures;
+        data.bias = 1.0;
+
+        return data;
+    }
+
     @Override
     protected LibLinearModel<Regressor> createModel(ModelProvenance provenance, ImmutableFeatureMap featureIDMap, ImmutableOutputInfo<Regressor> outputIDInfo, List<Model> models) {
         if (models.size() != outputIDInfo.size()) {
@@ -123,8 +176,7 @@ public class LibLinearRegressionTrainer extends LibLinearTrainer<Regressor> {
     @Override
     protected Pair<FeatureNode[][], double[][]> extractData(Dataset<Regressor> data, ImmutableOutputInfo<Regressor> outputInfo, ImmutableFeatureMap featureMap) {
         int numOutputs = outputInfo.size();
-        ArrayList<FeatureNode> featureCache = new ArrayList<>();
-        FeatureNode[][] features = new FeatureNode[data.size()][];
+        FeatureNode[][] features = extractFeatures(data,featureMap);
         double[][] outputs = new double[numOutputs][data.size()];
         int i = 0;
         for (Example<Regressor> e : data) {
@@ -132,7 +184,6 @@ public class LibLinearRegressionTrainer extends LibLinearTrainer<Regressor> {
             for (int j = 0; j < curOutputs.length; j++) {
                 outputs[j][i] = curOutputs[j];
             }
-            features[i] = exampleToNodes(e,featureMap,featureCache);
             i++;
         }
         return new Pair<>(features,outputs);
@@ -19,6 +19,7 @@ package org.tribuo.regression.liblinear;
 import com.oracle.labs.mlrg.olcut.util.Pair;
 import org.tribuo.Dataset;
 import org.tribuo.Model;
+import org.tribuo.Prediction;
 import org.tribuo.common.liblinear.LibLinearTrainer;
 import org.tribuo.regression.Regressor;
 import org.tribuo.regression.evaluation.RegressionEvaluation;
@@ -29,9 +30,11 @@ import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.tribuo.test.Helpers;
 
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 public class TestLibLinear {
@@ -94,6 +97,23 @@ public class TestLibLinear {
         testLibLinear(p);
     }
 
+    @Test
+    public void testParallelTraining() {
+        Pair<Dataset<Regressor>,Dataset<Regressor>> p = RegressionDataGenerator.multiDimDenseTrainTest();
+        // The primal solver doesn't use liblinear's random number generator so it's deterministic.
+        LinearRegressionType type = new LinearRegressionType(LinearType.L2R_L2LOSS_SVR);
+        Model<Regressor> sequential = new LibLinearRegressionTrainer(type,1.0,1000,0.1,0.1).train(p.getA());
+        Model<Regressor> parallel = new LibLinearRegressionTrainer(type,1.0,1000,0.1,0.1,4).train(p.getA());
+        List<Prediction<Regressor>> sequentialPredictions = sequential.predict(p.getB());
+        List<Prediction<Regressor>> parallelPredictions = parallel.predict(p.getB());
+        for (int i = 0; i < sequentialPredictions.size(); i++) {
+            assertArrayEquals(sequentialPredictions.get(i).getOutput().getValues(), parallelPredictions.get(i).getOutput().getValues(), 1e-12);
+        }
+        Helpers.testModelSerialization(parallel,Regressor.class);
+
+        assertThrows(IllegalArgumentException.class, () -> new LibLinearRegressionTrainer(type,1.0,1000,0.1,0.1,0));
+    }
+
     @Test
     public void testMultiInvalidExample() {
         assertThrows(IllegalArgumentException.class, () -> {
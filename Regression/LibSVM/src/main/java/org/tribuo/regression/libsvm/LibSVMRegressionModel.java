@@ -21,10 +21,8 @@ import org.tribuo.ImmutableFeatureMap;
 import org.tribuo.ImmutableOutputInfo;
 import org.tribuo.Prediction;
 import org.tribuo.common.libsvm.LibSVMModel;
-import org.tribuo.common.libsvm.LibSVMTrainer;
 import org.tribuo.provenance.ModelProvenance;
 import org.tribuo.regression.Regressor;
-import libsvm.svm;
 import libsvm.svm_model;
 import libsvm.svm_node;
 
@@ -117,7 +115,7 @@ public class LibSVMRegressionModel extends LibSVMModel<Regressor> {
 
     @Override
     public Prediction<Regressor> predict(Example<Regressor> example) {
-        svm_node[] features = LibSVMTrainer.exampleToNodes(example, featureIDMap, null);
+        svm_node[] features = exampleToNodes(example);
         if (features.length == 0) {
             throw new IllegalArgumentException("No features found in Example " + example.toString());
         }
@@ -125,7 +123,7 @@ public class LibSVMRegressionModel extends LibSVMModel<Regressor> {
         double[] regressedValues = new double[models.size()];
 
         for (int i = 0; i < regressedValues.length; i++) {
-            regressedValues[i] = svm.svm_predict_values(models.get(i), features, scores);
+            regressedValues[i] = predictValues(i, features, scores);
             if (standardized) {
                 regressedValues[i] = (regressedValues[i] * variances[i]) + means[i];
             }
@@ -158,8 +158,7 @@ public class LibSVMRegressionTrainer extends LibSVMTrainer<Regressor> {
     @Override
     protected Pair<svm_node[][], double[][]> extractData(Dataset<Regressor> data, ImmutableOutputInfo<Regressor> outputInfo, ImmutableFeatureMap featureMap) {
         int numOutputs = outputInfo.size();
-        ArrayList<svm_node> buffer = new ArrayList<>();
-        svm_node[][] features = new svm_node[data.size()][];
+        svm_node[][] features = extractFeatures(data,featureMap);
         double[][] outputs = new double[numOutputs][data.size()];
         int i = 0;
         for (Example<Regressor> e : data) {
@@ -167,7 +166,6 @@ public class LibSVMRegressionTrainer extends LibSVMTrainer<Regressor> {
             for (int j = 0; j < curOutputs.length; j++) {
                 outputs[j][i] = curOutputs[j];
             }
-            features[i] = exampleToNodes(e,featureMap,buffer);
             i++;
         }
         return new Pair<>(features,outputs);
@@ -86,6 +86,14 @@ public final class IndependentRegressionTreeModel extends TreeModel<Regressor> {
         return outputMap;
     }
 
+    /**
+     * Returns an unmodifiable view of the tree roots, keyed by the regression dimension name.
+     * @return The roots.
+     */
+    public Map<String,Node<Regressor>> getRoots() {
+        return Collections.unmodifiableMap(roots);
+    }
+
     /**
      * Probes the trees to find the depth.
      * @return The maximum depth across the trees.
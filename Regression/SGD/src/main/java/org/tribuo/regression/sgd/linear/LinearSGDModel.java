@@ -21,6 +21,7 @@ import org.tribuo.ImmutableFeatureMap;
 import org.tribuo.ImmutableOutputInfo;
 import org.tribuo.Prediction;
 import org.tribuo.common.sgd.AbstractLinearSGDModel;
+import org.tribuo.common.sgd.LinearScorer;
 import org.tribuo.math.LinearParameters;
 import org.tribuo.math.la.DenseMatrix;
 import org.tribuo.provenance.ModelProvenance;
@@ -83,13 +84,17 @@ public class LinearSGDModel extends AbstractLinearSGDModel<Regressor> {
 
     @Override
     public Prediction<Regressor> predict(Example<Regressor> example) {
-        PredAndActive predTuple = predictSingle(example);
-        return new Prediction<>(new Regressor(dimensionNames,predTuple.prediction.toArray()), predTuple.numActiveFeatures-1, example);
+        LinearScorer scorer = getScorer();
+        double[] prediction = scorer.getBuffer();
+        int numUsed = scorer.score(example,prediction);
+        return new Prediction<>(new Regressor(dimensionNames,prediction), numUsed, example);
     }
 
     @Override
     protected LinearSGDModel copy(String newName, ModelProvenance newProvenance) {
-        return new LinearSGDModel(newName,Arrays.copyOf(dimensionNames,dimensionNames.length),newProvenance,featureIDMap,outputIDInfo,getWeightsCopy());
+        LinearSGDModel copy = new LinearSGDModel(newName,Arrays.copyOf(dimensionNames,dimensionNames.length),newProvenance,featureIDMap,outputIDInfo,getWeightsCopy());
+        copy.setCompileScorer(isCompileScorer());
+        return copy;
     }
 
     @Override
@@ -23,6 +23,7 @@ import org.tribuo.Dataset;
 import org.tribuo.Model;
 import org.tribuo.Trainer;
 import org.tribuo.common.sgd.AbstractLinearSGDModel;
+import org.tribuo.common.sgd.OptimiserState;
 import org.tribuo.math.la.DenseMatrix;
 import org.tribuo.math.la.DenseVector;
 import org.tribuo.math.optimisers.AdaGrad;
@@ -38,6 +39,7 @@ import org.tribuo.test.Helpers;
 
 import java.io.IOException;
 import java.io.ObjectInputStream;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.logging.Level;
@@ -102,6 +104,34 @@ public class TestSGDLinear {
         });
     }
 
+    @Test
+    public void testIncrementalTrainingWithOptimiserState() {
+        Pair<Dataset<Regressor>,Dataset<Regressor>> p = RegressionDataGenerator.denseTrainTest();
+        LinearSGDTrainer trainer = new LinearSGDTrainer(new SquaredLoss(), new AdaGrad(0.1,0.1),5,1000, Trainer.DEFAULT_SEED);
+        trainer.setShuffle(false);
+
+        Pair<AbstractLinearSGDModel<Regressor>,OptimiserState> trained = trainer.trainWithOptimiserState(p.getA(), Collections.emptyMap());
+        AbstractLinearSGDModel<Regressor> model = trained.getA();
+        DenseMatrix originalWeights = model.getWeightsCopy();
+        assertEquals(trainer.train(p.getA()).getWeightsCopy(),originalWeights);
+
+        // Reusing the state gives the same update, and leaves the original model untouched.
+        Pair<AbstractLinearSGDModel<Regressor>,OptimiserState> first = trainer.incrementalTrain(p.getB(),model,trained.getB());
+        Pair<AbstractLinearSGDModel<Regressor>,OptimiserState> second = trainer.incrementalTrain(p.getB(),model,trained.getB());
+        assertEquals(first.getA().getWeightsCopy(),second.getA().getWeightsCopy());
+        assertEquals(originalWeights,model.getWeightsCopy());
+        Assertions.assertNotEquals(originalWeights,first.getA().getWeightsCopy());
+
+        // Restarting the optimiser is a different update.
+        AbstractLinearSGDModel<Regressor> restarted = trainer.incrementalTrain(p.getB(),model);
+        Assertions.assertNotEquals(restarted.getWeightsCopy(),first.getA().getWeightsCopy());
+
+        // The returned state continues from the update.
+        Pair<AbstractLinearSGDModel<Regressor>,OptimiserState> third = trainer.incrementalTrain(p.getB(),first.getA(),first.getB());
+        Assertions.assertNotEquals(first.getA().getWeightsCopy(),third.getA().getWeightsCopy());
+        e.evaluate(third.getA(),p.getB());
+    }
+
     public static void testIndependentMultipleMultipleRegression(Pair<Dataset<Regressor>,Dataset<Regressor>> p) {
         // Turning off shuffle is important, otherwise the presentation order results in different models.
         t.setShuffle(false);
@@ -0,0 +1,297 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.tribuo.regression.slm;
+
+import com.oracle.labs.mlrg.olcut.config.Config;
+import com.oracle.labs.mlrg.olcut.config.PropertyException;
+import com.oracle.labs.mlrg.olcut.provenance.Provenance;
+import org.tribuo.Dataset;
+import org.tribuo.Example;
+import org.tribuo.ImmutableFeatureMap;
+import org.tribuo.ImmutableOutputInfo;
+import org.tribuo.Trainer;
+import org.tribuo.WeightedExamples;
+import org.tribuo.math.la.CholeskyFactorization;
+import org.tribuo.math.la.DenseMatrix;
+import org.tribuo.math.la.DenseVector;
+import org.tribuo.math.la.SparseVector;
+import org.tribuo.math.la.VectorTuple;
+import org.tribuo.provenance.ModelProvenance;
+import org.tribuo.provenance.TrainerProvenance;
+import org.tribuo.provenance.impl.TrainerProvenanceImpl;
+import org.tribuo.regression.Regressor;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A trainer for a linear regression model which solves the ridge regression (or ordinary
+ * least squares) problem in closed form.
+ * <p>
+ * Makes a single pass over the data to compute the Gram matrix X^T X and the vectors X^T y,
+ * splitting the examples across threads which each accumulate their own copy. The regularised
+ * system (X^T X + lambda I) w = X^T y is then solved using a Cholesky factorization. The bias
+ * term is not regularised. Each output dimension is solved independently, sharing the
+ * factorization.
+ * <p>
+ * This is exact, and much faster than the iterative trainers for datasets with many examples
+ * and up to a few thousand features, but the Gram matrix is dense so memory usage is quadratic
+ * in the number of features.
+ * <p>
+ * Setting the l2 penalty to zero gives ordinary least squares, which will fail if the features
+ * are linearly dependent.
+ */
+public class RidgeRegressionTrainer implements Trainer<Regressor>, WeightedExamples {
+    @Config(description="L2 regularisation penalty, 0.0 gives ordinary least squares.")
+    private double l2Penalty = 1.0;
+
+    @Config(description="The number of threads to use when computing the Gram matrix.")
+    private int numThreads = 1;
+
+    private int trainInvocationCounter;
+
+    /**
+     * For OLCUT.
+     */
+    private RidgeRegressionTrainer() { }
+
+    /**
+     * Constructs a ridge regression trainer using a single thread.
+     * @param l2Penalty The l2 penalty, use 0.0 for ordinary least squares.
+     */
+    public RidgeRegressionTrainer(double l2Penalty) {
+        this(l2Penalty,1);
+    }
+
+    /**
+     * Constructs a ridge regression trainer.
+     * @param l2Penalty The l2 penalty, use 0.0 for ordinary least squares.
+     * @param numThreads The number of threads to use when computing the Gram matrix.
+     */
+    public RidgeRegressionTrainer(double l2Penalty, int numThreads) {
+        this.l2Penalty = l2Penalty;
+        this.numThreads = numThreads;
+        postConfig();
+    }
+
+    @Override
+    public synchronized void postConfig() {
+        if (l2Penalty < 0.0) {
+            throw new PropertyException("","l2Penalty","L2 penalty must be non-negative, found " + l2Penalty);
+        }
+        if (numThreads < 1) {
+            throw new PropertyException("","numThreads","numThreads must be positive, found " + numThreads);
+        }
+    }
+
+    @Override
+    public SparseLinearModel train(Dataset<Regressor> examples, Map<String, Provenance> runProvenance) {
+        if (examples.getOutputInfo().getUnknownCount() > 0) {
+            throw new IllegalArgumentException("The supplied Dataset contained unknown Outputs, and this Trainer is supervised.");
+        }
+        TrainerProvenance trainerProvenance;
+        synchronized(this) {
+            trainerProvenance = getProvenance();
+            trainInvocationCounter++;
+        }
+        ImmutableFeatureMap featureIDMap = examples.getFeatureIDMap();
+        ImmutableOutputInfo<Regressor> outputInfo = examples.getOutputIDInfo();
+        int numOutputs = outputInfo.size();
+        int numExamples = examples.size();
+        int numFeatures = featureIDMap.size() + 1; // include bias
+
+        SparseVector[] inputs = new SparseVector[numExamples];
+        double[][] outputs = new double[numExamples][numOutputs];
+        double[] weights = new double[numExamples];
+        int n = 0;
+        for (Example<Regressor> e : examples) {
+            inputs[n] = SparseVector.createSparseVector(e,featureIDMap,true);
+            weights[n] = e.getWeight();
+            for (Regressor.DimensionTuple r : e.getOutput()) {
+                outputs[n][outputInfo.getID(r)] = r.getValue();
+            }
+            n++;
+        }
+
+        GramAccumulator gram = accumulate(inputs,outputs,weights,numFeatures,numOutputs);
+
+        // Regularise everything apart from the bias.
+        double[][] gramMatrix = gram.symmetricGram();
+        for (int i = 0; i < numFeatures - 1; i++) {
+            gramMatrix[i][i] += l2Penalty;
+        }
+
+        Optional<CholeskyFactorization> factorization = DenseMatrix.createDenseMatrix(gramMatrix).choleskyFactorization();
+        if (!factorization.isPresent()) {
+            throw new IllegalStateException("The regularised Gram matrix was not positive definite, the features may be linearly dependent. Try increasing l2Penalty, currently " + l2Penalty);
+        }
+        DenseMatrix solution = factorization.get().solve(DenseMatrix.createDenseMatrix(gram.xty).transpose());
+
+        String[] dimensionNames = new String[numOutputs];
+        SparseVector[] modelWeights = new SparseVector[numOutputs];
+        for (Regressor r : outputInfo.getDomain()) {
+            int id = outputInfo.getID(r);
+            dimensionNames[id] = r.getNames()[0];
+            modelWeights[id] = solution.getColumn(id).sparsify();
+        }
+
+        double[] featureMeans = new double[numFeatures];
+        double[] featureVariances = new double[numFeatures];
+        Arrays.fill(featureVariances,1.0);
+        double[] outputMeans = new double[numOutputs];
+        double[] outputVariances = new double[numOutputs];
+        Arrays.fill(outputVariances,1.0);
+
+        ModelProvenance provenance = new ModelProvenance(SparseLinearModel.class.getName(), OffsetDateTime.now(), examples.getProvenance(), trainerProvenance, runProvenance);
+        return new SparseLinearModel("ridge-regression-model", dimensionNames, provenance, featureIDMap, outputInfo,
+                modelWeights, DenseVector.createDenseVector(featureMeans), DenseVector.createDenseVector(featureVariances),
+                outputMeans, outputVariances, true);
+    }
+
+    /**
+     * Computes the Gram matrix and X^T y, splitting the examples into contiguous chunks,
+     * one per thread, and summing the per thread accumulators.
+     * @param inputs The feature vectors, including the bias.
+     * @param outputs The regression targets.
+     * @param weights The example weights.
+     * @param numFeatures The number of features, including the bias.
+     * @param numOutputs The number of output dimensions.
+     * @return The accumulated statistics.
+     */
+    private GramAccumulator accumulate(SparseVector[] inputs, double[][] outputs, double[] weights, int numFeatures, int numOutputs) {
+        int threads = Math.min(numThreads,Math.max(1,inputs.length));
+        if (threads == 1) {
+            GramAccumulator acc = new GramAccumulator(numFeatures,numOutputs);
+            acc.accumulate(inputs,outputs,weights,0,inputs.length);
+            return acc;
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<GramAccumulator>> futures = new ArrayList<>();
+            int chunkSize = (inputs.length + threads - 1) / threads;
+            for (int i = 0; i < threads; i++) {
+                int start = i * chunkSize;
+                int end = Math.min(inputs.length, start + chunkSize);
+                futures.add(pool.submit(() -> {
+                    GramAccumulator acc = new GramAccumulator(numFeatures,numOutputs);
+                    acc.accumulate(inputs,outputs,weights,start,end);
+                    return acc;
+                }));
+            }
+            GramAccumulator output = futures.get(0).get();
+            for (int i = 1; i < futures.size(); i++) {
+                output.merge(futures.get(i).get());
+            }
+            return output;
+        } catch (InterruptedException | ExecutionException e) {
+            throw new IllegalStateException("Failed to compute the Gram matrix in parallel",e);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Override
+    public int getInvocationCount() {
+        return trainInvocationCounter;
+    }
+
+    @Override
+    public TrainerProvenance getProvenance() {
+        return new TrainerProvenanceImpl(this);
+    }
+
+    @Override
+    public String toString() {
+        return "RidgeRegressionTrainer(l2Penalty="+l2Penalty+",numThreads="+numThreads+")";
+    }
+
+    /**
+     * Per thread accumulator for the upper triangle of X^T X and for X^T y.
+     */
+    private static final class GramAccumulator {
+        final double[][] gram;
+        final double[][] xty;
+
+        GramAccumulator(int numFeatures, int numOutputs) {
+            this.gram = new double[numFeatures][numFeatures];
+            this.xty = new double[numOutputs][numFeatures];
+        }
+
+        void accumulate(SparseVector[] inputs, double[][] outputs, double[] weights, int start, int end) {
+            int[] indices = new int[gram.length];
+            double[] values = new double[gram.length];
+            for (int n = start; n < end; n++) {
+                double weight = weights[n];
+                int numActive = 0;
+                for (VectorTuple t : inputs[n]) {
+                    indices[numActive] = t.index;
+                    values[numActive] = t.value;
+                    numActive++;
+                }
+                for (int a = 0; a < numActive; a++) {
+                    double[] row = gram[indices[a]];
+                    double scaled = weight * values[a];
+                    // indices are sorted so this fills the upper triangle
+                    for (int b = a; b < numActive; b++) {
+                        row[indices[b]] += scaled * values[b];
+                    }
+                }
+                for (int k = 0; k < xty.length; k++) {
+                    double scaledTarget = weight * outputs[n][k];
+                    double[] row = xty[k];
+                    for (int a = 0; a < numActive; a++) {
+                        row[indices[a]] += scaledTarget * values[a];
+                    }
+                }
+            }
+        }
+
+        void merge(GramAccumulator other) {
+            for (int i = 0; i < gram.length; i++) {
+                for (int j = i; j < gram.length; j++) {
+                    gram[i][j] += other.gram[i][j];
+                }
+            }
+            for (int k = 0; k < xty.length; k++) {
+                for (int i = 0; i < xty[k].length; i++) {
+                    xty[k][i] += other.xty[k][i];
+                }
+            }
+        }
+
+        /**
+         * Copies the upper triangle into the lower triangle, returning the full Gram matrix.
+         * @return The symmetric Gram matrix.
+         */
+        double[][] symmetricGram() {
+            for (int i = 0; i < gram.length; i++) {
+                for (int j = i + 1; j < gram.length; j++) {
+                    gram[j][i] = gram[i][j];
+                }
+            }
+            return gram;
+        }
+    }
+}
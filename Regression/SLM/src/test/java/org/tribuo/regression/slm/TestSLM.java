@@ -18,8 +18,13 @@ package org.tribuo.regression.slm;
 
 import com.oracle.labs.mlrg.olcut.util.Pair;
 import org.tribuo.Dataset;
+import org.tribuo.MutableDataset;
 import org.tribuo.Model;
 import org.tribuo.Trainer;
+import org.tribuo.impl.ArrayExample;
+import org.tribuo.math.la.SparseVector;
+import org.tribuo.provenance.SimpleDataSourceProvenance;
+import org.tribuo.regression.RegressionFactory;
 import org.tribuo.regression.Regressor;
 import org.tribuo.regression.evaluation.RegressionEvaluation;
 import org.tribuo.regression.evaluation.RegressionEvaluator;
@@ -29,6 +34,7 @@ import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.tribuo.test.Helpers;
 
+import java.time.OffsetDateTime;
 import java.util.List;
 import java.util.Map;
 import java.util.logging.Level;
@@ -41,6 +47,8 @@ public class TestSLM {
     private static final ElasticNetCDTrainer ELASTIC_NET = new ElasticNetCDTrainer(1.0,0.5);
     private static final LARSTrainer LARS = new LARSTrainer(-1);
     private static final LARSLassoTrainer LARS_LASSO = new LARSLassoTrainer(-1);
+    private static final RidgeRegressionTrainer RIDGE = new RidgeRegressionTrainer(0.1);
+    private static final RidgeRegressionTrainer RIDGE_PARALLEL = new RidgeRegressionTrainer(0.1,4);
 
     @BeforeAll
     public static void turnDownLogging() {
@@ -84,6 +92,49 @@ public class TestSLM {
         return testTrainer(ELASTIC_NET,p);
     }
 
+    public static Model<Regressor> testRidge(Pair<Dataset<Regressor>,Dataset<Regressor>> p) {
+        return testTrainer(RIDGE,p);
+    }
+
+    @Test
+    public void testRidgeParallel() {
+        Pair<Dataset<Regressor>,Dataset<Regressor>> p = RegressionDataGenerator.multiDimDenseTrainTest();
+        SparseLinearModel serial = (SparseLinearModel) RIDGE.train(p.getA());
+        SparseLinearModel parallel = (SparseLinearModel) RIDGE_PARALLEL.train(p.getA());
+        Map<String,SparseVector> serialWeights = serial.getWeights();
+        Map<String,SparseVector> parallelWeights = parallel.getWeights();
+        Assertions.assertEquals(serialWeights.keySet(),parallelWeights.keySet());
+        for (Map.Entry<String,SparseVector> e : serialWeights.entrySet()) {
+            SparseVector other = parallelWeights.get(e.getKey());
+            Assertions.assertEquals(0.0,e.getValue().euclideanDistance(other),1e-8);
+        }
+    }
+
+    @Test
+    public void testRidgeClosedForm() {
+        // y = 2x + 1 at x = 1,2,3,4
+        RegressionFactory factory = new RegressionFactory();
+        MutableDataset<Regressor> data = new MutableDataset<>(new SimpleDataSourceProvenance("closed-form", OffsetDateTime.now(), factory), factory);
+        for (int i = 1; i <= 4; i++) {
+            data.add(new ArrayExample<>(new Regressor("y", 2.0 * i + 1.0), new String[]{"x"}, new double[]{i}));
+        }
+
+        // Ordinary least squares recovers the generating line exactly.
+        SparseVector ols = ((SparseLinearModel) new RidgeRegressionTrainer(0.0).train(data)).getWeights().get("y");
+        Assertions.assertEquals(2.0, ols.get(0), 1e-10);
+        Assertions.assertEquals(1.0, ols.get(1), 1e-10);
+
+        // With an unpenalised bias the normal equations are
+        // (sum x^2 + lambda) w + (sum x) b = sum xy, (sum x) w + n b = sum y
+        // i.e. (30 + lambda) w + 10 b = 70, 10 w + 4 b = 24.
+        double lambda = 0.1;
+        double expectedW = 10.0 / (5.0 + lambda);
+        double expectedB = 6.0 - 2.5 * expectedW;
+        SparseVector ridge = ((SparseLinearModel) new RidgeRegressionTrainer(lambda).train(data)).getWeights().get("y");
+        Assertions.assertEquals(expectedW, ridge.get(0), 1e-10);
+        Assertions.assertEquals(expectedB, ridge.get(1), 1e-10);
+    }
+
     @Test
     public void testDenseData() {
         Pair<Dataset<Regressor>,Dataset<Regressor>> p = RegressionDataGenerator.denseTrainTest();
@@ -97,6 +148,8 @@ public class TestSLM {
         Helpers.testModelSerialization(lasso,Regressor.class);
         Model<Regressor> elastic = testElasticNet(p);
         Helpers.testModelSerialization(elastic,Regressor.class);
+        Model<Regressor> ridge = testRidge(p);
+        Helpers.testModelSerialization(ridge,Regressor.class);
     }
 
     @Test
@@ -107,6 +160,7 @@ public class TestSLM {
         testLARS(p);
         testLASSO(p);
         testElasticNet(p);
+        testRidge(p);
     }
 
     @Test
@@ -117,6 +171,7 @@ public class TestSLM {
         testLARS(p);
         testLASSO(p);
         testElasticNet(p);
+        testRidge(p);
     }
 
     @Test
@@ -127,6 +182,7 @@ public class TestSLM {
         testLARS(p);
         testLASSO(p);
         testElasticNet(p);
+        testRidge(p);
     }
 
 }
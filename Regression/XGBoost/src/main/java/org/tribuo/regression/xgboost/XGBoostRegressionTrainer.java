@@ -176,10 +176,8 @@ public final class XGBoostRegressionTrainer extends XGBoostTrainer<Regressor> {
         TrainerProvenance trainerProvenance = getProvenance();
         trainInvocationCounter++;
         List<Booster> models = new ArrayList<>();
-        try {
-            // Use a null response extractor as we'll do the per dimension regression extraction later.
-            DMatrixTuple<Regressor> trainingData = convertExamples(examples, featureMap, null);
-
+        // Use a null response extractor as we'll do the per dimension regression extraction later.
+        try (TrainingMatrix trainingData = createTrainingMatrix(examples, featureMap, null)) {
             // Extract the weights and the regression targets.
             float[][] outputs = new float[numOutputs][examples.size()];
             float[] weights = new float[examples.size()];
@@ -198,7 +196,7 @@ public final class XGBoostRegressionTrainer extends XGBoostTrainer<Regressor> {
             // Finished setup, now train one model per dimension.
             for (i = 0; i < numOutputs; i++) {
                 trainingData.data.setLabel(outputs[i]);
-                models.add(XGBoost.train(trainingData.data, parameters, numTrees, Collections.emptyMap(), null, null));
+                models.add(XGBoost.train(trainingData.data, trainingData.parameters, numTrees, Collections.emptyMap(), null, null));
             }
         } catch (XGBoostError e) {
             logger.log(Level.SEVERE, "XGBoost threw an error", e);
@@ -206,7 +204,7 @@ public final class XGBoostRegressionTrainer extends XGBoostTrainer<Regressor> {
         }
 
         ModelProvenance provenance = new ModelProvenance(XGBoostModel.class.getName(), OffsetDateTime.now(), examples.getProvenance(), trainerProvenance, runProvenance);
-        XGBoostModel<Regressor> xgModel = createModel("xgboost-regression-model", provenance, featureMap, outputInfo, models, new XGBoostRegressionConverter());
+        XGBoostModel<Regressor> xgModel = createModel("xgboost-regression-model", provenance, featureMap, outputInfo, models, new XGBoostRegressionConverter(), examples);
 
         return xgModel;
     }
@@ -19,13 +19,27 @@ package org.tribuo.regression.xgboost;
 import com.oracle.labs.mlrg.olcut.util.Pair;
 import org.tribuo.Dataset;
 import org.tribuo.Model;
+import org.tribuo.Prediction;
+import org.tribuo.common.xgboost.XGBoostModel;
 import org.tribuo.regression.Regressor;
 import org.tribuo.regression.evaluation.RegressionEvaluator;
 import org.tribuo.regression.example.RegressionDataGenerator;
 import org.junit.jupiter.api.Test;
 import org.tribuo.test.Helpers;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class TestXGBoost {
 
@@ -64,6 +78,48 @@ public class TestXGBoost {
         testXGBoost(p);
     }
 
+    @Test
+    public void testJavaPrediction() {
+        Pair<Dataset<Regressor>,Dataset<Regressor>> p = RegressionDataGenerator.multiDimSparseTrainTest();
+        XGBoostModel<Regressor> model = (XGBoostModel<Regressor>) t.train(p.getA());
+        List<Prediction<Regressor>> nativePredictions = model.predict(p.getB());
+
+        assertTrue(model.enableJavaPrediction(p.getA()));
+        List<Prediction<Regressor>> javaPredictions = model.predict(p.getB());
+        assertEquals(nativePredictions.size(), javaPredictions.size());
+        for (int i = 0; i < nativePredictions.size(); i++) {
+            assertArrayEquals(nativePredictions.get(i).getOutput().getValues(), javaPredictions.get(i).getOutput().getValues(), 1e-6);
+        }
+    }
+
+    @Test
+    public void testExternalMemory() throws IOException {
+        Pair<Dataset<Regressor>,Dataset<Regressor>> p = RegressionDataGenerator.multiDimDenseTrainTest();
+        Path cacheDirectory = Files.createTempDirectory("xgboost-test");
+        try {
+            // External memory training uses the approximate tree method, so use it in memory too.
+            Map<String,Object> params = Collections.singletonMap("tree_method", "approx");
+            XGBoostRegressionTrainer inMemoryTrainer = new XGBoostRegressionTrainer(XGBoostRegressionTrainer.RegressionType.LINEAR, 10, params);
+            XGBoostRegressionTrainer trainer = new XGBoostRegressionTrainer(XGBoostRegressionTrainer.RegressionType.LINEAR, 10, params);
+            trainer.setExternalMemory(true, cacheDirectory);
+            Model<Regressor> model = trainer.train(p.getA());
+            // The width of the booster is only set on a copy of the parameters.
+            assertFalse(trainer.toString().contains("num_feature"));
+            List<Prediction<Regressor>> predictions = model.predict(p.getB());
+            List<Prediction<Regressor>> inMemoryPredictions = inMemoryTrainer.train(p.getA()).predict(p.getB());
+            assertEquals(p.getB().size(), predictions.size());
+            for (int i = 0; i < predictions.size(); i++) {
+                assertEquals(p.getA().getOutputIDInfo().size(), predictions.get(i).getOutput().size());
+                assertArrayEquals(inMemoryPredictions.get(i).getOutput().getValues(), predictions.get(i).getOutput().getValues(), 1e-5);
+            }
+            try (Stream<Path> files = Files.list(cacheDirectory)) {
+                assertEquals(0, files.count());
+            }
+        } finally {
+            Files.deleteIfExists(cacheDirectory);
+        }
+    }
+
     @Test
     public void testInvalidExample() {
         assertThrows(IllegalArgumentException.class, () -> {